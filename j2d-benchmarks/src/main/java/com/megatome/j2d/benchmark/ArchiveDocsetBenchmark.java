@@ -0,0 +1,72 @@
+/**
+ * Copyright 2015 Megatome Technologies, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.megatome.j2d.benchmark;
+
+import com.megatome.j2d.support.DocSetSupport;
+import com.megatome.j2d.support.DocsetArchive;
+import com.megatome.j2d.support.OutputFormat;
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures archiving a docset into a <code>.tgz</code> feed archive.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ArchiveDocsetBenchmark {
+    @Param({"1", "10", "100"})
+    public int scale;
+
+    @Param({"1", "6"})
+    public int compressionLevel;
+
+    @Param({"1", "4"})
+    public int compressThreads;
+
+    private File workDir;
+    private File docsetDir;
+    private File archiveFile;
+
+    @Setup
+    public void setup() throws Exception {
+        workDir = Files.createTempDirectory("j2d-bench").toFile();
+        final File javadoc = SyntheticJavadoc.create(scale, new File(workDir, "javadoc"));
+        final String docset = new File(workDir, "Bench").getPath();
+        DocSetSupport.createDocSetStructure(docset);
+        DocSetSupport.copyFiles(javadoc, docset);
+        docsetDir = new File(workDir, "Bench.docset");
+        archiveFile = new File(workDir, "Bench.tgz");
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        FileUtils.deleteDirectory(workDir);
+    }
+
+    @Benchmark
+    public void archiveDocset() throws Exception {
+        DocsetArchive.archiveDocset(docsetDir, archiveFile, OutputFormat.TGZ, compressionLevel, 128 * 1024,
+                compressThreads);
+    }
+}
@@ -0,0 +1,71 @@
+/**
+ * Copyright 2015 Megatome Technologies, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.megatome.j2d.benchmark;
+
+import com.megatome.j2d.support.CopyStrategy;
+import com.megatome.j2d.support.DocSetSupport;
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures copying the Javadoc tree into the docset.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class CopyFilesBenchmark {
+    @Param({"1", "10", "100"})
+    public int scale;
+
+    @Param({"COPY", "HARD_LINK", "REFLINK", "TRANSFER"})
+    public CopyStrategy copyStrategy;
+
+    @Param({"1", "4"})
+    public int copyThreads;
+
+    private File workDir;
+    private File javadoc;
+    private String docsetDir;
+
+    @Setup
+    public void setup() throws Exception {
+        workDir = Files.createTempDirectory("j2d-bench").toFile();
+        javadoc = SyntheticJavadoc.create(scale, new File(workDir, "javadoc"));
+        docsetDir = new File(workDir, "Bench").getPath();
+    }
+
+    @Setup(Level.Invocation)
+    public void createDocsetStructure() throws Exception {
+        DocSetSupport.createDocSetStructure(docsetDir);
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        FileUtils.deleteDirectory(workDir);
+    }
+
+    @Benchmark
+    public void copyFiles() throws Exception {
+        DocSetSupport.copyFiles(javadoc, docsetDir, copyStrategy, copyThreads);
+    }
+}
@@ -0,0 +1,72 @@
+/**
+ * Copyright 2015 Megatome Technologies, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.megatome.j2d.benchmark;
+
+import com.megatome.j2d.support.DBSupport;
+import com.megatome.j2d.support.JavadocSupport;
+import com.megatome.j2d.util.SearchIndexValue;
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures writing the SQLite search index.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class CreateIndexBenchmark {
+    @Param({"1", "10", "100"})
+    public int scale;
+
+    @Param({"1000"})
+    public int batchSize;
+
+    private File workDir;
+    private List<SearchIndexValue> indexValues;
+    private File dbDir;
+
+    @Setup
+    public void setup() throws Exception {
+        workDir = Files.createTempDirectory("j2d-bench").toFile();
+        final File javadoc = SyntheticJavadoc.create(scale, new File(workDir, "javadoc"));
+        indexValues = JavadocSupport.findSearchIndexValues(JavadocSupport.findIndexFile(javadoc).getFilesToIndex());
+    }
+
+    @Setup(Level.Invocation)
+    public void createDBDir() throws Exception {
+        dbDir = new File(workDir, "db");
+        FileUtils.deleteDirectory(dbDir);
+        FileUtils.forceMkdir(dbDir);
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        FileUtils.deleteDirectory(workDir);
+    }
+
+    @Benchmark
+    public void createIndex() throws Exception {
+        DBSupport.createIndex(indexValues, dbDir.getPath(), batchSize);
+    }
+}
@@ -0,0 +1,75 @@
+/**
+ * Copyright 2015 Megatome Technologies, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.megatome.j2d.benchmark;
+
+import com.megatome.j2d.support.JavadocSupport;
+import com.megatome.j2d.support.ParseCache;
+import com.megatome.j2d.support.ParseOptions;
+import com.megatome.j2d.support.ParserStrategy;
+import com.megatome.j2d.util.SearchIndexValue;
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures parsing a single Javadoc index page.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class IndexFileBenchmark {
+    @Param({"1", "10", "100"})
+    public int scale;
+
+    @Param({"DOM", "STREAMING"})
+    public ParserStrategy parserStrategy;
+
+    @Param({"false", "true"})
+    public boolean parseCache;
+
+    private File workDir;
+    private List<File> filesToIndex;
+    private ParseOptions options;
+
+    @Setup
+    public void setup() throws Exception {
+        workDir = Files.createTempDirectory("j2d-bench").toFile();
+        final File javadoc = SyntheticJavadoc.create(scale, new File(workDir, "javadoc"));
+        filesToIndex = JavadocSupport.findIndexFile(javadoc).getFilesToIndex();
+        options = new ParseOptions().parserStrategy(parserStrategy);
+        if (parseCache) {
+            // Filled by the warmup iterations, so the measured iterations are all cache hits
+            options.parseCache(new ParseCache(new File(workDir, "cache")));
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        FileUtils.deleteDirectory(workDir);
+    }
+
+    @Benchmark
+    public List<SearchIndexValue> indexFile() throws Exception {
+        return JavadocSupport.findSearchIndexValues(filesToIndex, options);
+    }
+}
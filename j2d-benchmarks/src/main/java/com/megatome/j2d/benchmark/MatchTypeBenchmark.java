@@ -0,0 +1,55 @@
+/**
+ * Copyright 2015 Megatome Technologies, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.megatome.j2d.benchmark;
+
+import com.megatome.j2d.support.MatchType;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures classifying index entries with {@link MatchType}. The entries cover the types found at the start, middle
+ * and end of the type list, as well as an entry that matches nothing.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class MatchTypeBenchmark {
+    private static final String[][] ENTRIES = {
+            {"SampleClass - Class in com.megatome.j2d.sample.clazz", ""},
+            {"staticMethod() - Static method in class com.megatome.j2d.sample.clazz.SampleClass", ""},
+            {"FOO - Static variable in class com.megatome.j2d.sample.clazz.SampleClass", ""},
+            {"SampleException(String, Throwable) - Constructor for exception com.megatome.j2d.sample.exception.SampleException", ""},
+            {"interfaceMethod() - Method in interface com.megatome.j2d.sample.iface.SampleInterface", ""},
+            {"SampleInterface - Interface in com.megatome.j2d.sample.iface", ""},
+            {"SampleEnum - Enum in com.megatome.j2d.sample.enums", ""},
+            {"SampleAnnotation - Annotation Type in com.megatome.j2d.sample.annotation", ""},
+            {"com.megatome.j2d.sample.clazz - package com.megatome.j2d.sample.clazz", ""},
+            {"value() - Element in annotation interface com.megatome.j2d.sample.annotation.SampleAnnotation", ""}
+    };
+
+    @Benchmark
+    @OperationsPerInvocation(10)
+    public void find(Blackhole blackhole) {
+        for (final String[] entry : ENTRIES) {
+            blackhole.consume(MatchType.find(entry[0], entry[1]));
+        }
+    }
+}
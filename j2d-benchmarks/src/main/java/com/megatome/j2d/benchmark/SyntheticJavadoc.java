@@ -0,0 +1,86 @@
+/**
+ * Copyright 2015 Megatome Technologies, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.megatome.j2d.benchmark;
+
+import org.apache.commons.io.FileUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.apache.commons.io.FileUtils.getFile;
+
+/**
+ * Builds Javadoc trees of a configurable size from the <code>j2d-sample</code> Javadoc. A tree at scale <i>n</i>
+ * holds <i>n</i> copies of the sample packages, and its <code>index-all.html</code> lists the entries of every copy.
+ */
+final class SyntheticJavadoc {
+    static final String SAMPLE_JAVADOC_PROPERTY = "j2d-sample-javadoc";
+
+    private static final String SAMPLE_PACKAGE_DIR = "com/megatome/j2d/sample";
+    private static final String SAMPLE_PACKAGE = "com.megatome.j2d.sample";
+    private static final String INDEX_ALL = "index-all.html";
+
+    private SyntheticJavadoc() {}
+
+    /**
+     * Get the location of the non-split sample Javadoc.
+     * @return Sample Javadoc directory
+     */
+    static File sampleJavadoc() {
+        final String location = System.getProperty(SAMPLE_JAVADOC_PROPERTY);
+        if (null == location) {
+            throw new IllegalStateException("System property " + SAMPLE_JAVADOC_PROPERTY + " must point to the j2d-sample javadoc");
+        }
+        return getFile(location);
+    }
+
+    /**
+     * Create a synthetic Javadoc tree.
+     * @param scale Number of copies of the sample packages to include
+     * @param targetDir Directory to create the tree in. Must not exist yet.
+     * @return Root of the new Javadoc tree
+     * @throws IOException If the tree could not be created
+     */
+    static File create(int scale, File targetDir) throws IOException {
+        final File sampleDir = sampleJavadoc();
+        FileUtils.copyDirectory(sampleDir, targetDir);
+
+        final File samplePackages = getFile(sampleDir, SAMPLE_PACKAGE_DIR);
+        for (int i = 1; i < scale; i++) {
+            FileUtils.copyDirectory(samplePackages, getFile(targetDir, SAMPLE_PACKAGE_DIR + i));
+        }
+
+        final File indexAll = getFile(targetDir, INDEX_ALL);
+        final String html = FileUtils.readFileToString(indexAll, StandardCharsets.UTF_8.name());
+        final int entriesStart = html.indexOf("<dt>");
+        final int entriesEnd = Math.max(html.lastIndexOf("</dd>") + "</dd>".length(), html.lastIndexOf("</dt>") + "</dt>".length());
+        if (entriesStart < 0 || entriesEnd <= entriesStart) {
+            throw new IllegalStateException("No index entries found in " + indexAll);
+        }
+        final String entries = html.substring(entriesStart, entriesEnd);
+
+        final StringBuilder scaled = new StringBuilder(html.length() + entries.length() * scale);
+        scaled.append(html, 0, entriesEnd);
+        for (int i = 1; i < scale; i++) {
+            scaled.append('\n').append(entries.replace(SAMPLE_PACKAGE_DIR + "/", SAMPLE_PACKAGE_DIR + i + "/")
+                    .replace(SAMPLE_PACKAGE + ".", SAMPLE_PACKAGE + i + "."));
+        }
+        scaled.append(html, entriesEnd, html.length());
+        FileUtils.writeStringToFile(indexAll, scaled.toString(), StandardCharsets.UTF_8.name());
+        return targetDir;
+    }
+}
@@ -16,6 +16,14 @@
 package com.megatome.j2d;
 
 import com.megatome.j2d.exception.BuilderException;
+import com.megatome.j2d.support.CopyStrategy;
+import com.megatome.j2d.support.DocSetSupport;
+import com.megatome.j2d.support.FullTextSupport;
+import com.megatome.j2d.support.OutputFormat;
+import com.megatome.j2d.support.ParseCache;
+import com.megatome.j2d.support.ParserStrategy;
+import com.megatome.j2d.util.BuildMetrics;
+import com.megatome.j2d.util.SearchHit;
 import joptsimple.OptionException;
 import joptsimple.OptionParser;
 import joptsimple.OptionSet;
@@ -24,20 +32,52 @@ import org.apache.commons.io.FileUtils;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
 import static com.megatome.j2d.util.LogUtility.log;
 import static com.megatome.j2d.util.LogUtility.setVerbose;
 
 public class Main {
+    private static final String SEARCH_COMMAND = "search";
+    private static final String DOCSET_SUFFIX = ".docset";
+
     public static void main(String... args) {
+        if (args.length > 0 && SEARCH_COMMAND.equals(args[0])) {
+            search(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
         final OptionParser parser = new OptionParser();
-        final OptionSpec<String> docsetName = parser.accepts("name", "Name of the generated docset").withRequiredArg().ofType(String.class).required();
-        final OptionSpec<File> javadocRoot = parser.accepts("javadoc", "Directory containing Javadoc to bundle in the docset.").withRequiredArg().ofType(File.class).required();
+        final OptionSpec<File> batchFile = parser.accepts("batch", "File listing docsets to build at the same time, one 'name=javadocDirectory' per line. Replaces 'name' and 'javadoc'.").withRequiredArg().ofType(File.class);
+        final OptionSpec<File> javadocJars = parser.accepts("javadocJars", "Directory of -javadoc.jar files, such as the Javadoc of every dependency, to build a TGZ docset and a feed for each. Docsets that are up to date are skipped. Replaces 'name' and 'javadoc'.").withRequiredArg().ofType(File.class).describedAs("directory");
+        final OptionSpec<String> docsetName = parser.accepts("name", "Name of the generated docset").withRequiredArg().ofType(String.class);
+        final OptionSpec<File> javadocRoot = parser.accepts("javadoc", "Directory containing Javadoc to bundle in the docset, or a -javadoc.jar or .zip that is read without being extracted.").withRequiredArg().ofType(File.class);
         final OptionSpec<File> outputLocation = parser.accepts("out", "Directory where the docset will be created.").withRequiredArg().ofType(File.class).defaultsTo(FileUtils.getFile("."));
         final OptionSpec<String> displayName = parser.accepts("displayName", "Name to show for the docset in Dash. Defaults to value of 'name' if not specified.").withRequiredArg().ofType(String.class);
         final OptionSpec<String> keyword = parser.accepts("keyword", "Keyword to use for the docset in Dash. Defaults to value of 'name' if not specified.").withRequiredArg().ofType(String.class);
         final OptionSpec<File> iconFile = parser.accepts("icon", "Icon file to use for the docset. No icon will be used if not specified.").withRequiredArg().ofType(File.class).describedAs("32x32 PNG");
+        final OptionSpec<Integer> parseThreads = parser.accepts("parseThreads", "Number of Javadoc index files to parse at the same time. Defaults to the number of available processors if not specified.").withRequiredArg().ofType(Integer.class);
+        final OptionSpec<ParserStrategy> parserStrategy = parser.accepts("parser", "How Javadoc index files are parsed. Defaults to DOM if not specified.").withRequiredArg().ofType(ParserStrategy.class).describedAs("DOM|STREAMING");
+        final OptionSpec<CopyStrategy> copyStrategy = parser.accepts("copy", "How Javadoc files are put into the docset. Defaults to COPY if not specified.").withRequiredArg().ofType(CopyStrategy.class).describedAs("COPY|HARD_LINK|REFLINK|TRANSFER");
+        final OptionSpec<Integer> copyThreads = parser.accepts("copyThreads", "Number of Javadoc files to copy into the docset at the same time. Defaults to the number of available processors if not specified.").withRequiredArg().ofType(Integer.class);
+        final OptionSpec<OutputFormat> outputFormat = parser.accepts("format", "Write the docset as a directory, or straight into an archive. Defaults to DIRECTORY if not specified.").withRequiredArg().ofType(OutputFormat.class).describedAs("DIRECTORY|TGZ|ZIP");
+        final OptionSpec<File> archiveFile = parser.accepts("archive", "Archive file to write for TGZ and ZIP output. Defaults to the docset name in the output directory if not specified.").withRequiredArg().ofType(File.class);
+        final OptionSpec<Integer> compressionLevel = parser.accepts("compressionLevel", "Compression level for TGZ and ZIP output, from 0 to 9. Defaults to 6 if not specified.").withRequiredArg().ofType(Integer.class);
+        final OptionSpec<Integer> compressionBlockSize = parser.accepts("compressionBlockSize", "Size in KiB of the blocks TGZ output is compressed in, at least 32. Defaults to 128 if not specified.").withRequiredArg().ofType(Integer.class);
+        final OptionSpec<Integer> compressThreads = parser.accepts("compressThreads", "Number of blocks of TGZ output to compress at the same time. Defaults to the number of available processors if not specified.").withRequiredArg().ofType(Integer.class);
+        final OptionSpec<Void> incremental = parser.accepts("incremental", "Update an existing docset in place, only copying and re-indexing changed files.");
+        final OptionSpec<String> changedPackages = parser.accepts("packages", "Comma separated packages that changed since the docset was built. Only their pages and index entries are replaced in the existing docset.").withRequiredArg().ofType(String.class).withValuesSeparatedBy(',').describedAs("package1,package2");
+        final OptionSpec<File> parseCacheDir = parser.accepts("parseCache", "Cache parsed index files in this directory, so unchanged index files are not parsed again. Uses ~/.javadoc2dash/cache if no directory is given.").withOptionalArg().ofType(File.class).describedAs("directory");
+        final OptionSpec<Integer> buildThreads = parser.accepts("buildThreads", "Number of docsets to build at the same time in batch mode. Defaults to the number of available processors if not specified.").withRequiredArg().ofType(Integer.class);
+        final OptionSpec<Void> aggregate = parser.accepts("aggregate", "Merge the docsets of the batch file into one docset called 'name', with one directory and one search index for all of them.");
+        final OptionSpec<File> metricsOut = parser.acceptsAll(Arrays.asList("metricsOut", "metrics-out"), "Write timings and counts of the build to this file as JSON.").withRequiredArg().ofType(File.class).describedAs("JSON file");
+        final OptionSpec<Void> fullText = parser.accepts("fullText", "Also build a full text index of the entry descriptions, which can be queried with 'search'.");
+        final OptionSpec<Void> tableOfContents = parser.accepts("tableOfContents", "Add Dash table of contents anchors to the members of each page.");
+        final OptionSpec<String> feedUrls = parser.accepts("feedUrl", "Comma separated base URLs the docset archives of 'javadocJars' are published at, written into each feed.").withRequiredArg().ofType(String.class).withValuesSeparatedBy(',').describedAs("url1,url2");
         final OptionSpec<Void> verbose = parser.accepts("verbose", "Show more information");
         final OptionSpec<Void> help = parser.acceptsAll( Arrays.asList("h", "?"), "Show help" ).forHelp();
 
@@ -52,19 +92,254 @@ public class Main {
             usage(parser);
             return;
         }
+        // 'name' and 'javadoc' are required unless the docsets come from 'batch' or 'javadocJars'
+        if (!options.has(batchFile) && !options.has(javadocJars) && (!options.has(docsetName) || !options.has(javadocRoot))) {
+            usage(parser);
+            return;
+        }
 
         setVerbose(options.has(verbose));
-        final DocsetCreator.Builder builder = new DocsetCreator.Builder(options.valueOf(docsetName), options.valueOf(javadocRoot))
-            .displayName(options.valueOf(displayName))
-            .displayName(options.valueOf(keyword))
-            .iconFile(options.valueOf(iconFile))
-            .outputDirectory(options.valueOf(outputLocation));
-        final DocsetCreator docsetCreator = builder.build();
+        if (options.has(aggregate)) {
+            if (!options.has(batchFile) || !options.has(docsetName)) {
+                usage(parser);
+                return;
+            }
+            final DocsetAggregator.Builder aggregateBuilder = new DocsetAggregator.Builder(options.valueOf(docsetName))
+                .displayName(options.valueOf(displayName))
+                .keyword(options.valueOf(keyword))
+                .iconFile(options.valueOf(iconFile))
+                .outputDirectory(options.valueOf(outputLocation))
+                .parserStrategy(options.valueOf(parserStrategy))
+                .copyStrategy(options.valueOf(copyStrategy));
+            try {
+                for (final Map.Entry<String, File> module : readBatchFile(options.valueOf(batchFile)).entrySet()) {
+                    aggregateBuilder.module(module.getKey(), module.getValue());
+                }
+            } catch (IOException | IllegalArgumentException e) {
+                log("Failed to read batch file: {}", e.getMessage());
+                return;
+            }
+            if (options.has(parseThreads)) {
+                aggregateBuilder.parseThreads(options.valueOf(parseThreads));
+            }
+            if (options.has(copyThreads)) {
+                aggregateBuilder.copyThreads(options.valueOf(copyThreads));
+            }
+            if (options.has(buildThreads)) {
+                aggregateBuilder.buildThreads(options.valueOf(buildThreads));
+            }
+            if (options.has(parseCacheDir)) {
+                aggregateBuilder.parseCacheDir(null != options.valueOf(parseCacheDir) ?
+                        options.valueOf(parseCacheDir) : ParseCache.getDefaultDirectory());
+            }
+            try {
+                final DocsetAggregator aggregator = aggregateBuilder.build();
+                aggregator.makeDocset();
+                if (options.has(metricsOut)) {
+                    writeMetrics(Collections.singletonList(aggregator.getMetrics()), options.valueOf(metricsOut));
+                }
+            } catch (IllegalArgumentException | BuilderException e) {
+                log("Failed to create docset: {}", e.getMessage());
+            }
+            return;
+        }
+
+        if (options.has(javadocJars)) {
+            final JavadocJarBatch.Builder jarBatchBuilder = new JavadocJarBatch.Builder()
+                .outputDirectory(options.valueOf(outputLocation))
+                .parserStrategy(options.valueOf(parserStrategy))
+                .fullTextIndex(options.has(fullText))
+                .tableOfContents(options.has(tableOfContents))
+                .feedLocations(options.valuesOf(feedUrls));
+            if (options.has(parseThreads)) {
+                jarBatchBuilder.parseThreads(options.valueOf(parseThreads));
+            }
+            if (options.has(copyThreads)) {
+                jarBatchBuilder.copyThreads(options.valueOf(copyThreads));
+            }
+            if (options.has(buildThreads)) {
+                jarBatchBuilder.buildThreads(options.valueOf(buildThreads));
+            }
+            if (options.has(parseCacheDir)) {
+                jarBatchBuilder.parseCacheDir(null != options.valueOf(parseCacheDir) ?
+                        options.valueOf(parseCacheDir) : ParseCache.getDefaultDirectory());
+            }
+            if (options.has(compressionLevel)) {
+                jarBatchBuilder.compressionLevel(options.valueOf(compressionLevel));
+            }
+            if (options.has(compressionBlockSize)) {
+                jarBatchBuilder.compressionBlockSize(options.valueOf(compressionBlockSize));
+            }
+            if (options.has(compressThreads)) {
+                jarBatchBuilder.compressThreads(options.valueOf(compressThreads));
+            }
+            try {
+                jarBatchBuilder.javadocJarDirectory(options.valueOf(javadocJars)).build().makeDocsets();
+            } catch (IllegalArgumentException | BuilderException e) {
+                log("Failed to create docsets: {}", e.getMessage());
+            }
+            return;
+        }
+
+        final List<DocsetCreator.Builder> builders = new ArrayList<>();
         try {
-            docsetCreator.makeDocset();
-        } catch (BuilderException e) {
+            if (options.has(batchFile)) {
+                for (final Map.Entry<String, File> docset : readBatchFile(options.valueOf(batchFile)).entrySet()) {
+                    builders.add(new DocsetCreator.Builder(docset.getKey(), docset.getValue()));
+                }
+            } else {
+                builders.add(new DocsetCreator.Builder(options.valueOf(docsetName), options.valueOf(javadocRoot))
+                    .displayName(options.valueOf(displayName))
+                    .displayName(options.valueOf(keyword)));
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            log("Failed to read batch file: {}", e.getMessage());
+            return;
+        }
+
+        final DocsetBatch.Builder batchBuilder = new DocsetBatch.Builder();
+        for (final DocsetCreator.Builder builder : builders) {
+            builder.iconFile(options.valueOf(iconFile))
+                .outputDirectory(options.valueOf(outputLocation))
+                .parserStrategy(options.valueOf(parserStrategy))
+                .copyStrategy(options.valueOf(copyStrategy))
+                .outputFormat(options.valueOf(outputFormat))
+                .incremental(options.has(incremental))
+                .changedPackages(options.valuesOf(changedPackages))
+                .fullTextIndex(options.has(fullText))
+                .tableOfContents(options.has(tableOfContents));
+            if (options.has(parseThreads)) {
+                builder.parseThreads(options.valueOf(parseThreads));
+            }
+            if (options.has(copyThreads)) {
+                builder.copyThreads(options.valueOf(copyThreads));
+            }
+            if (options.has(parseCacheDir)) {
+                builder.parseCacheDir(null != options.valueOf(parseCacheDir) ?
+                        options.valueOf(parseCacheDir) : ParseCache.getDefaultDirectory());
+            }
+            if (options.has(compressionLevel)) {
+                builder.compressionLevel(options.valueOf(compressionLevel));
+            }
+            if (options.has(compressionBlockSize)) {
+                builder.compressionBlockSize(options.valueOf(compressionBlockSize));
+            }
+            if (options.has(compressThreads)) {
+                builder.compressThreads(options.valueOf(compressThreads));
+            }
+            if (!options.has(batchFile)) {
+                builder.archiveFile(options.valueOf(archiveFile));
+            }
+            batchBuilder.add(builder.build());
+        }
+        if (options.has(buildThreads)) {
+            batchBuilder.buildThreads(options.valueOf(buildThreads));
+        }
+
+        DocsetBatch batch = null;
+        try {
+            batch = batchBuilder.build();
+            if (options.has(batchFile)) {
+                batch.makeDocsets();
+            } else {
+                batch.getCreators().get(0).makeDocset();
+            }
+        } catch (IllegalArgumentException | BuilderException e) {
             log("Failed to create docset: {}", e.getMessage());
         }
+        if (null != batch && options.has(metricsOut)) {
+            // Builds that failed have no metrics, the rest are still written
+            final List<BuildMetrics> metrics = new ArrayList<>();
+            for (final DocsetCreator creator : batch.getCreators()) {
+                if (null != creator.getMetrics()) {
+                    metrics.add(creator.getMetrics());
+                }
+            }
+            writeMetrics(metrics, options.valueOf(metricsOut));
+        }
+    }
+
+    /**
+     * Query the full text index of a docset, and print the best hits.
+     */
+    private static void search(String... args) {
+        final OptionParser parser = new OptionParser();
+        final OptionSpec<File> docset = parser.accepts("docset", "Docset built with 'fullText' to search.").withRequiredArg().ofType(File.class).required();
+        final OptionSpec<Integer> limit = parser.accepts("limit", "Maximum number of hits to show. Defaults to 20 if not specified.").withRequiredArg().ofType(Integer.class).defaultsTo(20);
+        parser.nonOptions("Words to search for");
+        final OptionSpec<Void> help = parser.acceptsAll( Arrays.asList("h", "?"), "Show help" ).forHelp();
+
+        final OptionSet options;
+        try {
+            options = parser.parse(args);
+            if (options.has(help) || options.nonOptionArguments().isEmpty()) {
+                usage(parser);
+                return;
+            }
+        } catch (OptionException e) {
+            usage(parser);
+            return;
+        }
+
+        String docsetDir = options.valueOf(docset).getPath();
+        if (docsetDir.endsWith(DOCSET_SUFFIX)) {
+            docsetDir = docsetDir.substring(0, docsetDir.length() - DOCSET_SUFFIX.length());
+        }
+        final StringBuilder words = new StringBuilder();
+        for (final Object word : options.nonOptionArguments()) {
+            words.append(words.length() > 0 ? " " : "").append(word);
+        }
+        try {
+            final List<SearchHit> hits = FullTextSupport.search(DocSetSupport.getDBDir(docsetDir), words.toString(), options.valueOf(limit));
+            for (final SearchHit hit : hits) {
+                System.out.println(String.format("%s (%s) %s [%.3f]", hit.getName(), hit.getType(), hit.getPath(), hit.getScore()));
+                if (null != hit.getDescription()) {
+                    System.out.println("    " + hit.getDescription());
+                }
+            }
+            log("{} hits", hits.size());
+        } catch (BuilderException e) {
+            log("Failed to search: {}", e.getMessage());
+        }
+    }
+
+    private static void writeMetrics(List<BuildMetrics> metrics, File file) {
+        if (metrics.isEmpty()) {
+            return;
+        }
+        try {
+            BuildMetrics.writeJson(metrics, file);
+        } catch (IOException e) {
+            log("Failed to write metrics: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Read the docsets listed in a batch file. Each line holds <code>name=javadocDirectory</code>. Blank lines and lines
+     * starting with # are skipped, and relative directories are resolved against the location of the batch file.
+     * @return Javadoc directory of each docset, by name, in the order of the file
+     */
+    private static Map<String, File> readBatchFile(File file) throws IOException {
+        final Map<String, File> docsets = new LinkedHashMap<>();
+        for (final String line : FileUtils.readLines(file, "UTF-8")) {
+            final String spec = line.trim();
+            if (spec.isEmpty() || spec.startsWith("#")) {
+                continue;
+            }
+            final int separator = spec.indexOf('=');
+            if (separator < 0) {
+                throw new IllegalArgumentException(String.format("Expected name=javadocDirectory but found '%s'", spec));
+            }
+            File javadocDir = new File(spec.substring(separator + 1).trim());
+            if (!javadocDir.isAbsolute()) {
+                javadocDir = new File(file.getAbsoluteFile().getParentFile(), javadocDir.getPath());
+            }
+            final String name = spec.substring(0, separator).trim();
+            if (null != docsets.put(name, javadocDir)) {
+                throw new IllegalArgumentException(String.format("%s is listed more than once", name));
+            }
+        }
+        return docsets;
     }
 
     private static void usage(OptionParser parser) {
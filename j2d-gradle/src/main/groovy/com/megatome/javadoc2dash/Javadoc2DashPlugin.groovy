@@ -1,17 +1,23 @@
 package com.megatome.javadoc2dash
 
+import com.megatome.j2d.support.CopyStrategy
+import com.megatome.j2d.support.OutputFormat
+import com.megatome.j2d.support.ParserStrategy
 import com.megatome.javadoc2dash.tasks.Javadoc2DashFeedTask
+import com.megatome.javadoc2dash.tasks.Javadoc2DashDependenciesTask
+import com.megatome.javadoc2dash.tasks.Javadoc2DashTarTask
 import com.megatome.javadoc2dash.tasks.Javadoc2DashTask
+import com.megatome.javadoc2dash.tasks.WorkerIsolation
+import org.gradle.api.GradleException
 import org.gradle.api.Plugin
 import org.gradle.api.Project
 import org.gradle.api.plugins.JavaPlugin
-import org.gradle.api.tasks.bundling.Compression
-import org.gradle.api.tasks.bundling.Tar
 
 class Javadoc2DashPlugin implements Plugin<Project> {
     private static final String EXTENSION_NAME = "javadoc2dash"
     private static final String FEED_EXTENSION_NAME = "javadoc2dashfeed"
     private static final String FEED_LOCATION = "feed"
+    private static final String DEPENDENCIES_LOCATION = "dependencies"
 
     @Override
     void apply(Project project) {
@@ -23,6 +29,9 @@ class Javadoc2DashPlugin implements Plugin<Project> {
 
     private void addTasks(Project project) {
         def baseExtension = project.extensions.findByName(EXTENSION_NAME)
+        def feedExtension = project.extensions.findByName(FEED_EXTENSION_NAME)
+        def feedLocation = project.file("${baseExtension.outputLocation}/${FEED_LOCATION}")
+
         project.task('javadoc2dash', type: Javadoc2DashTask) {
             dependsOn({ baseExtension.javadocTask })
             conventionMapping.docsetName = { baseExtension.docsetName }
@@ -31,33 +40,64 @@ class Javadoc2DashPlugin implements Plugin<Project> {
             conventionMapping.javadocRoot = { baseExtension.javadocRoot }
             conventionMapping.outputLocation = { baseExtension.outputLocation }
             conventionMapping.iconFile = { baseExtension.iconFile }
+            conventionMapping.parseThreads = { baseExtension.parseThreads }
+            conventionMapping.parserStrategy = { baseExtension.parserStrategy }
+            conventionMapping.incremental = { baseExtension.incremental }
+            conventionMapping.copyStrategy = { baseExtension.copyStrategy }
+            conventionMapping.copyThreads = { baseExtension.copyThreads }
+            conventionMapping.outputFormat = { baseExtension.outputFormat }
+            conventionMapping.changedPackages = { baseExtension.changedPackages }
+            conventionMapping.parseCacheDir = { baseExtension.parseCacheDir }
+            conventionMapping.compressionLevel = { baseExtension.compressionLevel }
+            conventionMapping.compressionBlockSize = { baseExtension.compressionBlockSize }
+            conventionMapping.compressThreads = { baseExtension.compressThreads }
+            conventionMapping.workerIsolation = { baseExtension.workerIsolation }
+            conventionMapping.workerMaxHeapSize = { baseExtension.workerMaxHeapSize }
+            conventionMapping.metricsFile = { baseExtension.metricsFile }
+            conventionMapping.fullTextIndex = { baseExtension.fullTextIndex }
+            conventionMapping.tableOfContents = { baseExtension.tableOfContents }
+            conventionMapping.archiveFile = {
+                // A tgz docset is written straight to the feed location, so it does not need to be tarred again
+                baseExtension.outputFormat == OutputFormat.TGZ ? new File(feedLocation, feedExtension.feedName + ".tgz") : null
+            }
         }
 
-        def feedExtension = project.extensions.findByName(FEED_EXTENSION_NAME)
-        def feedLocation = project.file("${baseExtension.outputLocation}/${FEED_LOCATION}")
-
-        project.task('javadoc2dashtar', type: Tar) {
+        project.task('javadoc2dashtar', type: Javadoc2DashTarTask) {
             dependsOn({ 'javadoc2dash' })
-            description = 'Create a tarred version of the docset.';
-            group = 'Javadoc2Dash'
-            conventionMapping.baseName = { feedExtension.feedName }
-            version = null
-            conventionMapping.extension = { "tgz" }
-            conventionMapping.compression = { Compression.GZIP }
-            from project.files("${baseExtension.outputLocation}") {
-                exclude FEED_LOCATION
-            }
-            conventionMapping.destinationDir = { feedLocation }
+            onlyIf { baseExtension.outputFormat == OutputFormat.DIRECTORY }
+            conventionMapping.docsetDir = { new File(baseExtension.outputLocation, baseExtension.docsetName + ".docset") }
+            conventionMapping.archiveFile = { new File(feedLocation, feedExtension.feedName + ".tgz") }
+            conventionMapping.compressionLevel = { baseExtension.compressionLevel }
+            conventionMapping.compressionBlockSize = { baseExtension.compressionBlockSize }
+            conventionMapping.compressThreads = { baseExtension.compressThreads }
         }
 
         project.task('javadoc2dashfeed', type: Javadoc2DashFeedTask) {
             dependsOn({ 'javadoc2dashtar' })
+            doFirst {
+                // Dash feeds only serve tgz archives, and a zip docset is never tarred
+                if (baseExtension.outputFormat == OutputFormat.ZIP) {
+                    throw new GradleException("A feed cannot be created for a ZIP docset, use the DIRECTORY or TGZ outputFormat")
+                }
+            }
             conventionMapping.feedName = { feedExtension.feedName }
             conventionMapping.docsetFile = { feedExtension.feedName + ".tgz" }
             conventionMapping.outputLocation = { feedLocation }
             conventionMapping.feedVersion = { feedExtension.feedVersion }
             conventionMapping.feedLocations = { feedExtension.feedLocations }
         }
+
+        project.task('javadoc2dashdependencies', type: Javadoc2DashDependenciesTask) {
+            conventionMapping.configuration = { JavaPlugin.RUNTIME_CLASSPATH_CONFIGURATION_NAME }
+            conventionMapping.outputLocation = { project.file("${baseExtension.outputLocation}/${DEPENDENCIES_LOCATION}") }
+            conventionMapping.feedLocations = { feedExtension.feedLocations }
+            conventionMapping.parserStrategy = { baseExtension.parserStrategy }
+            conventionMapping.parseCacheDir = { baseExtension.parseCacheDir }
+            conventionMapping.fullTextIndex = { baseExtension.fullTextIndex }
+            conventionMapping.tableOfContents = { baseExtension.tableOfContents }
+            conventionMapping.compressionLevel = { baseExtension.compressionLevel }
+            conventionMapping.compressionBlockSize = { baseExtension.compressionBlockSize }
+        }
     }
 }
 
@@ -69,6 +109,22 @@ class Javadoc2DashPluginExtension {
     String keyword
     File iconFile
     String javadocTask
+    Integer parseThreads
+    ParserStrategy parserStrategy
+    Boolean incremental
+    CopyStrategy copyStrategy
+    Integer copyThreads
+    OutputFormat outputFormat
+    Integer compressionLevel
+    Integer compressionBlockSize
+    Integer compressThreads
+    List<String> changedPackages
+    File parseCacheDir
+    WorkerIsolation workerIsolation
+    String workerMaxHeapSize
+    File metricsFile
+    Boolean fullTextIndex
+    Boolean tableOfContents
 
     Javadoc2DashPluginExtension(Project project) {
         docsetName = project.name
@@ -78,6 +134,22 @@ class Javadoc2DashPluginExtension {
         outputLocation = project.file("${project.buildDir}/javadoc2dash")
         iconFile = null
         javadocTask = "javadoc"
+        parseThreads = Runtime.runtime.availableProcessors()
+        parserStrategy = ParserStrategy.DOM
+        incremental = false
+        copyStrategy = CopyStrategy.COPY
+        copyThreads = Runtime.getRuntime().availableProcessors()
+        outputFormat = OutputFormat.DIRECTORY
+        compressionLevel = 6
+        compressionBlockSize = 128
+        compressThreads = Runtime.getRuntime().availableProcessors()
+        changedPackages = null
+        parseCacheDir = null
+        workerIsolation = WorkerIsolation.NONE
+        workerMaxHeapSize = null
+        metricsFile = null
+        fullTextIndex = false
+        tableOfContents = false
     }
 }
 
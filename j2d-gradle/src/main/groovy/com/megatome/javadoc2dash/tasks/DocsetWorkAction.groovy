@@ -0,0 +1,48 @@
+package com.megatome.javadoc2dash.tasks
+
+import com.megatome.j2d.DocsetCreator
+import com.megatome.j2d.util.BuildMetrics
+import org.gradle.api.GradleException
+import org.gradle.api.logging.Logging
+import org.gradle.workers.WorkAction
+
+/**
+ * Builds one docset on a Gradle worker, so docsets of several projects can be built at the same time.
+ */
+abstract class DocsetWorkAction implements WorkAction<DocsetWorkParameters> {
+    @Override
+    void execute() {
+        DocsetWorkParameters parameters = getParameters()
+        try {
+            DocsetCreator.Builder builder = new DocsetCreator.Builder(parameters.docsetName.getOrNull(), parameters.javadocRoot.getOrNull())
+                .displayName(parameters.displayName.getOrNull())
+                .keyword(parameters.keyword.getOrNull())
+                .outputDirectory(parameters.outputLocation.getOrNull())
+                .iconFile(parameters.iconFile.getOrNull())
+                .parseThreads(parameters.parseThreads.getOrNull())
+                .parserStrategy(parameters.parserStrategy.getOrNull())
+                .incremental(parameters.incremental.getOrElse(false))
+                .copyStrategy(parameters.copyStrategy.getOrNull())
+                .copyThreads(parameters.copyThreads.getOrNull())
+                .outputFormat(parameters.outputFormat.getOrNull())
+                .archiveFile(parameters.archiveFile.getOrNull())
+                .compressionLevel(parameters.compressionLevel.getOrNull())
+                .compressionBlockSize(parameters.compressionBlockSize.getOrNull())
+                .compressThreads(parameters.compressThreads.getOrNull())
+                .changedPackages(parameters.changedPackages.getOrNull())
+                .parseCacheDir(parameters.parseCacheDir.getOrNull())
+                .fullTextIndex(parameters.fullTextIndex.getOrElse(false))
+                .tableOfContents(parameters.tableOfContents.getOrElse(false))
+            DocsetCreator creator = builder.build()
+            creator.makeDocset()
+            BuildMetrics metrics = creator.getMetrics()
+            Logging.getLogger(DocsetWorkAction).info(metrics.toSummary())
+            File metricsFile = parameters.metricsFile.getOrNull()
+            if (metricsFile) {
+                BuildMetrics.writeJson([metrics], metricsFile)
+            }
+        } catch (Exception e) {
+            throw new GradleException(e.message)
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package com.megatome.javadoc2dash.tasks
+
+import com.megatome.j2d.support.CopyStrategy
+import com.megatome.j2d.support.OutputFormat
+import com.megatome.j2d.support.ParserStrategy
+import org.gradle.api.provider.ListProperty
+import org.gradle.api.provider.Property
+import org.gradle.workers.WorkParameters
+
+/**
+ * Settings of the docset built by {@link DocsetWorkAction}.
+ */
+interface DocsetWorkParameters extends WorkParameters {
+    Property<String> getDocsetName()
+    Property<File> getJavadocRoot()
+    Property<File> getOutputLocation()
+    Property<String> getDisplayName()
+    Property<String> getKeyword()
+    Property<File> getIconFile()
+    Property<Integer> getParseThreads()
+    Property<ParserStrategy> getParserStrategy()
+    Property<Boolean> getIncremental()
+    Property<CopyStrategy> getCopyStrategy()
+    Property<Integer> getCopyThreads()
+    Property<OutputFormat> getOutputFormat()
+    Property<File> getArchiveFile()
+    Property<Integer> getCompressionLevel()
+    Property<Integer> getCompressionBlockSize()
+    Property<Integer> getCompressThreads()
+    ListProperty<String> getChangedPackages()
+    Property<File> getParseCacheDir()
+    Property<File> getMetricsFile()
+    Property<Boolean> getFullTextIndex()
+    Property<Boolean> getTableOfContents()
+}
@@ -0,0 +1,119 @@
+package com.megatome.javadoc2dash.tasks
+
+import com.megatome.j2d.DocsetAggregator
+import com.megatome.j2d.support.CopyStrategy
+import com.megatome.j2d.support.ParserStrategy
+import org.gradle.api.DefaultTask
+import org.gradle.api.GradleException
+import org.gradle.api.tasks.CacheableTask
+import org.gradle.api.tasks.Input
+import org.gradle.api.tasks.InputFile
+import org.gradle.api.tasks.InputFiles
+import org.gradle.api.tasks.Internal
+import org.gradle.api.tasks.Optional
+import org.gradle.api.tasks.OutputDirectory
+import org.gradle.api.tasks.PathSensitive
+import org.gradle.api.tasks.PathSensitivity
+import org.gradle.api.tasks.TaskAction
+import org.gradle.api.tasks.javadoc.Javadoc
+
+/**
+ * Merges the Javadoc of several modules, usually subprojects, into one docset with a single search index.
+ */
+@CacheableTask
+class Javadoc2DashAggregateTask extends DefaultTask {
+    @Input String docsetName
+    @Input @Optional String displayName
+    @Input @Optional String keyword
+
+    @InputFile
+    @Optional
+    @PathSensitive(PathSensitivity.NONE)
+    File iconFile
+
+    // Only locates the output, see getDocsetDirectory()
+    @Internal File outputLocation
+    @Input ParserStrategy parserStrategy = ParserStrategy.DOM
+
+    // These change how the docset is built, but not what is built
+    @Internal CopyStrategy copyStrategy = CopyStrategy.COPY
+    @Internal Integer parseThreads = Runtime.runtime.availableProcessors()
+    @Internal Integer copyThreads = Runtime.runtime.availableProcessors()
+    @Internal Integer buildThreads = Runtime.runtime.availableProcessors()
+    @Internal File parseCacheDir
+
+    private final Map<String, Object> modules = new LinkedHashMap<>()
+
+    Javadoc2DashAggregateTask() {
+        this.description = 'Create one Dash docset from the Javadoc of several modules'
+        group = 'Javadoc2Dash'
+        docsetName = project.name
+        outputLocation = project.file("${project.buildDir}/javadoc2dash")
+    }
+
+    /**
+     * Add a module to the docset. Modules are merged in the order they are added.
+     * @param name Name of the module, used as the directory of its Javadoc in the docset
+     * @param javadoc Javadoc task of the module, or anything <code>project.file()</code> accepts for its Javadoc
+     *                directory. The docset is built after a Javadoc task.
+     */
+    void module(String name, Object javadoc) {
+        if (javadoc instanceof Javadoc) {
+            dependsOn(javadoc)
+            modules.put(name, { javadoc.destinationDir })
+        } else {
+            modules.put(name, javadoc)
+        }
+    }
+
+    @Input
+    List<String> getModuleNames() {
+        new ArrayList<>(modules.keySet())
+    }
+
+    @InputFiles
+    @PathSensitive(PathSensitivity.RELATIVE)
+    List<File> getJavadocDirs() {
+        modules.values().collect { project.file(it) }
+    }
+
+    /**
+     * The docset directory created by the task.
+     */
+    @OutputDirectory
+    File getDocsetDirectory() {
+        new File(getOutputLocation(), getDocsetName() + ".docset")
+    }
+
+    @TaskAction
+    void start() {
+        withExceptionHandling {
+            DocsetAggregator.Builder builder = new DocsetAggregator.Builder(getDocsetName())
+                .displayName(getDisplayName())
+                .keyword(getKeyword())
+                .iconFile(getIconFile())
+                .outputDirectory(getOutputLocation())
+                .parserStrategy(getParserStrategy())
+                .copyStrategy(getCopyStrategy())
+                .parseThreads(getParseThreads())
+                .copyThreads(getCopyThreads())
+                .buildThreads(getBuildThreads())
+                .parseCacheDir(getParseCacheDir())
+            List<File> javadocDirs = getJavadocDirs()
+            getModuleNames().eachWithIndex { String name, int i ->
+                builder.module(name, javadocDirs[i])
+            }
+            DocsetAggregator aggregator = builder.build()
+            aggregator.makeDocset()
+            logger.info(aggregator.getMetrics().toSummary())
+        }
+    }
+
+    private static void withExceptionHandling(Closure c) {
+        try {
+            c()
+        } catch (Exception e) {
+            throw new GradleException(e.message);
+        }
+    }
+}
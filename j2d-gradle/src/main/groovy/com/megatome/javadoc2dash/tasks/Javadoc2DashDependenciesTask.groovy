@@ -0,0 +1,118 @@
+package com.megatome.javadoc2dash.tasks
+
+import com.megatome.j2d.JavadocJarBatch
+import com.megatome.j2d.support.ParserStrategy
+import com.megatome.j2d.util.JavadocJar
+import org.gradle.api.DefaultTask
+import org.gradle.api.GradleException
+import org.gradle.api.artifacts.Configuration
+import org.gradle.api.artifacts.component.ModuleComponentIdentifier
+import org.gradle.api.artifacts.result.ResolvedArtifactResult
+import org.gradle.api.tasks.Internal
+import org.gradle.api.tasks.TaskAction
+import org.gradle.jvm.JvmLibrary
+import org.gradle.language.java.artifact.JavadocArtifact
+
+/**
+ * Creates a docset archive and a Dash feed for the Javadoc of every library in a configuration, and for every
+ * -javadoc.jar in a directory. The task always runs, and skips the docsets that are already up to date itself.
+ */
+class Javadoc2DashDependenciesTask extends DefaultTask {
+    // Name of a configuration, or the configuration itself
+    @Internal Object configuration
+    @Internal File javadocJarDirectory
+    @Internal File outputLocation
+    @Internal List feedLocations
+    @Internal ParserStrategy parserStrategy
+    @Internal File parseCacheDir
+    @Internal Boolean fullTextIndex
+    @Internal Boolean tableOfContents
+    @Internal Integer compressionLevel
+    @Internal Integer compressionBlockSize
+
+    // Docsets are built in parallel, so each one uses a single thread unless these are set
+    @Internal Integer buildThreads = Runtime.runtime.availableProcessors()
+    @Internal Integer parseThreads
+    @Internal Integer copyThreads
+    @Internal Integer compressThreads
+
+    Javadoc2DashDependenciesTask() {
+        this.description = 'Create a Dash docset and feed for the Javadoc of every dependency'
+        group = 'Javadoc2Dash'
+        outputs.upToDateWhen { false }
+    }
+
+    /**
+     * Find the Javadoc jars of the libraries in the configuration, and the jars in the Javadoc jar directory.
+     * Libraries that publish no Javadoc are left out.
+     */
+    List<JavadocJar> findJavadocJars() {
+        List<JavadocJar> javadocJars = []
+        if (getConfiguration() != null) {
+            Configuration resolved = getConfiguration() instanceof Configuration ? getConfiguration() :
+                    project.configurations.getByName(getConfiguration().toString())
+            def componentIds = resolved.incoming.resolutionResult.allComponents
+                    .collect { it.id }
+                    .findAll { it instanceof ModuleComponentIdentifier }
+            if (!componentIds.isEmpty()) {
+                def result = project.dependencies.createArtifactResolutionQuery()
+                        .forComponents(componentIds)
+                        .withArtifacts(JvmLibrary, JavadocArtifact)
+                        .execute()
+                result.resolvedComponents.each { component ->
+                    ModuleComponentIdentifier id = component.id as ModuleComponentIdentifier
+                    component.getArtifacts(JavadocArtifact).findAll { it instanceof ResolvedArtifactResult }.each {
+                        javadocJars << new JavadocJar(id.group, id.module, id.version, it.file)
+                    }
+                }
+                javadocJars.sort { it.coordinates }
+                logger.info("Found Javadoc for ${javadocJars.size()} of ${componentIds.size()} libraries in ${resolved.name}")
+            }
+        }
+        if (getJavadocJarDirectory() != null) {
+            javadocJars.addAll(new JavadocJarBatch.Builder().javadocJarDirectory(getJavadocJarDirectory()).build().javadocJars)
+        }
+        javadocJars
+    }
+
+    @TaskAction
+    void start() {
+        withExceptionHandling {
+            JavadocJarBatch.Builder builder = new JavadocJarBatch.Builder()
+                .outputDirectory(getOutputLocation())
+                .feedLocations(getFeedLocations()?.collect { it.toString() })
+                .parserStrategy(getParserStrategy())
+                .parseCacheDir(getParseCacheDir())
+                .fullTextIndex(getFullTextIndex() ?: false)
+                .tableOfContents(getTableOfContents() ?: false)
+            findJavadocJars().each { builder.javadocJar(it) }
+            if (getBuildThreads() != null) {
+                builder.buildThreads(getBuildThreads())
+            }
+            if (getParseThreads() != null) {
+                builder.parseThreads(getParseThreads())
+            }
+            if (getCopyThreads() != null) {
+                builder.copyThreads(getCopyThreads())
+            }
+            if (getCompressThreads() != null) {
+                builder.compressThreads(getCompressThreads())
+            }
+            if (getCompressionLevel() != null) {
+                builder.compressionLevel(getCompressionLevel())
+            }
+            if (getCompressionBlockSize() != null) {
+                builder.compressionBlockSize(getCompressionBlockSize())
+            }
+            builder.build().makeDocsets()
+        }
+    }
+
+    private static void withExceptionHandling(Closure c) {
+        try {
+            c()
+        } catch (Exception e) {
+            throw new GradleException(e.message);
+        }
+    }
+}
@@ -1,9 +1,11 @@
 package com.megatome.javadoc2dash.tasks
 
-import groovy.xml.MarkupBuilder
+import com.megatome.j2d.support.DocSetSupport
 import org.gradle.api.DefaultTask
 import org.gradle.api.GradleException
 import org.gradle.api.tasks.Input
+import org.gradle.api.tasks.Internal
+import org.gradle.api.tasks.OutputFile
 import org.gradle.api.tasks.TaskAction
 
 class Javadoc2DashFeedTask extends DefaultTask {
@@ -11,33 +13,28 @@ class Javadoc2DashFeedTask extends DefaultTask {
     @Input String docsetFile
     @Input String feedVersion
     @Input List feedLocations
-    @Input File outputLocation
+
+    // Only locates the feed file, see getFeedFile()
+    @Internal File outputLocation
 
     Javadoc2DashFeedTask() {
         this.description = 'Create a Dash feed from a docset';
         group = 'Javadoc2Dash'
     }
 
+    /**
+     * The feed XML file created by the task.
+     */
+    @OutputFile
+    File getFeedFile() {
+        new File(getOutputLocation(), "${getFeedName()}.xml")
+    }
+
     @TaskAction
     void start() {
         withExceptionHandling {
-            if (!outputLocation.exists()) {
-                project.mkdir(outputLocation)
-            }
-
-            def fw = new FileWriter(project.file("${outputLocation}/${feedName}.xml"))
-            def xml = new MarkupBuilder(fw)
-
-            xml.entry() {
-                version(feedVersion)
-                feedLocations.each {
-                    def feedUrl = it
-                    if (!it.endsWith('/')) {
-                        feedUrl += '/'
-                    }
-                    url(feedUrl + docsetFile)
-                }
-            }
+            DocSetSupport.createFeed(getFeedName(), getFeedVersion(), getFeedLocations()?.collect { it.toString() },
+                    getDocsetFile(), getOutputLocation())
         }
     }
 
@@ -0,0 +1,49 @@
+package com.megatome.javadoc2dash.tasks
+
+import com.megatome.j2d.support.DocsetArchive
+import com.megatome.j2d.support.OutputFormat
+import org.gradle.api.DefaultTask
+import org.gradle.api.GradleException
+import org.gradle.api.tasks.CacheableTask
+import org.gradle.api.tasks.Input
+import org.gradle.api.tasks.InputDirectory
+import org.gradle.api.tasks.Internal
+import org.gradle.api.tasks.OutputFile
+import org.gradle.api.tasks.PathSensitive
+import org.gradle.api.tasks.PathSensitivity
+import org.gradle.api.tasks.TaskAction
+
+@CacheableTask
+class Javadoc2DashTarTask extends DefaultTask {
+    @InputDirectory
+    @PathSensitive(PathSensitivity.RELATIVE)
+    File docsetDir
+
+    @OutputFile File archiveFile
+    @Input Integer compressionLevel
+    @Input Integer compressionBlockSize
+
+    // Compressed blocks do not depend on the number of threads
+    @Internal Integer compressThreads
+
+    Javadoc2DashTarTask() {
+        this.description = 'Create a tarred version of the docset.';
+        group = 'Javadoc2Dash'
+    }
+
+    @TaskAction
+    void start() {
+        withExceptionHandling {
+            DocsetArchive.archiveDocset(docsetDir, archiveFile, OutputFormat.TGZ, compressionLevel,
+                    compressionBlockSize * 1024, compressThreads)
+        }
+    }
+
+    private static void withExceptionHandling(Closure c) {
+        try {
+            c()
+        } catch (Exception e) {
+            throw new GradleException(e.message);
+        }
+    }
+}
@@ -1,38 +1,145 @@
 package com.megatome.javadoc2dash.tasks
 
 import com.megatome.j2d.DocsetCreator
+import com.megatome.j2d.support.CopyStrategy
+import com.megatome.j2d.support.OutputFormat
+import com.megatome.j2d.support.ParserStrategy
 import org.gradle.api.DefaultTask
 import org.gradle.api.GradleException
+import org.gradle.api.tasks.CacheableTask
 import org.gradle.api.tasks.Input
-import org.gradle.api.tasks.Optional;
+import org.gradle.api.tasks.InputFile
+import org.gradle.api.tasks.InputFiles
+import org.gradle.api.tasks.Internal
+import org.gradle.api.tasks.Optional
+import org.gradle.api.tasks.OutputDirectory
+import org.gradle.api.tasks.OutputFile
+import org.gradle.api.tasks.PathSensitive
+import org.gradle.api.tasks.PathSensitivity
 import org.gradle.api.tasks.TaskAction
+import org.gradle.workers.WorkQueue
+import org.gradle.workers.WorkerExecutor
 
+import javax.inject.Inject
+
+@CacheableTask
 class Javadoc2DashTask extends DefaultTask {
     @Input String docsetName
-    @Input File javadocRoot
-    @Input File outputLocation
+
+    // A directory, or a -javadoc.jar that is read without being extracted
+    @InputFiles
+    @PathSensitive(PathSensitivity.RELATIVE)
+    File javadocRoot
+
+    // Only locates the outputs, which are declared by getDocsetDirectory() and getArchiveLocation()
+    @Internal File outputLocation
     @Input String displayName
     @Input String keyword
 
-    @Input
+    // Always copied to icon.png, so only the content matters
+    @InputFile
     @Optional
+    @PathSensitive(PathSensitivity.NONE)
     File iconFile
 
-    Javadoc2DashTask() {
+    // These change how the docset is built, but not what is built
+    @Internal Integer parseThreads
+    @Internal Boolean incremental
+    @Internal CopyStrategy copyStrategy
+    @Internal Integer copyThreads
+    @Internal Integer compressThreads
+    @Internal File parseCacheDir
+
+    @Input ParserStrategy parserStrategy
+    @Input OutputFormat outputFormat
+    @Input Integer compressionLevel
+    @Input Integer compressionBlockSize
+    @Input Boolean fullTextIndex
+    @Input Boolean tableOfContents
+
+    @Internal File archiveFile
+
+    @Input
+    @Optional
+    List<String> changedPackages
+
+    @Internal WorkerIsolation workerIsolation
+    @Internal String workerMaxHeapSize
+    @Internal File metricsFile
+
+    private final WorkerExecutor workerExecutor
+
+    @Inject
+    Javadoc2DashTask(WorkerExecutor workerExecutor) {
         this.description = 'Create a Dash docset from Javadoc';
         group = 'Javadoc2Dash'
+        this.workerExecutor = workerExecutor
+    }
+
+    /**
+     * The docset directory created by the task, if the docset is not written as an archive.
+     */
+    @OutputDirectory
+    @Optional
+    File getDocsetDirectory() {
+        getOutputFormat() == OutputFormat.DIRECTORY ? new File(getOutputLocation(), getDocsetName() + ".docset") : null
+    }
+
+    /**
+     * The archive created by the task, if the docset is written as an archive.
+     */
+    @OutputFile
+    @Optional
+    File getArchiveLocation() {
+        if (getOutputFormat() == OutputFormat.DIRECTORY) {
+            return null
+        }
+        getArchiveFile() ?: new File(getOutputLocation(), getDocsetName() + "." + getOutputFormat().extension)
     }
 
     @TaskAction
     void start() {
         withExceptionHandling {
-            DocsetCreator.Builder builder = new DocsetCreator.Builder(docsetName, javadocRoot)
-                .displayName(displayName)
-                .keyword(keyword)
-                .outputDirectory(outputLocation)
-                .iconFile(iconFile)
-            DocsetCreator creator = builder.build()
-            creator.makeDocset()
+            // Report missing settings right away instead of from the worker
+            new DocsetCreator.Builder(getDocsetName(), getJavadocRoot())
+        }
+        createWorkQueue().submit(DocsetWorkAction) { DocsetWorkParameters parameters ->
+            parameters.docsetName.set(getDocsetName())
+            parameters.javadocRoot.set(getJavadocRoot())
+            parameters.outputLocation.set(getOutputLocation())
+            parameters.displayName.set(getDisplayName())
+            parameters.keyword.set(getKeyword())
+            parameters.iconFile.set(getIconFile())
+            parameters.parseThreads.set(getParseThreads())
+            parameters.parserStrategy.set(getParserStrategy())
+            parameters.incremental.set(getIncremental())
+            parameters.copyStrategy.set(getCopyStrategy())
+            parameters.copyThreads.set(getCopyThreads())
+            parameters.outputFormat.set(getOutputFormat())
+            parameters.archiveFile.set(getArchiveFile())
+            parameters.compressionLevel.set(getCompressionLevel())
+            parameters.compressionBlockSize.set(getCompressionBlockSize())
+            parameters.compressThreads.set(getCompressThreads())
+            parameters.changedPackages.set(getChangedPackages())
+            parameters.parseCacheDir.set(getParseCacheDir())
+            parameters.metricsFile.set(getMetricsFile())
+            parameters.fullTextIndex.set(getFullTextIndex())
+            parameters.tableOfContents.set(getTableOfContents())
+        }
+    }
+
+    private WorkQueue createWorkQueue() {
+        switch (getWorkerIsolation()) {
+            case WorkerIsolation.PROCESS:
+                return workerExecutor.processIsolation { spec ->
+                    if (getWorkerMaxHeapSize()) {
+                        spec.forkOptions.maxHeapSize = getWorkerMaxHeapSize()
+                    }
+                }
+            case WorkerIsolation.CLASSLOADER:
+                return workerExecutor.classLoaderIsolation()
+            default:
+                return workerExecutor.noIsolation()
         }
     }
 
@@ -0,0 +1,13 @@
+package com.megatome.javadoc2dash.tasks
+
+/**
+ * Where the docset is built by the Gradle worker.
+ */
+enum WorkerIsolation {
+    /** In the build process, sharing the plugin's classes */
+    NONE,
+    /** In the build process, with the plugin's classes loaded again */
+    CLASSLOADER,
+    /** In a separate worker process, see <code>workerMaxHeapSize</code> */
+    PROCESS
+}
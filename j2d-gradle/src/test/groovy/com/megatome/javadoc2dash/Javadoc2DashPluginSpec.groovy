@@ -1,5 +1,9 @@
 package com.megatome.javadoc2dash
 
+import com.megatome.j2d.support.CopyStrategy
+import com.megatome.j2d.support.OutputFormat
+import com.megatome.j2d.support.ParserStrategy
+import com.megatome.javadoc2dash.tasks.WorkerIsolation
 import org.gradle.api.Project
 import org.gradle.api.Task
 import org.gradle.api.plugins.JavaPlugin
@@ -36,6 +40,37 @@ class Javadoc2DashPluginSpec extends Specification {
             j2dTask.javadocRoot == project.file("${project.docsDir}/javadoc")
             j2dTask.outputLocation == project.file("${project.buildDir}/javadoc2dash")
             j2dTask.iconFile == null
+            j2dTask.parseThreads == Runtime.runtime.availableProcessors()
+            j2dTask.parserStrategy == ParserStrategy.DOM
+            !j2dTask.incremental
+            j2dTask.copyStrategy == CopyStrategy.COPY
+            j2dTask.copyThreads == Runtime.getRuntime().availableProcessors()
+            j2dTask.outputFormat == OutputFormat.DIRECTORY
+            j2dTask.archiveFile == null
+            j2dTask.compressionLevel == 6
+            j2dTask.compressionBlockSize == 128
+            j2dTask.compressThreads == Runtime.getRuntime().availableProcessors()
+            j2dTask.changedPackages == null
+            j2dTask.parseCacheDir == null
+            j2dTask.workerIsolation == WorkerIsolation.NONE
+            j2dTask.workerMaxHeapSize == null
+            j2dTask.metricsFile == null
+            !j2dTask.fullTextIndex
+            !j2dTask.tableOfContents
+            j2dTask.docsetDirectory == project.file("${project.buildDir}/javadoc2dash/${project.name}.docset")
+            j2dTask.archiveLocation == null
+            j2dTask.outputs.files.files == [j2dTask.docsetDirectory] as Set
+            Task tarTask = project.tasks.findByName("javadoc2dashtar")
+            tarTask.docsetDir == project.file("${project.buildDir}/javadoc2dash/${project.name}.docset")
+            tarTask.archiveFile == project.file("${project.buildDir}/javadoc2dash/feed/${project.name}.tgz")
+            tarTask.compressionLevel == 6
+            tarTask.outputs.files.files == [tarTask.archiveFile] as Set
+            Task dependenciesTask = project.tasks.findByName("javadoc2dashdependencies")
+            dependenciesTask.configuration == JavaPlugin.RUNTIME_CLASSPATH_CONFIGURATION_NAME
+            dependenciesTask.outputLocation == project.file("${project.buildDir}/javadoc2dash/dependencies")
+            dependenciesTask.feedLocations == null
+            dependenciesTask.parserStrategy == ParserStrategy.DOM
+            !dependenciesTask.tableOfContents
             baseExtension.javadocTask == "javadoc"
     }
 
@@ -53,6 +88,22 @@ class Javadoc2DashPluginSpec extends Specification {
                 outputLocation = project.file("${project.buildDir}/docsets")
                 iconFile = project.file("icon.png")
                 javadocTask = "allJavadoc"
+                parseThreads = 2
+                parserStrategy = "STREAMING"
+                incremental = true
+                copyStrategy = "HARD_LINK"
+                copyThreads = 3
+                outputFormat = "TGZ"
+                compressionLevel = 9
+                compressionBlockSize = 256
+                compressThreads = 2
+                changedPackages = ["com.example.util"]
+                parseCacheDir = project.file("${project.buildDir}/parse-cache")
+                workerIsolation = "PROCESS"
+                workerMaxHeapSize = "1g"
+                metricsFile = project.file("${project.buildDir}/metrics.json")
+                fullTextIndex = true
+                tableOfContents = true
             }
         then:
             project.plugins.hasPlugin(JavaPlugin)
@@ -66,6 +117,26 @@ class Javadoc2DashPluginSpec extends Specification {
             j2dTask.javadocRoot == project.file("${project.docsDir}/docs")
             j2dTask.outputLocation == project.file("${project.buildDir}/docsets")
             j2dTask.iconFile == project.file("icon.png")
+            j2dTask.parseThreads == 2
+            j2dTask.parserStrategy == ParserStrategy.STREAMING
+            j2dTask.incremental
+            j2dTask.copyStrategy == CopyStrategy.HARD_LINK
+            j2dTask.copyThreads == 3
+            j2dTask.outputFormat == OutputFormat.TGZ
+            j2dTask.archiveFile == project.file("${project.buildDir}/javadoc2dash/feed/${project.name}.tgz")
+            j2dTask.compressionLevel == 9
+            j2dTask.compressionBlockSize == 256
+            j2dTask.compressThreads == 2
+            j2dTask.changedPackages == ["com.example.util"]
+            j2dTask.parseCacheDir == project.file("${project.buildDir}/parse-cache")
+            j2dTask.workerIsolation == WorkerIsolation.PROCESS
+            j2dTask.workerMaxHeapSize == "1g"
+            j2dTask.metricsFile == project.file("${project.buildDir}/metrics.json")
+            j2dTask.fullTextIndex
+            j2dTask.tableOfContents
+            j2dTask.docsetDirectory == null
+            j2dTask.archiveLocation == project.file("${project.buildDir}/javadoc2dash/feed/${project.name}.tgz")
+            j2dTask.outputs.files.files == [j2dTask.archiveLocation] as Set
             baseExtension.javadocTask == "allJavadoc"
     }
 
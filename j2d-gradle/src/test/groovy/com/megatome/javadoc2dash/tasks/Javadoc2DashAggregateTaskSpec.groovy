@@ -0,0 +1,55 @@
+package com.megatome.javadoc2dash.tasks
+
+import com.megatome.j2d.support.ParserStrategy
+import org.gradle.api.GradleException
+import org.gradle.api.Project
+import org.gradle.api.plugins.JavaPlugin
+import org.gradle.testfixtures.ProjectBuilder
+import spock.lang.Specification
+
+class Javadoc2DashAggregateTaskSpec extends Specification {
+    static final TASK_NAME = "allDocs"
+
+    Project project
+
+    def setup() {
+        ProjectBuilder builder = ProjectBuilder.builder()
+        builder.withProjectDir(new File("src/test/resources/TestProject"))
+        project = builder.build()
+    }
+
+    def "Create task with default values"() {
+        when:
+            Javadoc2DashAggregateTask task = project.task(TASK_NAME, type: Javadoc2DashAggregateTask)
+        then:
+            task.docsetName == project.name
+            task.outputLocation == project.file("${project.buildDir}/javadoc2dash")
+            task.parserStrategy == ParserStrategy.DOM
+            task.buildThreads == Runtime.runtime.availableProcessors()
+            task.moduleNames.isEmpty()
+            task.docsetDirectory == project.file("${project.buildDir}/javadoc2dash/${project.name}.docset")
+    }
+
+    def "Add modules from directories and javadoc tasks"() {
+        when:
+            project.apply plugin: JavaPlugin
+            Javadoc2DashAggregateTask task = project.task(TASK_NAME, type: Javadoc2DashAggregateTask) {
+                docsetName = "All"
+                module("core", project.tasks.javadoc)
+                module("util", "util/javadoc")
+            }
+        then:
+            task.moduleNames == ["core", "util"]
+            task.javadocDirs == [project.tasks.javadoc.destinationDir, project.file("util/javadoc")]
+            task.dependsOn.contains(project.tasks.javadoc)
+            task.outputs.files.files == [project.file("${project.buildDir}/javadoc2dash/All.docset")] as Set
+    }
+
+    def "Execute task without modules"() {
+        when:
+            Javadoc2DashAggregateTask task = project.task(TASK_NAME, type: Javadoc2DashAggregateTask)
+            task.start()
+        then:
+            thrown(GradleException)
+    }
+}
@@ -0,0 +1,52 @@
+package com.megatome.javadoc2dash.tasks
+
+import org.gradle.api.Project
+import org.gradle.testfixtures.ProjectBuilder
+import spock.lang.Specification
+
+class Javadoc2DashDependenciesTaskSpec extends Specification {
+    static final TASK_NAME = "dependencyDocs"
+
+    Project project
+
+    def setup() {
+        ProjectBuilder builder = ProjectBuilder.builder()
+        builder.withProjectDir(new File("src/test/resources/TestProject"))
+        project = builder.build()
+    }
+
+    def "Create task with default values"() {
+        when:
+            Javadoc2DashDependenciesTask task = project.task(TASK_NAME, type: Javadoc2DashDependenciesTask)
+        then:
+            task.configuration == null
+            task.javadocJarDirectory == null
+            task.buildThreads == Runtime.runtime.availableProcessors()
+            task.parseThreads == null
+            task.findJavadocJars().isEmpty()
+    }
+
+    def "Find javadoc jars in a directory"() {
+        when:
+            File jarDir = File.createTempDir()
+            new File(jarDir, "foo-1.0-javadoc.jar").text = ""
+            new File(jarDir, "foo-1.0.jar").text = ""
+            Javadoc2DashDependenciesTask task = project.task(TASK_NAME, type: Javadoc2DashDependenciesTask) {
+                javadocJarDirectory = jarDir
+            }
+        then:
+            task.findJavadocJars()*.coordinates == ["foo:1.0"]
+        cleanup:
+            jarDir?.deleteDir()
+    }
+
+    def "Configuration without libraries has no javadoc jars"() {
+        when:
+            project.configurations.create("docs")
+            Javadoc2DashDependenciesTask task = project.task(TASK_NAME, type: Javadoc2DashDependenciesTask) {
+                configuration = "docs"
+            }
+        then:
+            task.findJavadocJars().isEmpty()
+    }
+}
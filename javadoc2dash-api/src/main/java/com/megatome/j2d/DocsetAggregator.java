@@ -0,0 +1,527 @@
+/**
+ * Copyright 2015 Megatome Technologies, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.megatome.j2d;
+
+import com.megatome.j2d.exception.BuilderException;
+import com.megatome.j2d.support.CopyStrategy;
+import com.megatome.j2d.support.DBSupport;
+import com.megatome.j2d.support.ParseCache;
+import com.megatome.j2d.support.ParseOptions;
+import com.megatome.j2d.support.ParserStrategy;
+import com.megatome.j2d.util.IndexData;
+import com.megatome.j2d.util.BuildMetrics;
+import com.megatome.j2d.util.LogContext;
+import com.megatome.j2d.util.SearchIndexTable;
+import org.slf4j.Logger;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static com.megatome.j2d.support.DocSetSupport.MODULE_INDEX_FILE;
+import static com.megatome.j2d.support.DocSetSupport.copyFiles;
+import static com.megatome.j2d.support.DocSetSupport.copyIconFile;
+import static com.megatome.j2d.support.DocSetSupport.createDocSetStructure;
+import static com.megatome.j2d.support.DocSetSupport.createModuleIndex;
+import static com.megatome.j2d.support.DocSetSupport.createPList;
+import static com.megatome.j2d.support.DocSetSupport.getDBDir;
+import static com.megatome.j2d.support.JavadocSupport.findIndexFile;
+import static com.megatome.j2d.support.JavadocSupport.findSearchIndexTable;
+import static com.megatome.j2d.util.LogUtility.getContext;
+import static com.megatome.j2d.util.LogUtility.log;
+import static com.megatome.j2d.util.LogUtility.logVerbose;
+import static com.megatome.j2d.util.LogUtility.setContext;
+import static org.apache.commons.io.FilenameUtils.concat;
+
+/**
+ * Class responsible for merging the Javadoc of several modules into one docset. The Javadoc of each module is put
+ * into its own directory of the docset, and the entries of all modules go into a single search index.
+ * <p>
+ * Each module is copied and parsed into an index shard on a shared pool of build threads. The shards are merged into
+ * the search index in module order as they finish, so later modules are still being parsed while earlier ones are
+ * written. An entry is only kept for the first module that has it: a package that is split over several modules, or a
+ * class that several modules document, appears once in the search index.
+ */
+public class DocsetAggregator {
+    private final String docsetName;
+    private final String displayName;
+    private final String keyword;
+    private final File iconFilePath;
+    private final Map<String, File> modules;
+    private final File outputDirectory;
+    private final int parseThreads;
+    private final int buildThreads;
+    private final ParserStrategy parserStrategy;
+    private final CopyStrategy copyStrategy;
+    private final int copyThreads;
+    private final File parseCacheDir;
+    private final ParseCache parseCache;
+    private volatile BuildMetrics metrics;
+
+    /**
+     * Builder for specifying the modules and options used to create the docset
+     */
+    public static class Builder {
+        private final String docsetName;
+        private final Map<String, File> modules = new LinkedHashMap<>();
+
+        private String displayName;
+        private String keyword;
+        private File iconFilePath = null;
+        private File outputDirectory = new File(".");
+        private int parseThreads = Runtime.getRuntime().availableProcessors();
+        private int buildThreads = Runtime.getRuntime().availableProcessors();
+        private ParserStrategy parserStrategy = ParserStrategy.DOM;
+        private CopyStrategy copyStrategy = CopyStrategy.COPY;
+        private int copyThreads = Runtime.getRuntime().availableProcessors();
+        private File parseCacheDir = null;
+
+        /**
+         * Ctor
+         * @param docsetName File name of docset to create
+         */
+        public Builder(String docsetName) {
+            if (null == docsetName || docsetName.isEmpty()) {
+                throw new IllegalArgumentException("The docsetName must be specified");
+            }
+            this.docsetName = docsetName;
+            this.displayName = docsetName;
+            this.keyword = docsetName;
+        }
+
+        /**
+         * Add a module to the docset. Modules are merged in the order they are added.
+         * @param name Name of the module, used as the directory of its Javadoc in the docset
+         * @param javadocRoot Root directory of the Javadoc of the module
+         * @return Builder instance
+         */
+        public Builder module(String name, File javadocRoot) {
+            if (null == name || name.isEmpty() || name.equals(".") || name.equals("..") || name.contains("/") || name.contains("\\")) {
+                throw new IllegalArgumentException(String.format("'%s' is not a valid module name", name));
+            }
+            if (null == javadocRoot) {
+                throw new IllegalArgumentException(String.format("The javadocRoot of module %s must be specified", name));
+            }
+            if (name.equals(MODULE_INDEX_FILE) || modules.containsKey(name)) {
+                throw new IllegalArgumentException(String.format("Module %s is specified more than once", name));
+            }
+            modules.put(name, javadocRoot);
+            return this;
+        }
+
+        /**
+         * Specify the display name
+         * @param displayName Name to display in Dash. Defaults to <code>docsetName</code> if unspecified
+         * @return Builder instance
+         */
+        public Builder displayName(String displayName) {
+            if (null != displayName && !displayName.isEmpty()) {
+                this.displayName = displayName;
+            }
+            return this;
+        }
+
+        /**
+         * Specify the keyword
+         * @param keyword Keyword to associate this docset with. Defaults to <code>docsetName</code> is unspecified
+         * @return Builder instance
+         */
+        public Builder keyword(String keyword) {
+            if (null != keyword && !keyword.isEmpty()) {
+                this.keyword = keyword;
+            }
+            return this;
+        }
+
+        /**
+         * Specify the output directory
+         * @param outputDirectory Location for the created docset
+         * @return Builder instance
+         */
+        public Builder outputDirectory(File outputDirectory) {
+            if (null != outputDirectory) {
+                this.outputDirectory = outputDirectory;
+            }
+            return this;
+        }
+
+        /**
+         * Specify the icon file
+         * @param iconFile Path to an icon to include in the docset. Should be a 32x32 PNG. No icon will be used if this is unspecified.
+         * @return Builder instance
+         */
+        public Builder iconFile(File iconFile) {
+            if (null != iconFile) {
+                this.iconFilePath = iconFile;
+            }
+            return this;
+        }
+
+        /**
+         * Specify the number of Javadoc index files of a module to parse at the same time
+         * @param parseThreads Number of parser threads. Defaults to the number of available processors if unspecified.
+         * @return Builder instance
+         */
+        public Builder parseThreads(int parseThreads) {
+            if (parseThreads > 0) {
+                this.parseThreads = parseThreads;
+            }
+            return this;
+        }
+
+        /**
+         * Specify the number of modules to copy and parse at the same time
+         * @param buildThreads Number of build threads. Defaults to the number of available processors if unspecified.
+         * @return Builder instance
+         */
+        public Builder buildThreads(int buildThreads) {
+            if (buildThreads > 0) {
+                this.buildThreads = buildThreads;
+            }
+            return this;
+        }
+
+        /**
+         * Specify how Javadoc index files are parsed
+         * @param parserStrategy Parser to use. Defaults to {@link ParserStrategy#DOM} if unspecified.
+         * @return Builder instance
+         */
+        public Builder parserStrategy(ParserStrategy parserStrategy) {
+            if (null != parserStrategy) {
+                this.parserStrategy = parserStrategy;
+            }
+            return this;
+        }
+
+        /**
+         * Specify how Javadoc files are put into the docset
+         * @param copyStrategy Strategy to use. Defaults to {@link CopyStrategy#COPY} if unspecified.
+         * @return Builder instance
+         */
+        public Builder copyStrategy(CopyStrategy copyStrategy) {
+            if (null != copyStrategy) {
+                this.copyStrategy = copyStrategy;
+            }
+            return this;
+        }
+
+        /**
+         * Specify the number of Javadoc files of a module to copy at the same time
+         * @param copyThreads Number of copy threads. Defaults to the number of available processors if unspecified.
+         * @return Builder instance
+         */
+        public Builder copyThreads(int copyThreads) {
+            if (copyThreads > 0) {
+                this.copyThreads = copyThreads;
+            }
+            return this;
+        }
+
+        /**
+         * Specify a directory to cache parsed index files in
+         * @param parseCacheDir Cache directory. Index files are always parsed if unspecified.
+         * @return Builder instance
+         */
+        public Builder parseCacheDir(File parseCacheDir) {
+            if (null != parseCacheDir) {
+                this.parseCacheDir = parseCacheDir;
+            }
+            return this;
+        }
+
+        public DocsetAggregator build() {
+            if (modules.isEmpty()) {
+                throw new IllegalArgumentException("At least one module must be specified");
+            }
+            return new DocsetAggregator(this);
+        }
+    }
+
+    private DocsetAggregator(Builder builder) {
+        this.docsetName = builder.docsetName;
+        this.displayName = builder.displayName;
+        this.keyword = builder.keyword;
+        this.iconFilePath = builder.iconFilePath;
+        this.modules = Collections.unmodifiableMap(new LinkedHashMap<>(builder.modules));
+        this.outputDirectory = builder.outputDirectory;
+        this.parseThreads = builder.parseThreads;
+        this.buildThreads = builder.buildThreads;
+        this.parserStrategy = builder.parserStrategy;
+        this.copyStrategy = builder.copyStrategy;
+        this.copyThreads = builder.copyThreads;
+        this.parseCacheDir = builder.parseCacheDir;
+        this.parseCache = null != parseCacheDir ? new ParseCache(parseCacheDir) : null;
+    }
+
+    /**
+     * Build the docset.
+     * @param logger Optional logger to be used during docset creation. If not specified all messages will be directed
+     *               to the console.
+     * @throws BuilderException If an error occurs creating the docset
+     */
+    public void makeDocset(Logger logger) throws BuilderException {
+        final LogContext current = getContext();
+        final BuildMetrics buildMetrics = new BuildMetrics(docsetName);
+        final LogContext previous = setContext(new LogContext(null != logger ? logger : current.getLogger(),
+                current.isVerbose(), current.getName(), buildMetrics));
+        try {
+            final String docsetRoot = concat(outputDirectory.getAbsolutePath(), docsetName);
+            createDocSetStructure(docsetRoot);
+            copyIconFile(iconFilePath, docsetRoot);
+            final Map<String, String> moduleIndexFiles = mergeModules(docsetRoot);
+            createModuleIndex(displayName, moduleIndexFiles, docsetRoot);
+            createPList(docsetName, displayName, keyword, MODULE_INDEX_FILE, docsetRoot);
+            buildMetrics.finish();
+            metrics = buildMetrics;
+            log("Finished creating docset from {} modules: {}", modules.size(), docsetRoot);
+            logVerbose("{}", buildMetrics.toSummary());
+        } finally {
+            setContext(previous);
+        }
+    }
+
+    /**
+     * Build the docset.
+     * @throws BuilderException If an error occurs creating the docset
+     */
+    public void makeDocset() throws BuilderException {
+        makeDocset(null);
+    }
+
+    private Map<String, String> mergeModules(final String docsetRoot) throws BuilderException {
+        final List<String> names = new ArrayList<>(modules.keySet());
+        final Map<String, String> moduleIndexFiles = new LinkedHashMap<>();
+        final Set<String> seen = new HashSet<>();
+        int merged = 0;
+        final LogContext current = getContext();
+        final ExecutorService executor = Executors.newFixedThreadPool(Math.min(buildThreads, names.size()));
+        try (final DBSupport.IndexWriter indexWriter = DBSupport.openIndex(getDBDir(docsetRoot), DBSupport.DEFAULT_BATCH_SIZE)) {
+            final List<Future<IndexShard>> shards = new ArrayList<>(names.size());
+            for (final String name : names) {
+                shards.add(executor.submit(new Callable<IndexShard>() {
+                    @Override
+                    public IndexShard call() throws BuilderException {
+                        final LogContext previous = setContext(new LogContext(current.getLogger(), current.isVerbose(), name,
+                                current.getMetrics()));
+                        try {
+                            return buildShard(name, docsetRoot);
+                        } finally {
+                            setContext(previous);
+                        }
+                    }
+                }));
+            }
+            for (int i = 0; i < names.size(); i++) {
+                final IndexShard shard = getShard(names.get(i), shards.get(i));
+                shards.set(i, null);
+                final SearchIndexTable values = mergeShard(names.get(i), shard.values, seen);
+                indexWriter.accept(values);
+                merged += values.size();
+                moduleIndexFiles.put(names.get(i), shard.indexFile);
+            }
+            indexWriter.finish();
+        } finally {
+            executor.shutdownNow();
+        }
+        logVerbose("Merged {} search index entries from {} modules", merged, names.size());
+        return moduleIndexFiles;
+    }
+
+    private IndexShard buildShard(String name, String docsetRoot) throws BuilderException {
+        final File javadocRoot = modules.get(name);
+        final IndexData indexData = findIndexFile(javadocRoot);
+        final BuildMetrics.Timer copyTimer = BuildMetrics.current().startStage("copy");
+        try {
+            copyFiles(javadocRoot, docsetRoot, name, copyStrategy, copyThreads);
+        } finally {
+            copyTimer.close();
+        }
+        final ParseOptions options = new ParseOptions().parseThreads(parseThreads).parserStrategy(parserStrategy).parseCache(parseCache);
+        final BuildMetrics.Timer parseTimer = BuildMetrics.current().startStage("parse");
+        try {
+            return new IndexShard(indexData.getDocsetIndexFile(), findSearchIndexTable(indexData.getFilesToIndex(), options));
+        } finally {
+            parseTimer.close();
+        }
+    }
+
+    private static IndexShard getShard(String name, Future<IndexShard> shard) throws BuilderException {
+        try {
+            return shard.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new BuilderException("Interrupted while creating docset", e);
+        } catch (ExecutionException e) {
+            throw new BuilderException(String.format("Failed to index module %s", name), e.getCause());
+        }
+    }
+
+    /**
+     * Point the values of a module into its directory of the docset, and drop every value that an earlier module
+     * already added.
+     * @param name Name of the module
+     * @param values Values found in the Javadoc of the module
+     * @param seen Keys of the values added so far. Updated with the keys of the returned values.
+     * @return Values to add to the search index
+     */
+    static SearchIndexTable mergeShard(String name, SearchIndexTable values, Set<String> seen) {
+        final SearchIndexTable merged = new SearchIndexTable(values.size());
+        final String prefix = name + "/";
+        for (int row = 0; row < values.size(); row++) {
+            final String path = getPage(values.getPath(row));
+            // The path is compared within the module, so the same page in two modules is the same entry
+            if (seen.add(values.getName(row) + '\0' + values.getType(row) + '\0' + path)) {
+                merged.add(values.getName(row), values.getType(row), prefix.concat(path));
+            }
+        }
+        return merged;
+    }
+
+    /**
+     * Links from split index files are relative to the index-files directory, and start with <code>../</code>.
+     */
+    private static String getPage(String path) {
+        String page = path;
+        while (page.startsWith("./") || page.startsWith("../")) {
+            page = page.substring(page.indexOf('/') + 1);
+        }
+        return page;
+    }
+
+    private static final class IndexShard {
+        private final String indexFile;
+        private final SearchIndexTable values;
+
+        private IndexShard(String indexFile, SearchIndexTable values) {
+            this.indexFile = indexFile;
+            this.values = values;
+        }
+    }
+
+    /**
+     * Get the docset name
+     * @return Docset name
+     */
+    public String getDocsetName() {
+        return docsetName;
+    }
+
+    /**
+     * Get the metrics of the last successful build
+     * @return Metrics, or null if no docset has been built yet
+     */
+    public BuildMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Get the display name
+     * @return Display name
+     */
+    public String getDisplayName() {
+        return displayName;
+    }
+
+    /**
+     * Get the keyword
+     * @return Keyword
+     */
+    public String getKeyword() {
+        return keyword;
+    }
+
+    /**
+     * Get the icon file
+     * @return Icon file
+     */
+    public File getIconFilePath() {
+        return iconFilePath;
+    }
+
+    /**
+     * Get the modules, in the order they are merged
+     * @return Javadoc root directory of each module, by module name
+     */
+    public Map<String, File> getModules() {
+        return modules;
+    }
+
+    /**
+     * Get the output directory
+     * @return Output directory
+     */
+    public File getOutputDirectory() {
+        return outputDirectory;
+    }
+
+    /**
+     * Get the number of parser threads
+     * @return Parser thread count
+     */
+    public int getParseThreads() {
+        return parseThreads;
+    }
+
+    /**
+     * Get the number of build threads
+     * @return Build thread count
+     */
+    public int getBuildThreads() {
+        return buildThreads;
+    }
+
+    /**
+     * Get the parser strategy
+     * @return Parser strategy
+     */
+    public ParserStrategy getParserStrategy() {
+        return parserStrategy;
+    }
+
+    /**
+     * Get the copy strategy
+     * @return Copy strategy
+     */
+    public CopyStrategy getCopyStrategy() {
+        return copyStrategy;
+    }
+
+    /**
+     * Get the number of copy threads
+     * @return Copy thread count
+     */
+    public int getCopyThreads() {
+        return copyThreads;
+    }
+
+    /**
+     * Get the parse cache directory
+     * @return Parse cache directory, or null if index files are always parsed
+     */
+    public File getParseCacheDir() {
+        return parseCacheDir;
+    }
+}
@@ -0,0 +1,191 @@
+/**
+ * Copyright 2015 Megatome Technologies, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.megatome.j2d;
+
+import com.megatome.j2d.exception.BuilderException;
+import com.megatome.j2d.util.LogContext;
+import org.slf4j.Logger;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static com.megatome.j2d.util.LogUtility.getContext;
+import static com.megatome.j2d.util.LogUtility.log;
+import static com.megatome.j2d.util.LogUtility.setContext;
+
+/**
+ * Class responsible for creating several docsets at the same time. Each docset is built on a shared, bounded pool of
+ * build threads, and logs with its own {@link LogContext} so its messages are prefixed with the docset name. While a
+ * docset is built, its parser, copy and compression threads are limited to its share of the available processors, so
+ * the batch never runs much more than one thread of each kind per processor.
+ */
+public class DocsetBatch {
+    private final List<DocsetCreator> creators;
+    private final int buildThreads;
+
+    /**
+     * Builder for specifying the docsets in the batch
+     */
+    public static class Builder {
+        private final List<DocsetCreator> creators = new ArrayList<>();
+        private int buildThreads = Runtime.getRuntime().availableProcessors();
+
+        /**
+         * Add a docset to the batch
+         * @param creator Creator for the docset
+         * @return Builder instance
+         */
+        public Builder add(DocsetCreator creator) {
+            if (null != creator) {
+                creators.add(creator);
+            }
+            return this;
+        }
+
+        /**
+         * Specify the number of docsets to build at the same time. The available processors are divided between the
+         * docsets being built, and each one uses at most its share, but at least one, of parser, copy and compression
+         * threads, whatever its own settings.
+         * @param buildThreads Number of build threads. Defaults to the number of available processors if unspecified.
+         * @return Builder instance
+         */
+        public Builder buildThreads(int buildThreads) {
+            if (buildThreads > 0) {
+                this.buildThreads = buildThreads;
+            }
+            return this;
+        }
+
+        public DocsetBatch build() {
+            final Set<String> docsetLocations = new HashSet<>();
+            for (final DocsetCreator creator : creators) {
+                if (!docsetLocations.add(creator.getDocsetLocation())) {
+                    throw new IllegalArgumentException(String.format("More than one docset would be created at %s", creator.getDocsetLocation()));
+                }
+            }
+            return new DocsetBatch(this);
+        }
+    }
+
+    private DocsetBatch(Builder builder) {
+        this.creators = Collections.unmodifiableList(new ArrayList<>(builder.creators));
+        this.buildThreads = builder.buildThreads;
+    }
+
+    /**
+     * Build all docsets in the batch. A failed docset does not stop the others from being built.
+     * @param logger Optional logger to be used during docset creation. If not specified all messages will be directed
+     *               to the console.
+     * @throws BuilderException If any docset could not be created. The first failure is the cause, any others are
+     *                          suppressed exceptions.
+     */
+    public void makeDocsets(Logger logger) throws BuilderException {
+        if (creators.isEmpty()) {
+            return;
+        }
+        final LogContext current = getContext();
+        final Logger batchLogger = null != logger ? logger : current.getLogger();
+        final int threadsPerBuild = getThreadsPerBuild();
+        final ExecutorService executor = Executors.newFixedThreadPool(Math.min(buildThreads, creators.size()));
+        try {
+            final List<Future<Void>> results = new ArrayList<>(creators.size());
+            for (final DocsetCreator creator : creators) {
+                results.add(executor.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws BuilderException {
+                        final LogContext previous = setContext(new LogContext(batchLogger, current.isVerbose(), creator.getDocsetName()));
+                        creator.setThreadLimit(threadsPerBuild);
+                        try {
+                            creator.makeDocset();
+                        } catch (BuilderException e) {
+                            log("Failed to create docset: {}", e.getMessage());
+                            throw e;
+                        } finally {
+                            creator.setThreadLimit(DocsetCreator.NO_THREAD_LIMIT);
+                            setContext(previous);
+                        }
+                        return null;
+                    }
+                }));
+            }
+
+            final List<String> failedDocsets = new ArrayList<>();
+            final List<Throwable> failures = new ArrayList<>();
+            for (int i = 0; i < results.size(); i++) {
+                try {
+                    results.get(i).get();
+                } catch (ExecutionException e) {
+                    failedDocsets.add(creators.get(i).getDocsetName());
+                    failures.add(e.getCause());
+                }
+            }
+            if (!failures.isEmpty()) {
+                final BuilderException e = new BuilderException(String.format("Failed to create %d of %d docsets: %s",
+                        failures.size(), creators.size(), failedDocsets), failures.get(0));
+                for (final Throwable t : failures.subList(1, failures.size())) {
+                    e.addSuppressed(t);
+                }
+                throw e;
+            }
+            log("Finished creating {} docsets", creators.size());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new BuilderException("Interrupted while creating docsets", e);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Build all docsets in the batch.
+     * @throws BuilderException If any docset could not be created
+     */
+    public void makeDocsets() throws BuilderException {
+        makeDocsets(null);
+    }
+
+    /**
+     * Get the creators for the docsets in the batch
+     * @return Docset creators
+     */
+    public List<DocsetCreator> getCreators() {
+        return creators;
+    }
+
+    /**
+     * Get the number of build threads
+     * @return Build thread count
+     */
+    public int getBuildThreads() {
+        return buildThreads;
+    }
+
+    /**
+     * Get the number of parser, copy and compression threads each docset of the batch may use
+     * @return Thread count per docset
+     */
+    int getThreadsPerBuild() {
+        return Math.max(1, Runtime.getRuntime().availableProcessors() / Math.max(1, Math.min(buildThreads, creators.size())));
+    }
+}
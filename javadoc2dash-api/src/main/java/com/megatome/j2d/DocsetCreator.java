@@ -16,29 +16,87 @@
 package com.megatome.j2d;
 
 import com.megatome.j2d.exception.BuilderException;
+import com.megatome.j2d.support.CopyStrategy;
+import com.megatome.j2d.support.DBSupport;
+import com.megatome.j2d.support.DocsetArchive;
+import com.megatome.j2d.support.FullTextSupport;
+import com.megatome.j2d.support.OutputFormat;
+import com.megatome.j2d.support.PackageFilter;
+import com.megatome.j2d.support.ParseCache;
+import com.megatome.j2d.support.ParallelGzipOutputStream;
+import com.megatome.j2d.support.ParseOptions;
+import com.megatome.j2d.support.ParserStrategy;
+import com.megatome.j2d.support.StageSupport.Stage;
+import com.megatome.j2d.support.TableOfContents;
+import com.megatome.j2d.util.BuildMetrics;
+import com.megatome.j2d.util.DocsetManifest;
 import com.megatome.j2d.util.IndexData;
+import com.megatome.j2d.util.LogContext;
+import com.megatome.j2d.util.SearchIndexTable;
+import com.megatome.j2d.util.SearchIndexValue;
 import org.slf4j.Logger;
 
 import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileSystem;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
 
-import static com.megatome.j2d.support.DBSupport.createIndex;
+import static com.megatome.j2d.support.DBSupport.updateIndex;
+import static com.megatome.j2d.support.DBSupport.updatePackageIndex;
 import static com.megatome.j2d.support.DocSetSupport.*;
+import static com.megatome.j2d.support.IndexPipeline.buildIndex;
 import static com.megatome.j2d.support.JavadocSupport.findIndexFile;
+import static com.megatome.j2d.support.JavadocSupport.findSearchIndexTable;
 import static com.megatome.j2d.support.JavadocSupport.findSearchIndexValues;
+import static com.megatome.j2d.support.JavadocSupport.isJavadocArchive;
+import static com.megatome.j2d.support.JavadocSupport.openJavadocArchive;
+import static com.megatome.j2d.support.StageSupport.runConcurrently;
+import static com.megatome.j2d.util.LogUtility.getContext;
 import static com.megatome.j2d.util.LogUtility.log;
-import static com.megatome.j2d.util.LogUtility.setLogger;
+import static com.megatome.j2d.util.LogUtility.logVerbose;
+import static com.megatome.j2d.util.LogUtility.setContext;
+import static org.apache.commons.io.FileUtils.deleteQuietly;
 import static org.apache.commons.io.FilenameUtils.concat;
 
 /**
  * Class responsible for creating the docset.
  */
 public class DocsetCreator {
+    static final int NO_THREAD_LIMIT = Integer.MAX_VALUE;
+
     private final String docsetName;
     private final String displayName;
     private final String keyword;
     private final File iconFilePath;
     private final File javadocRoot;
     private final File outputDirectory;
+    private final int parseThreads;
+    private final int batchSize;
+    private final ParserStrategy parserStrategy;
+    private final boolean incremental;
+    private final boolean fullTextIndex;
+    private final boolean tableOfContents;
+    private final CopyStrategy copyStrategy;
+    private final int copyThreads;
+    private final OutputFormat outputFormat;
+    private final File archiveFile;
+    private final int compressionLevel;
+    private final int compressionBlockSize;
+    private final int compressThreads;
+    private final Set<String> changedPackages;
+    private final File parseCacheDir;
+    private final ParseCache parseCache;
+    private volatile BuildMetrics metrics;
+    // Set by a DocsetBatch while it builds this docset, so that builds running at the same time share the processors
+    private volatile int threadLimit = NO_THREAD_LIMIT;
 
     /**
      * Builder for specifying options used in docset creation
@@ -51,11 +109,27 @@ public class DocsetCreator {
         private String keyword;
         private File iconFilePath = null;
         private File outputDirectory = new File(".");
+        private int parseThreads = Runtime.getRuntime().availableProcessors();
+        private int batchSize = DBSupport.DEFAULT_BATCH_SIZE;
+        private ParserStrategy parserStrategy = ParserStrategy.DOM;
+        private boolean incremental = false;
+        private boolean fullTextIndex = false;
+        private boolean tableOfContents = false;
+        private CopyStrategy copyStrategy = CopyStrategy.COPY;
+        private int copyThreads = Runtime.getRuntime().availableProcessors();
+        private OutputFormat outputFormat = OutputFormat.DIRECTORY;
+        private File archiveFile = null;
+        private int compressionLevel = 6;
+        private int compressionBlockSize = ParallelGzipOutputStream.DEFAULT_BLOCK_SIZE / 1024;
+        private int compressThreads = Runtime.getRuntime().availableProcessors();
+        private final Set<String> changedPackages = new LinkedHashSet<>();
+        private File parseCacheDir = null;
 
         /**
          * Ctor
          * @param docsetName File name of docset to create
-         * @param javadocRoot Root directory of the Javadoc to create the docset from
+         * @param javadocRoot Root directory of the Javadoc to create the docset from, or a Javadoc archive such as a
+         *                    <code>-javadoc.jar</code>, which is read without being extracted
          */
         public Builder(String docsetName, File javadocRoot) {
             if (null == docsetName || docsetName.isEmpty()) {
@@ -118,6 +192,195 @@ public class DocsetCreator {
             return this;
         }
 
+        /**
+         * Specify the number of Javadoc index files to parse at the same time
+         * @param parseThreads Number of parser threads. Defaults to the number of available processors if unspecified.
+         * @return Builder instance
+         */
+        public Builder parseThreads(int parseThreads) {
+            if (parseThreads > 0) {
+                this.parseThreads = parseThreads;
+            }
+            return this;
+        }
+
+        /**
+         * Specify the number of rows written to the search index at once
+         * @param batchSize Number of rows per SQLite batch. Defaults to {@link DBSupport#DEFAULT_BATCH_SIZE} if unspecified.
+         * @return Builder instance
+         */
+        public Builder batchSize(int batchSize) {
+            if (batchSize > 0) {
+                this.batchSize = batchSize;
+            }
+            return this;
+        }
+
+        /**
+         * Specify how Javadoc index files are parsed
+         * @param parserStrategy Parser strategy. Defaults to {@link ParserStrategy#DOM} if unspecified.
+         * @return Builder instance
+         */
+        public Builder parserStrategy(ParserStrategy parserStrategy) {
+            if (null != parserStrategy) {
+                this.parserStrategy = parserStrategy;
+            }
+            return this;
+        }
+
+        /**
+         * Specify if an existing docset should be updated in place
+         * @param incremental True to only copy changed files and re-index changed index files when the docset was
+         *                    previously built with this option. The docset is rebuilt from scratch otherwise.
+         *                    Defaults to false if unspecified.
+         * @return Builder instance
+         */
+        public Builder incremental(boolean incremental) {
+            this.incremental = incremental;
+            return this;
+        }
+
+        /**
+         * Specify if a full text index of the entry descriptions is created next to the search index. It is read by
+         * {@link FullTextSupport#search(String, String, int)}, not by Dash.
+         * @param fullTextIndex True to create the full text index. Defaults to false if unspecified.
+         * @return Builder instance
+         */
+        public Builder fullTextIndex(boolean fullTextIndex) {
+            this.fullTextIndex = fullTextIndex;
+            return this;
+        }
+
+        /**
+         * Specify if Dash table of contents anchors are added to the members of each page, so Dash can list them
+         * next to the page. Pages with anchors are always written, whatever the copy strategy.
+         * @param tableOfContents True to add the anchors. Defaults to false if unspecified.
+         * @return Builder instance
+         */
+        public Builder tableOfContents(boolean tableOfContents) {
+            this.tableOfContents = tableOfContents;
+            return this;
+        }
+
+        /**
+         * Specify how the Javadoc files are put into the docset
+         * @param copyStrategy Copy strategy. Defaults to {@link CopyStrategy#COPY} if unspecified.
+         * @return Builder instance
+         */
+        public Builder copyStrategy(CopyStrategy copyStrategy) {
+            if (null != copyStrategy) {
+                this.copyStrategy = copyStrategy;
+            }
+            return this;
+        }
+
+        /**
+         * Specify the number of Javadoc files to copy into the docset at the same time
+         * @param copyThreads Number of copy threads. Defaults to the number of available processors if unspecified.
+         * @return Builder instance
+         */
+        public Builder copyThreads(int copyThreads) {
+            if (copyThreads > 0) {
+                this.copyThreads = copyThreads;
+            }
+            return this;
+        }
+
+        /**
+         * Specify the form the docset is written in
+         * @param outputFormat Output format. Defaults to {@link OutputFormat#DIRECTORY} if unspecified.
+         * @return Builder instance
+         */
+        public Builder outputFormat(OutputFormat outputFormat) {
+            if (null != outputFormat) {
+                this.outputFormat = outputFormat;
+            }
+            return this;
+        }
+
+        /**
+         * Specify the archive to write when the output format is not {@link OutputFormat#DIRECTORY}
+         * @param archiveFile Archive file. Defaults to <code>docsetName</code> with the extension of the output format,
+         *                    in the output directory, if unspecified.
+         * @return Builder instance
+         */
+        public Builder archiveFile(File archiveFile) {
+            if (null != archiveFile) {
+                this.archiveFile = archiveFile;
+            }
+            return this;
+        }
+
+        /**
+         * Specify how hard archives are compressed
+         * @param compressionLevel Compression level from 0 (no compression) to 9 (best compression). Defaults to 6
+         *                         if unspecified.
+         * @return Builder instance
+         */
+        public Builder compressionLevel(int compressionLevel) {
+            if (compressionLevel >= 0 && compressionLevel <= 9) {
+                this.compressionLevel = compressionLevel;
+            }
+            return this;
+        }
+
+        /**
+         * Specify the size of the blocks a TGZ archive is compressed in. Each block is compressed on its own thread.
+         * @param compressionBlockSize Block size in KiB, at least 32. Defaults to 128 if unspecified.
+         * @return Builder instance
+         */
+        public Builder compressionBlockSize(int compressionBlockSize) {
+            if (compressionBlockSize >= ParallelGzipOutputStream.MIN_BLOCK_SIZE / 1024) {
+                this.compressionBlockSize = compressionBlockSize;
+            }
+            return this;
+        }
+
+        /**
+         * Specify the number of blocks of a TGZ archive to compress at the same time
+         * @param compressThreads Number of compression threads. Defaults to the number of available processors if
+         *                        unspecified.
+         * @return Builder instance
+         */
+        public Builder compressThreads(int compressThreads) {
+            if (compressThreads > 0) {
+                this.compressThreads = compressThreads;
+            }
+            return this;
+        }
+
+        /**
+         * Specify packages that changed since an existing docset was built. Only the pages and search index rows of
+         * these packages are replaced in the docset, which is much faster than a full build when few packages change.
+         * A full build is done if the docset does not exist yet.
+         * @param changedPackages Package names, such as <code>com.example.util</code>. Empty or null names are ignored.
+         * @return Builder instance
+         */
+        public Builder changedPackages(Collection<String> changedPackages) {
+            if (null != changedPackages) {
+                for (final String changedPackage : changedPackages) {
+                    if (null != changedPackage && !changedPackage.trim().isEmpty()) {
+                        this.changedPackages.add(changedPackage.trim());
+                    }
+                }
+            }
+            return this;
+        }
+
+        /**
+         * Specify a directory to cache parsed index files in. Index files that did not change since they were cached
+         * are not parsed again, which speeds up repeated builds. The directory can be shared by several builds.
+         * @param parseCacheDir Cache directory, such as {@link ParseCache#getDefaultDirectory()}. Index files are always
+         *                      parsed if unspecified.
+         * @return Builder instance
+         */
+        public Builder parseCacheDir(File parseCacheDir) {
+            if (null != parseCacheDir) {
+                this.parseCacheDir = parseCacheDir;
+            }
+            return this;
+        }
+
         public DocsetCreator build() {
             return new DocsetCreator(this);
         }
@@ -130,6 +393,22 @@ public class DocsetCreator {
         this.iconFilePath = builder.iconFilePath;
         this.javadocRoot = builder.javadocRoot;
         this.outputDirectory = builder.outputDirectory;
+        this.parseThreads = builder.parseThreads;
+        this.batchSize = builder.batchSize;
+        this.parserStrategy = builder.parserStrategy;
+        this.incremental = builder.incremental;
+        this.fullTextIndex = builder.fullTextIndex;
+        this.tableOfContents = builder.tableOfContents;
+        this.copyStrategy = builder.copyStrategy;
+        this.copyThreads = builder.copyThreads;
+        this.outputFormat = builder.outputFormat;
+        this.archiveFile = builder.archiveFile;
+        this.compressionLevel = builder.compressionLevel;
+        this.compressionBlockSize = builder.compressionBlockSize;
+        this.compressThreads = builder.compressThreads;
+        this.changedPackages = Collections.unmodifiableSet(new LinkedHashSet<>(builder.changedPackages));
+        this.parseCacheDir = builder.parseCacheDir;
+        this.parseCache = null != parseCacheDir ? new ParseCache(parseCacheDir) : null;
     }
 
     /**
@@ -139,15 +418,357 @@ public class DocsetCreator {
      * @throws BuilderException If an error occurs creating the docset
      */
     public void makeDocset(Logger logger) throws BuilderException {
-        setLogger(logger);
-        final String docsetRoot = concat(outputDirectory.getAbsolutePath(), docsetName);
+        // The logger only applies to this build, so builds on other threads can use their own
+        final LogContext current = getContext();
+        final BuildMetrics buildMetrics = new BuildMetrics(docsetName);
+        final LogContext previous = setContext(new LogContext(null != logger ? logger : current.getLogger(),
+                current.isVerbose(), current.getName(), buildMetrics));
+        try {
+            final String location = getDocsetLocation();
+            if (isJavadocArchive(javadocRoot)) {
+                createFromJavadocArchive(location);
+            } else if (OutputFormat.DIRECTORY != outputFormat) {
+                createArchive(getArchiveLocation(), javadocRoot.toPath());
+            } else if (!changedPackages.isEmpty() && canUpdatePackages(location)) {
+                updatePackages(location);
+            } else if (incremental && canUpdateDocset(location)) {
+                updateDocset(location);
+            } else {
+                createDocset(location);
+            }
+            logParseCache();
+            buildMetrics.finish();
+            metrics = buildMetrics;
+            log("Finished creating docset: {}", location);
+            logVerbose("{}", buildMetrics.toSummary());
+        } finally {
+            setContext(previous);
+        }
+    }
+
+    /**
+     * Get the location this creator writes to
+     * @return Archive file, or the docset directory without the <code>.docset</code> suffix
+     */
+    String getDocsetLocation() {
+        if (OutputFormat.DIRECTORY != outputFormat) {
+            return getArchiveLocation().getAbsolutePath();
+        }
+        return concat(outputDirectory.getAbsolutePath(), docsetName);
+    }
+
+    private File getArchiveLocation() {
+        return null != archiveFile ? archiveFile : new File(outputDirectory, docsetName + "." + outputFormat.getExtension());
+    }
+
+    /**
+     * The entries of a Javadoc archive are read in place, so nothing is extracted. There is no manifest of an archive,
+     * so the whole docset is always built.
+     */
+    private void createFromJavadocArchive(String location) throws BuilderException {
+        logVerbose("Reading javadoc from archive {}", javadocRoot);
+        try (final FileSystem archive = openJavadocArchive(javadocRoot)) {
+            final Path source = archive.getPath("/");
+            if (OutputFormat.DIRECTORY != outputFormat) {
+                createArchive(getArchiveLocation(), source);
+            } else {
+                if (incremental || !changedPackages.isEmpty()) {
+                    logVerbose("Incremental builds are not supported for a javadoc archive, building the whole docset");
+                }
+                createDocset(location, source, false);
+            }
+        } catch (IOException e) {
+            throw new BuilderException(String.format("Failed to close javadoc archive %s", javadocRoot), e);
+        }
+    }
+
+    private void createDocset(final String docsetRoot) throws BuilderException {
+        createDocset(docsetRoot, javadocRoot.toPath(), incremental);
+    }
+
+    /**
+     * @param source Root of the Javadoc, which may be in an archive
+     * @param withManifest True to write a manifest for later incremental builds
+     */
+    private void createDocset(final String docsetRoot, final Path source, final boolean withManifest) throws BuilderException {
         createDocSetStructure(docsetRoot);
         copyIconFile(iconFilePath, docsetRoot);
+        final IndexData indexData = findIndexFile(source);
+        final TableOfContents toc = tableOfContents ? new TableOfContents() : null;
+
+        // Copying and indexing both only read the Javadoc, and write to different parts of the docset. Pages are only
+        // copied once the index is parsed if they get table of contents anchors.
+        final List<Stage> stages = new ArrayList<>();
+        stages.add(new Stage() {
+            @Override
+            public void run() throws BuilderException {
+                awaitTableOfContents(toc);
+                final BuildMetrics.Timer copyTimer = startStage("copy");
+                try {
+                    copyFiles(source, docsetRoot, copyStrategy, limitThreads(copyThreads), toc);
+                } finally {
+                    copyTimer.close();
+                }
+            }
+        });
+        stages.add(new Stage() {
+            @Override
+            public void run() throws BuilderException {
+                final BuildMetrics.Timer indexTimer = startStage("index");
+                try {
+                    buildIndex(indexData, getDBDir(docsetRoot), getParseOptions().descriptions(fullTextIndex), batchSize, toc);
+                } finally {
+                    indexTimer.close();
+                }
+            }
+        });
+        final AtomicReference<DocsetManifest> manifest = new AtomicReference<>();
+        if (withManifest) {
+            stages.add(new Stage() {
+                @Override
+                public void run() throws BuilderException {
+                    final BuildMetrics.Timer manifestTimer = startStage("manifest");
+                    try {
+                        manifest.set(createManifest(null));
+                    } finally {
+                        manifestTimer.close();
+                    }
+                }
+            });
+        }
+        runConcurrently(stages.toArray(new Stage[stages.size()]));
+
+        createPList(docsetName, displayName, keyword, indexData.getDocsetIndexFile(), docsetRoot);
+        // Only written once everything else succeeded, so a failed build is never mistaken for a complete one
+        if (withManifest) {
+            writeManifest(manifest.get(), docsetRoot);
+        }
+    }
+
+    /**
+     * @param source Root of the Javadoc, which may be in an archive
+     */
+    private void createArchive(File archive, final Path source) throws BuilderException {
+        if (incremental || !changedPackages.isEmpty()) {
+            logVerbose("Incremental builds are not supported for {} output, building the whole docset", outputFormat);
+        }
+        final IndexData indexData = findIndexFile(source);
+        final TableOfContents toc = tableOfContents ? new TableOfContents() : null;
+        final File indexDir = createTempIndexDir();
+        try (final DocsetArchive docsetArchive = new DocsetArchive(archive, outputFormat, docsetName, compressionLevel,
+                compressionBlockSize * 1024, limitThreads(compressThreads))) {
+            docsetArchive.addPList(docsetName, displayName, keyword, indexData.getDocsetIndexFile());
+            docsetArchive.addIcon(iconFilePath);
+            // The documents are streamed into the archive while the index is built in a temp dir, then appended
+            runConcurrently(new Stage() {
+                @Override
+                public void run() throws BuilderException {
+                    awaitTableOfContents(toc);
+                    final BuildMetrics.Timer copyTimer = startStage("copy");
+                    try {
+                        docsetArchive.addDocuments(source, toc);
+                    } finally {
+                        copyTimer.close();
+                    }
+                }
+            }, new Stage() {
+                @Override
+                public void run() throws BuilderException {
+                    final BuildMetrics.Timer indexTimer = startStage("index");
+                    try {
+                        buildIndex(indexData, indexDir.getPath(), getParseOptions().descriptions(fullTextIndex), batchSize, toc);
+                    } finally {
+                        indexTimer.close();
+                    }
+                }
+            });
+            final BuildMetrics.Timer archiveTimer = startStage("archive");
+            try {
+                docsetArchive.addIndex(indexDir.getPath());
+                docsetArchive.commit();
+            } finally {
+                archiveTimer.close();
+            }
+        } finally {
+            deleteQuietly(indexDir);
+        }
+    }
+
+    private static File createTempIndexDir() throws BuilderException {
+        try {
+            return Files.createTempDirectory("j2d-index").toFile();
+        } catch (IOException e) {
+            throw new BuilderException("Failed to create a temporary directory for the search index", e);
+        }
+    }
+
+    private boolean canUpdateDocset(String docsetRoot) throws BuilderException {
+        return getDocumentsDir(docsetRoot).isDirectory() && DBSupport.indexExists(getDBDir(docsetRoot)) && null != readManifest(docsetRoot);
+    }
+
+    private void updateDocset(String docsetRoot) throws BuilderException {
+        logVerbose("Updating existing docset {}", docsetRoot);
         final IndexData indexData = findIndexFile(javadocRoot);
-        copyFiles(javadocRoot, docsetRoot);
+        final DocsetManifest previous = readManifest(docsetRoot);
+        final DocsetManifest current = createManifest(previous);
+
+        // The docset still holds the previous version of each index file, so the rows that came from a changed index
+        // file can be found by parsing the old copy before it is replaced.
+        final File documentsDir = getDocumentsDir(docsetRoot);
+        final List<File> previousIndexFiles = new ArrayList<>();
+        for (final File f : findIndexFile(documentsDir).getFilesToIndex()) {
+            if (!current.isUnchanged(relativePath(documentsDir, f), previous)) {
+                previousIndexFiles.add(f);
+            }
+        }
+        final List<File> changedIndexFiles = new ArrayList<>();
+        for (final File f : indexData.getFilesToIndex()) {
+            if (!current.isUnchanged(relativePath(javadocRoot, f), previous)) {
+                changedIndexFiles.add(f);
+            }
+        }
+        final SearchIndexTable removedValues;
+        final SearchIndexTable addedValues;
+        final TableOfContents toc;
+        final BuildMetrics.Timer parseTimer = startStage("parse");
+        try {
+            removedValues = findSearchIndexTable(previousIndexFiles, getParseOptions());
+            addedValues = findSearchIndexTable(changedIndexFiles, getParseOptions());
+            toc = findTableOfContents(indexData);
+        } finally {
+            parseTimer.close();
+        }
+
+        final BuildMetrics.Timer copyTimer = startStage("copy");
+        try {
+            syncFiles(javadocRoot, docsetRoot, previous, current, copyStrategy, toc);
+        } finally {
+            copyTimer.close();
+        }
+        copyIconFile(iconFilePath, docsetRoot);
+        createPList(docsetName, displayName, keyword, indexData.getDocsetIndexFile(), docsetRoot);
+        final BuildMetrics.Timer indexTimer = startStage("index");
+        try {
+            updateIndex(getDBDir(docsetRoot), removedValues, addedValues, batchSize);
+            updateFullTextIndex(docsetRoot, indexData);
+        } finally {
+            indexTimer.close();
+        }
+        writeManifest(current, docsetRoot);
+    }
+
+    private boolean canUpdatePackages(String docsetRoot) {
+        return getDocumentsDir(docsetRoot).isDirectory() && DBSupport.indexExists(getDBDir(docsetRoot));
+    }
+
+    private void updatePackages(String docsetRoot) throws BuilderException {
+        logVerbose("Updating packages {} in existing docset {}", changedPackages, docsetRoot);
+        final PackageFilter packages = new PackageFilter(changedPackages);
+        final IndexData indexData = findIndexFile(javadocRoot);
+
+        // Index files that never mention a package directory cannot hold rows for it, so they are not parsed
+        final List<File> indexFiles = new ArrayList<>();
+        try {
+            for (final File f : indexData.getFilesToIndex()) {
+                if (packages.isMentionedIn(f)) {
+                    indexFiles.add(f);
+                }
+            }
+        } catch (IOException e) {
+            throw new BuilderException("Failed to read javadoc index files", e);
+        }
+        logVerbose("Parsing {} of {} index files for packages {}", indexFiles.size(), indexData.getFilesToIndex().size(), packages);
+        final List<SearchIndexValue> addedValues;
+        final TableOfContents toc;
+        final BuildMetrics.Timer parseTimer = startStage("parse");
+        try {
+            addedValues = packages.filter(findSearchIndexValues(indexFiles, getParseOptions()));
+            toc = findTableOfContents(indexData);
+        } finally {
+            parseTimer.close();
+        }
+
+        final BuildMetrics.Timer copyTimer = startStage("copy");
+        try {
+            syncPackages(javadocRoot, docsetRoot, packages, indexFiles, copyStrategy, toc);
+        } finally {
+            copyTimer.close();
+        }
+        copyIconFile(iconFilePath, docsetRoot);
         createPList(docsetName, displayName, keyword, indexData.getDocsetIndexFile(), docsetRoot);
-        createIndex(findSearchIndexValues(indexData.getFilesToIndex()), getDBDir(docsetRoot));
-        log("Finished creating docset: {}", docsetRoot);
+        final BuildMetrics.Timer indexTimer = startStage("index");
+        try {
+            updatePackageIndex(getDBDir(docsetRoot), packages, addedValues, batchSize);
+            updateFullTextIndex(docsetRoot, indexData);
+        } finally {
+            indexTimer.close();
+        }
+        // The manifest no longer matches the docset, so the next incremental build starts from scratch
+        removeManifest(docsetRoot);
+    }
+
+    /**
+     * A changed page can get anchors for members listed in index files that did not change, so every index file is
+     * parsed. A parse cache keeps this cheap.
+     * @return Complete table of contents, or null if none is wanted
+     */
+    private TableOfContents findTableOfContents(IndexData indexData) throws BuilderException {
+        if (!tableOfContents) {
+            return null;
+        }
+        final TableOfContents toc = new TableOfContents();
+        findSearchIndexValues(indexData.getFilesToIndex(), getParseOptions(), toc);
+        toc.complete();
+        return toc;
+    }
+
+    private static void awaitTableOfContents(TableOfContents toc) throws BuilderException {
+        if (null != toc) {
+            toc.await();
+        }
+    }
+
+    /**
+     * The full text index is small next to the Javadoc, so after an update it is written again from every index file
+     * instead of being patched. A parse cache keeps this cheap.
+     */
+    private void updateFullTextIndex(String docsetRoot, IndexData indexData) throws BuilderException {
+        final String dbDir = getDBDir(docsetRoot);
+        if (!fullTextIndex) {
+            // Would no longer match the docset
+            FullTextSupport.removeIndex(dbDir);
+            return;
+        }
+        try (final FullTextSupport.FullTextWriter writer = FullTextSupport.openIndex(dbDir, batchSize)) {
+            findSearchIndexValues(indexData.getFilesToIndex(), getParseOptions().descriptions(true), writer);
+            writer.finish();
+        }
+    }
+
+    private DocsetManifest createManifest(DocsetManifest previous) throws BuilderException {
+        try {
+            return DocsetManifest.create(javadocRoot, previous);
+        } catch (IOException e) {
+            throw new BuilderException("Failed to create the docset manifest", e);
+        }
+    }
+
+    private static String relativePath(File rootDir, File f) {
+        return rootDir.toURI().relativize(f.toURI()).getPath();
+    }
+
+    private ParseOptions getParseOptions() {
+        return new ParseOptions().parseThreads(limitThreads(parseThreads)).parserStrategy(parserStrategy).parseCache(parseCache);
+    }
+
+    private static BuildMetrics.Timer startStage(String stageName) {
+        return BuildMetrics.current().startStage(stageName);
+    }
+
+    private void logParseCache() {
+        if (null != parseCache) {
+            logVerbose("Parse cache {}: {} hits, {} misses", parseCacheDir, parseCache.getHits(), parseCache.getMisses());
+        }
     }
 
     /**
@@ -166,6 +787,14 @@ public class DocsetCreator {
         return docsetName;
     }
 
+    /**
+     * Get the metrics of the last successful build
+     * @return Metrics, or null if no docset has been built yet
+     */
+    public BuildMetrics getMetrics() {
+        return metrics;
+    }
+
     /**
      * Get the display name
      * @return Display name
@@ -191,8 +820,8 @@ public class DocsetCreator {
     }
 
     /**
-     * Get the Javadoc root directory
-     * @return Javadoc directory
+     * Get the Javadoc root directory, or the Javadoc archive
+     * @return Javadoc directory or archive
      */
     public File getJavadocRoot() {
         return javadocRoot;
@@ -205,4 +834,136 @@ public class DocsetCreator {
     public File getOutputDirectory() {
         return outputDirectory;
     }
+
+    /**
+     * Limit the parser, copy and compression threads of the builds that follow.
+     * @param threadLimit Maximum number of threads of each kind, or {@link #NO_THREAD_LIMIT}
+     */
+    void setThreadLimit(int threadLimit) {
+        this.threadLimit = threadLimit;
+    }
+
+    private int limitThreads(int threads) {
+        return Math.min(threads, threadLimit);
+    }
+
+    /**
+     * Get the number of parser threads
+     * @return Parser thread count
+     */
+    public int getParseThreads() {
+        return parseThreads;
+    }
+
+    /**
+     * Get the number of rows written to the search index at once
+     * @return Batch size
+     */
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * Get the parser strategy
+     * @return Parser strategy
+     */
+    public ParserStrategy getParserStrategy() {
+        return parserStrategy;
+    }
+
+    /**
+     * Determine if an existing docset is updated in place
+     * @return True if incremental builds are enabled
+     */
+    public boolean isIncremental() {
+        return incremental;
+    }
+
+    /**
+     * Determine if a full text index is created
+     * @return True if a full text index is created
+     */
+    public boolean isFullTextIndex() {
+        return fullTextIndex;
+    }
+
+    /**
+     * Determine if table of contents anchors are added to the pages
+     * @return True if table of contents anchors are added
+     */
+    public boolean isTableOfContents() {
+        return tableOfContents;
+    }
+
+    /**
+     * Get the copy strategy
+     * @return Copy strategy
+     */
+    public CopyStrategy getCopyStrategy() {
+        return copyStrategy;
+    }
+
+    /**
+     * Get the number of copy threads
+     * @return Copy thread count
+     */
+    public int getCopyThreads() {
+        return copyThreads;
+    }
+
+    /**
+     * Get the output format
+     * @return Output format
+     */
+    public OutputFormat getOutputFormat() {
+        return outputFormat;
+    }
+
+    /**
+     * Get the archive file
+     * @return Archive file, or null if the default location is used
+     */
+    public File getArchiveFile() {
+        return archiveFile;
+    }
+
+    /**
+     * Get the compression level
+     * @return Compression level
+     */
+    public int getCompressionLevel() {
+        return compressionLevel;
+    }
+
+    /**
+     * Get the compression block size
+     * @return Compression block size in KiB
+     */
+    public int getCompressionBlockSize() {
+        return compressionBlockSize;
+    }
+
+    /**
+     * Get the number of compression threads
+     * @return Compression thread count
+     */
+    public int getCompressThreads() {
+        return compressThreads;
+    }
+
+    /**
+     * Get the packages that changed since the docset was built
+     * @return Package names, empty for a full build
+     */
+    public Set<String> getChangedPackages() {
+        return changedPackages;
+    }
+
+    /**
+     * Get the parse cache directory
+     * @return Parse cache directory, or null if index files are always parsed
+     */
+    public File getParseCacheDir() {
+        return parseCacheDir;
+    }
 }
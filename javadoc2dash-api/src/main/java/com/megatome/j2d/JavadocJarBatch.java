@@ -0,0 +1,514 @@
+/**
+ * Copyright 2015 Megatome Technologies, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.megatome.j2d;
+
+import com.megatome.j2d.exception.BuilderException;
+import com.megatome.j2d.support.OutputFormat;
+import com.megatome.j2d.support.ParserStrategy;
+import com.megatome.j2d.util.DocsetManifest;
+import com.megatome.j2d.util.JavadocJar;
+import com.megatome.j2d.util.LogContext;
+import org.slf4j.Logger;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import static com.megatome.j2d.support.DocSetSupport.createFeed;
+import static com.megatome.j2d.util.LogUtility.getContext;
+import static com.megatome.j2d.util.LogUtility.log;
+import static com.megatome.j2d.util.LogUtility.logVerbose;
+import static com.megatome.j2d.util.LogUtility.setContext;
+
+/**
+ * Class responsible for creating a docset for each of many <code>-javadoc.jar</code> artifacts, such as the Javadoc
+ * of every library a project depends on. Each docset is written as a <code>.tgz</code> archive with a Dash feed next
+ * to it, and the docsets are built on a bounded pool of build threads by a {@link DocsetBatch}. The Javadoc is read
+ * straight from each jar.
+ * <p>
+ * A small marker file next to each archive records the coordinates and checksum of the jar it was built from, and the
+ * options that affect its content. A jar that still matches its marker is skipped, so only new and changed artifacts
+ * are built again.
+ */
+public class JavadocJarBatch {
+    private static final String MARKER_EXTENSION = ".j2d";
+    private static final String COORDINATES = "coordinates";
+    private static final String CHECKSUM = "checksum";
+    private static final String OPTIONS = "options";
+
+    private final Map<JavadocJar, String> docsetNames;
+    private final File outputDirectory;
+    private final List<String> feedLocations;
+    private final int buildThreads;
+    private final int parseThreads;
+    private final int copyThreads;
+    private final ParserStrategy parserStrategy;
+    private final File parseCacheDir;
+    private final boolean fullTextIndex;
+    private final boolean tableOfContents;
+    private final int compressionLevel;
+    private final int compressionBlockSize;
+    private final int compressThreads;
+
+    /**
+     * Builder for specifying the Javadoc jars and options used to create the docsets
+     */
+    public static class Builder {
+        private final List<JavadocJar> javadocJars = new ArrayList<>();
+        private File outputDirectory = new File(".");
+        private List<String> feedLocations = Collections.emptyList();
+        private int buildThreads = Runtime.getRuntime().availableProcessors();
+        private int parseThreads = 1;
+        private int copyThreads = 1;
+        private ParserStrategy parserStrategy = ParserStrategy.DOM;
+        private File parseCacheDir = null;
+        private boolean fullTextIndex = false;
+        private boolean tableOfContents = false;
+        private int compressionLevel = 6;
+        private int compressionBlockSize = 128;
+        private int compressThreads = 1;
+
+        /**
+         * Add a Javadoc jar to the batch. A jar that is already in the batch is ignored.
+         * @param javadocJar Javadoc jar
+         * @return Builder instance
+         */
+        public Builder javadocJar(JavadocJar javadocJar) {
+            if (null != javadocJar && !javadocJars.contains(javadocJar)) {
+                javadocJars.add(javadocJar);
+            }
+            return this;
+        }
+
+        /**
+         * Add every <code>-javadoc.jar</code> in a directory to the batch, such as a directory that Maven copied the
+         * Javadoc of all dependencies into. The coordinates are taken from the file names.
+         * @param directory Directory holding the jars
+         * @return Builder instance
+         */
+        public Builder javadocJarDirectory(File directory) {
+            final File[] files = null != directory ? directory.listFiles() : null;
+            if (null == files) {
+                throw new IllegalArgumentException(String.format("%s is not a directory", directory));
+            }
+            Arrays.sort(files);
+            for (final File f : files) {
+                if (f.isFile() && JavadocJar.isJavadocJar(f)) {
+                    javadocJar(JavadocJar.fromFile(f));
+                }
+            }
+            return this;
+        }
+
+        /**
+         * Specify the output directory
+         * @param outputDirectory Location for the docset archives, feeds and markers
+         * @return Builder instance
+         */
+        public Builder outputDirectory(File outputDirectory) {
+            if (null != outputDirectory) {
+                this.outputDirectory = outputDirectory;
+            }
+            return this;
+        }
+
+        /**
+         * Specify the locations the docset archives are published at
+         * @param feedLocations Base URLs written into each feed. Feeds have no URLs if unspecified.
+         * @return Builder instance
+         */
+        public Builder feedLocations(List<String> feedLocations) {
+            if (null != feedLocations) {
+                this.feedLocations = new ArrayList<>(feedLocations);
+            }
+            return this;
+        }
+
+        /**
+         * Specify the number of docsets to build at the same time
+         * @param buildThreads Number of build threads. Defaults to the number of available processors if unspecified.
+         * @return Builder instance
+         */
+        public Builder buildThreads(int buildThreads) {
+            if (buildThreads > 0) {
+                this.buildThreads = buildThreads;
+            }
+            return this;
+        }
+
+        /**
+         * Specify the number of Javadoc index files of a docset to parse at the same time
+         * @param parseThreads Number of parser threads. Defaults to 1 if unspecified, since docsets are already built
+         *                     in parallel.
+         * @return Builder instance
+         */
+        public Builder parseThreads(int parseThreads) {
+            if (parseThreads > 0) {
+                this.parseThreads = parseThreads;
+            }
+            return this;
+        }
+
+        /**
+         * Specify the number of Javadoc files of a docset to copy at the same time
+         * @param copyThreads Number of copy threads. Defaults to 1 if unspecified, since docsets are already built in
+         *                    parallel.
+         * @return Builder instance
+         */
+        public Builder copyThreads(int copyThreads) {
+            if (copyThreads > 0) {
+                this.copyThreads = copyThreads;
+            }
+            return this;
+        }
+
+        /**
+         * Specify how Javadoc index files are parsed
+         * @param parserStrategy Parser to use. Defaults to {@link ParserStrategy#DOM} if unspecified.
+         * @return Builder instance
+         */
+        public Builder parserStrategy(ParserStrategy parserStrategy) {
+            if (null != parserStrategy) {
+                this.parserStrategy = parserStrategy;
+            }
+            return this;
+        }
+
+        /**
+         * Specify a directory to cache parsed index files in
+         * @param parseCacheDir Cache directory. Index files are always parsed if unspecified.
+         * @return Builder instance
+         */
+        public Builder parseCacheDir(File parseCacheDir) {
+            if (null != parseCacheDir) {
+                this.parseCacheDir = parseCacheDir;
+            }
+            return this;
+        }
+
+        /**
+         * Specify whether each docset gets a full text index of the entry descriptions
+         * @param fullTextIndex True to build the full text index. Defaults to false if unspecified.
+         * @return Builder instance
+         */
+        public Builder fullTextIndex(boolean fullTextIndex) {
+            this.fullTextIndex = fullTextIndex;
+            return this;
+        }
+
+        /**
+         * Specify whether table of contents anchors are added to the pages of each docset
+         * @param tableOfContents True to add the anchors. Defaults to false if unspecified.
+         * @return Builder instance
+         */
+        public Builder tableOfContents(boolean tableOfContents) {
+            this.tableOfContents = tableOfContents;
+            return this;
+        }
+
+        /**
+         * Specify the compression level of the archives
+         * @param compressionLevel Level from 0 to 9. Defaults to 6 if unspecified.
+         * @return Builder instance
+         */
+        public Builder compressionLevel(int compressionLevel) {
+            if (compressionLevel >= 0 && compressionLevel <= 9) {
+                this.compressionLevel = compressionLevel;
+            }
+            return this;
+        }
+
+        /**
+         * Specify the size of the blocks each archive is compressed in
+         * @param compressionBlockSize Block size in KiB, at least 32. Defaults to 128 if unspecified.
+         * @return Builder instance
+         */
+        public Builder compressionBlockSize(int compressionBlockSize) {
+            if (compressionBlockSize >= 32) {
+                this.compressionBlockSize = compressionBlockSize;
+            }
+            return this;
+        }
+
+        /**
+         * Specify the number of blocks of an archive to compress at the same time
+         * @param compressThreads Number of compression threads. Defaults to 1 if unspecified, since docsets are
+         *                        already built in parallel.
+         * @return Builder instance
+         */
+        public Builder compressThreads(int compressThreads) {
+            if (compressThreads > 0) {
+                this.compressThreads = compressThreads;
+            }
+            return this;
+        }
+
+        public JavadocJarBatch build() {
+            return new JavadocJarBatch(this);
+        }
+    }
+
+    private JavadocJarBatch(Builder builder) {
+        this.docsetNames = Collections.unmodifiableMap(findDocsetNames(builder.javadocJars));
+        this.outputDirectory = builder.outputDirectory;
+        this.feedLocations = Collections.unmodifiableList(builder.feedLocations);
+        this.buildThreads = builder.buildThreads;
+        this.parseThreads = builder.parseThreads;
+        this.copyThreads = builder.copyThreads;
+        this.parserStrategy = builder.parserStrategy;
+        this.parseCacheDir = builder.parseCacheDir;
+        this.fullTextIndex = builder.fullTextIndex;
+        this.tableOfContents = builder.tableOfContents;
+        this.compressionLevel = builder.compressionLevel;
+        this.compressionBlockSize = builder.compressionBlockSize;
+        this.compressThreads = builder.compressThreads;
+    }
+
+    /**
+     * Docsets are named after the library, so that a new version replaces the docset of the old one. Libraries that
+     * share a name are told apart by their group.
+     */
+    private static Map<JavadocJar, String> findDocsetNames(List<JavadocJar> javadocJars) {
+        final Map<String, Integer> nameCounts = new HashMap<>();
+        for (final JavadocJar javadocJar : javadocJars) {
+            final Integer count = nameCounts.get(javadocJar.getName());
+            nameCounts.put(javadocJar.getName(), null != count ? count + 1 : 1);
+        }
+        final Map<JavadocJar, String> docsetNames = new LinkedHashMap<>();
+        final Map<String, JavadocJar> namedJars = new HashMap<>();
+        for (final JavadocJar javadocJar : javadocJars) {
+            String docsetName = javadocJar.getName();
+            if (nameCounts.get(docsetName) > 1 && null != javadocJar.getGroup()) {
+                docsetName = javadocJar.getGroup() + "." + docsetName;
+            }
+            final JavadocJar other = namedJars.put(docsetName, javadocJar);
+            if (null != other) {
+                throw new IllegalArgumentException(String.format("%s and %s would both create the docset %s", other, javadocJar, docsetName));
+            }
+            docsetNames.put(javadocJar, docsetName);
+        }
+        return docsetNames;
+    }
+
+    /**
+     * Build the docsets of all jars that are not up to date. A failed docset does not stop the others from being
+     * built. The feed and marker of a docset are written once it is built.
+     * @param logger Optional logger to be used during docset creation. If not specified all messages will be directed
+     *               to the console.
+     * @throws BuilderException If any docset could not be created
+     */
+    public void makeDocsets(Logger logger) throws BuilderException {
+        final LogContext current = getContext();
+        final LogContext previous = setContext(new LogContext(null != logger ? logger : current.getLogger(),
+                current.isVerbose(), current.getName()));
+        try {
+            final Map<DocsetCreator, JavadocJar> creators = new LinkedHashMap<>();
+            final Map<JavadocJar, String> checksums = new HashMap<>();
+            for (final JavadocJar javadocJar : docsetNames.keySet()) {
+                final String checksum = getChecksum(javadocJar);
+                if (isUpToDate(javadocJar, checksum)) {
+                    logVerbose("{} is up to date", javadocJar);
+                    continue;
+                }
+                checksums.put(javadocJar, checksum);
+                creators.put(createCreator(javadocJar), javadocJar);
+            }
+            log("{} of {} docsets are up to date", docsetNames.size() - creators.size(), docsetNames.size());
+
+            final DocsetBatch.Builder batchBuilder = new DocsetBatch.Builder().buildThreads(buildThreads);
+            for (final DocsetCreator creator : creators.keySet()) {
+                batchBuilder.add(creator);
+            }
+            BuilderException failure = null;
+            try {
+                batchBuilder.build().makeDocsets();
+            } catch (BuilderException e) {
+                failure = e;
+            }
+            for (final Map.Entry<DocsetCreator, JavadocJar> built : creators.entrySet()) {
+                // Only builds that succeeded have metrics
+                if (null != built.getKey().getMetrics()) {
+                    final JavadocJar javadocJar = built.getValue();
+                    createFeed(getDocsetName(javadocJar), getFeedVersion(javadocJar, checksums.get(javadocJar)), feedLocations,
+                            getArchiveFile(javadocJar).getName(), outputDirectory);
+                    writeMarker(javadocJar, checksums.get(javadocJar));
+                }
+            }
+            if (null != failure) {
+                throw failure;
+            }
+        } finally {
+            setContext(previous);
+        }
+    }
+
+    /**
+     * Build the docsets of all jars that are not up to date.
+     * @throws BuilderException If any docset could not be created
+     */
+    public void makeDocsets() throws BuilderException {
+        makeDocsets(null);
+    }
+
+    /**
+     * Determine if the docset of a jar was built from the same jar, with the same options, and still exists.
+     * @param javadocJar Javadoc jar in this batch
+     * @return True if the docset does not need to be built
+     * @throws BuilderException If the jar or its marker could not be read
+     */
+    public boolean isUpToDate(JavadocJar javadocJar) throws BuilderException {
+        return isUpToDate(javadocJar, getChecksum(javadocJar));
+    }
+
+    private boolean isUpToDate(JavadocJar javadocJar, String checksum) throws BuilderException {
+        final File markerFile = getMarkerFile(javadocJar);
+        if (!markerFile.isFile() || !getArchiveFile(javadocJar).isFile() || !getFeedFile(javadocJar).isFile()) {
+            return false;
+        }
+        final Properties marker = new Properties();
+        try (final InputStream in = new FileInputStream(markerFile)) {
+            marker.load(in);
+        } catch (IOException e) {
+            throw new BuilderException(String.format("Failed to read %s", markerFile), e);
+        }
+        return javadocJar.getCoordinates().equals(marker.getProperty(COORDINATES)) &&
+                checksum.equals(marker.getProperty(CHECKSUM)) && getOptions().equals(marker.getProperty(OPTIONS));
+    }
+
+    private void writeMarker(JavadocJar javadocJar, String checksum) throws BuilderException {
+        final Properties marker = new Properties();
+        marker.setProperty(COORDINATES, javadocJar.getCoordinates());
+        marker.setProperty(CHECKSUM, checksum);
+        marker.setProperty(OPTIONS, getOptions());
+        try (final OutputStream out = new FileOutputStream(getMarkerFile(javadocJar))) {
+            marker.store(out, null);
+        } catch (IOException e) {
+            throw new BuilderException(String.format("Failed to write %s", getMarkerFile(javadocJar)), e);
+        }
+    }
+
+    /**
+     * @return The options that change the content of a docset or its feed
+     */
+    private String getOptions() {
+        return parserStrategy + "/" + fullTextIndex + "/" + tableOfContents + "/" + feedLocations;
+    }
+
+    private static String getChecksum(JavadocJar javadocJar) throws BuilderException {
+        try {
+            return DocsetManifest.hash(javadocJar.getFile());
+        } catch (IOException e) {
+            throw new BuilderException(String.format("Failed to read %s", javadocJar.getFile()), e);
+        }
+    }
+
+    /**
+     * Dash updates a docset when the version in its feed changes, so a jar without a version uses its checksum.
+     */
+    private static String getFeedVersion(JavadocJar javadocJar, String checksum) {
+        return null != javadocJar.getVersion() ? javadocJar.getVersion() : checksum.substring(0, 12);
+    }
+
+    private DocsetCreator createCreator(JavadocJar javadocJar) {
+        final String docsetName = getDocsetName(javadocJar);
+        return new DocsetCreator.Builder(docsetName, javadocJar.getFile())
+                .displayName(null != javadocJar.getVersion() ? docsetName + " " + javadocJar.getVersion() : docsetName)
+                .keyword(javadocJar.getName())
+                .outputDirectory(outputDirectory)
+                .outputFormat(OutputFormat.TGZ)
+                .archiveFile(getArchiveFile(javadocJar))
+                .parseThreads(parseThreads)
+                .copyThreads(copyThreads)
+                .parserStrategy(parserStrategy)
+                .parseCacheDir(parseCacheDir)
+                .fullTextIndex(fullTextIndex)
+                .tableOfContents(tableOfContents)
+                .compressionLevel(compressionLevel)
+                .compressionBlockSize(compressionBlockSize)
+                .compressThreads(compressThreads)
+                .build();
+    }
+
+    /**
+     * Get the Javadoc jars in the batch
+     * @return Javadoc jars, in the order they were added
+     */
+    public List<JavadocJar> getJavadocJars() {
+        return new ArrayList<>(docsetNames.keySet());
+    }
+
+    /**
+     * Get the name of the docset created for a jar
+     * @param javadocJar Javadoc jar in this batch
+     * @return Docset name
+     */
+    public String getDocsetName(JavadocJar javadocJar) {
+        final String docsetName = docsetNames.get(javadocJar);
+        if (null == docsetName) {
+            throw new IllegalArgumentException(String.format("%s is not in this batch", javadocJar));
+        }
+        return docsetName;
+    }
+
+    /**
+     * Get the docset archive created for a jar
+     * @param javadocJar Javadoc jar in this batch
+     * @return Archive file
+     */
+    public File getArchiveFile(JavadocJar javadocJar) {
+        return new File(outputDirectory, getDocsetName(javadocJar) + "." + OutputFormat.TGZ.getExtension());
+    }
+
+    /**
+     * Get the feed created for a jar
+     * @param javadocJar Javadoc jar in this batch
+     * @return Feed file
+     */
+    public File getFeedFile(JavadocJar javadocJar) {
+        return new File(outputDirectory, getDocsetName(javadocJar) + ".xml");
+    }
+
+    private File getMarkerFile(JavadocJar javadocJar) {
+        return new File(outputDirectory, getDocsetName(javadocJar) + MARKER_EXTENSION);
+    }
+
+    /**
+     * Get the output directory
+     * @return Output directory
+     */
+    public File getOutputDirectory() {
+        return outputDirectory;
+    }
+
+    /**
+     * Get the number of build threads
+     * @return Build thread count
+     */
+    public int getBuildThreads() {
+        return buildThreads;
+    }
+}
@@ -0,0 +1,44 @@
+/**
+ * Copyright 2015 Megatome Technologies, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.megatome.j2d.support;
+
+/**
+ * Strategies for putting the Javadoc files into the docset
+ */
+public enum CopyStrategy {
+    /**
+     * Read and write every file into the docset.
+     */
+    COPY,
+    /**
+     * Create a hard link in the docset for each file. Only works when the Javadoc and the docset are on the same
+     * filesystem; files that cannot be linked are copied instead. Linked files share their content with the Javadoc,
+     * so regenerating the Javadoc in place will also change the docset. The index pages are always copied, since an
+     * incremental build compares them with the new ones.
+     */
+    HARD_LINK,
+    /**
+     * Create copy-on-write clones of the files where the filesystem supports them (Btrfs, XFS, APFS), cloning the
+     * whole tree with one system <code>cp</code> command. Falls back to {@link #COPY} when clones cannot be made, and
+     * for the files an incremental build copies one at a time.
+     */
+    REFLINK,
+    /**
+     * Copy each file with {@link java.nio.channels.FileChannel#transferTo}, which lets the operating system move the
+     * bytes without passing them through the JVM heap.
+     */
+    TRANSFER
+}
@@ -16,10 +16,17 @@
 package com.megatome.j2d.support;
 
 import com.megatome.j2d.exception.BuilderException;
+import com.megatome.j2d.util.BuildMetrics;
+import com.megatome.j2d.util.SearchIndexTable;
 import com.megatome.j2d.util.SearchIndexValue;
 
+import java.io.File;
 import java.sql.*;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.RandomAccess;
+import java.util.Set;
 
 import static com.megatome.j2d.util.LogUtility.logVerbose;
 import static org.apache.commons.io.FilenameUtils.concat;
@@ -28,12 +35,38 @@ import static org.apache.commons.io.FilenameUtils.concat;
  * Utility class for SQLite DB manipulation of the docset.
  */
 public final class DBSupport {
-    private static final String DB_FILE = "docSet.dsidx";
+    static final String DB_FILE = "docSet.dsidx";
+
+    /**
+     * Number of rows sent to SQLite in a single JDBC batch if no batch size is specified.
+     */
+    public static final int DEFAULT_BATCH_SIZE = 1000;
 
     private DBSupport() {}
 
+    // The DB is always created from scratch, so nothing needs to survive a crash during the load. page_size only has
+    // an effect before the first table is created.
+    static final String[] BULK_LOAD_PRAGMAS = {
+            "PRAGMA page_size = 4096",
+            "PRAGMA journal_mode = MEMORY",
+            "PRAGMA synchronous = OFF"
+    };
     private static final String CREATE_INDEX_SQL = "CREATE TABLE searchIndex(id INTEGER PRIMARY KEY, name TEXT, type TEXT, path TEXT)";
-    private static final String INSERT_INDEX_SQL = "INSERT INTO searchIndex(name, type, path) VALUES (?, ?, ?)";
+    // Rows are collected in a temp table first, so they can be deduplicated and sorted by SQLite, which spills to
+    // temp files for docsets that do not fit in memory
+    private static final String CREATE_STAGING_SQL = "CREATE TEMP TABLE staging(name TEXT, type TEXT, path TEXT)";
+    private static final String INSERT_STAGING_SQL = "INSERT INTO staging(name, type, path) VALUES (?, ?, ?)";
+    private static final String COPY_STAGING_SQL = "INSERT INTO searchIndex(name, type, path) SELECT DISTINCT name, type, path FROM staging ORDER BY name COLLATE NOCASE, name, type, path";
+    private static final String DROP_STAGING_SQL = "DROP TABLE staging";
+    private static final String CREATE_UNIQUE_INDEX_SQL = "CREATE UNIQUE INDEX IF NOT EXISTS anon ON searchIndex (name, type, path)";
+    // Dash matches names with LIKE, which ignores case, so only an index that ignores case can serve prefix lookups
+    private static final String CREATE_NAME_INDEX_SQL = "CREATE INDEX IF NOT EXISTS searchIndexName ON searchIndex (name COLLATE NOCASE, type)";
+    private static final String ANALYZE_SQL = "ANALYZE";
+    private static final String VACUUM_SQL = "VACUUM";
+    private static final String DELETE_INDEX_SQL = "DELETE FROM searchIndex WHERE name = ? AND type = ? AND path = ?";
+    private static final String FIND_PATHS_SQL = "SELECT id, path FROM searchIndex WHERE instr(path, ?) > 0";
+    private static final String DELETE_ID_SQL = "DELETE FROM searchIndex WHERE id = ?";
+    private static final String INSERT_OR_IGNORE_INDEX_SQL = "INSERT OR IGNORE INTO searchIndex(name, type, path) VALUES (?, ?, ?)";
 
     /**
      * Create a new DB file, and insert all of the specified index values.
@@ -42,24 +75,406 @@ public final class DBSupport {
      * @throws BuilderException
      */
     public static void createIndex(List<SearchIndexValue> indexValues, String dbFileDir) throws BuilderException {
+        createIndex(indexValues, dbFileDir, DEFAULT_BATCH_SIZE);
+    }
+
+    /**
+     * Create a new DB file, and insert all of the specified index values. All rows are inserted in a single
+     * transaction, <code>batchSize</code> rows at a time. The unique index Dash expects is created once all rows are
+     * in, and duplicate rows are dropped before it is built.
+     * @param indexValues Index values to insert into the DB
+     * @param dbFileDir Directory to create the DB file in.
+     * @param batchSize Number of rows to send to SQLite at once
+     * @throws BuilderException
+     */
+    public static void createIndex(List<SearchIndexValue> indexValues, String dbFileDir, int batchSize) throws BuilderException {
+        try (final IndexWriter writer = openIndex(dbFileDir, batchSize)) {
+            writer.accept(indexValues);
+            writer.finish();
+        }
+    }
+
+    /**
+     * Create a new DB file, and insert all rows of the specified table. Rows are read straight from the table, without
+     * creating a value object for each of them.
+     * @param indexValues Index values to insert into the DB
+     * @param dbFileDir Directory to create the DB file in.
+     * @param batchSize Number of rows to send to SQLite at once
+     * @throws BuilderException
+     */
+    public static void createIndex(SearchIndexTable indexValues, String dbFileDir, int batchSize) throws BuilderException {
+        try (final IndexWriter writer = openIndex(dbFileDir, batchSize)) {
+            writer.accept(indexValues);
+            writer.finish();
+        }
+    }
+
+    /**
+     * Determine if a DB file exists in the specified directory.
+     * @param dbFileDir Directory containing the DB file
+     * @return True if the DB file exists
+     */
+    public static boolean indexExists(String dbFileDir) {
+        return new File(concat(dbFileDir, DB_FILE)).isFile();
+    }
+
+    /**
+     * Update an existing DB file. Rows matching <code>removedValues</code> are deleted and <code>addedValues</code>
+     * are inserted, all in a single transaction. Added values that are already in the DB are skipped.
+     * @param dbFileDir Directory containing the DB file
+     * @param removedValues Index values to delete from the DB
+     * @param addedValues Index values to insert into the DB
+     * @param batchSize Number of rows to send to SQLite at once
+     * @throws BuilderException
+     */
+    public static void updateIndex(String dbFileDir, List<SearchIndexValue> removedValues, List<SearchIndexValue> addedValues, int batchSize) throws BuilderException {
+        updateIndex(dbFileDir, IndexRows.of(removedValues), IndexRows.of(addedValues), batchSize);
+    }
+
+    /**
+     * Update an existing DB file. Rows matching <code>removedValues</code> are deleted and <code>addedValues</code>
+     * are inserted, all in a single transaction. Added values that are already in the DB are skipped.
+     * @param dbFileDir Directory containing the DB file
+     * @param removedValues Index values to delete from the DB
+     * @param addedValues Index values to insert into the DB
+     * @param batchSize Number of rows to send to SQLite at once
+     * @throws BuilderException
+     */
+    public static void updateIndex(String dbFileDir, SearchIndexTable removedValues, SearchIndexTable addedValues, int batchSize) throws BuilderException {
+        updateIndex(dbFileDir, IndexRows.of(removedValues), IndexRows.of(addedValues), batchSize);
+    }
 
+    private static void updateIndex(String dbFileDir, IndexRows removedValues, IndexRows addedValues, int batchSize) throws BuilderException {
+        if (!indexExists(dbFileDir)) {
+            throw new BuilderException(String.format("No search index exists in %s", dbFileDir));
+        }
+        final long start = System.nanoTime();
+        final String dbFile = concat(dbFileDir, DB_FILE);
+        try (final Connection connection = DriverManager.getConnection("jdbc:sqlite:" + dbFile)) {
+            connection.setAutoCommit(false);
+            try (final PreparedStatement delete = connection.prepareStatement(DELETE_INDEX_SQL);
+                 final PreparedStatement insert = connection.prepareStatement(INSERT_OR_IGNORE_INDEX_SQL)) {
+                executeBatched(delete, removedValues, Math.max(1, batchSize));
+                executeBatched(insert, addedValues, Math.max(1, batchSize));
+                connection.commit();
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            }
+            optimize(connection, removedValues.size() > 0);
+        } catch (SQLException e) {
+            throw new BuilderException("Error writing to SQLite DB", e);
+        }
+        BuildMetrics.current().addInserted(addedValues.size(), System.nanoTime() - start);
+        logVerbose("Updated the SQLite search index: {} rows removed, {} rows added", removedValues.size(), addedValues.size());
+    }
+
+    /**
+     * Replace the rows of some packages in an existing DB file. Every row whose path points into one of the packages
+     * is deleted and <code>addedValues</code> are inserted, all in a single transaction.
+     * @param dbFileDir Directory containing the DB file
+     * @param packages Packages to replace the rows of
+     * @param addedValues Index values to insert into the DB
+     * @param batchSize Number of rows to send to SQLite at once
+     * @throws BuilderException
+     */
+    public static void updatePackageIndex(String dbFileDir, PackageFilter packages, List<SearchIndexValue> addedValues, int batchSize) throws BuilderException {
+        if (!indexExists(dbFileDir)) {
+            throw new BuilderException(String.format("No search index exists in %s", dbFileDir));
+        }
+        final long start = System.nanoTime();
         final String dbFile = concat(dbFileDir, DB_FILE);
-        // Create DB file
-        try (final Connection connection = DriverManager.getConnection("jdbc:sqlite:" + dbFile);
-             final Statement stmt = connection.createStatement()){
-            stmt.execute(CREATE_INDEX_SQL);
-            // Update DB
-            try (final PreparedStatement pst = connection.prepareStatement(INSERT_INDEX_SQL)) {
-                for (final SearchIndexValue value : indexValues) {
-                    pst.setString(1, value.getName());
-                    pst.setString(2, value.getType().getTypeName());
-                    pst.setString(3, value.getPath());
-                    pst.execute();
+        int removed = 0;
+        try (final Connection connection = DriverManager.getConnection("jdbc:sqlite:" + dbFile)) {
+            connection.setAutoCommit(false);
+            try (final PreparedStatement find = connection.prepareStatement(FIND_PATHS_SQL);
+                 final PreparedStatement delete = connection.prepareStatement(DELETE_ID_SQL);
+                 final PreparedStatement insert = connection.prepareStatement(INSERT_OR_IGNORE_INDEX_SQL)) {
+                // instr only narrows the rows down, the filter decides which ones really belong to a package
+                final Set<Long> ids = new LinkedHashSet<>();
+                for (final String packagePath : packages.getPackagePaths()) {
+                    find.setString(1, packagePath + "/");
+                    try (final ResultSet rs = find.executeQuery()) {
+                        while (rs.next()) {
+                            if (packages.matches(rs.getString(2))) {
+                                ids.add(rs.getLong(1));
+                            }
+                        }
+                    }
+                }
+                int pending = 0;
+                for (final Long id : ids) {
+                    delete.setLong(1, id);
+                    delete.addBatch();
+                    if (++pending == Math.max(1, batchSize)) {
+                        delete.executeBatch();
+                        pending = 0;
+                    }
                 }
+                if (pending > 0) {
+                    delete.executeBatch();
+                }
+                removed = ids.size();
+                executeBatched(insert, IndexRows.of(addedValues), Math.max(1, batchSize));
+                connection.commit();
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
             }
+            optimize(connection, removed > 0);
         } catch (SQLException e) {
             throw new BuilderException("Error writing to SQLite DB", e);
         }
-        logVerbose("Created the SQLite search index");
+        BuildMetrics.current().addInserted(addedValues.size(), System.nanoTime() - start);
+        logVerbose("Updated the SQLite search index for packages {}: {} rows removed, {} rows added", packages, removed, addedValues.size());
+    }
+
+    /**
+     * Bring the lookup indexes and the query planner statistics of an updated DB up to date. Docsets built before the
+     * name index existed get it here.
+     * @param connection Connection to the DB. Left in auto-commit mode, as VACUUM cannot run inside a transaction.
+     * @param vacuum True to give the space of deleted rows back
+     */
+    private static void optimize(Connection connection, boolean vacuum) throws SQLException {
+        connection.setAutoCommit(true);
+        try (final Statement stmt = connection.createStatement()) {
+            stmt.execute(CREATE_UNIQUE_INDEX_SQL);
+            stmt.execute(CREATE_NAME_INDEX_SQL);
+            stmt.execute(ANALYZE_SQL);
+            if (vacuum) {
+                stmt.execute(VACUUM_SQL);
+            }
+        }
+    }
+
+    private static void executeBatched(PreparedStatement pst, IndexRows values, int batchSize) throws SQLException {
+        int pending = 0;
+        for (int row = 0; row < values.size(); row++) {
+            pst.setString(1, values.getName(row));
+            pst.setString(2, values.getType(row).getTypeName());
+            pst.setString(3, values.getPath(row));
+            pst.addBatch();
+            if (++pending == batchSize) {
+                pst.executeBatch();
+                pending = 0;
+            }
+        }
+        if (pending > 0) {
+            pst.executeBatch();
+        }
+    }
+
+    /**
+     * Row by row access to index values, whether they are held as value objects or in a table.
+     */
+    private abstract static class IndexRows {
+        abstract int size();
+
+        abstract String getName(int row);
+
+        abstract MatchType getType(int row);
+
+        abstract String getPath(int row);
+
+        static IndexRows of(List<SearchIndexValue> values) {
+            final List<SearchIndexValue> list = values instanceof RandomAccess ? values : new ArrayList<>(values);
+            return new IndexRows() {
+                @Override
+                int size() {
+                    return list.size();
+                }
+
+                @Override
+                String getName(int row) {
+                    return list.get(row).getName();
+                }
+
+                @Override
+                MatchType getType(int row) {
+                    return list.get(row).getType();
+                }
+
+                @Override
+                String getPath(int row) {
+                    return list.get(row).getPath();
+                }
+            };
+        }
+
+        static IndexRows of(final SearchIndexTable table) {
+            return new IndexRows() {
+                @Override
+                int size() {
+                    return table.size();
+                }
+
+                @Override
+                String getName(int row) {
+                    return table.getName(row);
+                }
+
+                @Override
+                MatchType getType(int row) {
+                    return table.getType(row);
+                }
+
+                @Override
+                String getPath(int row) {
+                    return table.getPath(row);
+                }
+            };
+        }
+    }
+
+    /**
+     * Create a new DB file and return a writer that index values can be added to as they become available. Any
+     * existing DB file in the directory is replaced. Nothing is visible in the DB until {@link IndexWriter#finish()}
+     * is called.
+     * @param dbFileDir Directory to create the DB file in.
+     * @param batchSize Number of rows to send to SQLite at once
+     * @return Writer for the new DB. Must be closed by the caller.
+     * @throws BuilderException
+     */
+    public static IndexWriter openIndex(String dbFileDir, int batchSize) throws BuilderException {
+        final File dbFile = new File(concat(dbFileDir, DB_FILE));
+        if (dbFile.exists() && !dbFile.delete()) {
+            throw new BuilderException(String.format("Failed to remove the existing DB %s", dbFile));
+        }
+        return new IndexWriter(dbFile.getPath(), Math.max(1, batchSize));
+    }
+
+    /**
+     * Writes index values into a new DB file inside a single transaction. A writer must only be used from one thread
+     * at a time.
+     */
+    public static final class IndexWriter implements SearchIndexConsumer, AutoCloseable {
+        private final Connection connection;
+        private final PreparedStatement insert;
+        private final int batchSize;
+        private int pending = 0;
+        private boolean finished = false;
+        private long rows = 0;
+        private long writeNanos = 0;
+
+        private IndexWriter(String dbFile, int batchSize) throws BuilderException {
+            this.batchSize = batchSize;
+            Connection conn = null;
+            try {
+                // Create DB file
+                conn = DriverManager.getConnection("jdbc:sqlite:" + dbFile);
+                try (final Statement stmt = conn.createStatement()) {
+                    for (final String pragma : BULK_LOAD_PRAGMAS) {
+                        stmt.execute(pragma);
+                    }
+                    conn.setAutoCommit(false);
+                    stmt.execute(CREATE_INDEX_SQL);
+                    stmt.execute(CREATE_STAGING_SQL);
+                }
+                this.insert = conn.prepareStatement(INSERT_STAGING_SQL);
+                this.connection = conn;
+            } catch (SQLException e) {
+                closeQuietly(conn);
+                throw new BuilderException("Error writing to SQLite DB", e);
+            }
+        }
+
+        /**
+         * Add index values to the DB.
+         * @param values Index values to insert
+         * @throws BuilderException
+         */
+        @Override
+        public void accept(List<SearchIndexValue> values) throws BuilderException {
+            write(IndexRows.of(values));
+        }
+
+        /**
+         * Add the rows of a table to the DB.
+         * @param values Index values to insert
+         * @throws BuilderException
+         */
+        public void accept(SearchIndexTable values) throws BuilderException {
+            write(IndexRows.of(values));
+        }
+
+        private void write(IndexRows values) throws BuilderException {
+            final long start = System.nanoTime();
+            try {
+                for (int row = 0; row < values.size(); row++) {
+                    insert.setString(1, values.getName(row));
+                    insert.setString(2, values.getType(row).getTypeName());
+                    insert.setString(3, values.getPath(row));
+                    insert.addBatch();
+                    if (++pending == batchSize) {
+                        insert.executeBatch();
+                        pending = 0;
+                    }
+                }
+            } catch (SQLException e) {
+                throw new BuilderException("Error writing to SQLite DB", e);
+            } finally {
+                writeNanos += System.nanoTime() - start;
+            }
+            rows += values.size();
+        }
+
+        /**
+         * Write any remaining values and commit. Duplicate rows are dropped and the rest are written in name order, so
+         * rows with similar names end up on the same pages. The unique index Dash expects and a case insensitive name
+         * index are built once all rows are in, and the DB is analyzed so SQLite plans lookups with them.
+         * @throws BuilderException
+         */
+        public void finish() throws BuilderException {
+            final long start = System.nanoTime();
+            try (final Statement stmt = connection.createStatement()) {
+                if (pending > 0) {
+                    insert.executeBatch();
+                    pending = 0;
+                }
+                stmt.execute(COPY_STAGING_SQL);
+                stmt.execute(DROP_STAGING_SQL);
+                stmt.execute(CREATE_UNIQUE_INDEX_SQL);
+                stmt.execute(CREATE_NAME_INDEX_SQL);
+                stmt.execute(ANALYZE_SQL);
+                connection.commit();
+                finished = true;
+            } catch (SQLException e) {
+                throw new BuilderException("Error writing to SQLite DB", e);
+            }
+            BuildMetrics.current().addInserted(rows, writeNanos + System.nanoTime() - start);
+            logVerbose("Created the SQLite search index");
+        }
+
+        /**
+         * Close the DB. Anything written since the writer was opened is discarded unless {@link #finish()} has been
+         * called.
+         * @throws BuilderException
+         */
+        @Override
+        public void close() throws BuilderException {
+            try {
+                try {
+                    if (!finished) {
+                        connection.rollback();
+                    }
+                } finally {
+                    // Also closes the insert statement
+                    connection.close();
+                }
+            } catch (SQLException e) {
+                throw new BuilderException("Error closing SQLite DB", e);
+            }
+        }
+
+        private static void closeQuietly(Connection conn) {
+            if (null == conn) {
+                return;
+            }
+            try {
+                conn.close();
+            } catch (SQLException ignored) {
+                // Already failing
+            }
+        }
     }
 }
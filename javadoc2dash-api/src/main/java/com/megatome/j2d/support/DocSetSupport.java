@@ -16,12 +16,18 @@
 package com.megatome.j2d.support;
 
 import com.megatome.j2d.exception.BuilderException;
+import com.megatome.j2d.util.DocsetManifest;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
 
 import static org.apache.commons.io.FileUtils.*;
 import static org.apache.commons.io.FilenameUtils.concat;
+import static org.apache.commons.lang3.StringEscapeUtils.escapeHtml4;
+import static org.apache.commons.lang3.StringEscapeUtils.escapeXml10;
 import static com.megatome.j2d.util.LogUtility.*;
 
 /**
@@ -34,9 +40,15 @@ public class DocSetSupport {
     static final String RESOURCES = "Resources";
     static final String DOCUMENTS = "Documents";
 
-    private static final String PLIST_FILE = "Info.plist";
-    private static final String ICON_FILE = "icon.png";
-    private static final String DOCSET_SUFFIX = ".docset";
+    static final String PLIST_FILE = "Info.plist";
+    static final String ICON_FILE = "icon.png";
+    static final String DOCSET_SUFFIX = ".docset";
+    private static final String MANIFEST_FILE = "j2d-manifest.txt";
+
+    /**
+     * Page of an aggregated docset that links to the Javadoc of each module
+     */
+    public static final String MODULE_INDEX_FILE = "index.html";
 
     /**
      * Create the docset package. Will delete an existing docset if one already exists at the specified location.
@@ -100,14 +112,315 @@ public class DocSetSupport {
      * @throws BuilderException
      */
     public static void copyFiles(final File sourceDir, String docsetDir) throws BuilderException {
+        copyFiles(sourceDir, docsetDir, CopyStrategy.COPY);
+    }
+
+    /**
+     * Copy all files and folders from a source location into the docset.
+     * @param sourceDir Source directory to copy from
+     * @param docsetDir Directory of the docset
+     * @param copyStrategy How the files are put into the docset
+     * @throws BuilderException
+     */
+    public static void copyFiles(final File sourceDir, String docsetDir, CopyStrategy copyStrategy) throws BuilderException {
+        copyFiles(sourceDir, docsetDir, copyStrategy, 1);
+    }
+
+    /**
+     * Copy all files and folders from a source location into the docset.
+     * @param sourceDir Source directory to copy from
+     * @param docsetDir Directory of the docset
+     * @param copyStrategy How the files are put into the docset
+     * @param copyThreads Number of files to copy at the same time
+     * @throws BuilderException
+     */
+    public static void copyFiles(final File sourceDir, String docsetDir, CopyStrategy copyStrategy, int copyThreads) throws BuilderException {
+        copyFiles(sourceDir, docsetDir, copyStrategy, copyThreads, null);
+    }
+
+    /**
+     * Copy all files and folders from a source location into the docset, adding table of contents anchors to the
+     * pages while they are copied. Waits for the table of contents to be complete before copying.
+     * @param sourceDir Source directory to copy from
+     * @param docsetDir Directory of the docset
+     * @param copyStrategy How the files are put into the docset
+     * @param copyThreads Number of files to copy at the same time
+     * @param toc Table of contents of the source directory. May be null.
+     * @throws BuilderException
+     */
+    public static void copyFiles(final File sourceDir, String docsetDir, CopyStrategy copyStrategy, int copyThreads,
+                                 TableOfContents toc) throws BuilderException {
+        copyFiles(sourceDir.toPath(), docsetDir, copyStrategy, copyThreads, toc);
+    }
+
+    /**
+     * Copy all files and folders from a source location, which may be the root of a Javadoc archive opened with
+     * {@link JavadocSupport#openJavadocArchive(File)}, into the docset. Entries of an archive are streamed into the
+     * docset without being extracted first, and are always copied whatever the strategy.
+     * @param sourceDir Source directory to copy from
+     * @param docsetDir Directory of the docset
+     * @param copyStrategy How the files are put into the docset
+     * @param copyThreads Number of files to copy at the same time
+     * @param toc Table of contents of the source directory. May be null.
+     * @throws BuilderException
+     */
+    public static void copyFiles(final Path sourceDir, String docsetDir, CopyStrategy copyStrategy, int copyThreads,
+                                 TableOfContents toc) throws BuilderException {
+        if (null != toc) {
+            toc.await();
+        }
+        try {
+            FileCopier.copyDirectory(sourceDir, getFile(getDocsetRoot(docsetDir), CONTENTS, RESOURCES, DOCUMENTS), copyStrategy, copyThreads, toc);
+            logVerbose("Copied javadoc files into docset using {}", copyStrategy);
+        } catch (IOException e) {
+            throw new BuilderException("Could not copy files into the docset", e);
+        }
+        logTableOfContents(toc);
+    }
+
+    /**
+     * Copy all files and folders from a source location into a directory of the docset's documents.
+     * @param sourceDir Source directory to copy from
+     * @param docsetDir Directory of the docset
+     * @param subdirectory Directory within the documents to copy into
+     * @param copyStrategy How the files are put into the docset
+     * @param copyThreads Number of files to copy at the same time
+     * @throws BuilderException
+     */
+    public static void copyFiles(final File sourceDir, String docsetDir, String subdirectory, CopyStrategy copyStrategy, int copyThreads) throws BuilderException {
         try {
-            copyDirectory(sourceDir, getFile(getDocsetRoot(docsetDir), CONTENTS, RESOURCES, DOCUMENTS));
-            logVerbose("Copied javadoc files into docset");
+            FileCopier.copyDirectory(sourceDir, getFile(getDocumentsDir(docsetDir), subdirectory), copyStrategy, copyThreads);
+            logVerbose("Copied javadoc files into {} of the docset using {}", subdirectory, copyStrategy);
         } catch (IOException e) {
             throw new BuilderException("Could not copy files into the docset", e);
         }
     }
 
+    /**
+     * Bring the files in the docset up to date with a source location. Only files that were added or changed since
+     * the previous manifest are copied, and files that no longer exist in the source are removed from the docset.
+     * @param sourceDir Source directory to copy from
+     * @param docsetDir Directory of the docset
+     * @param previous Manifest of the files currently in the docset
+     * @param current Manifest of the files in the source directory
+     * @throws BuilderException
+     */
+    public static void syncFiles(final File sourceDir, String docsetDir, DocsetManifest previous, DocsetManifest current) throws BuilderException {
+        syncFiles(sourceDir, docsetDir, previous, current, CopyStrategy.COPY);
+    }
+
+    /**
+     * Bring the files in the docset up to date with a source location. Only files that were added or changed since
+     * the previous manifest are copied, and files that no longer exist in the source are removed from the docset.
+     * @param sourceDir Source directory to copy from
+     * @param docsetDir Directory of the docset
+     * @param previous Manifest of the files currently in the docset
+     * @param current Manifest of the files in the source directory
+     * @param copyStrategy How changed files are put into the docset
+     * @throws BuilderException
+     */
+    public static void syncFiles(final File sourceDir, String docsetDir, DocsetManifest previous, DocsetManifest current,
+                                 CopyStrategy copyStrategy) throws BuilderException {
+        syncFiles(sourceDir, docsetDir, previous, current, copyStrategy, null);
+    }
+
+    /**
+     * Bring the files in the docset up to date with a source location. Only files that were added or changed since
+     * the previous manifest are copied, adding table of contents anchors to the pages, and files that no longer exist
+     * in the source are removed from the docset.
+     * @param sourceDir Source directory to copy from
+     * @param docsetDir Directory of the docset
+     * @param previous Manifest of the files currently in the docset
+     * @param current Manifest of the files in the source directory
+     * @param copyStrategy How changed files are put into the docset
+     * @param toc Complete table of contents of the source directory. May be null.
+     * @throws BuilderException
+     */
+    public static void syncFiles(final File sourceDir, String docsetDir, DocsetManifest previous, DocsetManifest current,
+                                 CopyStrategy copyStrategy, TableOfContents toc) throws BuilderException {
+        final File documentsDir = getDocumentsDir(docsetDir);
+        int copied = 0;
+        int removed = 0;
+        try {
+            for (final String path : current.getPaths()) {
+                if (!current.isUnchanged(path, previous)) {
+                    FileCopier.copyFile(getFile(sourceDir, path), getFile(documentsDir, path), copyStrategy, toc, path);
+                    copied++;
+                }
+            }
+            for (final String path : previous.getPaths()) {
+                if (null == current.getEntry(path)) {
+                    deleteAndPrune(getFile(documentsDir, path), documentsDir);
+                    removed++;
+                }
+            }
+        } catch (IOException e) {
+            throw new BuilderException("Could not update the files in the docset", e);
+        }
+        logVerbose("Updated javadoc files in docset: {} copied, {} removed", copied, removed);
+        logTableOfContents(toc);
+    }
+
+    /**
+     * Bring the pages of some packages in the docset up to date with a source location. The pages of each package are
+     * replaced with the pages in the source, and packages missing from the source are removed from the docset.
+     * Subpackages are left alone.
+     * @param sourceDir Source directory to copy from
+     * @param docsetDir Directory of the docset
+     * @param packages Packages to update
+     * @param indexFiles Javadoc index files to copy as well, since they link to the pages of the packages
+     * @param copyStrategy How files are put into the docset
+     * @throws BuilderException
+     */
+    public static void syncPackages(final File sourceDir, String docsetDir, PackageFilter packages, List<File> indexFiles,
+                                    CopyStrategy copyStrategy) throws BuilderException {
+        syncPackages(sourceDir, docsetDir, packages, indexFiles, copyStrategy, null);
+    }
+
+    /**
+     * Bring the pages of some packages in the docset up to date with a source location, adding table of contents
+     * anchors to the pages that are copied. See {@link #syncPackages(File, String, PackageFilter, List, CopyStrategy)}.
+     * @param sourceDir Source directory to copy from
+     * @param docsetDir Directory of the docset
+     * @param packages Packages to update
+     * @param indexFiles Javadoc index files to copy as well, since they link to the pages of the packages
+     * @param copyStrategy How files are put into the docset
+     * @param toc Complete table of contents of the source directory. May be null.
+     * @throws BuilderException
+     */
+    public static void syncPackages(final File sourceDir, String docsetDir, PackageFilter packages, List<File> indexFiles,
+                                    CopyStrategy copyStrategy, TableOfContents toc) throws BuilderException {
+        final File documentsDir = getDocumentsDir(docsetDir);
+        int copied = 0;
+        try {
+            for (final String packagePath : packages.getPackagePaths()) {
+                final File targetDir = getFile(documentsDir, packagePath);
+                deletePackageFiles(targetDir);
+                final File packageDir = getFile(sourceDir, packagePath);
+                if (packageDir.isDirectory()) {
+                    copied += copyPackageFiles(packageDir, targetDir, copyStrategy, toc, packagePath);
+                } else {
+                    logVerbose("Package {} no longer exists, removed it from the docset", packagePath);
+                }
+                final String[] remaining = targetDir.list();
+                if (null != remaining && remaining.length == 0) {
+                    deleteAndPrune(targetDir, documentsDir);
+                }
+            }
+            for (final File indexFile : indexFiles) {
+                final String path = sourceDir.toURI().relativize(indexFile.toURI()).getPath();
+                FileCopier.copyFile(indexFile, getFile(documentsDir, path), copyStrategy);
+                copied++;
+            }
+        } catch (IOException e) {
+            throw new BuilderException("Could not update the package files in the docset", e);
+        }
+        logVerbose("Updated javadoc files in docset for packages {}: {} copied", packages, copied);
+        logTableOfContents(toc);
+    }
+
+    private static void deletePackageFiles(File packageDir) throws IOException {
+        final File[] children = packageDir.listFiles();
+        if (null == children) {
+            return;
+        }
+        for (final File child : children) {
+            if (child.isFile() || PackageFilter.isPackageSubdirectory(child.getName())) {
+                forceDelete(child);
+            }
+        }
+    }
+
+    private static int copyPackageFiles(File packageDir, File targetDir, CopyStrategy copyStrategy, TableOfContents toc,
+                                        String packagePath) throws IOException {
+        int copied = 0;
+        final File[] children = packageDir.listFiles();
+        if (null == children) {
+            return copied;
+        }
+        for (final File child : children) {
+            if (child.isFile()) {
+                FileCopier.copyFile(child, new File(targetDir, child.getName()), copyStrategy, toc, packagePath + "/" + child.getName());
+                copied++;
+            } else if (PackageFilter.isPackageSubdirectory(child.getName())) {
+                FileCopier.copyDirectory(child, new File(targetDir, child.getName()), copyStrategy);
+                copied += listFiles(child, null, true).size();
+            }
+        }
+        return copied;
+    }
+
+    private static void logTableOfContents(TableOfContents toc) {
+        if (null != toc) {
+            logVerbose("Added table of contents anchors to {} pages", toc.getPagesWritten());
+        }
+    }
+
+    private static void deleteAndPrune(File f, File stopDir) throws IOException {
+        if (f.exists()) {
+            forceDelete(f);
+        }
+        // Remove directories that are now empty
+        File dir = f.getParentFile();
+        while (null != dir && !dir.equals(stopDir)) {
+            final String[] children = dir.list();
+            if (null == children || children.length > 0 || !dir.delete()) {
+                break;
+            }
+            dir = dir.getParentFile();
+        }
+    }
+
+    /**
+     * Read the manifest of the files in the docset.
+     * @param docsetDir Directory of the docset
+     * @return Manifest, or null if the docset does not have one
+     * @throws BuilderException
+     */
+    public static DocsetManifest readManifest(String docsetDir) throws BuilderException {
+        try {
+            return DocsetManifest.load(getManifestFile(docsetDir));
+        } catch (IOException e) {
+            throw new BuilderException("Failed to read the docset manifest", e);
+        }
+    }
+
+    /**
+     * Write the manifest of the files in the docset.
+     * @param manifest Manifest to write
+     * @param docsetDir Directory of the docset
+     * @throws BuilderException
+     */
+    public static void writeManifest(DocsetManifest manifest, String docsetDir) throws BuilderException {
+        try {
+            manifest.save(getManifestFile(docsetDir));
+            logVerbose("Wrote the docset manifest");
+        } catch (IOException e) {
+            throw new BuilderException("Failed to write the docset manifest", e);
+        }
+    }
+
+    /**
+     * Remove the manifest of the files in the docset, so the next incremental build starts from scratch.
+     * @param docsetDir Directory of the docset
+     * @throws BuilderException
+     */
+    public static void removeManifest(String docsetDir) throws BuilderException {
+        try {
+            final File manifestFile = getManifestFile(docsetDir);
+            if (manifestFile.exists()) {
+                forceDelete(manifestFile);
+                logVerbose("Removed the docset manifest");
+            }
+        } catch (IOException e) {
+            throw new BuilderException("Failed to remove the docset manifest", e);
+        }
+    }
+
+    private static File getManifestFile(String docsetDir) {
+        return getFile(getDocsetRoot(docsetDir), CONTENTS, RESOURCES, MANIFEST_FILE);
+    }
+
     /**
      * Create the plist file in the docset.
      * @param bundleIdentifier Bundle identifier of the docset
@@ -118,11 +431,7 @@ public class DocSetSupport {
      * @throws BuilderException
      */
     public static void createPList(String bundleIdentifier, String displayName, String keyword, String indexFile, String docsetDir) throws BuilderException {
-        final String plist = String.format("<?xml version=\"1.0\" encoding=\"UTF-8\"?><plist version=\"1.0\"><dict><key>CFBundleIdentifier</key><string>%s</string><key>CFBundleName</key><string>%s</string><key>DocSetPlatformFamily</key><string>%s</string><key>dashIndexFilePath</key><string>%s</string><key>DashDocSetFamily</key><string>java</string><key>isDashDocset</key><true/></dict></plist>",
-                bundleIdentifier, displayName, keyword, indexFile);
-        // CFBundleIdentifier = ?
-        // CFBundleName = Display Name
-        // DocSetPlatformFamily = keyword
+        final String plist = createPListContent(bundleIdentifier, displayName, keyword, indexFile);
         try {
             write(getFile(getDocsetRoot(docsetDir), CONTENTS, PLIST_FILE), plist);
             logVerbose("Created the plist file in the docset");
@@ -131,6 +440,72 @@ public class DocSetSupport {
         }
     }
 
+    /**
+     * Create a page in the docset's documents that links to the Javadoc of each module of an aggregated docset.
+     * @param title Title of the page
+     * @param moduleIndexFiles Index file of each module, relative to the directory of the module, by module name
+     * @param docsetDir Directory of the docset
+     * @throws BuilderException
+     */
+    public static void createModuleIndex(String title, Map<String, String> moduleIndexFiles, String docsetDir) throws BuilderException {
+        final StringBuilder html = new StringBuilder();
+        html.append("<!DOCTYPE html>\n<html><head><meta charset=\"UTF-8\"><title>").append(escapeHtml4(title)).append("</title></head>\n<body>\n<h1>")
+                .append(escapeHtml4(title)).append("</h1>\n<ul>\n");
+        for (final Map.Entry<String, String> module : moduleIndexFiles.entrySet()) {
+            html.append("<li><a href=\"").append(escapeHtml4(module.getKey() + "/" + module.getValue())).append("\">")
+                    .append(escapeHtml4(module.getKey())).append("</a></li>\n");
+        }
+        html.append("</ul>\n</body></html>\n");
+        try {
+            write(getFile(getDocumentsDir(docsetDir), MODULE_INDEX_FILE), html, "UTF-8");
+            logVerbose("Created the module index in the docset");
+        } catch (IOException e) {
+            throw new BuilderException("Failed to write module index into docset", e);
+        }
+    }
+
+    /**
+     * Create a Dash feed for a docset archive, named <code>&lt;feedName&gt;.xml</code>. Dash downloads the archive from
+     * one of the feed locations, and updates the docset when the version changes.
+     * @param feedName Name of the feed
+     * @param feedVersion Version of the docset
+     * @param feedLocations Base URLs the archive is published at. May be null.
+     * @param docsetFile File name of the archive at each location
+     * @param feedDir Directory to write the feed to. Created if it does not exist.
+     * @return Feed file
+     * @throws BuilderException
+     */
+    public static File createFeed(String feedName, String feedVersion, List<String> feedLocations, String docsetFile, File feedDir) throws BuilderException {
+        final File feedFile = getFile(feedDir, feedName + ".xml");
+        try {
+            write(feedFile, createFeedContent(feedVersion, feedLocations, docsetFile), "UTF-8");
+            logVerbose("Created the feed {}", feedFile);
+        } catch (IOException e) {
+            throw new BuilderException("Failed to write feed file", e);
+        }
+        return feedFile;
+    }
+
+    static String createFeedContent(String feedVersion, List<String> feedLocations, String docsetFile) {
+        final StringBuilder xml = new StringBuilder("<entry>\n  <version>")
+                .append(escapeXml10(null != feedVersion ? feedVersion : "")).append("</version>\n");
+        if (null != feedLocations) {
+            for (final String feedLocation : feedLocations) {
+                final String feedUrl = feedLocation.endsWith("/") ? feedLocation : feedLocation + "/";
+                xml.append("  <url>").append(escapeXml10(feedUrl + docsetFile)).append("</url>\n");
+            }
+        }
+        return xml.append("</entry>").toString();
+    }
+
+    static String createPListContent(String bundleIdentifier, String displayName, String keyword, String indexFile) {
+        // CFBundleIdentifier = ?
+        // CFBundleName = Display Name
+        // DocSetPlatformFamily = keyword
+        return String.format("<?xml version=\"1.0\" encoding=\"UTF-8\"?><plist version=\"1.0\"><dict><key>CFBundleIdentifier</key><string>%s</string><key>CFBundleName</key><string>%s</string><key>DocSetPlatformFamily</key><string>%s</string><key>dashIndexFilePath</key><string>%s</string><key>DashDocSetFamily</key><string>java</string><key>isDashDocset</key><true/></dict></plist>",
+                bundleIdentifier, displayName, keyword, indexFile);
+    }
+
     /**
      * Get the directory within the docset that holds the SQLite DB.
      * @param docsetDir Directory of the docset
@@ -140,6 +515,15 @@ public class DocSetSupport {
         return concat(concat(getDocsetRoot(docsetDir), CONTENTS), RESOURCES);
     }
 
+    /**
+     * Get the directory within the docset that holds the Javadoc files.
+     * @param docsetDir Directory of the docset
+     * @return Directory
+     */
+    public static File getDocumentsDir(String docsetDir) {
+        return getFile(getDocsetRoot(docsetDir), CONTENTS, RESOURCES, DOCUMENTS);
+    }
+
     static String getDocsetRoot(String docsetDir) {
         return docsetDir + DOCSET_SUFFIX;
     }
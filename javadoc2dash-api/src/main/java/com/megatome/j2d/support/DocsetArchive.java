@@ -0,0 +1,393 @@
+/**
+ * Copyright 2015 Megatome Technologies, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.megatome.j2d.support;
+
+import com.megatome.j2d.exception.BuilderException;
+import com.megatome.j2d.util.BuildMetrics;
+import org.apache.commons.compress.archivers.ArchiveEntry;
+import org.apache.commons.compress.archivers.ArchiveOutputStream;
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream;
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipArchiveOutputStream;
+import org.apache.commons.lang3.StringUtils;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.zip.Deflater;
+
+import static com.megatome.j2d.support.DocSetSupport.*;
+import static com.megatome.j2d.util.LogUtility.logVerbose;
+
+/**
+ * Writes a docset straight into a <code>.tgz</code> or <code>.zip</code> archive, without creating the
+ * <code>.docset</code> directory first. Entries are laid out the same way as the directory, under
+ * <code>&lt;docsetName&gt;.docset/</code>. The archive is written to a temporary file next to the target, which only
+ * replaces the target once {@link #commit()} is called.
+ */
+public final class DocsetArchive implements Closeable {
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final File archiveFile;
+    private final File partFile;
+    private final ArchiveOutputStream out;
+    private final String rootEntry;
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+    private final Set<String> directories = new HashSet<>();
+    private boolean committed = false;
+
+    /**
+     * Start a new archive using the default compression settings and a single compression thread.
+     * @param archiveFile Archive to create. Replaced if it already exists.
+     * @param format Format of the archive. Must not be {@link OutputFormat#DIRECTORY}.
+     * @param docsetName File name of the docset inside the archive
+     * @throws BuilderException
+     */
+    public DocsetArchive(File archiveFile, OutputFormat format, String docsetName) throws BuilderException {
+        this(archiveFile, format, docsetName, Deflater.DEFAULT_COMPRESSION, ParallelGzipOutputStream.DEFAULT_BLOCK_SIZE, 1);
+    }
+
+    /**
+     * Start a new archive.
+     * @param archiveFile Archive to create. Replaced if it already exists.
+     * @param format Format of the archive. Must not be {@link OutputFormat#DIRECTORY}.
+     * @param docsetName File name of the docset inside the archive
+     * @param compressionLevel Compression level from 0 to 9, or {@link Deflater#DEFAULT_COMPRESSION}
+     * @param blockSize Size of the blocks a TGZ archive is compressed in, in bytes. See {@link ParallelGzipOutputStream}.
+     * @param compressThreads Number of blocks of a TGZ archive to compress at the same time
+     * @throws BuilderException
+     */
+    public DocsetArchive(File archiveFile, OutputFormat format, String docsetName, int compressionLevel, int blockSize,
+                         int compressThreads) throws BuilderException {
+        if (OutputFormat.DIRECTORY == format) {
+            throw new IllegalArgumentException("A docset archive must be a TGZ or ZIP");
+        }
+        this.archiveFile = archiveFile;
+        this.partFile = new File(archiveFile.getPath() + ".part");
+        this.rootEntry = getDocsetRoot(docsetName) + "/";
+        try {
+            final File parent = archiveFile.getAbsoluteFile().getParentFile();
+            if (null != parent) {
+                Files.createDirectories(parent.toPath());
+            }
+            final OutputStream fileOut = new BufferedOutputStream(new FileOutputStream(partFile), BUFFER_SIZE);
+            if (OutputFormat.TGZ == format) {
+                final TarArchiveOutputStream tarOut = new TarArchiveOutputStream(
+                        new ParallelGzipOutputStream(fileOut, compressionLevel, blockSize, compressThreads));
+                // Javadoc paths are often longer than the 100 characters a plain tar header allows
+                tarOut.setLongFileMode(TarArchiveOutputStream.LONGFILE_POSIX);
+                tarOut.setBigNumberMode(TarArchiveOutputStream.BIGNUMBER_POSIX);
+                out = tarOut;
+            } else {
+                final ZipArchiveOutputStream zipOut = new ZipArchiveOutputStream(fileOut);
+                zipOut.setLevel(compressionLevel);
+                out = zipOut;
+            }
+            putDirectory(rootEntry);
+            putDirectory(rootEntry + CONTENTS + "/");
+            putDirectory(rootEntry + CONTENTS + "/" + RESOURCES + "/");
+        } catch (IOException e) {
+            deletePartFile();
+            throw new BuilderException("Failed to create docset archive " + archiveFile, e);
+        }
+    }
+
+    /**
+     * Add the plist file describing the docset.
+     * @param bundleIdentifier Bundle identifier of the docset
+     * @param displayName Name displayed in Dash
+     * @param keyword Keyword for the docset
+     * @param indexFile Index page of the docset, relative to the documents. May be null.
+     * @throws BuilderException
+     */
+    public synchronized void addPList(String bundleIdentifier, String displayName, String keyword, String indexFile) throws BuilderException {
+        final byte[] plist = createPListContent(bundleIdentifier, displayName, keyword, indexFile).getBytes(StandardCharsets.UTF_8);
+        try {
+            putBytes(rootEntry + CONTENTS + "/" + PLIST_FILE, plist);
+            logVerbose("Added the plist file to the docset archive");
+        } catch (IOException e) {
+            throw new BuilderException("Failed to add plist file to docset archive", e);
+        }
+    }
+
+    /**
+     * Add the docset icon.
+     * @param iconFile Icon to add. Nothing is added if null.
+     * @throws BuilderException
+     */
+    public synchronized void addIcon(File iconFile) throws BuilderException {
+        if (null == iconFile) {
+            return;
+        }
+        try {
+            putFile(iconFile, rootEntry + ICON_FILE);
+            logVerbose("Added icon file to the docset archive");
+        } catch (IOException e) {
+            throw new BuilderException("Failed to add icon file to docset archive", e);
+        }
+    }
+
+    /**
+     * Add all files and folders from a Javadoc location as the documents of the docset.
+     * @param sourceDir Javadoc directory
+     * @throws BuilderException
+     */
+    public synchronized void addDocuments(File sourceDir) throws BuilderException {
+        addDocuments(sourceDir, null);
+    }
+
+    /**
+     * Add all files and folders from a Javadoc location as the documents of the docset, adding table of contents
+     * anchors to the pages as they are added. Waits for the table of contents to be complete first.
+     * @param sourceDir Javadoc directory
+     * @param toc Table of contents of the Javadoc directory. May be null.
+     * @throws BuilderException
+     */
+    public synchronized void addDocuments(File sourceDir, TableOfContents toc) throws BuilderException {
+        addDocuments(sourceDir.toPath(), toc);
+    }
+
+    /**
+     * Add all files and folders from a Javadoc location, which may be the root of a Javadoc archive opened with
+     * {@link JavadocSupport#openJavadocArchive(File)}, as the documents of the docset. Entries of an archive are
+     * streamed into the docset archive without being extracted first.
+     * @param sourceDir Javadoc directory
+     * @param toc Table of contents of the Javadoc directory. May be null.
+     * @throws BuilderException
+     */
+    public synchronized void addDocuments(Path sourceDir, TableOfContents toc) throws BuilderException {
+        if (null != toc) {
+            toc.await();
+        }
+        addTree(sourceDir, rootEntry + CONTENTS + "/" + RESOURCES + "/" + DOCUMENTS + "/", "javadoc files", toc);
+        if (null != toc) {
+            logVerbose("Added table of contents anchors to {} pages", toc.getPagesWritten());
+        }
+    }
+
+    /**
+     * Add everything in an existing <code>.docset</code> directory.
+     * @param docsetDir Docset directory
+     * @throws BuilderException
+     */
+    public synchronized void addDocset(File docsetDir) throws BuilderException {
+        addTree(docsetDir.toPath(), rootEntry, "docset files", null);
+    }
+
+    /**
+     * Add the search index of the docset, and its full text index if there is one.
+     * @param dbFileDir Directory holding the DB file
+     * @throws BuilderException
+     */
+    public synchronized void addIndex(String dbFileDir) throws BuilderException {
+        try {
+            putFile(new File(dbFileDir, DBSupport.DB_FILE), rootEntry + CONTENTS + "/" + RESOURCES + "/" + DBSupport.DB_FILE);
+            if (FullTextSupport.indexExists(dbFileDir)) {
+                putFile(new File(dbFileDir, FullTextSupport.FULL_TEXT_FILE), rootEntry + CONTENTS + "/" + RESOURCES + "/" + FullTextSupport.FULL_TEXT_FILE);
+            }
+            logVerbose("Added search index to the docset archive");
+        } catch (IOException e) {
+            throw new BuilderException("Failed to add search index to docset archive", e);
+        }
+    }
+
+    /**
+     * Finish the archive and move it into place.
+     * @throws BuilderException
+     */
+    public synchronized void commit() throws BuilderException {
+        try {
+            out.finish();
+            out.close();
+            Files.move(partFile.toPath(), archiveFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            committed = true;
+            logVerbose("Created docset archive {}", archiveFile);
+        } catch (IOException e) {
+            throw new BuilderException("Failed to write docset archive " + archiveFile, e);
+        }
+    }
+
+    /**
+     * Archive an existing <code>.docset</code> directory.
+     * @param docsetDir Docset directory. The name of the directory is kept inside the archive.
+     * @param archiveFile Archive to create. Replaced if it already exists.
+     * @param format Format of the archive. Must not be {@link OutputFormat#DIRECTORY}.
+     * @param compressionLevel Compression level from 0 to 9, or {@link Deflater#DEFAULT_COMPRESSION}
+     * @param blockSize Size of the blocks a TGZ archive is compressed in, in bytes. See {@link ParallelGzipOutputStream}.
+     * @param compressThreads Number of blocks of a TGZ archive to compress at the same time
+     * @throws BuilderException
+     */
+    public static void archiveDocset(File docsetDir, File archiveFile, OutputFormat format, int compressionLevel,
+                                     int blockSize, int compressThreads) throws BuilderException {
+        if (!docsetDir.isDirectory()) {
+            throw new BuilderException("Docset directory " + docsetDir + " does not exist");
+        }
+        final String docsetName = StringUtils.removeEnd(docsetDir.getName(), DOCSET_SUFFIX);
+        try (final DocsetArchive archive = new DocsetArchive(archiveFile, format, docsetName, compressionLevel,
+                blockSize, compressThreads)) {
+            archive.addDocset(docsetDir);
+            archive.commit();
+        }
+    }
+
+    /**
+     * Close the archive. An archive that was not committed is deleted.
+     */
+    @Override
+    public synchronized void close() {
+        if (committed) {
+            return;
+        }
+        try {
+            out.close();
+        } catch (IOException e) {
+            // The archive is being thrown away
+        }
+        deletePartFile();
+    }
+
+    private void deletePartFile() {
+        if (partFile.exists() && !partFile.delete()) {
+            logVerbose("Could not delete incomplete docset archive {}", partFile);
+        }
+    }
+
+    private void addTree(final Path source, final String entryPrefix, String description, final TableOfContents toc) throws BuilderException {
+        final long start = System.nanoTime();
+        final long[] counts = new long[2];
+        try {
+            Files.walkFileTree(source, new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                    checkInterrupted();
+                    putDirectory(entryPrefix + entryPath(source, dir));
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                    checkInterrupted();
+                    final String path = entryPath(source, file);
+                    if (null != toc && toc.hasAnchors(path)) {
+                        putBytes(entryPrefix + path, toc.readPage(path, file), attrs.lastModifiedTime().toMillis());
+                    } else {
+                        putFile(file, entryPrefix + path);
+                    }
+                    counts[0]++;
+                    counts[1] += attrs.size();
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (IOException e) {
+            throw new BuilderException("Could not add files to the docset archive", e);
+        }
+        BuildMetrics.current().addCopied(counts[0], counts[1]);
+        logVerbose("Added {} {} ({} bytes) to docset archive in {} ms", counts[0], description, counts[1],
+                (System.nanoTime() - start) / 1000000);
+    }
+
+    private void putDirectory(String entryName) throws IOException {
+        if (!directories.add(entryName)) {
+            return;
+        }
+        final ArchiveEntry entry = out instanceof TarArchiveOutputStream ?
+                new TarArchiveEntry(entryName) : new ZipArchiveEntry(entryName);
+        out.putArchiveEntry(entry);
+        out.closeArchiveEntry();
+    }
+
+    private void putFile(File file, String entryName) throws IOException {
+        putFile(file.toPath(), entryName);
+    }
+
+    private void putFile(Path file, String entryName) throws IOException {
+        // Only name, size and time are set, so the headers don't vary with the commons-compress version
+        final long lastModified = Files.getLastModifiedTime(file).toMillis();
+        final ArchiveEntry entry;
+        if (out instanceof TarArchiveOutputStream) {
+            final TarArchiveEntry tarEntry = new TarArchiveEntry(entryName);
+            tarEntry.setSize(Files.size(file));
+            tarEntry.setModTime(lastModified);
+            entry = tarEntry;
+        } else {
+            final ZipArchiveEntry zipEntry = new ZipArchiveEntry(entryName);
+            zipEntry.setTime(lastModified);
+            entry = zipEntry;
+        }
+        out.putArchiveEntry(entry);
+        try (final InputStream in = Files.newInputStream(file)) {
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+        }
+        out.closeArchiveEntry();
+    }
+
+    private void putBytes(String entryName, byte[] content) throws IOException {
+        putBytes(entryName, content, -1);
+    }
+
+    /**
+     * @param lastModified Time of the entry, or -1 to leave it unset
+     */
+    private void putBytes(String entryName, byte[] content, long lastModified) throws IOException {
+        final ArchiveEntry entry;
+        if (out instanceof TarArchiveOutputStream) {
+            final TarArchiveEntry tarEntry = new TarArchiveEntry(entryName);
+            tarEntry.setSize(content.length);
+            if (lastModified >= 0) {
+                tarEntry.setModTime(lastModified);
+            }
+            entry = tarEntry;
+        } else {
+            final ZipArchiveEntry zipEntry = new ZipArchiveEntry(entryName);
+            if (lastModified >= 0) {
+                zipEntry.setTime(lastModified);
+            }
+            entry = zipEntry;
+        }
+        out.putArchiveEntry(entry);
+        out.write(content);
+        out.closeArchiveEntry();
+    }
+
+    private static String entryPath(Path root, Path path) {
+        final String relative = root.relativize(path).toString().replace(File.separatorChar, '/');
+        return Files.isDirectory(path) && !relative.isEmpty() ? relative + "/" : relative;
+    }
+
+    private static void checkInterrupted() throws InterruptedIOException {
+        if (Thread.currentThread().isInterrupted()) {
+            throw new InterruptedIOException("Interrupted while adding files to the docset archive");
+        }
+    }
+}
@@ -0,0 +1,446 @@
+/**
+ * Copyright 2015 Megatome Technologies, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.megatome.j2d.support;
+
+import com.megatome.j2d.util.BuildMetrics;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.output.NullOutputStream;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static com.megatome.j2d.util.LogUtility.logVerbose;
+import static com.megatome.j2d.util.LogUtility.withContext;
+
+/**
+ * Copies files into the docset using a {@link CopyStrategy}.
+ */
+final class FileCopier {
+    private FileCopier() {}
+
+    private static final int QUEUED_FILES_PER_THREAD = 64;
+    private static final String INDEX_ALL = "index-all.html";
+    private static final String INDEX_FILES_DIR = "index-files";
+    // Both fail instead of copying when a clone cannot be made
+    private static final List<String> GNU_CLONE = Arrays.asList("cp", "--reflink=always", "--preserve=timestamps");
+    private static final List<String> BSD_CLONE = Arrays.asList("cp", "-c", "-p");
+
+    /**
+     * Copy the contents of a directory into another directory, one file at a time.
+     * @param sourceDir Directory to copy from
+     * @param destDir Directory to copy into
+     * @param strategy How each file is copied
+     * @throws IOException
+     */
+    static void copyDirectory(final File sourceDir, final File destDir, final CopyStrategy strategy) throws IOException {
+        copyDirectory(sourceDir, destDir, strategy, 1);
+    }
+
+    /**
+     * Copy the contents of a directory into another directory. The tree is walked on the calling thread, which creates
+     * the directories and hands each file to a pool of copy threads. The pool has a bounded queue, and the walker
+     * copies files itself while the queue is full.
+     * @param sourceDir Directory to copy from
+     * @param destDir Directory to copy into
+     * @param strategy How each file is copied
+     * @param copyThreads Number of files to copy at the same time
+     * @throws IOException
+     */
+    static void copyDirectory(final File sourceDir, final File destDir, final CopyStrategy strategy, final int copyThreads) throws IOException {
+        copyDirectory(sourceDir, destDir, strategy, copyThreads, null);
+    }
+
+    /**
+     * Copy the contents of a directory into another directory, adding table of contents anchors to the pages that
+     * have them. Those pages are always written, whatever the strategy, so the source is never changed.
+     * @param sourceDir Directory to copy from
+     * @param destDir Directory to copy into
+     * @param strategy How each file is copied
+     * @param copyThreads Number of files to copy at the same time
+     * @param toc Table of contents, with paths relative to <code>sourceDir</code>. May be null.
+     * @throws IOException
+     */
+    static void copyDirectory(final File sourceDir, final File destDir, final CopyStrategy strategy, final int copyThreads,
+                              final TableOfContents toc) throws IOException {
+        copyDirectory(sourceDir.toPath(), destDir, strategy, copyThreads, toc);
+    }
+
+    /**
+     * Copy the contents of a directory, which may be in a Javadoc archive, into another directory. Entries of an
+     * archive are streamed straight into the destination, so the strategy is only used for a source on the default
+     * file system.
+     * @param sourceDir Directory to copy from
+     * @param destDir Directory to copy into
+     * @param strategy How each file is copied
+     * @param copyThreads Number of files to copy at the same time
+     * @param toc Table of contents, with paths relative to <code>sourceDir</code>. May be null.
+     * @throws IOException
+     */
+    static void copyDirectory(final Path sourceDir, final File destDir, final CopyStrategy strategy, final int copyThreads,
+                              final TableOfContents toc) throws IOException {
+        final long start = System.nanoTime();
+        final CopyCounter counter = new CopyCounter();
+        CopyStrategy fileStrategy = strategy;
+        if (!isDefaultFileSystem(sourceDir)) {
+            if (CopyStrategy.COPY != strategy) {
+                logVerbose("Files in an archive cannot be copied using {}, copying them normally", strategy);
+            }
+            fileStrategy = CopyStrategy.COPY;
+        } else if (CopyStrategy.REFLINK == strategy) {
+            // Cloning the whole tree with one cp is far cheaper than starting a process per file
+            final List<String> cloneCommand = findCloneCommand(sourceDir, destDir.toPath());
+            if (null != cloneCommand && run(with(cloneCommand, "-R", new File(sourceDir.toFile(), ".").getPath(), destDir.getPath()))) {
+                if (null != toc && toc.getPageCount() > 0) {
+                    // Pages with anchors replace their clones
+                    copyTree(sourceDir, destDir.toPath(), CopyStrategy.COPY, copyThreads, toc, true, counter);
+                }
+                countTree(sourceDir, counter);
+                logThroughput(counter, System.nanoTime() - start);
+                return;
+            }
+            logVerbose("Copy-on-write clones are not supported, falling back to a full copy");
+            fileStrategy = CopyStrategy.COPY;
+        }
+
+        checkInterrupted();
+        copyTree(sourceDir, destDir.toPath(), fileStrategy, copyThreads, toc, false, counter);
+        if (counter.fallbacks.get() > 0) {
+            logVerbose("{} files could not be copied using {} and were copied normally", counter.fallbacks.get(), strategy);
+        }
+        logThroughput(counter, System.nanoTime() - start);
+    }
+
+    /**
+     * @param anchoredPagesOnly Only write the pages that have table of contents anchors, over the files already in
+     *                          <code>dest</code>. They are not counted, since the whole tree was counted already.
+     */
+    private static void copyTree(final Path source, final Path dest, final CopyStrategy strategy, final int copyThreads,
+                                 final TableOfContents toc, final boolean anchoredPagesOnly, final CopyCounter counter) throws IOException {
+        final ThreadPoolExecutor executor = copyThreads > 1 ?
+                new ThreadPoolExecutor(copyThreads, copyThreads, 0L, TimeUnit.MILLISECONDS,
+                        new ArrayBlockingQueue<Runnable>(copyThreads * QUEUED_FILES_PER_THREAD),
+                        new ThreadPoolExecutor.CallerRunsPolicy()) : null;
+        final AtomicReference<Exception> failure = new AtomicReference<>();
+        try {
+            Files.walkFileTree(source, new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                    checkInterrupted();
+                    Files.createDirectories(resolve(source, dest, dir));
+                    return null == failure.get() ? FileVisitResult.CONTINUE : FileVisitResult.TERMINATE;
+                }
+
+                @Override
+                public FileVisitResult visitFile(final Path file, final BasicFileAttributes attrs) throws IOException {
+                    checkInterrupted();
+                    final Runnable copy = new Runnable() {
+                        @Override
+                        public void run() {
+                            if (null != failure.get()) {
+                                return;
+                            }
+                            try {
+                                final String page = null != toc ? getPage(source, file) : null;
+                                if (null != page && toc.hasAnchors(page)) {
+                                    toc.writePage(page, file, resolve(source, dest, file));
+                                } else if (anchoredPagesOnly) {
+                                    return;
+                                } else if (!copyFile(file, resolve(source, dest, file), strategy)) {
+                                    counter.fallbacks.incrementAndGet();
+                                }
+                                if (!anchoredPagesOnly) {
+                                    counter.add(attrs.size());
+                                }
+                            } catch (IOException | RuntimeException e) {
+                                failure.compareAndSet(null, e);
+                            }
+                        }
+                    };
+                    if (null == executor) {
+                        copy.run();
+                    } else {
+                        executor.execute(withContext(copy));
+                    }
+                    return null == failure.get() ? FileVisitResult.CONTINUE : FileVisitResult.TERMINATE;
+                }
+            });
+        } catch (IOException e) {
+            failure.compareAndSet(null, e);
+        } finally {
+            if (null != executor) {
+                executor.shutdown();
+            }
+        }
+
+        if (null != executor) {
+            awaitCopies(executor, failure);
+        }
+
+        final Exception e = failure.get();
+        if (e instanceof IOException) {
+            throw (IOException) e;
+        } else if (null != e) {
+            throw new IOException(e);
+        }
+    }
+
+    /**
+     * Wait for the copy threads to finish. If interrupted, drop the queued files but still wait for the files being
+     * copied, so no copy thread is writing once the caller gives up.
+     */
+    private static void awaitCopies(final ThreadPoolExecutor executor, final AtomicReference<Exception> failure) {
+        boolean interrupted = Thread.currentThread().isInterrupted();
+        if (interrupted) {
+            executor.shutdownNow();
+        }
+        while (true) {
+            try {
+                if (executor.awaitTermination(1, TimeUnit.SECONDS)) {
+                    break;
+                }
+                logVerbose("Waiting for {} files to finish copying", executor.getQueue().size() + executor.getActiveCount());
+            } catch (InterruptedException e) {
+                interrupted = true;
+                executor.shutdownNow();
+            }
+        }
+        if (interrupted) {
+            failure.compareAndSet(null, new InterruptedIOException("Interrupted while copying files"));
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Resolve by name, since the source and destination may be on different file systems.
+     */
+    private static Path resolve(final Path source, final Path dest, final Path file) {
+        return dest.resolve(source.relativize(file).toString());
+    }
+
+    private static boolean isDefaultFileSystem(final Path path) {
+        return path.getFileSystem() == FileSystems.getDefault();
+    }
+
+    private static String getPage(final Path root, final Path file) {
+        return root.relativize(file).toString().replace(File.separatorChar, '/');
+    }
+
+    private static void checkInterrupted() throws InterruptedIOException {
+        if (Thread.currentThread().isInterrupted()) {
+            throw new InterruptedIOException("Interrupted while copying files");
+        }
+    }
+
+    private static void countTree(final Path source, final CopyCounter counter) throws IOException {
+        Files.walkFileTree(source, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                counter.add(attrs.size());
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    private static void logThroughput(final CopyCounter counter, final long elapsedNanos) {
+        BuildMetrics.current().addCopied(counter.files.get(), counter.bytes.get());
+        final double seconds = Math.max(elapsedNanos, 1L) / 1e9;
+        final double megabytes = counter.bytes.get() / (1024.0 * 1024.0);
+        logVerbose("Copied {} files ({} MB) in {} ms: {} files/s, {} MB/s", counter.files.get(),
+                String.format("%.1f", megabytes), TimeUnit.NANOSECONDS.toMillis(elapsedNanos),
+                String.format("%.0f", counter.files.get() / seconds), String.format("%.1f", megabytes / seconds));
+    }
+
+    private static final class CopyCounter {
+        private final AtomicLong files = new AtomicLong();
+        private final AtomicLong bytes = new AtomicLong();
+        private final AtomicInteger fallbacks = new AtomicInteger();
+
+        private void add(long size) {
+            files.incrementAndGet();
+            bytes.addAndGet(size);
+        }
+    }
+
+    /**
+     * Copy a single file. An existing destination file is removed first, so that a file which is hard linked to the
+     * source is never overwritten in place.
+     * @param sourceFile File to copy
+     * @param destFile Location to copy to
+     * @param strategy How the file is copied
+     * @throws IOException
+     */
+    static void copyFile(final File sourceFile, final File destFile, final CopyStrategy strategy) throws IOException {
+        copyFile(sourceFile, destFile, strategy, null, null);
+    }
+
+    /**
+     * Copy a single file, adding table of contents anchors if it is a page that has them.
+     * @param sourceFile File to copy
+     * @param destFile Location to copy to
+     * @param strategy How the file is copied
+     * @param toc Table of contents. May be null.
+     * @param page Path of the file in the table of contents
+     * @throws IOException
+     */
+    static void copyFile(final File sourceFile, final File destFile, final CopyStrategy strategy,
+                         final TableOfContents toc, final String page) throws IOException {
+        FileUtils.forceMkdir(destFile.getParentFile());
+        if (null != toc && toc.hasAnchors(page)) {
+            toc.writePage(page, sourceFile.toPath(), destFile.toPath());
+        } else {
+            copyFile(sourceFile.toPath(), destFile.toPath(), strategy);
+        }
+        BuildMetrics.current().addCopied(1, sourceFile.length());
+    }
+
+    /**
+     * @return False if the strategy could not be used and the file was copied normally instead
+     */
+    private static boolean copyFile(final Path source, final Path dest, final CopyStrategy strategy) throws IOException {
+        Files.deleteIfExists(dest);
+        switch (strategy) {
+            case HARD_LINK:
+                if (isIndexFile(source)) {
+                    // An incremental build reads the old index pages in the docset, which must not change when the
+                    // javadoc tool rewrites the source in place
+                    FileUtils.copyFile(source.toFile(), dest.toFile());
+                    return true;
+                }
+                try {
+                    Files.createLink(dest, source);
+                    return true;
+                } catch (IOException | UnsupportedOperationException e) {
+                    FileUtils.copyFile(source.toFile(), dest.toFile());
+                    return false;
+                }
+            case TRANSFER:
+                transfer(source, dest);
+                return true;
+            default:
+                // Single files are never cloned, since that needs a cp process for each of them
+                if (isDefaultFileSystem(source)) {
+                    FileUtils.copyFile(source.toFile(), dest.toFile());
+                } else {
+                    Files.copy(source, dest, StandardCopyOption.COPY_ATTRIBUTES);
+                }
+                return true;
+        }
+    }
+
+    /**
+     * @return True for <code>index-all.html</code> and the pages of a split index
+     */
+    private static boolean isIndexFile(final Path file) {
+        final Path parent = file.getParent();
+        return INDEX_ALL.equals(file.getFileName().toString()) ||
+                (null != parent && null != parent.getFileName() && INDEX_FILES_DIR.equals(parent.getFileName().toString()));
+    }
+
+    private static void transfer(final Path source, final Path dest) throws IOException {
+        try (final FileChannel in = FileChannel.open(source, StandardOpenOption.READ);
+             final FileChannel out = FileChannel.open(dest, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                     StandardOpenOption.TRUNCATE_EXISTING)) {
+            final long size = in.size();
+            long position = 0;
+            while (position < size) {
+                position += in.transferTo(position, size - position, out);
+            }
+        }
+        Files.setLastModifiedTime(dest, Files.getLastModifiedTime(source));
+    }
+
+    /**
+     * Java has no API for copy-on-write clones, so use the system cp. GNU cp clones with --reflink, the BSD cp on
+     * macOS with -c. A single file of the tree is cloned into the destination to find the cp that can clone it, so an
+     * unsupported file system is found with at most two processes.
+     * @return The cp command that clones files from the source into the destination, or null if there is none
+     */
+    private static List<String> findCloneCommand(final Path sourceDir, final Path destDir) throws IOException {
+        final Path probe = findFile(sourceDir);
+        if (null == probe) {
+            return null;
+        }
+        Files.createDirectories(destDir);
+        final Path probeCopy = Files.createTempFile(destDir, ".reflink", null);
+        try {
+            for (final List<String> command : Arrays.asList(GNU_CLONE, BSD_CLONE)) {
+                Files.deleteIfExists(probeCopy);
+                if (run(with(command, probe.toString(), probeCopy.toString()))) {
+                    return command;
+                }
+            }
+            return null;
+        } finally {
+            Files.deleteIfExists(probeCopy);
+        }
+    }
+
+    private static Path findFile(final Path dir) throws IOException {
+        final AtomicReference<Path> found = new AtomicReference<>();
+        Files.walkFileTree(dir, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                if (!attrs.isRegularFile()) {
+                    return FileVisitResult.CONTINUE;
+                }
+                found.set(file);
+                return FileVisitResult.TERMINATE;
+            }
+        });
+        return found.get();
+    }
+
+    private static List<String> with(final List<String> command, final String... args) {
+        final List<String> result = new ArrayList<>(command);
+        result.addAll(Arrays.asList(args));
+        return result;
+    }
+
+    private static boolean run(final List<String> command) {
+        Process process = null;
+        try {
+            process = new ProcessBuilder(command).redirectErrorStream(true).start();
+            IOUtils.copy(process.getInputStream(), new NullOutputStream());
+            return 0 == process.waitFor();
+        } catch (IOException e) {
+            return false;
+        } catch (InterruptedException e) {
+            process.destroy();
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
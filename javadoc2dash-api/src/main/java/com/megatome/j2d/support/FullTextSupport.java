@@ -0,0 +1,300 @@
+/**
+ * Copyright 2015 Megatome Technologies, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.megatome.j2d.support;
+
+import com.megatome.j2d.exception.BuilderException;
+import com.megatome.j2d.util.SearchHit;
+import com.megatome.j2d.util.SearchIndexValue;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+import static com.megatome.j2d.util.LogUtility.logVerbose;
+import static org.apache.commons.io.FilenameUtils.concat;
+
+/**
+ * Utility class for the full text index of the docset. The index is an SQLite FTS4 table in its own file next to the
+ * search index, and holds the name and description of every entry, so entries can be found by what they do and not
+ * only by their name. Dash does not read it.
+ */
+public final class FullTextSupport {
+    static final String FULL_TEXT_FILE = "fullText.dsidx";
+
+    // The porter tokenizer lets "parsing" find "parses". Only the name and the description are searched.
+    private static final String CREATE_TABLE_SQL = "CREATE VIRTUAL TABLE fullText USING fts4(name, type, path, description, notindexed=type, notindexed=path, tokenize=porter)";
+    private static final String INSERT_SQL = "INSERT INTO fullText(name, type, path, description) VALUES (?, ?, ?, ?)";
+    private static final String OPTIMIZE_SQL = "INSERT INTO fullText(fullText) VALUES ('optimize')";
+    private static final String SEARCH_SQL = "SELECT name, type, path, description, matchinfo(fullText, 'pcnalx') FROM fullText WHERE fullText MATCH ?";
+
+    // BM25 parameters, and the weight of a match in each column. A match in the name counts more than one in the
+    // description.
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+    private static final double[] COLUMN_WEIGHTS = {4.0, 0.0, 0.0, 1.0};
+
+    private static final Comparator<SearchHit> BEST_FIRST = new Comparator<SearchHit>() {
+        @Override
+        public int compare(SearchHit a, SearchHit b) {
+            final int byScore = Double.compare(b.getScore(), a.getScore());
+            if (byScore != 0) {
+                return byScore;
+            }
+            final int byName = a.getName().compareTo(b.getName());
+            return byName != 0 ? byName : a.getPath().compareTo(b.getPath());
+        }
+    };
+    private static final Comparator<SearchHit> WORST_FIRST = Collections.reverseOrder(BEST_FIRST);
+
+    private FullTextSupport() {}
+
+    /**
+     * Determine if a full text index exists in the specified directory.
+     * @param dbFileDir Directory containing the search index
+     * @return True if the full text index exists
+     */
+    public static boolean indexExists(String dbFileDir) {
+        return new File(concat(dbFileDir, FULL_TEXT_FILE)).isFile();
+    }
+
+    /**
+     * Remove the full text index from the specified directory, if there is one.
+     * @param dbFileDir Directory containing the search index
+     * @throws BuilderException
+     */
+    public static void removeIndex(String dbFileDir) throws BuilderException {
+        final File dbFile = new File(concat(dbFileDir, FULL_TEXT_FILE));
+        if (dbFile.exists() && !dbFile.delete()) {
+            throw new BuilderException(String.format("Failed to remove the full text index %s", dbFile));
+        }
+    }
+
+    /**
+     * Create a new full text index and return a writer that index values can be added to as they become available.
+     * Any existing full text index in the directory is replaced. Nothing is visible until
+     * {@link FullTextWriter#finish()} is called.
+     * @param dbFileDir Directory to create the full text index in
+     * @param batchSize Number of rows to send to SQLite at once
+     * @return Writer for the new index. Must be closed by the caller.
+     * @throws BuilderException
+     */
+    public static FullTextWriter openIndex(String dbFileDir, int batchSize) throws BuilderException {
+        removeIndex(dbFileDir);
+        return new FullTextWriter(concat(dbFileDir, FULL_TEXT_FILE), Math.max(1, batchSize));
+    }
+
+    /**
+     * Search the full text index. The query uses the SQLite full text query syntax: words are all required, and
+     * <code>OR</code>, <code>NOT</code>, <code>"phrases"</code> and <code>prefix*</code> can be used. Hits are
+     * ranked with BM25, and a match in the name counts more than one in the description.
+     * @param dbFileDir Directory containing the full text index
+     * @param query Query
+     * @param limit Maximum number of hits to return
+     * @return Best hits first, each entry only once
+     * @throws BuilderException If there is no full text index, or the query is not valid
+     */
+    public static List<SearchHit> search(String dbFileDir, String query, int limit) throws BuilderException {
+        if (!indexExists(dbFileDir)) {
+            throw new BuilderException(String.format("No full text index exists in %s", dbFileDir));
+        }
+        if (limit < 1) {
+            return Collections.emptyList();
+        }
+        final PriorityQueue<SearchHit> best = new PriorityQueue<>(limit + 1, WORST_FIRST);
+        // Overlapping index pages can list an entry more than once
+        final Set<String> seen = new HashSet<>();
+        final String dbFile = concat(dbFileDir, FULL_TEXT_FILE);
+        try (final Connection connection = DriverManager.getConnection("jdbc:sqlite:" + dbFile);
+             final PreparedStatement stmt = connection.prepareStatement(SEARCH_SQL)) {
+            stmt.setString(1, query);
+            try (final ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    final String name = rs.getString(1);
+                    final String type = rs.getString(2);
+                    final String path = rs.getString(3);
+                    if (!seen.add(name + '\0' + type + '\0' + path)) {
+                        continue;
+                    }
+                    best.add(new SearchHit(name, type, path, rs.getString(4), score(rs.getBytes(5))));
+                    if (best.size() > limit) {
+                        best.poll();
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            throw new BuilderException(String.format("Failed to search the full text index for '%s'", query), e);
+        }
+        final List<SearchHit> hits = new ArrayList<>(best);
+        Collections.sort(hits, BEST_FIRST);
+        return hits;
+    }
+
+    /**
+     * Compute the BM25 score of a row from the output of <code>matchinfo(fullText, 'pcnalx')</code>.
+     * @param matchinfo Array of 32 bit integers in machine byte order
+     * @return Score. Higher is better.
+     */
+    static double score(byte[] matchinfo) {
+        final IntBuffer info = ByteBuffer.wrap(matchinfo).order(ByteOrder.nativeOrder()).asIntBuffer();
+        final int phrases = info.get(0);
+        final int columns = info.get(1);
+        final int rows = info.get(2);
+        final int averageLengths = 3;
+        final int lengths = averageLengths + columns;
+        final int hits = lengths + columns;
+        double score = 0;
+        for (int phrase = 0; phrase < phrases; phrase++) {
+            for (int column = 0; column < columns; column++) {
+                final double weight = column < COLUMN_WEIGHTS.length ? COLUMN_WEIGHTS[column] : 0;
+                final int index = hits + 3 * (phrase * columns + column);
+                final int rowHits = info.get(index);
+                if (weight == 0 || rowHits == 0) {
+                    continue;
+                }
+                final int rowsWithHits = info.get(index + 2);
+                final double idf = Math.log(1 + (rows - rowsWithHits + 0.5) / (rowsWithHits + 0.5));
+                final double averageLength = Math.max(1, info.get(averageLengths + column));
+                final double norm = K1 * (1 - B + B * info.get(lengths + column) / averageLength);
+                score += weight * idf * rowHits * (K1 + 1) / (rowHits + norm);
+            }
+        }
+        return score;
+    }
+
+    /**
+     * Writes index values into a new full text index inside a single transaction. A writer must only be used from one
+     * thread at a time.
+     */
+    public static final class FullTextWriter implements SearchIndexConsumer, AutoCloseable {
+        private final File dbFile;
+        private final Connection connection;
+        private final PreparedStatement insert;
+        private final int batchSize;
+        private int pending = 0;
+        private int rows = 0;
+        private boolean finished = false;
+
+        private FullTextWriter(String dbFile, int batchSize) throws BuilderException {
+            this.dbFile = new File(dbFile);
+            this.batchSize = batchSize;
+            Connection conn = null;
+            try {
+                conn = DriverManager.getConnection("jdbc:sqlite:" + dbFile);
+                try (final Statement stmt = conn.createStatement()) {
+                    for (final String pragma : DBSupport.BULK_LOAD_PRAGMAS) {
+                        stmt.execute(pragma);
+                    }
+                    conn.setAutoCommit(false);
+                    stmt.execute(CREATE_TABLE_SQL);
+                }
+                this.insert = conn.prepareStatement(INSERT_SQL);
+                this.connection = conn;
+            } catch (SQLException e) {
+                closeQuietly(conn);
+                throw new BuilderException("Error writing to SQLite DB", e);
+            }
+        }
+
+        /**
+         * Add index values to the full text index.
+         * @param values Index values to insert
+         * @throws BuilderException
+         */
+        @Override
+        public void accept(List<SearchIndexValue> values) throws BuilderException {
+            try {
+                for (final SearchIndexValue value : values) {
+                    insert.setString(1, value.getName());
+                    insert.setString(2, value.getType().getTypeName());
+                    insert.setString(3, value.getPath());
+                    insert.setString(4, value.getDescription());
+                    insert.addBatch();
+                    if (++pending == batchSize) {
+                        insert.executeBatch();
+                        pending = 0;
+                    }
+                }
+            } catch (SQLException e) {
+                throw new BuilderException("Error writing to SQLite DB", e);
+            }
+            rows += values.size();
+        }
+
+        /**
+         * Write any remaining values and commit, then merge the index into as few segments as possible.
+         * @throws BuilderException
+         */
+        public void finish() throws BuilderException {
+            try (final Statement stmt = connection.createStatement()) {
+                if (pending > 0) {
+                    insert.executeBatch();
+                    pending = 0;
+                }
+                connection.commit();
+                finished = true;
+                // Optimizing inside the load transaction leaves an index that matches nothing with SQLite 3.8.7
+                connection.setAutoCommit(true);
+                stmt.execute(OPTIMIZE_SQL);
+            } catch (SQLException e) {
+                throw new BuilderException("Error writing to SQLite DB", e);
+            }
+            logVerbose("Created the full text index with {} entries", rows);
+        }
+
+        /**
+         * Close the index. The index is removed unless {@link #finish()} has been called, so a failed build never
+         * leaves an empty one behind.
+         * @throws BuilderException
+         */
+        @Override
+        public void close() throws BuilderException {
+            try {
+                try {
+                    if (!finished) {
+                        connection.rollback();
+                    }
+                } finally {
+                    connection.close();
+                }
+            } catch (SQLException e) {
+                throw new BuilderException("Error closing SQLite DB", e);
+            }
+            if (!finished && dbFile.exists() && !dbFile.delete()) {
+                logVerbose("Could not delete {}", dbFile);
+            }
+        }
+
+        private static void closeQuietly(Connection conn) {
+            if (null == conn) {
+                return;
+            }
+            try {
+                conn.close();
+            } catch (SQLException ignored) {
+                // Already failing
+            }
+        }
+    }
+}
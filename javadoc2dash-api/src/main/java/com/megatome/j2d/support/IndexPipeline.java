@@ -0,0 +1,218 @@
+/**
+ * Copyright 2015 Megatome Technologies, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.megatome.j2d.support;
+
+import com.megatome.j2d.exception.BuilderException;
+import com.megatome.j2d.util.IndexData;
+import com.megatome.j2d.util.SearchIndexValue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static com.megatome.j2d.util.LogUtility.withContext;
+
+/**
+ * Builds the docset search index by streaming values from the Javadoc parser straight into the SQLite DB. Parsed
+ * values are passed through a bounded queue to a dedicated writer thread, so parsing overlaps with DB I/O and the
+ * full set of index values never has to be held in memory. When descriptions are read, the writer thread fills the
+ * full text index from the same values.
+ */
+public final class IndexPipeline {
+    /**
+     * Number of parsed chunks that may wait for the writer if no capacity is specified.
+     */
+    public static final int DEFAULT_QUEUE_CAPACITY = 4;
+
+    // Marks the end of the parsed values. Compared by identity.
+    private static final List<SearchIndexValue> END_OF_VALUES = new ArrayList<>(0);
+
+    private IndexPipeline() {}
+
+    /**
+     * Parse the specified files and write the values found into a new DB file.
+     * @param filesToIndex List of Javadoc files to parse
+     * @param dbFileDir Directory to create the DB file in
+     * @param options Options controlling how the files are parsed
+     * @param batchSize Number of rows to send to SQLite at once
+     * @throws BuilderException
+     */
+    public static void buildIndex(List<File> filesToIndex, String dbFileDir, ParseOptions options, int batchSize) throws BuilderException {
+        buildIndex(filesToIndex, dbFileDir, options, batchSize, null);
+    }
+
+    /**
+     * Parse the specified files and write the values found into a new DB file, collecting a table of contents from
+     * the same values. The table of contents is complete as soon as the files are parsed, while the DB file may still
+     * be written.
+     * @param filesToIndex List of Javadoc files to parse
+     * @param dbFileDir Directory to create the DB file in
+     * @param options Options controlling how the files are parsed
+     * @param batchSize Number of rows to send to SQLite at once
+     * @param toc Table of contents to fill. May be null.
+     * @throws BuilderException
+     */
+    public static void buildIndex(List<File> filesToIndex, String dbFileDir, ParseOptions options, int batchSize, TableOfContents toc) throws BuilderException {
+        buildIndex(filesToIndex, dbFileDir, options, batchSize, DEFAULT_QUEUE_CAPACITY, toc);
+    }
+
+    /**
+     * Parse the specified files and write the values found into a new DB file. If
+     * {@link ParseOptions#isDescriptions()} is set, a full text index is written next to it.
+     * @param filesToIndex List of Javadoc files to parse
+     * @param dbFileDir Directory to create the DB file in
+     * @param options Options controlling how the files are parsed
+     * @param batchSize Number of rows to send to SQLite at once
+     * @param queueCapacity Number of parsed chunks that may wait for the writer before the parser blocks
+     * @throws BuilderException
+     */
+    public static void buildIndex(List<File> filesToIndex, final String dbFileDir, final ParseOptions options, final int batchSize, int queueCapacity) throws BuilderException {
+        buildIndex(filesToIndex, dbFileDir, options, batchSize, queueCapacity, null);
+    }
+
+    /**
+     * Parse the specified files and write the values found into a new DB file, collecting a table of contents from
+     * the same values.
+     * @param filesToIndex List of Javadoc files to parse
+     * @param dbFileDir Directory to create the DB file in
+     * @param options Options controlling how the files are parsed
+     * @param batchSize Number of rows to send to SQLite at once
+     * @param queueCapacity Number of parsed chunks that may wait for the writer before the parser blocks
+     * @param toc Table of contents to fill. May be null.
+     * @throws BuilderException
+     */
+    public static void buildIndex(List<File> filesToIndex, String dbFileDir, ParseOptions options, int batchSize, int queueCapacity,
+                                  TableOfContents toc) throws BuilderException {
+        final IndexData indexData = new IndexData();
+        for (final File f : filesToIndex) {
+            indexData.addFileToIndex(f);
+        }
+        buildIndex(indexData, dbFileDir, options, batchSize, queueCapacity, toc);
+    }
+
+    /**
+     * Parse the files found by {@link JavadocSupport#findIndexFile(java.nio.file.Path)} and write the values found into
+     * a new DB file, collecting a table of contents from the same values. The files may be entries in a Javadoc
+     * archive.
+     * @param indexData Javadoc files to parse
+     * @param dbFileDir Directory to create the DB file in
+     * @param options Options controlling how the files are parsed
+     * @param batchSize Number of rows to send to SQLite at once
+     * @param toc Table of contents to fill. May be null.
+     * @throws BuilderException
+     */
+    public static void buildIndex(IndexData indexData, String dbFileDir, ParseOptions options, int batchSize, TableOfContents toc) throws BuilderException {
+        buildIndex(indexData, dbFileDir, options, batchSize, DEFAULT_QUEUE_CAPACITY, toc);
+    }
+
+    /**
+     * Parse the files found by {@link JavadocSupport#findIndexFile(java.nio.file.Path)} and write the values found into
+     * a new DB file, collecting a table of contents from the same values.
+     * @param indexData Javadoc files to parse
+     * @param dbFileDir Directory to create the DB file in
+     * @param options Options controlling how the files are parsed
+     * @param batchSize Number of rows to send to SQLite at once
+     * @param queueCapacity Number of parsed chunks that may wait for the writer before the parser blocks
+     * @param toc Table of contents to fill. May be null.
+     * @throws BuilderException
+     */
+    public static void buildIndex(IndexData indexData, final String dbFileDir, final ParseOptions options, final int batchSize, int queueCapacity,
+                                  final TableOfContents toc) throws BuilderException {
+        final BlockingQueue<List<SearchIndexValue>> queue = new ArrayBlockingQueue<>(Math.max(1, queueCapacity));
+        final ExecutorService writerExecutor = Executors.newSingleThreadExecutor();
+        try {
+            final Future<Void> writer = writerExecutor.submit(withContext(new Callable<Void>() {
+                @Override
+                public Void call() throws Exception {
+                    try (final DBSupport.IndexWriter indexWriter = DBSupport.openIndex(dbFileDir, batchSize);
+                         final FullTextSupport.FullTextWriter fullTextWriter = options.isDescriptions() ?
+                                 FullTextSupport.openIndex(dbFileDir, batchSize) : null) {
+                        List<SearchIndexValue> values = queue.take();
+                        while (values != END_OF_VALUES) {
+                            indexWriter.accept(values);
+                            if (null != fullTextWriter) {
+                                fullTextWriter.accept(values);
+                            }
+                            values = queue.take();
+                        }
+                        indexWriter.finish();
+                        if (null != fullTextWriter) {
+                            fullTextWriter.finish();
+                        }
+                    }
+                    return null;
+                }
+            }));
+
+            JavadocSupport.findSearchIndexValues(indexData, options, new SearchIndexConsumer() {
+                @Override
+                public void accept(List<SearchIndexValue> values) throws BuilderException {
+                    if (!values.isEmpty()) {
+                        if (null != toc) {
+                            toc.accept(values);
+                        }
+                        put(queue, values, writer);
+                    }
+                }
+            });
+            if (null != toc) {
+                // Pages can be copied while the DB is still being written
+                toc.complete();
+            }
+            put(queue, END_OF_VALUES, writer);
+            getWriterResult(writer);
+        } finally {
+            writerExecutor.shutdownNow();
+        }
+    }
+
+    private static void put(BlockingQueue<List<SearchIndexValue>> queue, List<SearchIndexValue> values, Future<Void> writer) throws BuilderException {
+        try {
+            // Don't wait forever on a full queue if the writer has already given up
+            while (!queue.offer(values, 100, TimeUnit.MILLISECONDS)) {
+                if (writer.isDone()) {
+                    getWriterResult(writer);
+                    throw new BuilderException("SQLite writer stopped before all index values were written");
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new BuilderException("Interrupted while indexing javadoc files", e);
+        }
+    }
+
+    private static void getWriterResult(Future<Void> writer) throws BuilderException {
+        try {
+            writer.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new BuilderException("Interrupted while writing the search index", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof BuilderException) {
+                throw (BuilderException) e.getCause();
+            }
+            throw new BuilderException("Error writing to SQLite DB", e.getCause());
+        }
+    }
+}
@@ -16,27 +16,44 @@
 package com.megatome.j2d.support;
 
 import com.megatome.j2d.exception.BuilderException;
+import com.megatome.j2d.util.BuildMetrics;
 import com.megatome.j2d.util.IndexData;
+import com.megatome.j2d.util.SearchIndexTable;
 import com.megatome.j2d.util.SearchIndexValue;
-import org.apache.commons.io.FileUtils;
 import org.jsoup.Jsoup;
 import org.jsoup.nodes.Document;
 import org.jsoup.nodes.Element;
+import org.jsoup.nodes.Node;
 import org.jsoup.select.Elements;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.UnsupportedEncodingException;
 import java.net.URLDecoder;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.ProviderNotFoundException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.regex.Pattern;
 
 import static com.megatome.j2d.util.LogUtility.logVerbose;
-import static org.apache.commons.io.FileUtils.getFile;
+import static com.megatome.j2d.util.LogUtility.withContext;
 import static org.apache.commons.lang3.StringUtils.containsIgnoreCase;
 import static org.apache.commons.lang3.StringUtils.equalsIgnoreCase;
+import static org.apache.commons.lang3.StringUtils.normalizeSpace;
+import static org.apache.commons.lang3.StringUtils.trimToNull;
 
 /**
  * Utility class to support Javadoc related docset tasks.
@@ -55,34 +72,50 @@ public final class JavadocSupport {
      * @see IndexData
      */
     public static IndexData findIndexFile(File javadocDir) throws BuilderException {
+        return findIndexFile(javadocDir.toPath());
+    }
+
+    /**
+     * Find the file to be used as the docset index and locate all Javadoc files to be indexed.
+     * @param javadocDir Directory where the Javadoc is located. May be the root of a Javadoc archive opened with
+     *                   {@link #openJavadocArchive(File)}.
+     * @return IndexData object
+     * @throws BuilderException
+     * @see IndexData
+     */
+    public static IndexData findIndexFile(Path javadocDir) throws BuilderException {
         final IndexData indexData = new IndexData();
-        if (!javadocDir.exists() || !javadocDir.isDirectory()) {
-            throw new BuilderException(String.format("%s does not exist, or is not a directory", javadocDir.getAbsolutePath()));
+        if (!Files.isDirectory(javadocDir)) {
+            throw new BuilderException(String.format("%s does not exist, or is not a directory", describe(javadocDir)));
         }
 
         logVerbose("Looking for javadoc files");
 
         String docsetIndexFile = "overview-summary.html";
 
-        if (!getFile(javadocDir, docsetIndexFile).exists()) {
+        if (!Files.exists(javadocDir.resolve(docsetIndexFile))) {
             docsetIndexFile = null;
         }
 
-        final File indexFilesDir = getFile(javadocDir, "index-files");
-        if (indexFilesDir.exists() && indexFilesDir.isDirectory()) {
+        final Path indexFilesDir = javadocDir.resolve("index-files");
+        if (Files.isDirectory(indexFilesDir)) {
             docsetIndexFile = (docsetIndexFile != null) ? docsetIndexFile : "index-1.html";
-            for (File f : FileUtils.listFiles(indexFilesDir, new String[]{"html"}, false)) {
-                if (f.getName().startsWith("index-")) {
-                    indexData.addFileToIndex(f);
+            try (final DirectoryStream<Path> stream = Files.newDirectoryStream(indexFilesDir, "index-*.html")) {
+                for (final Path f : stream) {
+                    if (Files.isRegularFile(f)) {
+                        indexData.addPathToIndex(f);
+                    }
                 }
+            } catch (IOException e) {
+                throw new BuilderException(String.format("Failed to list %s", describe(indexFilesDir)), e);
             }
-        } else if (getFile(javadocDir, "index-all.html").exists()){
+        } else if (Files.exists(javadocDir.resolve("index-all.html"))) {
             docsetIndexFile = (docsetIndexFile != null) ? docsetIndexFile : "index-all.html";
-            indexData.addFileToIndex(getFile(javadocDir, "index-all.html"));
+            indexData.addPathToIndex(javadocDir.resolve("index-all.html"));
         }
 
         if (!indexData.hasFilesToIndex()) {
-            throw new BuilderException(String.format("Did not find any javadoc files. Make sure that %s is a directory containing javadoc", javadocDir.getAbsolutePath()));
+            throw new BuilderException(String.format("Did not find any javadoc files. Make sure that %s is a directory containing javadoc", describe(javadocDir)));
         }
 
         indexData.setDocsetIndexFile(docsetIndexFile);
@@ -90,6 +123,41 @@ public final class JavadocSupport {
         return indexData;
     }
 
+    /**
+     * Determine if a Javadoc location is an archive, such as a <code>-javadoc.jar</code>, rather than a directory.
+     * @param javadocLocation Javadoc location
+     * @return True if the location is a <code>.jar</code> or <code>.zip</code> file
+     */
+    public static boolean isJavadocArchive(File javadocLocation) {
+        final String name = javadocLocation.getName().toLowerCase(Locale.ENGLISH);
+        return javadocLocation.isFile() && (name.endsWith(".jar") || name.endsWith(".zip"));
+    }
+
+    /**
+     * Open a Javadoc archive, so that its entries can be read in place without extracting it. The root of the
+     * Javadoc is <code>getPath("/")</code> of the returned file system, which must be closed when done.
+     * @param javadocArchive Archive containing the Javadoc
+     * @return Zip file system of the archive
+     * @throws BuilderException
+     */
+    public static FileSystem openJavadocArchive(File javadocArchive) throws BuilderException {
+        try {
+            return FileSystems.newFileSystem(javadocArchive.toPath(), (ClassLoader) null);
+        } catch (IOException | ProviderNotFoundException e) {
+            throw new BuilderException(String.format("Failed to open javadoc archive %s", javadocArchive.getAbsolutePath()), e);
+        }
+    }
+
+    /**
+     * Paths in an archive are shown with the archive they are in.
+     */
+    private static String describe(Path path) {
+        if (path.getFileSystem() == FileSystems.getDefault()) {
+            return path.toAbsolutePath().toString();
+        }
+        return path.getFileSystem() + "!" + path;
+    }
+
     /**
      * Find all values to be indexed within the specified list of files.
      * @param filesToIndex List of Javadoc files to parse
@@ -97,16 +165,180 @@ public final class JavadocSupport {
      * @throws BuilderException
      */
     public static List<SearchIndexValue> findSearchIndexValues(List<File> filesToIndex) throws BuilderException {
+        return findSearchIndexValues(filesToIndex, 1);
+    }
+
+    /**
+     * Find all values to be indexed within the specified list of files, parsing several files at the same time.
+     * Values are returned in the order of <code>filesToIndex</code> no matter which file finishes parsing first, so
+     * the result is the same as a single threaded parse.
+     * @param filesToIndex List of Javadoc files to parse
+     * @param parseThreads Number of files to parse at the same time. Values less than 2 parse on the calling thread.
+     * @return List of relevant values to be indexed in the docset
+     * @throws BuilderException
+     */
+    public static List<SearchIndexValue> findSearchIndexValues(List<File> filesToIndex, int parseThreads) throws BuilderException {
+        return findSearchIndexValues(filesToIndex, new ParseOptions().parseThreads(parseThreads));
+    }
+
+    /**
+     * Find all values to be indexed within the specified list of files.
+     * @param filesToIndex List of Javadoc files to parse
+     * @param options Options controlling how the files are parsed
+     * @return List of relevant values to be indexed in the docset
+     * @throws BuilderException
+     */
+    public static List<SearchIndexValue> findSearchIndexValues(List<File> filesToIndex, ParseOptions options) throws BuilderException {
         final List<SearchIndexValue> values = new ArrayList<>();
+        findSearchIndexValues(filesToIndex, options, new SearchIndexConsumer() {
+            @Override
+            public void accept(List<SearchIndexValue> fileValues) {
+                values.addAll(fileValues);
+            }
+        });
+        return values;
+    }
+
+    /**
+     * Find all values to be indexed within the specified list of files, and store them in a compact table.
+     * @param filesToIndex List of Javadoc files to parse
+     * @param options Options controlling how the files are parsed
+     * @return Table of relevant values to be indexed in the docset
+     * @throws BuilderException
+     * @see SearchIndexTable
+     */
+    public static SearchIndexTable findSearchIndexTable(List<File> filesToIndex, ParseOptions options) throws BuilderException {
+        final SearchIndexTable table = new SearchIndexTable();
+        findSearchIndexValues(filesToIndex, options, new SearchIndexConsumer() {
+            @Override
+            public void accept(List<SearchIndexValue> fileValues) {
+                table.addAll(fileValues);
+            }
+        });
+        return table;
+    }
+
+    /**
+     * Find all values to be indexed within the specified list of files, and hand the values for each file to a
+     * consumer as soon as that file is parsed. At most {@link ParseOptions#getParseThreads()} files are parsed ahead
+     * of the consumer, so memory use does not depend on the number of files. The consumer is called on the calling
+     * thread, in the order of <code>filesToIndex</code>.
+     * @param filesToIndex List of Javadoc files to parse
+     * @param options Options controlling how the files are parsed
+     * @param consumer Consumer that receives the values found in each file
+     * @throws BuilderException
+     */
+    public static void findSearchIndexValues(List<File> filesToIndex, ParseOptions options, SearchIndexConsumer consumer) throws BuilderException {
+        final List<Path> pathsToIndex = new ArrayList<>(filesToIndex.size());
         for (final File f : filesToIndex) {
-            final List<SearchIndexValue> indexValues = indexFile(f);
-            values.addAll(indexValues);
+            pathsToIndex.add(f.toPath());
         }
+        parseIndexFiles(pathsToIndex, options, consumer);
+    }
+
+    /**
+     * Find all values to be indexed within the files found by {@link #findIndexFile(Path)}, and hand the values for
+     * each file to a consumer as soon as that file is parsed, as {@link #findSearchIndexValues(List, ParseOptions,
+     * SearchIndexConsumer)} does. The files may be entries in a Javadoc archive.
+     * @param indexData Javadoc files to parse
+     * @param options Options controlling how the files are parsed
+     * @param consumer Consumer that receives the values found in each file
+     * @throws BuilderException
+     */
+    public static void findSearchIndexValues(IndexData indexData, ParseOptions options, SearchIndexConsumer consumer) throws BuilderException {
+        parseIndexFiles(indexData.getPathsToIndex(), options, consumer);
+    }
+
+    private static void parseIndexFiles(List<Path> filesToIndex, final ParseOptions options, SearchIndexConsumer consumer) throws BuilderException {
+        final int parseThreads = options.getParseThreads();
+        if (parseThreads < 2 || filesToIndex.size() < 2) {
+            for (final Path f : filesToIndex) {
+                consumer.accept(indexFile(f, options));
+            }
+            return;
+        }
+
+        final int window = Math.min(parseThreads, filesToIndex.size());
+        final ExecutorService executor = Executors.newFixedThreadPool(window);
+        try {
+            final List<Future<List<SearchIndexValue>>> results = new ArrayList<>();
+            for (int i = 0; i < window; i++) {
+                results.add(submitIndexFile(executor, filesToIndex.get(i), options));
+            }
+            for (int i = 0; i < filesToIndex.size(); i++) {
+                final List<SearchIndexValue> fileValues = getParseResult(results.get(i));
+                results.set(i, null);
+                if (i + window < filesToIndex.size()) {
+                    results.add(submitIndexFile(executor, filesToIndex.get(i + window), options));
+                }
+                consumer.accept(fileValues);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        logVerbose("Parsed {} javadoc files using {} threads", filesToIndex.size(), window);
+    }
+
+    private static Future<List<SearchIndexValue>> submitIndexFile(ExecutorService executor, final Path f, final ParseOptions options) {
+        return executor.submit(withContext(new Callable<List<SearchIndexValue>>() {
+            @Override
+            public List<SearchIndexValue> call() throws BuilderException {
+                return indexFile(f, options);
+            }
+        }));
+    }
+
+    private static List<SearchIndexValue> getParseResult(Future<List<SearchIndexValue>> result) throws BuilderException {
+        try {
+            return result.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new BuilderException("Interrupted while indexing javadoc files", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof BuilderException) {
+                throw (BuilderException) e.getCause();
+            }
+            throw new BuilderException("Failed to index javadoc files", e.getCause());
+        }
+    }
+
+    private static List<SearchIndexValue> indexFile(Path f, ParseOptions options) throws BuilderException {
+        final List<SearchIndexValue> values = readIndexFile(f, options);
+        BuildMetrics.current().addParsed(values);
         return values;
     }
 
-    private static List<SearchIndexValue> indexFile(File f) throws BuilderException {
+    private static List<SearchIndexValue> readIndexFile(Path f, ParseOptions options) throws BuilderException {
+        final ParseCache cache = options.getParseCache();
+        if (null == cache) {
+            return parseFile(f, options);
+        }
+        final String key;
+        try {
+            key = cache.getKey(f, options.getParserStrategy(), options.isDescriptions());
+        } catch (IOException e) {
+            throw new BuilderException("Failed to index javadoc files", e);
+        }
+        List<SearchIndexValue> values = cache.get(key);
+        if (null == values) {
+            values = parseFile(f, options);
+            cache.put(key, values);
+        }
+        return values;
+    }
+
+    private static List<SearchIndexValue> parseFile(Path f, ParseOptions options) throws BuilderException {
         final List<SearchIndexValue> values = new ArrayList<>();
+        if (options.getParserStrategy() == ParserStrategy.STREAMING) {
+            StreamingIndexExtractor.extract(f, new StreamingIndexExtractor.LinkHandler() {
+                @Override
+                public void link(String text, String className, String name, String href, String description) throws BuilderException {
+                    addIndexValue(values, text, className, name, href, description);
+                }
+            }, options.isDescriptions());
+            return values;
+        }
+
         final Elements elements = loadAndFindLinks(f);
         for (final Element e : elements) {
             Element parent = e.parent();
@@ -124,50 +356,53 @@ public final class JavadocSupport {
             if (!containsIgnoreCase(parentTagName, "dt")) {
                 continue;
             }
-            final String text = parent.text();
-            final String name = e.text();
-            final String className = parent.className();
+            addIndexValue(values, parent.text(), parent.className(), e.text(), e.attr("href"),
+                    options.isDescriptions() ? findDescription(parent) : null);
+        }
+        return values;
+    }
 
-            final MatchType type = getMatchingType(text, className);
+    private static String findDescription(Element dt) {
+        // nextElementSibling() looks the element up by equality, so overloads with the same <dt> would all get the
+        // description of the first one. Sibling nodes are found by position.
+        Node next = dt.nextSibling();
+        while (null != next && !(next instanceof Element)) {
+            next = next.nextSibling();
+        }
+        return null != next && equalsIgnoreCase(((Element) next).tagName(), "dd") ? ((Element) next).text() : null;
+    }
 
-            if (null == type) {
-                System.err.println(String.format("Unknown type found. Please submit a bug report. (Text: %s, Name: %s, className: %s)", text, name, className));
-                continue;
-            }
-            try {
-                final String linkPath = URLDecoder.decode(e.attr("href"), "UTF-8");
-
-                if (name.isEmpty() || linkPath.isEmpty()) {
-                    System.err.println(String.format("Something went wrong with parsing a link, possibly unescaped tags in Javadoc. (Name: %s, Type: %s, Link: %s)", name, type, linkPath));
-                    if (values.size() > 0) {
-                        final SearchIndexValue last = values.get(values.size() - 1);
-                        System.err.println(String.format("Most recently parsed value was: (Name: %s, Type: %s, Path: %s)", last.getName(), last.getType(), last.getPath()));
-                    }
-                    continue;
+    private static void addIndexValue(List<SearchIndexValue> values, String text, String className, String name, String href, String description) throws BuilderException {
+        final MatchType type = MatchType.find(text, className);
+
+        if (null == type) {
+            System.err.println(String.format("Unknown type found. Please submit a bug report. (Text: %s, Name: %s, className: %s)", text, name, className));
+            return;
+        }
+        try {
+            final String linkPath = URLDecoder.decode(href, "UTF-8");
+
+            if (name.isEmpty() || linkPath.isEmpty()) {
+                System.err.println(String.format("Something went wrong with parsing a link, possibly unescaped tags in Javadoc. (Name: %s, Type: %s, Link: %s)", name, type, linkPath));
+                if (values.size() > 0) {
+                    final SearchIndexValue last = values.get(values.size() - 1);
+                    System.err.println(String.format("Most recently parsed value was: (Name: %s, Type: %s, Path: %s)", last.getName(), last.getType(), last.getPath()));
                 }
-                values.add(new SearchIndexValue(name, type, linkPath));
-            } catch (UnsupportedEncodingException ex) {
-                throw new BuilderException("Error decoding a link", ex);
+                return;
             }
+            // Entries without a summary have an empty <dd>, or one holding just a non-breaking space
+            values.add(new SearchIndexValue(name, type, linkPath, null != description ? trimToNull(normalizeSpace(description.replace('\u00a0', ' '))) : null));
+        } catch (UnsupportedEncodingException ex) {
+            throw new BuilderException("Error decoding a link", ex);
         }
-        return values;
     }
 
-    private static Elements loadAndFindLinks(final File f) throws BuilderException {
-        try {
-            final Document doc = Jsoup.parse(f, "UTF-8");
+    private static Elements loadAndFindLinks(final Path f) throws BuilderException {
+        try (final InputStream in = Files.newInputStream(f)) {
+            final Document doc = Jsoup.parse(in, "UTF-8", f.toAbsolutePath().toString());
             return doc.select("a");
         } catch (IOException e) {
             throw new BuilderException("Failed to index javadoc files", e);
         }
     }
-
-    private static MatchType getMatchingType(String text, String className) {
-        for (final MatchType matchType : MatchType.values()) {
-            if (matchType.matches(text, className)) {
-                return matchType;
-            }
-        }
-        return null;
-    }
 }
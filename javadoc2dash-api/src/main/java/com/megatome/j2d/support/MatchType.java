@@ -49,10 +49,31 @@ public enum MatchType {
         this.classSuffix = classSuffix;
     }
 
+    private static final MatchTypeClassifier CLASSIFIER = new MatchTypeClassifier(values());
+
     public String getTypeName() {
         return typeName;
     }
 
+    List<String> getMatchingText() {
+        return Collections.unmodifiableList(matchingText);
+    }
+
+    String getClassSuffix() {
+        return classSuffix;
+    }
+
+    /**
+     * Find the type of an index entry. Gives the same result as trying each type's {@link #matches} in declaration
+     * order and taking the first match, but checks all types in one pass over the text.
+     * @param target Text of the index entry
+     * @param className Class name of the index entry element. May be null.
+     * @return Matching type, or null if no type matches
+     */
+    public static MatchType find(String target, String className) {
+        return CLASSIFIER.classify(target, className);
+    }
+
     public boolean matches(String target, String className) {
         for (final String searchString : matchingText) {
             if (containsIgnoreCase(target, searchString)) {
@@ -0,0 +1,170 @@
+/**
+ * Copyright 2015 Megatome Technologies, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.megatome.j2d.support;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Precompiled form of {@link MatchType#find}. The matching texts of all types are compiled into one Aho-Corasick
+ * automaton, and the class suffixes into another. Each state of an automaton knows the lowest type ordinal among the
+ * patterns that end there, so an index entry is classified in a single pass over its text and class name, without
+ * allocating, with the same result as trying the types in declaration order.
+ */
+final class MatchTypeClassifier {
+    private static final int NO_MATCH = Integer.MAX_VALUE;
+
+    private final MatchType[] types;
+    private final Automaton textAutomaton;
+    private final Automaton classAutomaton;
+
+    MatchTypeClassifier(MatchType[] types) {
+        this.types = types.clone();
+        final List<String> textPatterns = new ArrayList<>();
+        final List<Integer> textTypes = new ArrayList<>();
+        final List<String> classPatterns = new ArrayList<>();
+        final List<Integer> classTypes = new ArrayList<>();
+        for (final MatchType type : types) {
+            for (final String text : type.getMatchingText()) {
+                textPatterns.add(text);
+                textTypes.add(type.ordinal());
+            }
+            if (null != type.getClassSuffix()) {
+                classPatterns.add(type.getClassSuffix());
+                classTypes.add(type.ordinal());
+            }
+        }
+        this.textAutomaton = new Automaton(textPatterns, textTypes);
+        this.classAutomaton = new Automaton(classPatterns, classTypes);
+    }
+
+    /**
+     * Find the type of an index entry.
+     * @param target Text of the index entry. May be null.
+     * @param className Class name of the index entry element. May be null.
+     * @return First matching type in declaration order, or null if no type matches
+     */
+    MatchType classify(String target, String className) {
+        final int best = classAutomaton.lowestMatch(className, textAutomaton.lowestMatch(target, NO_MATCH));
+        return NO_MATCH == best ? null : types[best];
+    }
+
+    /**
+     * Same comparison as {@link String#regionMatches(boolean, int, String, int, int)} with ignoreCase set, which is
+     * what containsIgnoreCase uses: two chars match if they are equal after upper casing, or after lower casing the
+     * upper case.
+     */
+    private static char fold(char c) {
+        return Character.toLowerCase(Character.toUpperCase(c));
+    }
+
+    private static final class Automaton {
+        // Every pattern is ASCII once folded. Folded chars that do not appear in a pattern share char class 0.
+        private final int[] charClasses = new int[128];
+        private final int alphabetSize;
+        private final int[] transitions;
+        private final int[] lowestType;
+
+        private Automaton(List<String> patterns, List<Integer> patternTypes) {
+            int classes = 1;
+            for (final String pattern : patterns) {
+                for (int i = 0; i < pattern.length(); i++) {
+                    final char c = fold(pattern.charAt(i));
+                    if (c >= charClasses.length) {
+                        throw new IllegalArgumentException("Match patterns must be ASCII: " + pattern);
+                    }
+                    if (0 == charClasses[c]) {
+                        charClasses[c] = classes++;
+                    }
+                }
+            }
+            alphabetSize = classes;
+
+            // Build the trie, with -1 for missing edges
+            final List<int[]> trie = new ArrayList<>();
+            final List<Integer> outputs = new ArrayList<>();
+            trie.add(newRow());
+            outputs.add(NO_MATCH);
+            for (int p = 0; p < patterns.size(); p++) {
+                final String pattern = patterns.get(p);
+                int state = 0;
+                for (int i = 0; i < pattern.length(); i++) {
+                    final int charClass = charClasses[fold(pattern.charAt(i))];
+                    if (trie.get(state)[charClass] < 0) {
+                        trie.get(state)[charClass] = trie.size();
+                        trie.add(newRow());
+                        outputs.add(NO_MATCH);
+                    }
+                    state = trie.get(state)[charClass];
+                }
+                outputs.set(state, Math.min(outputs.get(state), patternTypes.get(p)));
+            }
+
+            // Turn the trie into a DFA in breadth first order, folding the failure links into the transitions and
+            // the outputs of each suffix state into the state itself
+            final int states = trie.size();
+            transitions = new int[states * alphabetSize];
+            lowestType = new int[states];
+            final int[] failure = new int[states];
+            for (int s = 0; s < states; s++) {
+                lowestType[s] = outputs.get(s);
+            }
+            final Deque<Integer> queue = new ArrayDeque<>();
+            queue.add(0);
+            while (!queue.isEmpty()) {
+                final int state = queue.remove();
+                for (int c = 0; c < alphabetSize; c++) {
+                    final int child = trie.get(state)[c];
+                    if (child < 0) {
+                        transitions[state * alphabetSize + c] = 0 == state ? 0 : transitions[failure[state] * alphabetSize + c];
+                    } else {
+                        transitions[state * alphabetSize + c] = child;
+                        failure[child] = 0 == state ? 0 : transitions[failure[state] * alphabetSize + c];
+                        lowestType[child] = Math.min(lowestType[child], lowestType[failure[child]]);
+                        queue.add(child);
+                    }
+                }
+            }
+        }
+
+        private int[] newRow() {
+            final int[] row = new int[alphabetSize];
+            Arrays.fill(row, -1);
+            return row;
+        }
+
+        /**
+         * @return The lowest type ordinal matched in the text, or <code>best</code> if that is lower
+         */
+        private int lowestMatch(String text, int best) {
+            if (null == text) {
+                return best;
+            }
+            int state = 0;
+            for (int i = 0, length = text.length(); i < length && best > 0; i++) {
+                final char c = fold(text.charAt(i));
+                state = transitions[state * alphabetSize + (c < charClasses.length ? charClasses[c] : 0)];
+                if (lowestType[state] < best) {
+                    best = lowestType[state];
+                }
+            }
+            return best;
+        }
+    }
+}
@@ -0,0 +1,48 @@
+/**
+ * Copyright 2015 Megatome Technologies, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.megatome.j2d.support;
+
+/**
+ * Forms the created docset can be written in
+ */
+public enum OutputFormat {
+    /**
+     * A <code>.docset</code> directory.
+     */
+    DIRECTORY(null),
+    /**
+     * A gzipped tar of the <code>.docset</code> directory, as used by Dash docset feeds.
+     */
+    TGZ("tgz"),
+    /**
+     * A zip of the <code>.docset</code> directory.
+     */
+    ZIP("zip");
+
+    private final String extension;
+
+    OutputFormat(String extension) {
+        this.extension = extension;
+    }
+
+    /**
+     * Get the file extension of archives in this format
+     * @return File extension, or null for {@link #DIRECTORY}
+     */
+    public String getExtension() {
+        return extension;
+    }
+}
@@ -0,0 +1,137 @@
+/**
+ * Copyright 2015 Megatome Technologies, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.megatome.j2d.support;
+
+import com.megatome.j2d.util.SearchIndexValue;
+import org.apache.commons.io.FileUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Decides which Javadoc pages and search index rows belong to a set of packages. A page belongs to a package when it
+ * is directly in the directory of the package, or in its <code>class-use</code> or <code>doc-files</code> directory.
+ * Subpackages are not included.
+ */
+public final class PackageFilter {
+    private static final Set<String> PACKAGE_SUBDIRECTORIES = Collections.unmodifiableSet(
+            new LinkedHashSet<>(Arrays.asList("class-use", "doc-files")));
+
+    private final Set<String> packagePaths = new LinkedHashSet<>();
+
+    /**
+     * Ctor
+     * @param packageNames Names of the packages, such as <code>com.example.util</code>
+     */
+    public PackageFilter(Collection<String> packageNames) {
+        for (final String packageName : packageNames) {
+            if (null == packageName || packageName.trim().isEmpty()) {
+                throw new IllegalArgumentException("Package names must not be empty");
+            }
+            packagePaths.add(packageName.trim().replace('.', '/'));
+        }
+    }
+
+    /**
+     * Get the directories of the packages, relative to the Javadoc root
+     * @return Package directories, using '/' as the separator
+     */
+    public Set<String> getPackagePaths() {
+        return Collections.unmodifiableSet(packagePaths);
+    }
+
+    /**
+     * Determine if a link from the search index points into one of the packages. Links from split index files start
+     * with <code>../</code>, which is ignored, as is any anchor.
+     * @param path Link to check
+     * @return True if the link points to a page of one of the packages
+     */
+    public boolean matches(String path) {
+        String page = path;
+        final int anchor = page.indexOf('#');
+        if (anchor >= 0) {
+            page = page.substring(0, anchor);
+        }
+        while (page.startsWith("../") || page.startsWith("./")) {
+            page = page.substring(page.indexOf('/') + 1);
+        }
+        int end = page.lastIndexOf('/');
+        while (end > 0) {
+            final String dir = page.substring(0, end);
+            if (packagePaths.contains(dir)) {
+                return true;
+            }
+            final int parent = dir.lastIndexOf('/');
+            if (!PACKAGE_SUBDIRECTORIES.contains(dir.substring(parent + 1))) {
+                return false;
+            }
+            end = parent;
+        }
+        return false;
+    }
+
+    /**
+     * Keep only the index values that point into one of the packages.
+     * @param values Index values to filter
+     * @return Matching index values
+     */
+    public List<SearchIndexValue> filter(List<SearchIndexValue> values) {
+        final List<SearchIndexValue> matching = new ArrayList<>();
+        for (final SearchIndexValue value : values) {
+            if (matches(value.getPath())) {
+                matching.add(value);
+            }
+        }
+        return matching;
+    }
+
+    /**
+     * Determine if a Javadoc index file could link into one of the packages, without parsing it.
+     * @param indexFile Index file to check
+     * @return True if the file mentions the directory of one of the packages
+     * @throws IOException
+     */
+    public boolean isMentionedIn(File indexFile) throws IOException {
+        final String content = FileUtils.readFileToString(indexFile, "UTF-8");
+        for (final String packagePath : packagePaths) {
+            if (content.contains(packagePath + "/")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Determine if a directory inside a package directory belongs to the package rather than being a subpackage.
+     * @param name Name of the directory
+     * @return True if the directory is part of the package
+     */
+    static boolean isPackageSubdirectory(String name) {
+        return PACKAGE_SUBDIRECTORIES.contains(name);
+    }
+
+    @Override
+    public String toString() {
+        return packagePaths.toString();
+    }
+}
@@ -0,0 +1,264 @@
+/**
+ * Copyright 2015 Megatome Technologies, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.megatome.j2d.support;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * A gzip output stream that compresses blocks of input on several threads at the same time, in the style of
+ * <a href="https://zlib.net/pigz/">pigz</a>. Each block is deflated on its own, primed with the last 32 KiB of the
+ * block before it, and ended on a byte boundary so the compressed blocks can be joined into one deflate stream. The
+ * result is a standard single member gzip file.
+ * <p>
+ * {@link #flush()} only flushes the underlying stream. Buffered input is compressed once a block is full, or when the
+ * stream is finished.
+ */
+public final class ParallelGzipOutputStream extends FilterOutputStream {
+    /**
+     * Default size of the blocks that are compressed independently, in bytes.
+     */
+    public static final int DEFAULT_BLOCK_SIZE = 128 * 1024;
+    /**
+     * Smallest allowed block size, in bytes. Every block must be able to hold a full dictionary for the next one.
+     */
+    public static final int MIN_BLOCK_SIZE = 32 * 1024;
+
+    private static final int DICTIONARY_SIZE = 32 * 1024;
+    private static final int GZIP_MAGIC = 0x8b1f;
+    private static final int OS_UNKNOWN = 255;
+
+    private final int level;
+    private final int blockSize;
+    private final int maxPending;
+    private final ExecutorService executor;
+    private final Deque<Future<byte[]>> pending = new ArrayDeque<>();
+    private final CRC32 crc = new CRC32();
+    private long uncompressedSize = 0;
+    private byte[] block;
+    private int blockLength = 0;
+    private byte[] dictionary = null;
+    private boolean finished = false;
+    private boolean closed = false;
+
+    /**
+     * Create a stream using the default compression level and block size.
+     * @param out Stream to write the gzip data to
+     * @param threads Number of blocks to compress at the same time
+     * @throws IOException
+     */
+    public ParallelGzipOutputStream(OutputStream out, int threads) throws IOException {
+        this(out, Deflater.DEFAULT_COMPRESSION, DEFAULT_BLOCK_SIZE, threads);
+    }
+
+    /**
+     * Create a stream.
+     * @param out Stream to write the gzip data to
+     * @param level Compression level from 0 to 9, or {@link Deflater#DEFAULT_COMPRESSION}
+     * @param blockSize Size of the blocks that are compressed independently, in bytes. At least {@link #MIN_BLOCK_SIZE}.
+     * @param threads Number of blocks to compress at the same time
+     * @throws IOException
+     */
+    public ParallelGzipOutputStream(OutputStream out, int level, int blockSize, int threads) throws IOException {
+        super(out);
+        if ((level < 0 || level > 9) && level != Deflater.DEFAULT_COMPRESSION) {
+            throw new IllegalArgumentException("Invalid compression level " + level);
+        }
+        if (blockSize < MIN_BLOCK_SIZE) {
+            throw new IllegalArgumentException("Block size must be at least " + MIN_BLOCK_SIZE + " bytes");
+        }
+        if (threads < 1) {
+            throw new IllegalArgumentException("At least one compression thread is required");
+        }
+        this.level = level;
+        this.blockSize = blockSize;
+        this.block = new byte[blockSize];
+        // Enough blocks in flight to keep every thread busy while the oldest one is written out
+        this.maxPending = threads * 2;
+        writeHeader();
+        this.executor = Executors.newFixedThreadPool(threads);
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        write(new byte[] {(byte) b}, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        ensureOpen();
+        crc.update(b, off, len);
+        uncompressedSize += len;
+        while (len > 0) {
+            final int count = Math.min(len, blockSize - blockLength);
+            System.arraycopy(b, off, block, blockLength, count);
+            blockLength += count;
+            off += count;
+            len -= count;
+            if (blockLength == blockSize) {
+                submitBlock(false);
+            }
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    /**
+     * Compress any remaining input and write the gzip trailer, without closing the underlying stream.
+     * @throws IOException
+     */
+    public void finish() throws IOException {
+        if (finished) {
+            return;
+        }
+        ensureOpen();
+        submitBlock(true);
+        while (!pending.isEmpty()) {
+            writeNextBlock();
+        }
+        writeInt((int) crc.getValue());
+        writeInt((int) uncompressedSize);
+        out.flush();
+        finished = true;
+        executor.shutdown();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        try {
+            finish();
+        } finally {
+            closed = true;
+            executor.shutdownNow();
+            out.close();
+        }
+    }
+
+    private void submitBlock(final boolean last) throws IOException {
+        final byte[] input = block;
+        final int length = blockLength;
+        final byte[] previous = dictionary;
+        if (!last) {
+            dictionary = Arrays.copyOfRange(input, length - DICTIONARY_SIZE, length);
+            block = new byte[blockSize];
+            blockLength = 0;
+        }
+        pending.addLast(executor.submit(new Callable<byte[]>() {
+            @Override
+            public byte[] call() throws Exception {
+                return deflate(input, length, previous, last);
+            }
+        }));
+        while (pending.size() > maxPending) {
+            writeNextBlock();
+        }
+    }
+
+    private byte[] deflate(byte[] input, int length, byte[] previous, boolean last) {
+        final Deflater deflater = new Deflater(level, true);
+        try {
+            if (null != previous) {
+                deflater.setDictionary(previous);
+            }
+            deflater.setInput(input, 0, length);
+            final ByteArrayOutputStream compressed = new ByteArrayOutputStream(length / 2 + 64);
+            final byte[] buffer = new byte[64 * 1024];
+            if (last) {
+                deflater.finish();
+                while (!deflater.finished()) {
+                    compressed.write(buffer, 0, deflater.deflate(buffer));
+                }
+            } else {
+                // A sync flush ends the block on a byte boundary without ending the deflate stream
+                int count;
+                do {
+                    count = deflater.deflate(buffer, 0, buffer.length, Deflater.SYNC_FLUSH);
+                    compressed.write(buffer, 0, count);
+                } while (count == buffer.length);
+            }
+            return compressed.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private void writeNextBlock() throws IOException {
+        final Future<byte[]> next = pending.removeFirst();
+        try {
+            out.write(next.get());
+        } catch (InterruptedException e) {
+            cancelPending();
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while compressing");
+        } catch (ExecutionException e) {
+            cancelPending();
+            throw new IOException("Failed to compress block", e.getCause());
+        }
+    }
+
+    private void cancelPending() {
+        for (final Future<byte[]> future : pending) {
+            future.cancel(true);
+        }
+        pending.clear();
+        executor.shutdownNow();
+    }
+
+    private void writeHeader() throws IOException {
+        // Magic, deflate, no flags, no modification time, no extra flags, unknown OS
+        writeShort(GZIP_MAGIC);
+        out.write(Deflater.DEFLATED);
+        out.write(0);
+        writeInt(0);
+        out.write(0);
+        out.write(OS_UNKNOWN);
+    }
+
+    private void writeShort(int value) throws IOException {
+        out.write(value & 0xff);
+        out.write((value >> 8) & 0xff);
+    }
+
+    private void writeInt(int value) throws IOException {
+        writeShort(value & 0xffff);
+        writeShort((value >> 16) & 0xffff);
+    }
+
+    private void ensureOpen() throws IOException {
+        if (closed || finished) {
+            throw new IOException("Stream already finished");
+        }
+    }
+}
@@ -0,0 +1,270 @@
+/**
+ * Copyright 2015 Megatome Technologies, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.megatome.j2d.support;
+
+import com.megatome.j2d.util.SearchIndexValue;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.megatome.j2d.util.LogUtility.logVerbose;
+
+/**
+ * On-disk cache of the values parsed from Javadoc index files. Entries are keyed by a hash of the content of the index
+ * file, the version of javadoc2dash, the parser strategy and whether descriptions are read, so an index file that did
+ * not change since an earlier build is not parsed again. Entries are stored in a compact binary format, and are
+ * written atomically so several builds can share a cache directory. A damaged or unreadable entry is treated as a
+ * miss.
+ */
+public final class ParseCache {
+    private static final int MAGIC = 0x4a32444d;
+    // Bump whenever the parser could produce different values for the same file, so older entries are not used
+    private static final int FORMAT_VERSION = 2;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final File cacheDir;
+    private final String version;
+    private final AtomicInteger hits = new AtomicInteger();
+    private final AtomicInteger misses = new AtomicInteger();
+
+    /**
+     * Ctor
+     * @param cacheDir Directory holding the cache entries. Created when the first entry is written.
+     */
+    public ParseCache(File cacheDir) {
+        this(cacheDir, getJ2dVersion());
+    }
+
+    ParseCache(File cacheDir, String version) {
+        if (null == cacheDir) {
+            throw new IllegalArgumentException("The cache directory must be specified");
+        }
+        this.cacheDir = cacheDir;
+        this.version = version;
+    }
+
+    /**
+     * Get the directory used when no cache directory is given: <code>~/.javadoc2dash/cache</code>
+     * @return Default cache directory
+     */
+    public static File getDefaultDirectory() {
+        return new File(new File(System.getProperty("user.home"), ".javadoc2dash"), "cache");
+    }
+
+    /**
+     * Get the directory holding the cache entries
+     * @return Cache directory
+     */
+    public File getCacheDir() {
+        return cacheDir;
+    }
+
+    /**
+     * Compute the key of the cache entry for an index file.
+     * @param indexFile Index file
+     * @param parserStrategy Strategy the file is parsed with
+     * @return Key of the cache entry
+     * @throws IOException
+     */
+    public String getKey(File indexFile, ParserStrategy parserStrategy) throws IOException {
+        return getKey(indexFile, parserStrategy, false);
+    }
+
+    /**
+     * Compute the key of the cache entry for an index file.
+     * @param indexFile Index file
+     * @param parserStrategy Strategy the file is parsed with
+     * @param descriptions True if the description of each entry is read
+     * @return Key of the cache entry
+     * @throws IOException
+     */
+    public String getKey(File indexFile, ParserStrategy parserStrategy, boolean descriptions) throws IOException {
+        return getKey(indexFile.toPath(), parserStrategy, descriptions);
+    }
+
+    /**
+     * Compute the key of the cache entry for an index file, which may be an entry in a Javadoc archive.
+     * @param indexFile Index file
+     * @param parserStrategy Strategy the file is parsed with
+     * @param descriptions True if the description of each entry is read
+     * @return Key of the cache entry
+     * @throws IOException
+     */
+    public String getKey(Path indexFile, ParserStrategy parserStrategy, boolean descriptions) throws IOException {
+        final MessageDigest digest = newDigest();
+        digest.update((version + "/" + FORMAT_VERSION + "/" + parserStrategy + "/" + (descriptions ? "descriptions/" : ""))
+                .getBytes(StandardCharsets.UTF_8));
+        final byte[] buffer = new byte[BUFFER_SIZE];
+        try (final InputStream in = Files.newInputStream(indexFile)) {
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+            }
+        }
+        return toHex(digest.digest());
+    }
+
+    /**
+     * Look up the values of a cache entry.
+     * @param key Key of the cache entry
+     * @return Values, or null if there is no usable entry
+     */
+    public List<SearchIndexValue> get(String key) {
+        final File entryFile = getEntryFile(key);
+        if (!entryFile.isFile()) {
+            misses.incrementAndGet();
+            return null;
+        }
+        try (final DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(entryFile), BUFFER_SIZE))) {
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) {
+                throw new IOException("Not a parse cache entry");
+            }
+            final int count = in.readInt();
+            final List<SearchIndexValue> values = new ArrayList<>(count);
+            final MatchType[] types = MatchType.values();
+            for (int i = 0; i < count; i++) {
+                final String name = in.readUTF();
+                final MatchType type = types[in.readUnsignedByte()];
+                final String path = in.readUTF();
+                values.add(new SearchIndexValue(name, type, path, readDescription(in)));
+            }
+            hits.incrementAndGet();
+            return values;
+        } catch (IOException | RuntimeException e) {
+            logVerbose("Ignoring unreadable parse cache entry {}: {}", entryFile, e.getMessage());
+            misses.incrementAndGet();
+            return null;
+        }
+    }
+
+    /**
+     * Store the values of a cache entry. Failing to write the entry is logged, but is not an error.
+     * @param key Key of the cache entry
+     * @param values Values parsed from the index file
+     */
+    public void put(String key, List<SearchIndexValue> values) {
+        final File entryFile = getEntryFile(key);
+        File tempFile = null;
+        try {
+            Files.createDirectories(entryFile.getParentFile().toPath());
+            tempFile = File.createTempFile(key, ".tmp", entryFile.getParentFile());
+            try (final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile), BUFFER_SIZE))) {
+                out.writeInt(MAGIC);
+                out.writeInt(FORMAT_VERSION);
+                out.writeInt(values.size());
+                for (final SearchIndexValue value : values) {
+                    out.writeUTF(value.getName());
+                    out.writeByte(value.getType().ordinal());
+                    out.writeUTF(value.getPath());
+                    writeDescription(out, value.getDescription());
+                }
+            }
+            try {
+                Files.move(tempFile.toPath(), entryFile.toPath(), StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tempFile.toPath(), entryFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            logVerbose("Could not write parse cache entry {}: {}", entryFile, e.getMessage());
+            if (null != tempFile && tempFile.exists() && !tempFile.delete()) {
+                logVerbose("Could not delete {}", tempFile);
+            }
+        }
+    }
+
+    /**
+     * Get the number of lookups that found a usable entry
+     * @return Hit count
+     */
+    public int getHits() {
+        return hits.get();
+    }
+
+    /**
+     * Get the number of lookups that did not find a usable entry
+     * @return Miss count
+     */
+    public int getMisses() {
+        return misses.get();
+    }
+
+    // Descriptions can be longer than writeUTF allows, so they are written as length prefixed UTF-8. -1 means none.
+    private static void writeDescription(DataOutputStream out, String description) throws IOException {
+        if (null == description) {
+            out.writeInt(-1);
+            return;
+        }
+        final byte[] bytes = description.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readDescription(DataInputStream in) throws IOException {
+        final int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        final byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private File getEntryFile(String key) {
+        // Spread the entries over subdirectories, so no single directory gets too large
+        return new File(new File(cacheDir, key.substring(0, 2)), key + ".bin");
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            // Every Java platform is required to support SHA-1
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String toHex(byte[] bytes) {
+        final StringBuilder sb = new StringBuilder(bytes.length * 2);
+        for (final byte b : bytes) {
+            sb.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+        }
+        return sb.toString();
+    }
+
+    private static String getJ2dVersion() {
+        // Only set when running from the javadoc2dash-api jar
+        final Package p = ParseCache.class.getPackage();
+        final String version = null != p ? p.getImplementationVersion() : null;
+        return null != version ? version : "unknown";
+    }
+}
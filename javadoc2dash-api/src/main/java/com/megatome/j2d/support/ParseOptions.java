@@ -0,0 +1,101 @@
+/**
+ * Copyright 2015 Megatome Technologies, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.megatome.j2d.support;
+
+/**
+ * Options that control how Javadoc index files are parsed.
+ */
+public class ParseOptions {
+    private int parseThreads = 1;
+    private ParserStrategy parserStrategy = ParserStrategy.DOM;
+    private ParseCache parseCache = null;
+    private boolean descriptions = false;
+
+    /**
+     * Specify the number of index files to parse at the same time
+     * @param parseThreads Number of parser threads. Values less than 2 parse on the calling thread.
+     * @return This instance
+     */
+    public ParseOptions parseThreads(int parseThreads) {
+        this.parseThreads = parseThreads;
+        return this;
+    }
+
+    /**
+     * Specify how index files are parsed
+     * @param parserStrategy Parser strategy. Defaults to {@link ParserStrategy#DOM} if unspecified.
+     * @return This instance
+     */
+    public ParseOptions parserStrategy(ParserStrategy parserStrategy) {
+        if (null != parserStrategy) {
+            this.parserStrategy = parserStrategy;
+        }
+        return this;
+    }
+
+    /**
+     * Specify a cache of earlier parse results
+     * @param parseCache Parse cache. Index files are always parsed if unspecified.
+     * @return This instance
+     */
+    public ParseOptions parseCache(ParseCache parseCache) {
+        this.parseCache = parseCache;
+        return this;
+    }
+
+    /**
+     * Specify whether the description of each entry is read as well. Descriptions are only needed for the full text
+     * index, and make the parsed values a lot larger.
+     * @param descriptions True to read descriptions. Defaults to false if unspecified.
+     * @return This instance
+     */
+    public ParseOptions descriptions(boolean descriptions) {
+        this.descriptions = descriptions;
+        return this;
+    }
+
+    /**
+     * Get the number of parser threads
+     * @return Parser thread count
+     */
+    public int getParseThreads() {
+        return parseThreads;
+    }
+
+    /**
+     * Get the parser strategy
+     * @return Parser strategy
+     */
+    public ParserStrategy getParserStrategy() {
+        return parserStrategy;
+    }
+
+    /**
+     * Get the parse cache
+     * @return Parse cache, or null if index files are always parsed
+     */
+    public ParseCache getParseCache() {
+        return parseCache;
+    }
+
+    /**
+     * Determine if descriptions are read
+     * @return True if the description of each entry is read
+     */
+    public boolean isDescriptions() {
+        return descriptions;
+    }
+}
@@ -0,0 +1,31 @@
+/**
+ * Copyright 2015 Megatome Technologies, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.megatome.j2d.support;
+
+/**
+ * Strategies for extracting index entries from Javadoc index pages
+ */
+public enum ParserStrategy {
+    /**
+     * Build a full Jsoup document for each index page and select the links from it.
+     */
+    DOM,
+    /**
+     * Scan each index page as a stream of tags and keep only the <code>&lt;dt&gt;</code> entries. Does not build a
+     * document tree, but also does not repair badly broken HTML the way Jsoup does.
+     */
+    STREAMING
+}
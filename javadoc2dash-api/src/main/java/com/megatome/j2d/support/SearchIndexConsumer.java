@@ -0,0 +1,33 @@
+/**
+ * Copyright 2015 Megatome Technologies, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.megatome.j2d.support;
+
+import com.megatome.j2d.exception.BuilderException;
+import com.megatome.j2d.util.SearchIndexValue;
+
+import java.util.List;
+
+/**
+ * Receives index values as they are found in the Javadoc, one chunk at a time.
+ */
+public interface SearchIndexConsumer {
+    /**
+     * Accept the next chunk of index values. Chunks are always delivered in the order of the files being indexed.
+     * @param values Index values found in the next chunk of Javadoc
+     * @throws BuilderException If the values could not be handled
+     */
+    void accept(List<SearchIndexValue> values) throws BuilderException;
+}
@@ -0,0 +1,112 @@
+/**
+ * Copyright 2015 Megatome Technologies, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.megatome.j2d.support;
+
+import com.megatome.j2d.exception.BuilderException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static com.megatome.j2d.util.LogUtility.logVerbose;
+import static com.megatome.j2d.util.LogUtility.withContext;
+
+/**
+ * Utility class for running independent stages of a docset build at the same time.
+ */
+public final class StageSupport {
+    private StageSupport() {}
+
+    /**
+     * A unit of work in a docset build.
+     */
+    public interface Stage {
+        /**
+         * Run the stage. Stages should give up promptly when their thread is interrupted.
+         * @throws BuilderException
+         */
+        void run() throws BuilderException;
+    }
+
+    /**
+     * Run the specified stages concurrently and wait for all of them to finish. If any stage fails, the others are
+     * interrupted and this method waits for them to stop before rethrowing the first failure, so nothing is still
+     * writing into the docset once it returns.
+     * @param stages Stages to run
+     * @throws BuilderException
+     */
+    public static void runConcurrently(Stage... stages) throws BuilderException {
+        if (stages.length == 1) {
+            stages[0].run();
+            return;
+        }
+        final ExecutorService executor = Executors.newFixedThreadPool(stages.length);
+        final CompletionService<Void> completionService = new ExecutorCompletionService<>(executor);
+        final List<Future<Void>> results = new ArrayList<>(stages.length);
+        try {
+            for (final Stage stage : stages) {
+                results.add(completionService.submit(withContext(new Callable<Void>() {
+                    @Override
+                    public Void call() throws Exception {
+                        stage.run();
+                        return null;
+                    }
+                })));
+            }
+            // Take the stages in the order they finish, so a failure is seen as soon as it happens
+            for (int i = 0; i < stages.length; i++) {
+                getStageResult(completionService.take());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new BuilderException("Interrupted while building the docset", e);
+        } finally {
+            for (final Future<Void> result : results) {
+                result.cancel(true);
+            }
+            executor.shutdownNow();
+            awaitStages(executor);
+        }
+    }
+
+    private static void getStageResult(Future<Void> result) throws BuilderException, InterruptedException {
+        try {
+            result.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof BuilderException) {
+                throw (BuilderException) e.getCause();
+            }
+            throw new BuilderException("Failed to build the docset", e.getCause());
+        }
+    }
+
+    private static void awaitStages(ExecutorService executor) {
+        try {
+            while (!executor.awaitTermination(1, TimeUnit.SECONDS)) {
+                logVerbose("Waiting for cancelled build stages to stop");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
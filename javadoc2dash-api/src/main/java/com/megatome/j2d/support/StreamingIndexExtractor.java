@@ -0,0 +1,510 @@
+/**
+ * Copyright 2015 Megatome Technologies, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.megatome.j2d.support;
+
+import com.megatome.j2d.exception.BuilderException;
+import org.jsoup.parser.Parser;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Extracts index entries from a Javadoc index page without building a document tree. The page is read as a stream of
+ * tags and text, and only the contents of <code>&lt;dt&gt;</code> elements are kept. A link is reported when it is the
+ * first element in the <code>&lt;dt&gt;</code>, or the first element of a <code>span</code>, <code>code</code>,
+ * <code>i</code> or <code>b</code> that is the first element in the <code>&lt;dt&gt;</code>. This matches the links
+ * picked out of the full Jsoup document. If descriptions are wanted, the text of the <code>&lt;dd&gt;</code> that follows
+ * an entry is kept as well, and the link is only reported once that <code>&lt;dd&gt;</code> has been read.
+ */
+final class StreamingIndexExtractor {
+    private static final Set<String> VOID_ELEMENTS = new HashSet<>(Arrays.asList(
+            "area", "base", "br", "col", "embed", "hr", "img", "input", "link", "meta", "param", "source", "track", "wbr"));
+    private static final Set<String> LINK_WRAPPERS = new HashSet<>(Arrays.asList("span", "code", "i", "b"));
+    private static final Set<String> DT_TERMINATORS = new HashSet<>(Arrays.asList("dt", "dd", "dl", "body", "html"));
+    // Elements that start on a new line, so the text on either side of them is separated like Element.text() does
+    private static final Set<String> BLOCK_ELEMENTS = new HashSet<>(Arrays.asList(
+            "blockquote", "br", "div", "h1", "h2", "h3", "h4", "h5", "h6", "li", "ol", "p", "pre", "table", "td", "th", "tr", "ul"));
+
+    /**
+     * Receives the links found in index entries.
+     */
+    interface LinkHandler {
+        /**
+         * Called once for each index entry that has a link.
+         * @param text Text of the whole <code>&lt;dt&gt;</code> entry, with whitespace normalized
+         * @param className Class attribute of the <code>&lt;dt&gt;</code>
+         * @param name Text of the link, with whitespace normalized
+         * @param href Value of the link <code>href</code> attribute, with HTML entities decoded
+         * @param description Text of the <code>&lt;dd&gt;</code> that follows the entry, with whitespace normalized.
+         *                    Null if descriptions are not read, or if there is no <code>&lt;dd&gt;</code>.
+         * @throws BuilderException
+         */
+        void link(String text, String className, String name, String href, String description) throws BuilderException;
+    }
+
+    private final Reader reader;
+    private final LinkHandler handler;
+    private final boolean descriptions;
+    private final char[] buffer = new char[8192];
+    private int position = 0;
+    private int limit = 0;
+
+    private final StringBuilder tagName = new StringBuilder();
+    private final StringBuilder attributes = new StringBuilder();
+    private final StringBuilder rawText = new StringBuilder();
+
+    // State of the <dt> currently being read
+    private boolean inDt = false;
+    private String dtClassName;
+    private final StringBuilder dtText = new StringBuilder();
+    private final List<String> openElements = new ArrayList<>();
+    private int dtChildCount;
+    private boolean firstChildOpen;
+    private int wrapperChildCount;
+    private boolean foundLink;
+    private int linkDepth;
+    private String linkHref;
+    private final StringBuilder linkText = new StringBuilder();
+
+    // Link of the last <dt>, waiting for the <dd> that may follow it. Only used when descriptions are read.
+    private boolean pendingLink;
+    private String pendingText;
+    private String pendingClassName;
+    private String pendingName;
+    private String pendingHref;
+    private boolean inDd = false;
+    private final StringBuilder ddText = new StringBuilder();
+
+    private StreamingIndexExtractor(Reader reader, LinkHandler handler, boolean descriptions) {
+        this.reader = reader;
+        this.handler = handler;
+        this.descriptions = descriptions;
+    }
+
+    /**
+     * Extract all index entry links from a Javadoc index page.
+     * @param f Index page to read
+     * @param handler Handler to report the links to
+     * @throws BuilderException
+     */
+    static void extract(File f, LinkHandler handler) throws BuilderException {
+        extract(f, handler, false);
+    }
+
+    /**
+     * Extract all index entry links from a Javadoc index page.
+     * @param f Index page to read
+     * @param handler Handler to report the links to
+     * @param descriptions True to read the description of each entry as well
+     * @throws BuilderException
+     */
+    static void extract(File f, LinkHandler handler, boolean descriptions) throws BuilderException {
+        extract(f.toPath(), handler, descriptions);
+    }
+
+    /**
+     * Extract all index entry links from a Javadoc index page, which may be an entry in a Javadoc archive.
+     * @param f Index page to read
+     * @param handler Handler to report the links to
+     * @param descriptions True to read the description of each entry as well
+     * @throws BuilderException
+     */
+    static void extract(Path f, LinkHandler handler, boolean descriptions) throws BuilderException {
+        try (final Reader reader = new InputStreamReader(Files.newInputStream(f), StandardCharsets.UTF_8)) {
+            new StreamingIndexExtractor(reader, handler, descriptions).run();
+        } catch (IOException e) {
+            throw new BuilderException("Failed to index javadoc files", e);
+        }
+    }
+
+    private void run() throws IOException, BuilderException {
+        int c;
+        while ((c = read()) != -1) {
+            if (c == '<') {
+                readMarkup();
+            } else {
+                rawText.append((char) c);
+            }
+        }
+        flushText();
+        endDt();
+        endDd();
+    }
+
+    private void readMarkup() throws IOException, BuilderException {
+        final int c = read();
+        if (c == '!') {
+            flushText();
+            if (skipIfNext("--")) {
+                skipPast("-->");
+            } else {
+                skipPast(">");
+            }
+        } else if (c == '?') {
+            flushText();
+            skipPast(">");
+        } else if (c == '/') {
+            flushText();
+            readTagName(read());
+            skipPast(">");
+            endTag(tagName.toString());
+        } else if (isAsciiLetter(c)) {
+            flushText();
+            readTagName(c);
+            final boolean selfClosing = readAttributes();
+            final String name = tagName.toString();
+            startTag(name, selfClosing);
+            if ("script".equals(name) || "style".equals(name)) {
+                skipRawText(name);
+            }
+        } else {
+            // Not markup, just a stray '<'
+            rawText.append('<');
+            if (c != -1) {
+                unread();
+            }
+        }
+    }
+
+    private void startTag(String name, boolean selfClosing) throws BuilderException {
+        if ("dt".equals(name)) {
+            endDt();
+            endDd();
+            inDt = true;
+            dtClassName = getAttribute("class");
+            return;
+        }
+        if ("dd".equals(name)) {
+            if (inDd) {
+                endDd();
+            }
+            endDt();
+            // Only the first <dd> after an entry describes it
+            inDd = pendingLink;
+            return;
+        }
+        if (DT_TERMINATORS.contains(name)) {
+            endDt();
+            endDd();
+            return;
+        }
+        if (!inDt) {
+            if (inDd && BLOCK_ELEMENTS.contains(name)) {
+                appendNormalized(ddText, " ");
+            }
+            return;
+        }
+
+        final int depth = openElements.size();
+        if (depth == 0) {
+            if (dtChildCount++ == 0) {
+                firstChildOpen = true;
+                checkForLink(name, 1);
+            }
+        } else if (depth == 1 && firstChildOpen && LINK_WRAPPERS.contains(openElements.get(0))) {
+            if (wrapperChildCount++ == 0) {
+                checkForLink(name, 2);
+            }
+        }
+
+        if (VOID_ELEMENTS.contains(name) || selfClosing) {
+            if ("br".equals(name)) {
+                appendText(" ");
+            }
+            if (firstChildOpen && depth == 0) {
+                firstChildOpen = false;
+            }
+            return;
+        }
+        openElements.add(name);
+    }
+
+    private void checkForLink(String name, int depth) {
+        if (!foundLink && "a".equals(name)) {
+            foundLink = true;
+            linkDepth = depth;
+            linkHref = getAttribute("href");
+        }
+    }
+
+    private void endTag(String name) throws BuilderException {
+        if (DT_TERMINATORS.contains(name)) {
+            endDt();
+            if (!"dt".equals(name)) {
+                endDd();
+            }
+            return;
+        }
+        if (!inDt) {
+            if (inDd && BLOCK_ELEMENTS.contains(name)) {
+                appendNormalized(ddText, " ");
+            }
+            return;
+        }
+        final int index = openElements.lastIndexOf(name);
+        if (index < 0) {
+            return;
+        }
+        while (openElements.size() > index) {
+            openElements.remove(openElements.size() - 1);
+        }
+        if (openElements.size() < linkDepth) {
+            linkDepth = 0;
+        }
+        if (openElements.isEmpty()) {
+            firstChildOpen = false;
+        }
+    }
+
+    private void endDt() throws BuilderException {
+        if (!inDt) {
+            return;
+        }
+        if (foundLink) {
+            final String text = dtText.toString().trim();
+            final String className = null == dtClassName ? "" : dtClassName;
+            final String name = linkText.toString().trim();
+            if (descriptions) {
+                pendingLink = true;
+                pendingText = text;
+                pendingClassName = className;
+                pendingName = name;
+                pendingHref = linkHref;
+            } else {
+                handler.link(text, className, name, linkHref, null);
+            }
+        }
+        inDt = false;
+        dtClassName = null;
+        dtText.setLength(0);
+        openElements.clear();
+        dtChildCount = 0;
+        firstChildOpen = false;
+        wrapperChildCount = 0;
+        foundLink = false;
+        linkDepth = 0;
+        linkHref = null;
+        linkText.setLength(0);
+    }
+
+    private void endDd() throws BuilderException {
+        if (pendingLink) {
+            handler.link(pendingText, pendingClassName, pendingName, pendingHref, inDd ? ddText.toString().trim() : null);
+        }
+        pendingLink = false;
+        pendingText = null;
+        pendingClassName = null;
+        pendingName = null;
+        pendingHref = null;
+        inDd = false;
+        ddText.setLength(0);
+    }
+
+    private void flushText() {
+        if (rawText.length() == 0) {
+            return;
+        }
+        if (inDt || inDd) {
+            final String text = rawText.indexOf("&") < 0 ? rawText.toString() : Parser.unescapeEntities(rawText.toString(), false);
+            if (inDt) {
+                appendText(text);
+            } else {
+                appendNormalized(ddText, text);
+            }
+        }
+        rawText.setLength(0);
+    }
+
+    private void appendText(String text) {
+        appendNormalized(dtText, text);
+        if (linkDepth > 0) {
+            appendNormalized(linkText, text);
+        }
+    }
+
+    // Collapse runs of whitespace into a single space, the same way Element.text() does
+    private static void appendNormalized(StringBuilder target, String text) {
+        for (int i = 0; i < text.length(); i++) {
+            final char c = text.charAt(i);
+            if (isWhitespace(c)) {
+                final int length = target.length();
+                if (length > 0 && target.charAt(length - 1) != ' ') {
+                    target.append(' ');
+                }
+            } else {
+                target.append(c);
+            }
+        }
+    }
+
+    private void readTagName(int first) throws IOException {
+        tagName.setLength(0);
+        int c = first;
+        while (c != -1 && c != '>' && c != '/' && !isWhitespace(c)) {
+            tagName.append(Character.toLowerCase((char) c));
+            c = read();
+        }
+        if (c != -1) {
+            unread();
+        }
+    }
+
+    // Reads everything up to the closing '>'. Returns true if the tag closes itself.
+    private boolean readAttributes() throws IOException {
+        attributes.setLength(0);
+        int quote = 0;
+        int c;
+        while ((c = read()) != -1) {
+            if (quote != 0) {
+                if (c == quote) {
+                    quote = 0;
+                }
+            } else if (c == '"' || c == '\'') {
+                quote = c;
+            } else if (c == '>') {
+                break;
+            }
+            attributes.append((char) c);
+        }
+        final int length = attributes.length();
+        return length > 0 && attributes.charAt(length - 1) == '/';
+    }
+
+    private String getAttribute(String name) {
+        final int length = attributes.length();
+        int i = 0;
+        while (i < length) {
+            while (i < length && (isWhitespace(attributes.charAt(i)) || attributes.charAt(i) == '/')) {
+                i++;
+            }
+            final int nameStart = i;
+            while (i < length && attributes.charAt(i) != '=' && !isWhitespace(attributes.charAt(i)) && attributes.charAt(i) != '/') {
+                i++;
+            }
+            final String attributeName = attributes.substring(nameStart, i);
+            while (i < length && isWhitespace(attributes.charAt(i))) {
+                i++;
+            }
+            String value = "";
+            if (i < length && attributes.charAt(i) == '=') {
+                i++;
+                while (i < length && isWhitespace(attributes.charAt(i))) {
+                    i++;
+                }
+                if (i < length && (attributes.charAt(i) == '"' || attributes.charAt(i) == '\'')) {
+                    final char quote = attributes.charAt(i++);
+                    final int valueStart = i;
+                    while (i < length && attributes.charAt(i) != quote) {
+                        i++;
+                    }
+                    value = attributes.substring(valueStart, i);
+                    i++;
+                } else {
+                    final int valueStart = i;
+                    while (i < length && !isWhitespace(attributes.charAt(i))) {
+                        i++;
+                    }
+                    value = attributes.substring(valueStart, i);
+                }
+            }
+            if (attributeName.equalsIgnoreCase(name)) {
+                return value.indexOf('&') < 0 ? value : Parser.unescapeEntities(value, true);
+            }
+            if (i == nameStart) {
+                i++;
+            }
+        }
+        return "";
+    }
+
+    private void skipRawText(String name) throws IOException {
+        final String endTag = "</" + name;
+        int matched = 0;
+        int c;
+        while ((c = read()) != -1) {
+            if (Character.toLowerCase((char) c) == endTag.charAt(matched)) {
+                if (++matched == endTag.length()) {
+                    skipPast(">");
+                    return;
+                }
+            } else {
+                matched = (c == '<') ? 1 : 0;
+            }
+        }
+    }
+
+    private boolean skipIfNext(String expected) throws IOException {
+        for (int i = 0; i < expected.length(); i++) {
+            final int c = read();
+            if (c != expected.charAt(i)) {
+                if (c != -1) {
+                    unread();
+                }
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void skipPast(String terminator) throws IOException {
+        int matched = 0;
+        int c;
+        while ((c = read()) != -1) {
+            if (c == terminator.charAt(matched)) {
+                if (++matched == terminator.length()) {
+                    return;
+                }
+            } else {
+                matched = (c == terminator.charAt(0)) ? 1 : 0;
+            }
+        }
+    }
+
+    private int read() throws IOException {
+        if (position == limit) {
+            limit = reader.read(buffer, 0, buffer.length);
+            position = 0;
+            if (limit <= 0) {
+                limit = 0;
+                return -1;
+            }
+        }
+        return buffer[position++];
+    }
+
+    // Only ever called directly after a successful read(), so the character is still in the buffer
+    private void unread() {
+        position--;
+    }
+
+    private static boolean isAsciiLetter(int c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+    }
+
+    private static boolean isWhitespace(int c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\r' || c == '\f';
+    }
+}
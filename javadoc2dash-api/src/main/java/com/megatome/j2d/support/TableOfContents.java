@@ -0,0 +1,352 @@
+/**
+ * Copyright 2015 Megatome Technologies, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.megatome.j2d.support;
+
+import com.megatome.j2d.exception.BuilderException;
+import com.megatome.j2d.util.SearchIndexValue;
+import org.apache.commons.io.IOUtils;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.apache.commons.lang3.StringEscapeUtils.unescapeHtml4;
+
+/**
+ * Collects the members that the Javadoc index links to on each page, and writes pages with a Dash table of contents
+ * anchor (<code>&lt;a name="//apple_ref/cpp/Method/..." class="dashAnchor"&gt;</code>) in front of each member.
+ * Pages are rewritten as a stream of bytes while they are copied, so a page is never parsed into a DOM and is only
+ * written once. Values are collected while the index is parsed, and {@link #complete()} tells the copy that every
+ * value has been seen.
+ */
+public final class TableOfContents implements SearchIndexConsumer {
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final byte[] COMMENT_START = "<!--".getBytes(StandardCharsets.US_ASCII);
+    private static final String ANCHOR_FORMAT = "<a name=\"//apple_ref/cpp/%s/%s\" class=\"dashAnchor\"></a>";
+
+    // Anchor markup to write in front of the element with each id, by page
+    private final ConcurrentMap<String, ConcurrentMap<String, byte[]>> pages = new ConcurrentHashMap<>();
+    private final CountDownLatch complete = new CountDownLatch(1);
+    private final AtomicInteger pagesWritten = new AtomicInteger();
+
+    /**
+     * Add the members that index values link to.
+     * @param values Index values
+     * @throws BuilderException
+     */
+    @Override
+    public void accept(List<SearchIndexValue> values) throws BuilderException {
+        for (final SearchIndexValue value : values) {
+            final String path = value.getPath();
+            final int hash = path.indexOf('#');
+            if (hash < 0 || hash == path.length() - 1 || isExternal(path)) {
+                // Pages themselves and links out of the Javadoc have no entry in a table of contents
+                continue;
+            }
+            final String page = getPage(path.substring(0, hash));
+            if (page.isEmpty()) {
+                continue;
+            }
+            ConcurrentMap<String, byte[]> anchors = pages.get(page);
+            if (null == anchors) {
+                pages.putIfAbsent(page, new ConcurrentHashMap<String, byte[]>());
+                anchors = pages.get(page);
+            }
+            // The same member can be listed on several index pages
+            if (!anchors.containsKey(path.substring(hash + 1))) {
+                anchors.putIfAbsent(path.substring(hash + 1), createAnchor(value));
+            }
+        }
+    }
+
+    /**
+     * Mark every value as seen, which lets {@link #await()} return.
+     */
+    public void complete() {
+        complete.countDown();
+    }
+
+    /**
+     * Wait until {@link #complete()} is called.
+     * @throws BuilderException If interrupted while waiting
+     */
+    public void await() throws BuilderException {
+        try {
+            complete.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new BuilderException("Interrupted while waiting for the table of contents", e);
+        }
+    }
+
+    /**
+     * Determine if a page gets table of contents anchors.
+     * @param page Path of the page relative to the root of the Javadoc, separated by <code>/</code>
+     * @return True if the index links to members on the page
+     */
+    public boolean hasAnchors(String page) {
+        return pages.containsKey(page);
+    }
+
+    /**
+     * Get the number of pages that get table of contents anchors.
+     * @return Number of pages
+     */
+    public int getPageCount() {
+        return pages.size();
+    }
+
+    /**
+     * Get the number of pages that were written with anchors so far.
+     * @return Number of pages
+     */
+    public int getPagesWritten() {
+        return pagesWritten.get();
+    }
+
+    /**
+     * Write a page, adding its table of contents anchors.
+     * @param page Path of the page relative to the root of the Javadoc
+     * @param source Page to read
+     * @param dest File to write. Replaced if it exists.
+     * @throws IOException
+     */
+    void writePage(String page, Path source, Path dest) throws IOException {
+        Files.deleteIfExists(dest);
+        try (final InputStream in = Files.newInputStream(source);
+             final OutputStream out = Files.newOutputStream(dest)) {
+            writePage(page, in, out);
+        }
+        Files.setLastModifiedTime(dest, Files.getLastModifiedTime(source));
+    }
+
+    /**
+     * Read a page into memory, adding its table of contents anchors.
+     * @param page Path of the page relative to the root of the Javadoc
+     * @param source Page to read
+     * @return Content of the page with the anchors
+     * @throws IOException
+     */
+    byte[] readPage(String page, Path source) throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream((int) Files.size(source) + 4096);
+        try (final InputStream in = Files.newInputStream(source)) {
+            writePage(page, in, out);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Copy a page, writing each anchor in front of the first tag whose <code>id</code> or <code>name</code> is the
+     * member it belongs to. The page is handled as bytes, so whatever its encoding, everything but the anchors is
+     * written unchanged.
+     */
+    void writePage(String page, InputStream source, OutputStream dest) throws IOException {
+        final Map<String, byte[]> pageAnchors = pages.get(page);
+        final Map<String, byte[]> anchors = null != pageAnchors ? new HashMap<>(pageAnchors) : new HashMap<String, byte[]>();
+        final InputStream in = new BufferedInputStream(source, BUFFER_SIZE);
+        final OutputStream out = new BufferedOutputStream(dest, BUFFER_SIZE);
+        final ByteArrayOutputStream tag = new ByteArrayOutputStream(256);
+        int b = in.read();
+        while (b != -1) {
+            if (anchors.isEmpty()) {
+                out.write(b);
+                IOUtils.copy(in, out);
+                break;
+            }
+            if (b != '<') {
+                out.write(b);
+                b = in.read();
+                continue;
+            }
+            tag.reset();
+            tag.write(b);
+            b = readTag(in, tag);
+            final byte[] anchor = anchors.remove(findTarget(tag.toByteArray()));
+            if (null != anchor) {
+                out.write(anchor);
+            }
+            tag.writeTo(out);
+        }
+        out.flush();
+        pagesWritten.incrementAndGet();
+    }
+
+    /**
+     * Read the rest of a tag, or of a comment, into the buffer.
+     * @return The byte after the tag
+     */
+    private static int readTag(InputStream in, ByteArrayOutputStream tag) throws IOException {
+        int quote = 0;
+        int b = in.read();
+        while (b != -1) {
+            if (quote == 0 && b == '<') {
+                // Not a tag after all, such as a < in a script. The next one starts here.
+                return b;
+            }
+            tag.write(b);
+            if (quote != 0) {
+                if (b == quote) {
+                    quote = 0;
+                }
+            } else if (b == '"' || b == '\'') {
+                quote = b;
+            } else if (b == '>') {
+                return in.read();
+            } else if (tag.size() == COMMENT_START.length && Arrays.equals(tag.toByteArray(), COMMENT_START)) {
+                return readComment(in, tag);
+            }
+            b = in.read();
+        }
+        return b;
+    }
+
+    /**
+     * A comment can hold anything, up to <code>--&gt;</code>.
+     */
+    private static int readComment(InputStream in, ByteArrayOutputStream tag) throws IOException {
+        int dashes = 0;
+        int b = in.read();
+        while (b != -1) {
+            tag.write(b);
+            if (b == '>' && dashes >= 2) {
+                return in.read();
+            }
+            dashes = b == '-' ? dashes + 1 : 0;
+            b = in.read();
+        }
+        return b;
+    }
+
+    /**
+     * @return The decoded <code>id</code> of a start tag, else its <code>name</code>, else null
+     */
+    private static String findTarget(byte[] tag) {
+        // ISO-8859-1 maps each byte to one char, so positions match the bytes
+        final String text = new String(tag, StandardCharsets.ISO_8859_1);
+        if (text.length() < 2 || !Character.isLetter(text.charAt(1))) {
+            return null;
+        }
+        String name = null;
+        int i = 1;
+        while (i < text.length() && !isDelimiter(text.charAt(i))) {
+            i++;
+        }
+        while (i < text.length()) {
+            while (i < text.length() && (Character.isWhitespace(text.charAt(i)) || text.charAt(i) == '/')) {
+                i++;
+            }
+            final int nameStart = i;
+            while (i < text.length() && !isDelimiter(text.charAt(i)) && text.charAt(i) != '=') {
+                i++;
+            }
+            if (i == nameStart) {
+                break;
+            }
+            final String attribute = text.substring(nameStart, i);
+            while (i < text.length() && Character.isWhitespace(text.charAt(i))) {
+                i++;
+            }
+            if (i >= text.length() || text.charAt(i) != '=') {
+                continue;
+            }
+            i++;
+            while (i < text.length() && Character.isWhitespace(text.charAt(i))) {
+                i++;
+            }
+            final int valueStart;
+            final int valueEnd;
+            if (i < text.length() && (text.charAt(i) == '"' || text.charAt(i) == '\'')) {
+                valueStart = i + 1;
+                valueEnd = Math.max(valueStart, text.indexOf(text.charAt(i), valueStart));
+                i = valueEnd + 1;
+            } else {
+                valueStart = i;
+                while (i < text.length() && !isDelimiter(text.charAt(i))) {
+                    i++;
+                }
+                valueEnd = i;
+            }
+            if ("id".equalsIgnoreCase(attribute)) {
+                return decode(tag, valueStart, valueEnd);
+            } else if ("name".equalsIgnoreCase(attribute)) {
+                name = decode(tag, valueStart, valueEnd);
+            }
+        }
+        return name;
+    }
+
+    private static boolean isDelimiter(char c) {
+        return Character.isWhitespace(c) || c == '>' || c == '/';
+    }
+
+    private static String decode(byte[] tag, int start, int end) {
+        return unescapeHtml4(new String(tag, start, Math.max(0, end - start), StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Links out of the Javadoc start with a URL scheme, such as <code>https:</code>. Anchors of methods with array
+     * parameters hold colons too, as in <code>m-java.lang.String:A-</code>, but only after the page.
+     */
+    private static boolean isExternal(String path) {
+        for (int i = 0; i < path.length(); i++) {
+            final char c = path.charAt(i);
+            if (':' == c) {
+                return true;
+            }
+            if ('/' == c || '#' == c) {
+                return false;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Index entries link to pages relative to the index file, which is at the root of the Javadoc or one directory
+     * below it.
+     */
+    private static String getPage(String path) {
+        String page = path;
+        while (page.startsWith("./") || page.startsWith("../")) {
+            page = page.substring(page.indexOf('/') + 1);
+        }
+        return page;
+    }
+
+    private static byte[] createAnchor(SearchIndexValue value) throws BuilderException {
+        try {
+            final String name = URLEncoder.encode(value.getName(), "UTF-8").replace("+", "%20");
+            return String.format(ANCHOR_FORMAT, value.getType().getTypeName(), name).getBytes(StandardCharsets.US_ASCII);
+        } catch (UnsupportedEncodingException e) {
+            throw new BuilderException("Error encoding a table of contents anchor", e);
+        }
+    }
+}
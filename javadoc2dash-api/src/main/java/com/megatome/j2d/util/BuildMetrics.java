@@ -0,0 +1,352 @@
+/**
+ * Copyright 2015 Megatome Technologies, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.megatome.j2d.util;
+
+import com.megatome.j2d.support.MatchType;
+import org.apache.commons.io.FileUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Timings and counts collected while a docset is built. A build records into the metrics of its {@link LogContext},
+ * so work handed to other threads with {@link LogUtility#withContext(java.util.concurrent.Callable)} is counted too.
+ * All methods may be called from several threads at the same time.
+ */
+public final class BuildMetrics {
+    private static final MatchType[] TYPES = MatchType.values();
+    private static final BuildMetrics DISABLED = new BuildMetrics(null, false);
+
+    private final String name;
+    private final boolean enabled;
+    private final long start = System.nanoTime();
+    private final Map<String, Long> stageNanos = new LinkedHashMap<>();
+    private final AtomicLong filesCopied = new AtomicLong();
+    private final AtomicLong bytesCopied = new AtomicLong();
+    private final AtomicLong pagesParsed = new AtomicLong();
+    private final AtomicLongArray entries = new AtomicLongArray(TYPES.length);
+    private final AtomicLong rowsInserted = new AtomicLong();
+    private final AtomicLong insertNanos = new AtomicLong();
+    private volatile long totalNanos = -1;
+    private volatile long jvmPeakHeapBytes = -1;
+
+    /**
+     * Times a stage of the build until it is closed.
+     */
+    public final class Timer implements AutoCloseable {
+        private final String stageName;
+        private final long stageStart = System.nanoTime();
+
+        private Timer(String stageName) {
+            this.stageName = stageName;
+        }
+
+        /**
+         * Stop timing the stage. Time spent in a stage that runs more than once is added up.
+         */
+        @Override
+        public void close() {
+            if (!enabled) {
+                return;
+            }
+            final long elapsed = System.nanoTime() - stageStart;
+            synchronized (stageNanos) {
+                final Long previous = stageNanos.get(stageName);
+                stageNanos.put(stageName, null == previous ? elapsed : previous + elapsed);
+            }
+        }
+    }
+
+    /**
+     * Ctor. Starts the clock for the whole build.
+     * @param name Name of the docset being built
+     */
+    public BuildMetrics(String name) {
+        this(name, true);
+    }
+
+    private BuildMetrics(String name, boolean enabled) {
+        this.name = name;
+        this.enabled = enabled;
+    }
+
+    /**
+     * Get the metrics of the build running on the current thread
+     * @return Metrics of the current {@link LogContext}, or metrics that ignore everything if there are none
+     */
+    public static BuildMetrics current() {
+        final BuildMetrics metrics = LogUtility.getContext().getMetrics();
+        return null != metrics ? metrics : DISABLED;
+    }
+
+    /**
+     * Start timing a stage of the build. Close the timer in a finally block.
+     * @param stageName Name of the stage
+     * @return Timer, which must be closed when the stage is done
+     */
+    public Timer startStage(String stageName) {
+        return new Timer(stageName);
+    }
+
+    /**
+     * Count files copied into the docset
+     * @param files Number of files
+     * @param bytes Size of the files
+     */
+    public void addCopied(long files, long bytes) {
+        if (enabled) {
+            filesCopied.addAndGet(files);
+            bytesCopied.addAndGet(bytes);
+        }
+    }
+
+    /**
+     * Count a parsed Javadoc index page and the entries found in it
+     * @param values Entries found in the page
+     */
+    public void addParsed(List<SearchIndexValue> values) {
+        if (enabled) {
+            pagesParsed.incrementAndGet();
+            for (final SearchIndexValue value : values) {
+                entries.incrementAndGet(value.getType().ordinal());
+            }
+        }
+    }
+
+    /**
+     * Count rows written to the search index
+     * @param rows Number of rows
+     * @param nanos Time spent writing them
+     */
+    public void addInserted(long rows, long nanos) {
+        if (enabled) {
+            rowsInserted.addAndGet(rows);
+            insertNanos.addAndGet(nanos);
+        }
+    }
+
+    /**
+     * Stop the clock for the whole build and record the peak heap usage of the JVM. Nothing should be recorded
+     * afterwards.
+     */
+    public void finish() {
+        if (!enabled) {
+            return;
+        }
+        totalNanos = System.nanoTime() - start;
+        long peak = 0;
+        for (final MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (MemoryType.HEAP == pool.getType() && pool.isValid() && null != pool.getPeakUsage()) {
+                peak += pool.getPeakUsage().getUsed();
+            }
+        }
+        jvmPeakHeapBytes = peak;
+    }
+
+    /**
+     * Get the name of the docset
+     * @return Docset name
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Get the wall time of the build
+     * @return Milliseconds from creation until {@link #finish()}, or -1 if not finished
+     */
+    public long getTotalMillis() {
+        return totalNanos < 0 ? -1 : TimeUnit.NANOSECONDS.toMillis(totalNanos);
+    }
+
+    /**
+     * Get the wall time of each stage, in the order the stages finished first. Stages that ran at the same time
+     * overlap, so the stage times can add up to more than the total.
+     * @return Milliseconds by stage name
+     */
+    public Map<String, Long> getStageMillis() {
+        final Map<String, Long> millis = new LinkedHashMap<>();
+        synchronized (stageNanos) {
+            for (final Map.Entry<String, Long> stage : stageNanos.entrySet()) {
+                millis.put(stage.getKey(), TimeUnit.NANOSECONDS.toMillis(stage.getValue()));
+            }
+        }
+        return millis;
+    }
+
+    /**
+     * Get the number of files copied into the docset
+     * @return File count
+     */
+    public long getFilesCopied() {
+        return filesCopied.get();
+    }
+
+    /**
+     * Get the size of the files copied into the docset
+     * @return Byte count
+     */
+    public long getBytesCopied() {
+        return bytesCopied.get();
+    }
+
+    /**
+     * Get the number of Javadoc index pages parsed, or read from the parse cache
+     * @return Page count
+     */
+    public long getPagesParsed() {
+        return pagesParsed.get();
+    }
+
+    /**
+     * Get the number of entries found in the index pages for each type. Entries are counted before duplicates are
+     * removed.
+     * @return Entry count by type, only for types that were found
+     */
+    public Map<MatchType, Long> getEntries() {
+        final Map<MatchType, Long> counts = new LinkedHashMap<>();
+        for (final MatchType type : TYPES) {
+            final long count = entries.get(type.ordinal());
+            if (count > 0) {
+                counts.put(type, count);
+            }
+        }
+        return counts;
+    }
+
+    /**
+     * Get the number of rows written to the search index
+     * @return Row count
+     */
+    public long getRowsInserted() {
+        return rowsInserted.get();
+    }
+
+    /**
+     * Get the rate rows were written to the search index at
+     * @return Rows per second, or 0 if no rows were written
+     */
+    public double getRowsPerSecond() {
+        final long nanos = insertNanos.get();
+        return nanos > 0 ? rowsInserted.get() * 1e9 / nanos : 0;
+    }
+
+    /**
+     * Get the peak heap usage of the JVM. This is the sum of the peaks of each heap pool since the JVM started, so it
+     * includes anything else the JVM ran, such as other builds, and is not reset between builds.
+     * @return Bytes, or -1 if not finished
+     */
+    public long getJvmPeakHeapBytes() {
+        return jvmPeakHeapBytes;
+    }
+
+    /**
+     * Format the metrics for people to read
+     * @return Multi line summary
+     */
+    public String toSummary() {
+        final StringBuilder summary = new StringBuilder();
+        summary.append(String.format(Locale.ROOT, "Built %s in %d ms%n", null != name ? name : "docset", getTotalMillis()));
+        for (final Map.Entry<String, Long> stage : getStageMillis().entrySet()) {
+            summary.append(String.format(Locale.ROOT, "  %-12s %8d ms%n", stage.getKey(), stage.getValue()));
+        }
+        summary.append(String.format(Locale.ROOT, "  Copied %d files (%.1f MB)%n", getFilesCopied(), getBytesCopied() / (1024.0 * 1024.0)));
+        long total = 0;
+        final StringBuilder types = new StringBuilder();
+        for (final Map.Entry<MatchType, Long> type : getEntries().entrySet()) {
+            total += type.getValue();
+            types.append(types.length() > 0 ? ", " : "").append(type.getKey()).append('=').append(type.getValue());
+        }
+        summary.append(String.format(Locale.ROOT, "  Parsed %d index pages, %d entries (%s)%n", getPagesParsed(), total, types));
+        summary.append(String.format(Locale.ROOT, "  Inserted %d rows (%.0f rows/s)%n", getRowsInserted(), getRowsPerSecond()));
+        summary.append(String.format(Locale.ROOT, "  JVM peak heap %.1f MB", getJvmPeakHeapBytes() / (1024.0 * 1024.0)));
+        return summary.toString();
+    }
+
+    /**
+     * Format the metrics as a JSON object
+     * @return JSON
+     */
+    public String toJson() {
+        final StringBuilder json = new StringBuilder("{");
+        json.append("\"docset\":").append(null != name ? quote(name) : "null");
+        json.append(",\"totalMillis\":").append(getTotalMillis());
+        json.append(",\"stageMillis\":{");
+        boolean first = true;
+        for (final Map.Entry<String, Long> stage : getStageMillis().entrySet()) {
+            json.append(first ? "" : ",").append(quote(stage.getKey())).append(':').append(stage.getValue());
+            first = false;
+        }
+        json.append("},\"filesCopied\":").append(getFilesCopied());
+        json.append(",\"bytesCopied\":").append(getBytesCopied());
+        json.append(",\"indexPagesParsed\":").append(getPagesParsed());
+        json.append(",\"entries\":{");
+        first = true;
+        for (final Map.Entry<MatchType, Long> type : getEntries().entrySet()) {
+            json.append(first ? "" : ",").append(quote(type.getKey().name())).append(':').append(type.getValue());
+            first = false;
+        }
+        json.append("},\"rowsInserted\":").append(getRowsInserted());
+        json.append(",\"rowsPerSecond\":").append(String.format(Locale.ROOT, "%.1f", getRowsPerSecond()));
+        json.append(",\"jvmPeakHeapBytes\":").append(getJvmPeakHeapBytes());
+        return json.append('}').toString();
+    }
+
+    /**
+     * Write the metrics of one or more builds to a JSON file. A single build is written as an object, several builds
+     * as an array of objects.
+     * @param metrics Metrics to write
+     * @param file File to write
+     * @throws IOException
+     */
+    public static void writeJson(List<BuildMetrics> metrics, File file) throws IOException {
+        final StringBuilder json = new StringBuilder();
+        if (1 == metrics.size()) {
+            json.append(metrics.get(0).toJson());
+        } else {
+            json.append('[');
+            for (int i = 0; i < metrics.size(); i++) {
+                json.append(i > 0 ? "," : "").append(metrics.get(i).toJson());
+            }
+            json.append(']');
+        }
+        FileUtils.write(file, json.append('\n'), "UTF-8");
+    }
+
+    private static String quote(String s) {
+        final StringBuilder quoted = new StringBuilder("\"");
+        for (final char c : s.toCharArray()) {
+            if ('"' == c || '\\' == c) {
+                quoted.append('\\').append(c);
+            } else if (c < 0x20) {
+                quoted.append(String.format("\\u%04x", (int) c));
+            } else {
+                quoted.append(c);
+            }
+        }
+        return quoted.append('"').toString();
+    }
+}
@@ -0,0 +1,235 @@
+/**
+ * Copyright 2015 Megatome Technologies, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.megatome.j2d.util;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Content hashes of every file in a Javadoc tree, keyed by the path of the file relative to the root of the tree.
+ * A manifest is stored in the docset so that a later build can tell which files changed.
+ */
+public class DocsetManifest {
+    private static final String HASH_ALGORITHM = "SHA-1";
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final Map<String, Entry> entries = new TreeMap<>();
+
+    /**
+     * Hash, size and modification time of a single file.
+     */
+    public static final class Entry {
+        private final String hash;
+        private final long size;
+        private final long lastModified;
+
+        Entry(String hash, long size, long lastModified) {
+            this.hash = hash;
+            this.size = size;
+            this.lastModified = lastModified;
+        }
+
+        /**
+         * Get the content hash
+         * @return Hex encoded SHA-1 of the file content
+         */
+        public String getHash() {
+            return hash;
+        }
+
+        /**
+         * Get the file size
+         * @return Size in bytes
+         */
+        public long getSize() {
+            return size;
+        }
+
+        /**
+         * Get the file modification time
+         * @return Modification time in milliseconds since the epoch
+         */
+        public long getLastModified() {
+            return lastModified;
+        }
+    }
+
+    /**
+     * Build a manifest of all files under a directory.
+     * @param rootDir Root of the tree
+     * @param previous Manifest from an earlier build, or null. Hashes are reused for files whose size and
+     *                 modification time have not changed, so unchanged files are not read again.
+     * @return Manifest of the tree
+     * @throws IOException If a file could not be read
+     */
+    public static DocsetManifest create(File rootDir, DocsetManifest previous) throws IOException {
+        final DocsetManifest manifest = new DocsetManifest();
+        final byte[] buffer = new byte[64 * 1024];
+        addFiles(manifest, rootDir, "", previous, buffer);
+        return manifest;
+    }
+
+    private static void addFiles(DocsetManifest manifest, File dir, String prefix, DocsetManifest previous, byte[] buffer) throws IOException {
+        final File[] files = dir.listFiles();
+        if (null == files) {
+            throw new IOException("Failed to list files in " + dir);
+        }
+        for (final File f : files) {
+            final String path = prefix + f.getName();
+            if (f.isDirectory()) {
+                addFiles(manifest, f, path + "/", previous, buffer);
+                continue;
+            }
+            final long size = f.length();
+            final long lastModified = f.lastModified();
+            final Entry previousEntry = (null == previous) ? null : previous.getEntry(path);
+            if (null != previousEntry && previousEntry.size == size && previousEntry.lastModified == lastModified) {
+                manifest.entries.put(path, previousEntry);
+            } else {
+                manifest.entries.put(path, new Entry(hash(f, buffer), size, lastModified));
+            }
+        }
+    }
+
+    /**
+     * Read a manifest written by {@link #save(File)}.
+     * @param manifestFile File to read
+     * @return Manifest, or null if the file does not exist
+     * @throws IOException If the file could not be read
+     */
+    public static DocsetManifest load(File manifestFile) throws IOException {
+        if (!manifestFile.isFile()) {
+            return null;
+        }
+        final DocsetManifest manifest = new DocsetManifest();
+        try (final BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(manifestFile), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isEmpty()) {
+                    continue;
+                }
+                // hash size lastModified path. The path is last since it may contain spaces.
+                final String[] parts = line.split(" ", 4);
+                if (parts.length != 4) {
+                    throw new IOException("Invalid manifest line: " + line);
+                }
+                try {
+                    manifest.entries.put(parts[3], new Entry(parts[0], Long.parseLong(parts[1]), Long.parseLong(parts[2])));
+                } catch (NumberFormatException e) {
+                    throw new IOException("Invalid manifest line: " + line, e);
+                }
+            }
+        }
+        return manifest;
+    }
+
+    /**
+     * Write the manifest to a file.
+     * @param manifestFile File to write
+     * @throws IOException If the file could not be written
+     */
+    public void save(File manifestFile) throws IOException {
+        try (final Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(manifestFile), StandardCharsets.UTF_8))) {
+            for (final Map.Entry<String, Entry> entry : entries.entrySet()) {
+                final Entry value = entry.getValue();
+                writer.write(value.hash + " " + value.size + " " + value.lastModified + " " + entry.getKey() + "\n");
+            }
+        }
+    }
+
+    /**
+     * Get the relative paths of all files in the manifest
+     * @return Sorted set of paths
+     */
+    public Set<String> getPaths() {
+        return Collections.unmodifiableSet(entries.keySet());
+    }
+
+    /**
+     * Get the entry for a file
+     * @param path Path of the file, relative to the root of the tree
+     * @return Entry, or null if the file is not in the manifest
+     */
+    public Entry getEntry(String path) {
+        return entries.get(path);
+    }
+
+    /**
+     * Determine if a file has the same content in this manifest and another one.
+     * @param path Path of the file, relative to the root of the tree
+     * @param other Manifest to compare against. May be null.
+     * @return True if the file is in both manifests with the same content hash
+     */
+    public boolean isUnchanged(String path, DocsetManifest other) {
+        final Entry entry = entries.get(path);
+        final Entry otherEntry = (null == other) ? null : other.entries.get(path);
+        return null != entry && null != otherEntry && entry.hash.equals(otherEntry.hash);
+    }
+
+    /**
+     * Compute the content hash of a file.
+     * @param f File to hash
+     * @return Hex encoded SHA-1 of the file content
+     * @throws IOException If the file could not be read
+     */
+    public static String hash(File f) throws IOException {
+        return hash(f, new byte[64 * 1024]);
+    }
+
+    private static String hash(File f, byte[] buffer) throws IOException {
+        final MessageDigest digest = newDigest();
+        try (final InputStream in = new FileInputStream(f)) {
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+            }
+        }
+        return toHex(digest.digest());
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance(HASH_ALGORITHM);
+        } catch (NoSuchAlgorithmException e) {
+            // Every Java platform is required to support SHA-1
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String toHex(byte[] bytes) {
+        final char[] chars = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            chars[i * 2] = HEX[(bytes[i] >> 4) & 0xf];
+            chars[i * 2 + 1] = HEX[bytes[i] & 0xf];
+        }
+        return new String(chars);
+    }
+}
@@ -16,6 +16,7 @@
 package com.megatome.j2d.util;
 
 import java.io.File;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
@@ -25,7 +26,7 @@ import java.util.List;
  */
 public class IndexData {
     private String docsetIndexFile;
-    private List<File> filesToIndex = new ArrayList<>();
+    private List<Path> pathsToIndex = new ArrayList<>();
 
     /**
      * Set the docset index file
@@ -49,23 +50,46 @@ public class IndexData {
      */
     public void addFileToIndex(File fileToIndex) {
         if (null != fileToIndex) {
-            filesToIndex.add(fileToIndex);
+            pathsToIndex.add(fileToIndex.toPath());
         }
     }
 
     /**
-     * Get the list of files to index
+     * Add a file to be indexed, which may be an entry in a Javadoc archive
+     * @param pathToIndex Path
+     */
+    public void addPathToIndex(Path pathToIndex) {
+        if (null != pathToIndex) {
+            pathsToIndex.add(pathToIndex);
+        }
+    }
+
+    /**
+     * Get the list of files to index. Only available when the Javadoc is in a directory.
      * @return List of files
+     * @throws UnsupportedOperationException If the files are entries in a Javadoc archive
      */
     public List<File> getFilesToIndex() {
+        final List<File> filesToIndex = new ArrayList<>(pathsToIndex.size());
+        for (final Path path : pathsToIndex) {
+            filesToIndex.add(path.toFile());
+        }
         return Collections.unmodifiableList(filesToIndex);
     }
 
+    /**
+     * Get the list of files to index
+     * @return List of paths
+     */
+    public List<Path> getPathsToIndex() {
+        return Collections.unmodifiableList(pathsToIndex);
+    }
+
     /**
      * Determine if there are any files to index
      * @return True if one or more files have been added to index
      */
     public boolean hasFilesToIndex() {
-        return !filesToIndex.isEmpty();
+        return !pathsToIndex.isEmpty();
     }
 }
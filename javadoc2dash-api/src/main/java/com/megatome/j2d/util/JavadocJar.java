@@ -0,0 +1,156 @@
+/**
+ * Copyright 2015 Megatome Technologies, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.megatome.j2d.util;
+
+import java.io.File;
+import java.util.Objects;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A <code>-javadoc.jar</code> artifact of a library, with the coordinates of the library.
+ */
+public class JavadocJar {
+    private static final String JAVADOC_SUFFIX = "-javadoc.jar";
+    // Maven names artifacts name-version-classifier.jar, and versions start with a digit
+    private static final Pattern FILE_NAME_PATTERN = Pattern.compile("(.+?)-(\\d.*)");
+
+    private final String group;
+    private final String name;
+    private final String version;
+    private final File file;
+
+    /**
+     * Ctor.
+     * @param group Group of the library, or null if unknown
+     * @param name Name of the library
+     * @param version Version of the library, or null if unknown
+     * @param file Javadoc jar
+     */
+    public JavadocJar(String group, String name, String version, File file) {
+        if (null == name || name.isEmpty()) {
+            throw new IllegalArgumentException("The name must be specified");
+        }
+        if (null == file) {
+            throw new IllegalArgumentException("The file must be specified");
+        }
+        this.group = group;
+        this.name = name;
+        this.version = version;
+        this.file = file;
+    }
+
+    /**
+     * Determine if a file is named like a Javadoc jar.
+     * @param file File
+     * @return True if the file name ends with <code>-javadoc.jar</code>
+     */
+    public static boolean isJavadocJar(File file) {
+        return null != file && file.getName().endsWith(JAVADOC_SUFFIX) && file.getName().length() > JAVADOC_SUFFIX.length();
+    }
+
+    /**
+     * Create a Javadoc jar with the coordinates found in its file name, such as <code>guava-18.0-javadoc.jar</code>.
+     * The group is unknown, and so is the version if the name has none.
+     * @param file Javadoc jar
+     * @return Javadoc jar
+     */
+    public static JavadocJar fromFile(File file) {
+        String baseName = file.getName();
+        if (isJavadocJar(file)) {
+            baseName = baseName.substring(0, baseName.length() - JAVADOC_SUFFIX.length());
+        }
+        final Matcher m = FILE_NAME_PATTERN.matcher(baseName);
+        if (m.matches()) {
+            return new JavadocJar(null, m.group(1), m.group(2), file);
+        }
+        return new JavadocJar(null, baseName, null, file);
+    }
+
+    /**
+     * Get the group of the library
+     * @return Group, or null if unknown
+     */
+    public String getGroup() {
+        return group;
+    }
+
+    /**
+     * Get the name of the library
+     * @return Name
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Get the version of the library
+     * @return Version, or null if unknown
+     */
+    public String getVersion() {
+        return version;
+    }
+
+    /**
+     * Get the Javadoc jar
+     * @return Jar file
+     */
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * Get the coordinates of the library
+     * @return <code>group:name:version</code>, leaving out the parts that are unknown
+     */
+    public String getCoordinates() {
+        final StringBuilder sb = new StringBuilder();
+        if (null != group) {
+            sb.append(group).append(':');
+        }
+        sb.append(name);
+        if (null != version) {
+            sb.append(':').append(version);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Jars are equal when they have the same coordinates and file, so a jar created again by a caller, or taken from
+     * another batch, can be looked up in a batch.
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof JavadocJar)) {
+            return false;
+        }
+        final JavadocJar other = (JavadocJar) o;
+        return getCoordinates().equals(other.getCoordinates()) && Objects.equals(file, other.file);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(getCoordinates(), file);
+    }
+
+    @Override
+    public String toString() {
+        return getCoordinates();
+    }
+}
@@ -0,0 +1,86 @@
+/**
+ * Copyright 2015 Megatome Technologies, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.megatome.j2d.util;
+
+import org.slf4j.Logger;
+
+/**
+ * Logging settings and metrics for a single docset build. See {@link LogUtility#setContext(LogContext)}.
+ */
+public final class LogContext {
+    private final Logger logger;
+    private final boolean verbose;
+    private final String name;
+    private final BuildMetrics metrics;
+
+    /**
+     * Ctor
+     * @param logger Logger to use. Messages are logged to System.out if null.
+     * @param verbose True to show more verbose messages
+     * @param name Name to prefix every message with, so messages from builds running side by side can be told apart.
+     *             No prefix is used if null.
+     */
+    public LogContext(Logger logger, boolean verbose, String name) {
+        this(logger, verbose, name, null);
+    }
+
+    /**
+     * Ctor
+     * @param logger Logger to use. Messages are logged to System.out if null.
+     * @param verbose True to show more verbose messages
+     * @param name Name to prefix every message with, so messages from builds running side by side can be told apart.
+     *             No prefix is used if null.
+     * @param metrics Metrics the build records into. Nothing is recorded if null.
+     */
+    public LogContext(Logger logger, boolean verbose, String name, BuildMetrics metrics) {
+        this.logger = logger;
+        this.verbose = verbose;
+        this.name = name;
+        this.metrics = metrics;
+    }
+
+    /**
+     * Get the logger
+     * @return Logger, or null if messages are logged to System.out
+     */
+    public Logger getLogger() {
+        return logger;
+    }
+
+    /**
+     * Determine if verbose messages are shown
+     * @return True if verbose messages are shown
+     */
+    public boolean isVerbose() {
+        return verbose;
+    }
+
+    /**
+     * Get the name messages are prefixed with
+     * @return Name, or null if messages are not prefixed
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Get the metrics the build records into
+     * @return Metrics, or null if nothing is recorded
+     */
+    public BuildMetrics getMetrics() {
+        return metrics;
+    }
+}
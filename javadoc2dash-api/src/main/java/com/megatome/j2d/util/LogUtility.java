@@ -3,12 +3,16 @@ package com.megatome.j2d.util;
 import org.slf4j.Logger;
 import org.slf4j.helpers.MessageFormatter;
 
+import java.util.concurrent.Callable;
+
 /**
- * Simple class that wraps all logging.
+ * Simple class that wraps all logging. Messages are logged using the {@link LogContext} of the current thread, or the
+ * global logger and verbose flag if the thread has no context.
  */
 public class LogUtility {
-    private static Logger logger;
-    private static boolean verbose = false;
+    private static volatile Logger logger;
+    private static volatile boolean verbose = false;
+    private static final ThreadLocal<LogContext> context = new ThreadLocal<>();
 
     /**
      * Specify a logger to use. Log messages will go to System.out if no logger is specified.
@@ -28,6 +32,73 @@ public class LogUtility {
         LogUtility.verbose = verbose;
     }
 
+    /**
+     * Get the logging settings in effect for the current thread.
+     * @return Context of the current thread, or a context made from the global logger and verbose flag
+     */
+    public static LogContext getContext() {
+        final LogContext current = context.get();
+        return null != current ? current : new LogContext(logger, verbose, null);
+    }
+
+    /**
+     * Specify the logging settings for the current thread, in place of the global logger and verbose flag.
+     * @param logContext Context to use. Pass null to go back to the global settings.
+     * @return The context previously set on this thread, or null if there was none. Pass it back to this method once
+     *         done to restore it.
+     */
+    public static LogContext setContext(LogContext logContext) {
+        final LogContext previous = context.get();
+        if (null == logContext) {
+            context.remove();
+        } else {
+            context.set(logContext);
+        }
+        return previous;
+    }
+
+    /**
+     * Wrap a task so that it runs with the logging context of the thread that created it. Use this for any task
+     * handed to another thread.
+     * @param task Task to wrap
+     * @return Wrapped task
+     */
+    public static <T> Callable<T> withContext(final Callable<T> task) {
+        final LogContext captured = context.get();
+        return new Callable<T>() {
+            @Override
+            public T call() throws Exception {
+                final LogContext previous = setContext(captured);
+                try {
+                    return task.call();
+                } finally {
+                    setContext(previous);
+                }
+            }
+        };
+    }
+
+    /**
+     * Wrap a task so that it runs with the logging context of the thread that created it. Use this for any task
+     * handed to another thread.
+     * @param task Task to wrap
+     * @return Wrapped task
+     */
+    public static Runnable withContext(final Runnable task) {
+        final LogContext captured = context.get();
+        return new Runnable() {
+            @Override
+            public void run() {
+                final LogContext previous = setContext(captured);
+                try {
+                    task.run();
+                } finally {
+                    setContext(previous);
+                }
+            }
+        };
+    }
+
     /**
      * Log a message. If a logger has been specified, log the message at INFO level. Otherwise the message is logged
      * to System.out.
@@ -35,11 +106,7 @@ public class LogUtility {
      * @param arguments Arguments to substitute into the message before logging
      */
     public static void log(String format, Object... arguments) {
-        if (null != logger) {
-            logger.info(format, arguments);
-        } else {
-            System.out.println(MessageFormatter.arrayFormat(format, arguments).getMessage());
-        }
+        log(getContext(), format, arguments);
     }
 
     /**
@@ -49,8 +116,18 @@ public class LogUtility {
      * @param arguments Arguments to substitute into the message before logging
      */
     public static void logVerbose(String format, Object... arguments) {
-        if (verbose) {
-            log(format, arguments);
+        final LogContext current = getContext();
+        if (current.isVerbose()) {
+            log(current, format, arguments);
+        }
+    }
+
+    private static void log(LogContext current, String format, Object... arguments) {
+        final String message = null == current.getName() ? format : "[" + current.getName() + "] " + format;
+        if (null != current.getLogger()) {
+            current.getLogger().info(message, arguments);
+        } else {
+            System.out.println(MessageFormatter.arrayFormat(message, arguments).getMessage());
         }
     }
 }
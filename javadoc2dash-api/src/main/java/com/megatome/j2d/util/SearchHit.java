@@ -0,0 +1,83 @@
+/**
+ * Copyright 2015 Megatome Technologies, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.megatome.j2d.util;
+
+/**
+ * An entry found by a full text search of a docset.
+ */
+public class SearchHit {
+    private final String name;
+    private final String type;
+    private final String path;
+    private final String description;
+    private final double score;
+
+    /**
+     * Ctor.
+     * @param name Entry name
+     * @param type Name of the entry type, as shown in Dash
+     * @param path Path to the entry
+     * @param description Description of the entry, or null if there is none
+     * @param score How well the entry matches the query. Higher is better.
+     */
+    public SearchHit(String name, String type, String path, String description, double score) {
+        this.name = name;
+        this.type = type;
+        this.path = path;
+        this.description = description;
+        this.score = score;
+    }
+
+    /**
+     * Get the entry name
+     * @return Name
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Get the name of the entry type
+     * @return Type name
+     */
+    public String getType() {
+        return type;
+    }
+
+    /**
+     * Get the entry path
+     * @return Path
+     */
+    public String getPath() {
+        return path;
+    }
+
+    /**
+     * Get the entry description
+     * @return Description, or null if there is none
+     */
+    public String getDescription() {
+        return description;
+    }
+
+    /**
+     * Get how well the entry matches the query
+     * @return Score. Higher is better.
+     */
+    public double getScore() {
+        return score;
+    }
+}
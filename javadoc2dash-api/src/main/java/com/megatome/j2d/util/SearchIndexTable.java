@@ -0,0 +1,222 @@
+/**
+ * Copyright 2015 Megatome Technologies, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.megatome.j2d.util;
+
+import com.megatome.j2d.support.MatchType;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * Compact, column oriented store for a large number of search index values. Instead of three strings per value, each
+ * row holds ids into a string pool shared by all rows of the table. Paths are split at the anchor, so every member of
+ * a class shares the pooled path of the class page, and member names and anchors that repeat across classes are also
+ * stored once. A table must only be used from one thread at a time.
+ */
+public final class SearchIndexTable implements Iterable<SearchIndexValue> {
+    private static final int DEFAULT_CAPACITY = 1024;
+    private static final int NO_ANCHOR = -1;
+    private static final MatchType[] TYPES = MatchType.values();
+
+    private final Map<String, Integer> poolIds = new HashMap<>();
+    private final List<String> pool = new ArrayList<>();
+    private int[] names;
+    private byte[] types;
+    private int[] pages;
+    private int[] anchors;
+    private int size = 0;
+
+    /**
+     * Ctor.
+     */
+    public SearchIndexTable() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Ctor.
+     * @param capacity Number of rows to make room for up front
+     */
+    public SearchIndexTable(int capacity) {
+        final int initialCapacity = Math.max(1, capacity);
+        names = new int[initialCapacity];
+        types = new byte[initialCapacity];
+        pages = new int[initialCapacity];
+        anchors = new int[initialCapacity];
+    }
+
+    /**
+     * Add a row.
+     * @param name Entry name
+     * @param type Entry type
+     * @param path Path to the entry
+     */
+    public void add(String name, MatchType type, String path) {
+        if (size == names.length) {
+            grow();
+        }
+        names[size] = intern(name);
+        types[size] = (byte) type.ordinal();
+        final int anchor = path.indexOf('#');
+        if (anchor < 0) {
+            pages[size] = intern(path);
+            anchors[size] = NO_ANCHOR;
+        } else {
+            pages[size] = intern(path.substring(0, anchor));
+            anchors[size] = intern(path.substring(anchor));
+        }
+        size++;
+    }
+
+    /**
+     * Add a row.
+     * @param value Value to add
+     */
+    public void add(SearchIndexValue value) {
+        add(value.getName(), value.getType(), value.getPath());
+    }
+
+    /**
+     * Add a row for each value.
+     * @param values Values to add
+     */
+    public void addAll(List<SearchIndexValue> values) {
+        for (final SearchIndexValue value : values) {
+            add(value);
+        }
+    }
+
+    /**
+     * Get the number of rows
+     * @return Row count
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Determine if the table has no rows
+     * @return True if there are no rows
+     */
+    public boolean isEmpty() {
+        return 0 == size;
+    }
+
+    /**
+     * Get the number of distinct strings the rows are made of
+     * @return String pool size
+     */
+    public int getPoolSize() {
+        return pool.size();
+    }
+
+    /**
+     * Get the entry name of a row. The same instance is returned for every row with the same name.
+     * @param row Row index
+     * @return Name
+     */
+    public String getName(int row) {
+        return pool.get(names[checkRow(row)]);
+    }
+
+    /**
+     * Get the entry type of a row
+     * @param row Row index
+     * @return Type
+     */
+    public MatchType getType(int row) {
+        return TYPES[types[checkRow(row)]];
+    }
+
+    /**
+     * Get the path of a row. Paths with an anchor are put together on every call.
+     * @param row Row index
+     * @return Path
+     */
+    public String getPath(int row) {
+        checkRow(row);
+        final String page = pool.get(pages[row]);
+        return NO_ANCHOR == anchors[row] ? page : page.concat(pool.get(anchors[row]));
+    }
+
+    /**
+     * Get a row as a value
+     * @param row Row index
+     * @return Value
+     */
+    public SearchIndexValue get(int row) {
+        return new SearchIndexValue(getName(row), getType(row), getPath(row));
+    }
+
+    /**
+     * Iterate over the rows. Each row is turned into a new value as it is reached.
+     * @return Iterator
+     */
+    @Override
+    public Iterator<SearchIndexValue> iterator() {
+        return new Iterator<SearchIndexValue>() {
+            private int next = 0;
+
+            @Override
+            public boolean hasNext() {
+                return next < size;
+            }
+
+            @Override
+            public SearchIndexValue next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return get(next++);
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    private int intern(String s) {
+        final Integer id = poolIds.get(s);
+        if (null != id) {
+            return id;
+        }
+        poolIds.put(s, pool.size());
+        pool.add(s);
+        return pool.size() - 1;
+    }
+
+    private int checkRow(int row) {
+        if (row < 0 || row >= size) {
+            throw new IndexOutOfBoundsException(String.format("Row %d of %d", row, size));
+        }
+        return row;
+    }
+
+    private void grow() {
+        final int capacity = names.length + (names.length >> 1) + 1;
+        names = Arrays.copyOf(names, capacity);
+        types = Arrays.copyOf(types, capacity);
+        pages = Arrays.copyOf(pages, capacity);
+        anchors = Arrays.copyOf(anchors, capacity);
+    }
+}
@@ -24,6 +24,7 @@ public class SearchIndexValue {
     private final String name;
     private final MatchType type;
     private final String path;
+    private final String description;
 
     /**
      * Ctor.
@@ -32,9 +33,21 @@ public class SearchIndexValue {
      * @param path Path to the entry
      */
     public SearchIndexValue(String name, MatchType type, String path) {
+        this(name, type, path, null);
+    }
+
+    /**
+     * Ctor.
+     * @param name Entry name
+     * @param type Entry type
+     * @param path Path to the entry
+     * @param description Summary of the entry from the Javadoc index, or null if there is none
+     */
+    public SearchIndexValue(String name, MatchType type, String path, String description) {
         this.name = name;
         this.type = type;
         this.path = path;
+        this.description = description;
     }
 
     /**
@@ -60,4 +73,13 @@ public class SearchIndexValue {
     public String getPath() {
         return path;
     }
+
+    /**
+     * Get the entry description. Only read from the Javadoc when {@link com.megatome.j2d.support.ParseOptions#descriptions(boolean)}
+     * is set.
+     * @return Description, or null if there is none
+     */
+    public String getDescription() {
+        return description;
+    }
 }
@@ -0,0 +1,163 @@
+package com.megatome.j2d;
+
+import com.megatome.j2d.support.CopyStrategy;
+import com.megatome.j2d.support.MatchType;
+import com.megatome.j2d.support.ParserStrategy;
+import com.megatome.j2d.util.SearchIndexTable;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.apache.commons.io.FileUtils.*;
+import static org.junit.Assert.*;
+
+public class DocsetAggregatorTest {
+    private static final File javadocLocation = getFile(System.getProperty("j2d-sample-javadoc"));
+    private static final File javadocSplitLocation = getFile(System.getProperty("j2d-sample-javadoc-split"));
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testCreateNullName() {
+        new DocsetAggregator.Builder(null);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testCreateWithoutModules() {
+        new DocsetAggregator.Builder("Foo").build();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testDuplicateModule() {
+        new DocsetAggregator.Builder("Foo").module("core", javadocLocation).module("core", javadocSplitLocation);
+    }
+
+    @Test
+    public void testInvalidModuleNames() {
+        for (final String name : Arrays.asList(null, "", ".", "..", "a/b", "a\\b", "index.html")) {
+            try {
+                new DocsetAggregator.Builder("Foo").module(name, javadocLocation);
+                fail("Expected " + name + " to be rejected");
+            } catch (IllegalArgumentException e) {
+                // Expected
+            }
+        }
+    }
+
+    @Test
+    public void testBuildWithOptions() {
+        DocsetAggregator aggregator = new DocsetAggregator.Builder("Foo")
+                .module("core", javadocLocation)
+                .build();
+        assertEquals("Foo", aggregator.getDisplayName());
+        assertEquals("Foo", aggregator.getKeyword());
+        assertEquals(Runtime.getRuntime().availableProcessors(), aggregator.getBuildThreads());
+        assertEquals(ParserStrategy.DOM, aggregator.getParserStrategy());
+        assertEquals(CopyStrategy.COPY, aggregator.getCopyStrategy());
+        assertNull(aggregator.getParseCacheDir());
+
+        aggregator = new DocsetAggregator.Builder("Foo")
+                .module("core", javadocLocation)
+                .module("util", javadocSplitLocation)
+                .displayName("Bar")
+                .keyword("baz")
+                .buildThreads(3)
+                .buildThreads(0)
+                .parseThreads(2)
+                .copyThreads(4)
+                .parserStrategy(ParserStrategy.STREAMING)
+                .copyStrategy(CopyStrategy.HARD_LINK)
+                .outputDirectory(temporaryFolder.getRoot())
+                .build();
+        assertEquals("Bar", aggregator.getDisplayName());
+        assertEquals("baz", aggregator.getKeyword());
+        assertEquals(3, aggregator.getBuildThreads());
+        assertEquals(2, aggregator.getParseThreads());
+        assertEquals(4, aggregator.getCopyThreads());
+        assertEquals(ParserStrategy.STREAMING, aggregator.getParserStrategy());
+        assertEquals(CopyStrategy.HARD_LINK, aggregator.getCopyStrategy());
+        assertEquals(Arrays.asList("core", "util"), Arrays.asList(aggregator.getModules().keySet().toArray()));
+    }
+
+    @Test
+    public void testMergeShard() {
+        final Set<String> seen = new HashSet<>();
+        final SearchIndexTable coreValues = new SearchIndexTable();
+        coreValues.add("com.example", MatchType.PACKAGE, "com/example/package-summary.html");
+        coreValues.add("Foo", MatchType.CLASS, "com/example/Foo.html");
+        final SearchIndexTable core = DocsetAggregator.mergeShard("core", coreValues, seen);
+        assertEquals(2, core.size());
+        assertEquals("core/com/example/package-summary.html", core.getPath(0));
+        assertEquals("core/com/example/Foo.html", core.getPath(1));
+
+        // The shared package and the class documented by both modules are only indexed once
+        final SearchIndexTable utilValues = new SearchIndexTable();
+        utilValues.add("com.example", MatchType.PACKAGE, "com/example/package-summary.html");
+        utilValues.add("Foo", MatchType.CLASS, "com/example/Foo.html");
+        utilValues.add("Bar", MatchType.CLASS, "com/example/Bar.html");
+        final SearchIndexTable util = DocsetAggregator.mergeShard("util", utilValues, seen);
+        assertEquals(1, util.size());
+        assertEquals("Bar", util.getName(0));
+        assertEquals("util/com/example/Bar.html", util.getPath(0));
+
+        // Links from a split index are relative to the index-files directory
+        final SearchIndexTable splitValues = new SearchIndexTable();
+        splitValues.add("Foo", MatchType.CLASS, "../com/example/Foo.html");
+        splitValues.add("Baz", MatchType.CLASS, "../com/example/Baz.html");
+        splitValues.add("Qux", MatchType.CLASS, "./com/example/Qux.html");
+        final SearchIndexTable split = DocsetAggregator.mergeShard("split", splitValues, seen);
+        assertEquals(2, split.size());
+        assertEquals("split/com/example/Baz.html", split.getPath(0));
+        assertEquals("split/com/example/Qux.html", split.getPath(1));
+    }
+
+    @Test
+    public void testMakeDocset() throws Exception {
+        new DocsetAggregator.Builder("Foo")
+                .module("core", javadocLocation)
+                .module("copy", javadocLocation)
+                .module("split", javadocSplitLocation)
+                .buildThreads(2)
+                .outputDirectory(temporaryFolder.getRoot())
+                .build()
+                .makeDocset();
+
+        final File resourcesDir = getFile(temporaryFolder.getRoot(), "Foo.docset", "Contents", "Resources");
+        for (final String module : Arrays.asList("core", "copy", "split")) {
+            assertTrue(getFile(resourcesDir, "Documents", module, "index.html").exists());
+        }
+        final String moduleIndex = readFileToString(getFile(resourcesDir, "Documents", "index.html"), "UTF-8");
+        assertTrue(moduleIndex.contains("core/overview-summary.html"));
+        assertTrue(readFileToString(getFile(temporaryFolder.getRoot(), "Foo.docset", "Contents", "Info.plist"), "UTF-8")
+                .contains("<string>index.html</string>"));
+
+        final File singleDir = temporaryFolder.newFolder("single");
+        new DocsetCreator.Builder("Single", javadocLocation).outputDirectory(singleDir).build().makeDocset();
+        final File singleDB = getFile(singleDir, "Single.docset", "Contents", "Resources", "docSet.dsidx");
+
+        // The second copy of the same Javadoc adds nothing to the index
+        final File dbFile = getFile(resourcesDir, "docSet.dsidx");
+        assertEquals(0, count(dbFile, "SELECT COUNT(*) FROM searchIndex WHERE path LIKE 'copy/%'"));
+        assertEquals(0, count(dbFile, "SELECT COUNT(*) FROM searchIndex WHERE path LIKE '%../%'"));
+        assertEquals(count(singleDB, "SELECT COUNT(*) FROM searchIndex"), count(dbFile, "SELECT COUNT(*) FROM searchIndex WHERE path LIKE 'core/%'"));
+    }
+
+    private static int count(File dbFile, String query) throws Exception {
+        try (final Connection connection = DriverManager.getConnection("jdbc:sqlite:" + dbFile);
+             final Statement stmt = connection.createStatement();
+             final ResultSet rs = stmt.executeQuery(query)) {
+            assertTrue(rs.next());
+            return rs.getInt(1);
+        }
+    }
+}
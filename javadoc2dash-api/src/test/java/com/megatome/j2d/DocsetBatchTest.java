@@ -0,0 +1,106 @@
+package com.megatome.j2d;
+
+import com.megatome.j2d.exception.BuilderException;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+
+import static org.apache.commons.io.FileUtils.getFile;
+import static org.junit.Assert.*;
+
+public class DocsetBatchTest {
+    private static final File javadocLocation = getFile(System.getProperty("j2d-sample-javadoc"));
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void testBuildWithBuildThreads() throws Exception {
+        final DocsetBatch.Builder builder = new DocsetBatch.Builder();
+        assertEquals(Runtime.getRuntime().availableProcessors(), builder.build().getBuildThreads());
+
+        builder.buildThreads(0);
+        assertEquals(Runtime.getRuntime().availableProcessors(), builder.build().getBuildThreads());
+
+        builder.buildThreads(3);
+        assertEquals(3, builder.build().getBuildThreads());
+    }
+
+    @Test
+    public void testAddIgnoresNull() throws Exception {
+        final DocsetBatch batch = new DocsetBatch.Builder().add(null).build();
+        assertTrue(batch.getCreators().isEmpty());
+        batch.makeDocsets();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testDuplicateDocsetLocation() throws Exception {
+        new DocsetBatch.Builder()
+                .add(creator("Foo", javadocLocation))
+                .add(creator("Foo", javadocLocation))
+                .build();
+    }
+
+    @Test
+    public void testMakeDocsets() throws Exception {
+        final DocsetBatch batch = new DocsetBatch.Builder()
+                .add(creator("Foo", javadocLocation))
+                .add(creator("Bar", javadocLocation))
+                .add(creator("Baz", javadocLocation))
+                .buildThreads(2)
+                .build();
+        batch.makeDocsets();
+        verifyDocset("Foo");
+        verifyDocset("Bar");
+        verifyDocset("Baz");
+    }
+
+    @Test
+    public void testFailedDocsetDoesNotStopOthers() throws Exception {
+        final DocsetBatch batch = new DocsetBatch.Builder()
+                .add(creator("Foo", getFile(temporaryFolder.getRoot(), "missing")))
+                .add(creator("Bar", javadocLocation))
+                .build();
+        try {
+            batch.makeDocsets();
+            fail("Expected the missing javadoc to be reported");
+        } catch (BuilderException e) {
+            assertTrue(e.getMessage().contains("[Foo]"));
+            assertTrue(e.getCause() instanceof BuilderException);
+        }
+        verifyDocset("Bar");
+    }
+
+    @Test
+    public void testThreadsPerBuild() throws Exception {
+        final int processors = Runtime.getRuntime().availableProcessors();
+        DocsetBatch batch = new DocsetBatch.Builder()
+                .add(creator("Foo", javadocLocation))
+                .buildThreads(processors * 2)
+                .build();
+        assertEquals(processors, batch.getThreadsPerBuild());
+
+        batch = new DocsetBatch.Builder()
+                .add(creator("Foo", javadocLocation))
+                .add(creator("Bar", javadocLocation))
+                .add(creator("Baz", javadocLocation))
+                .buildThreads(3)
+                .build();
+        assertEquals(Math.max(1, processors / 3), batch.getThreadsPerBuild());
+    }
+
+    private DocsetCreator creator(String docsetName, File javadocRoot) {
+        return new DocsetCreator.Builder(docsetName, javadocRoot)
+                .outputDirectory(temporaryFolder.getRoot())
+                .build();
+    }
+
+    private void verifyDocset(String docsetName) {
+        final File docsetDir = getFile(temporaryFolder.getRoot(), docsetName + ".docset");
+        assertTrue(getFile(docsetDir, "Contents", "Info.plist").exists());
+        assertTrue(getFile(docsetDir, "Contents", "Resources", "docSet.dsidx").exists());
+        assertTrue(getFile(docsetDir, "Contents", "Resources", "Documents", "index.html").exists());
+    }
+}
@@ -1,11 +1,18 @@
 package com.megatome.j2d;
 
+import com.megatome.j2d.support.DBSupport;
+import com.megatome.j2d.support.CopyStrategy;
+import com.megatome.j2d.support.OutputFormat;
+import com.megatome.j2d.support.ParserStrategy;
 import org.apache.commons.io.FileUtils;
 import org.junit.Before;
 import org.junit.Test;
 
 import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.Map;
 
 import static org.junit.Assert.*;
@@ -19,6 +26,21 @@ public class DocsetCreatorTest {
     private static final String KEYWORD = "KEYWORD";
     private static final String OUTPUT_DIR = "OUTPUT_DIR";
     private static final String ICON_FILE = "ICON_FILE";
+    private static final String PARSE_THREADS = "PARSE_THREADS";
+    private static final String BATCH_SIZE = "BATCH_SIZE";
+    private static final String PARSER_STRATEGY = "PARSER_STRATEGY";
+    private static final String INCREMENTAL = "INCREMENTAL";
+    private static final String FULL_TEXT_INDEX = "FULL_TEXT_INDEX";
+    private static final String TABLE_OF_CONTENTS = "TABLE_OF_CONTENTS";
+    private static final String COPY_STRATEGY = "COPY_STRATEGY";
+    private static final String COPY_THREADS = "COPY_THREADS";
+    private static final String OUTPUT_FORMAT = "OUTPUT_FORMAT";
+    private static final String ARCHIVE_FILE = "ARCHIVE_FILE";
+    private static final String COMPRESSION_LEVEL = "COMPRESSION_LEVEL";
+    private static final String COMPRESSION_BLOCK_SIZE = "COMPRESSION_BLOCK_SIZE";
+    private static final String COMPRESS_THREADS = "COMPRESS_THREADS";
+    private static final String CHANGED_PACKAGES = "CHANGED_PACKAGES";
+    private static final String PARSE_CACHE_DIR = "PARSE_CACHE_DIR";
 
     @Before
     public void setup() {
@@ -29,6 +51,21 @@ public class DocsetCreatorTest {
         expectedValues.put(KEYWORD, "Foo");
         expectedValues.put(OUTPUT_DIR, CURRENT_DIR);
         expectedValues.put(ICON_FILE, null);
+        expectedValues.put(PARSE_THREADS, Runtime.getRuntime().availableProcessors());
+        expectedValues.put(BATCH_SIZE, DBSupport.DEFAULT_BATCH_SIZE);
+        expectedValues.put(PARSER_STRATEGY, ParserStrategy.DOM);
+        expectedValues.put(INCREMENTAL, false);
+        expectedValues.put(FULL_TEXT_INDEX, false);
+        expectedValues.put(TABLE_OF_CONTENTS, false);
+        expectedValues.put(COPY_STRATEGY, CopyStrategy.COPY);
+        expectedValues.put(COPY_THREADS, Runtime.getRuntime().availableProcessors());
+        expectedValues.put(OUTPUT_FORMAT, OutputFormat.DIRECTORY);
+        expectedValues.put(ARCHIVE_FILE, null);
+        expectedValues.put(COMPRESSION_LEVEL, 6);
+        expectedValues.put(COMPRESSION_BLOCK_SIZE, 128);
+        expectedValues.put(COMPRESS_THREADS, Runtime.getRuntime().availableProcessors());
+        expectedValues.put(CHANGED_PACKAGES, Collections.emptySet());
+        expectedValues.put(PARSE_CACHE_DIR, null);
     }
 
     @Test(expected = IllegalArgumentException.class)
@@ -107,6 +144,144 @@ public class DocsetCreatorTest {
         verifyCreatorValues(builder.build());
     }
 
+    @Test
+    public void testBuildWithParseThreads() throws Exception {
+        final DocsetCreator.Builder builder = new DocsetCreator.Builder("Foo", CURRENT_DIR);
+        builder.parseThreads(0);
+        verifyCreatorValues(builder.build());
+
+        builder.parseThreads(3);
+        expectedValues.put(PARSE_THREADS, 3);
+        verifyCreatorValues(builder.build());
+    }
+
+    @Test
+    public void testBuildWithBatchSize() throws Exception {
+        final DocsetCreator.Builder builder = new DocsetCreator.Builder("Foo", CURRENT_DIR);
+        builder.batchSize(-1);
+        verifyCreatorValues(builder.build());
+
+        builder.batchSize(500);
+        expectedValues.put(BATCH_SIZE, 500);
+        verifyCreatorValues(builder.build());
+    }
+
+    @Test
+    public void testBuildWithParserStrategy() throws Exception {
+        final DocsetCreator.Builder builder = new DocsetCreator.Builder("Foo", CURRENT_DIR);
+        builder.parserStrategy(null);
+        verifyCreatorValues(builder.build());
+
+        builder.parserStrategy(ParserStrategy.STREAMING);
+        expectedValues.put(PARSER_STRATEGY, ParserStrategy.STREAMING);
+        verifyCreatorValues(builder.build());
+    }
+
+    @Test
+    public void testBuildWithIncremental() throws Exception {
+        final DocsetCreator.Builder builder = new DocsetCreator.Builder("Foo", CURRENT_DIR);
+        builder.incremental(true);
+        expectedValues.put(INCREMENTAL, true);
+        verifyCreatorValues(builder.build());
+    }
+
+    @Test
+    public void testBuildWithFullTextIndex() throws Exception {
+        final DocsetCreator.Builder builder = new DocsetCreator.Builder("Foo", CURRENT_DIR);
+        builder.fullTextIndex(true);
+        expectedValues.put(FULL_TEXT_INDEX, true);
+        verifyCreatorValues(builder.build());
+    }
+
+    @Test
+    public void testBuildWithTableOfContents() throws Exception {
+        final DocsetCreator.Builder builder = new DocsetCreator.Builder("Foo", CURRENT_DIR);
+        builder.tableOfContents(true);
+        expectedValues.put(TABLE_OF_CONTENTS, true);
+        verifyCreatorValues(builder.build());
+    }
+
+    @Test
+    public void testBuildWithCopyStrategy() throws Exception {
+        final DocsetCreator.Builder builder = new DocsetCreator.Builder("Foo", CURRENT_DIR);
+        builder.copyStrategy(null);
+        verifyCreatorValues(builder.build());
+
+        builder.copyStrategy(CopyStrategy.HARD_LINK);
+        expectedValues.put(COPY_STRATEGY, CopyStrategy.HARD_LINK);
+        verifyCreatorValues(builder.build());
+    }
+
+    @Test
+    public void testBuildWithCopyThreads() throws Exception {
+        final DocsetCreator.Builder builder = new DocsetCreator.Builder("Foo", CURRENT_DIR);
+        builder.copyThreads(0);
+        verifyCreatorValues(builder.build());
+
+        builder.copyThreads(8);
+        expectedValues.put(COPY_THREADS, 8);
+        verifyCreatorValues(builder.build());
+    }
+
+    @Test
+    public void testBuildWithOutputFormat() throws Exception {
+        final DocsetCreator.Builder builder = new DocsetCreator.Builder("Foo", CURRENT_DIR);
+        builder.outputFormat(null);
+        verifyCreatorValues(builder.build());
+
+        builder.outputFormat(OutputFormat.TGZ);
+        expectedValues.put(OUTPUT_FORMAT, OutputFormat.TGZ);
+        verifyCreatorValues(builder.build());
+    }
+
+    @Test
+    public void testBuildWithArchiveFile() throws Exception {
+        final DocsetCreator.Builder builder = new DocsetCreator.Builder("Foo", CURRENT_DIR);
+        builder.archiveFile(null);
+        verifyCreatorValues(builder.build());
+
+        final File archive = new File("foo.tgz");
+        builder.archiveFile(archive);
+        expectedValues.put(ARCHIVE_FILE, archive);
+        verifyCreatorValues(builder.build());
+    }
+
+    @Test
+    public void testBuildWithCompression() throws Exception {
+        final DocsetCreator.Builder builder = new DocsetCreator.Builder("Foo", CURRENT_DIR);
+        builder.compressionLevel(-1).compressionLevel(10).compressionBlockSize(16).compressThreads(0);
+        verifyCreatorValues(builder.build());
+
+        builder.compressionLevel(0).compressionBlockSize(32).compressThreads(3);
+        expectedValues.put(COMPRESSION_LEVEL, 0);
+        expectedValues.put(COMPRESSION_BLOCK_SIZE, 32);
+        expectedValues.put(COMPRESS_THREADS, 3);
+        verifyCreatorValues(builder.build());
+    }
+
+    @Test
+    public void testBuildWithChangedPackages() throws Exception {
+        final DocsetCreator.Builder builder = new DocsetCreator.Builder("Foo", CURRENT_DIR);
+        builder.changedPackages(null).changedPackages(Arrays.asList("", " ", null));
+        verifyCreatorValues(builder.build());
+
+        builder.changedPackages(Arrays.asList("com.example.util", " com.example.io", "com.example.util"));
+        expectedValues.put(CHANGED_PACKAGES, new LinkedHashSet<>(Arrays.asList("com.example.util", "com.example.io")));
+        verifyCreatorValues(builder.build());
+    }
+
+    @Test
+    public void testBuildWithParseCacheDir() throws Exception {
+        final DocsetCreator.Builder builder = new DocsetCreator.Builder("Foo", CURRENT_DIR);
+        builder.parseCacheDir(null);
+        verifyCreatorValues(builder.build());
+
+        final File cacheDir = new File("cache");
+        builder.parseCacheDir(cacheDir);
+        expectedValues.put(PARSE_CACHE_DIR, cacheDir);
+        verifyCreatorValues(builder.build());
+    }
+
     private void verifyCreatorValues(final DocsetCreator creator) {
         verifyCreatorValues(expectedValues, creator);
     }
@@ -119,5 +294,20 @@ public class DocsetCreatorTest {
         assertEquals(expectedValueMap.get(KEYWORD), creator.getKeyword());
         assertEquals(expectedValueMap.get(OUTPUT_DIR), creator.getOutputDirectory());
         assertEquals(expectedValueMap.get(ICON_FILE), creator.getIconFilePath());
+        assertEquals(expectedValueMap.get(PARSE_THREADS), creator.getParseThreads());
+        assertEquals(expectedValueMap.get(BATCH_SIZE), creator.getBatchSize());
+        assertEquals(expectedValueMap.get(PARSER_STRATEGY), creator.getParserStrategy());
+        assertEquals(expectedValueMap.get(INCREMENTAL), creator.isIncremental());
+        assertEquals(expectedValueMap.get(FULL_TEXT_INDEX), creator.isFullTextIndex());
+        assertEquals(expectedValueMap.get(TABLE_OF_CONTENTS), creator.isTableOfContents());
+        assertEquals(expectedValueMap.get(COPY_STRATEGY), creator.getCopyStrategy());
+        assertEquals(expectedValueMap.get(COPY_THREADS), creator.getCopyThreads());
+        assertEquals(expectedValueMap.get(OUTPUT_FORMAT), creator.getOutputFormat());
+        assertEquals(expectedValueMap.get(ARCHIVE_FILE), creator.getArchiveFile());
+        assertEquals(expectedValueMap.get(COMPRESSION_LEVEL), creator.getCompressionLevel());
+        assertEquals(expectedValueMap.get(COMPRESSION_BLOCK_SIZE), creator.getCompressionBlockSize());
+        assertEquals(expectedValueMap.get(COMPRESS_THREADS), creator.getCompressThreads());
+        assertEquals(expectedValueMap.get(CHANGED_PACKAGES), creator.getChangedPackages());
+        assertEquals(expectedValueMap.get(PARSE_CACHE_DIR), creator.getParseCacheDir());
     }
 }
@@ -0,0 +1,126 @@
+package com.megatome.j2d;
+
+import com.megatome.j2d.util.JavadocJar;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Arrays;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.apache.commons.io.FileUtils.*;
+import static org.junit.Assert.*;
+
+public class JavadocJarBatchTest {
+    private static final File javadocLocation = getFile(System.getProperty("j2d-sample-javadoc"));
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void testJavadocJarDirectory() throws Exception {
+        final File jarDir = temporaryFolder.newFolder();
+        createJar(new File(jarDir, "sample-1.0-javadoc.jar"));
+        createJar(new File(jarDir, "other-2.1-javadoc.jar"));
+        write(new File(jarDir, "sample-1.0.jar"), "not javadoc");
+
+        final JavadocJarBatch batch = new JavadocJarBatch.Builder().javadocJarDirectory(jarDir).build();
+        assertEquals(2, batch.getJavadocJars().size());
+        assertEquals("other:2.1", batch.getJavadocJars().get(0).getCoordinates());
+        assertEquals("sample:1.0", batch.getJavadocJars().get(1).getCoordinates());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testJavadocJarDirectoryMissing() throws Exception {
+        new JavadocJarBatch.Builder().javadocJarDirectory(new File(temporaryFolder.getRoot(), "missing"));
+    }
+
+    @Test
+    public void testDocsetNames() throws Exception {
+        final File file = new File("util-1.0-javadoc.jar");
+        final JavadocJar fooUtil = new JavadocJar("com.foo", "util", "1.0", file);
+        final JavadocJar barUtil = new JavadocJar("com.bar", "util", "1.0", file);
+        final JavadocJar guava = new JavadocJar("com.google.guava", "guava", "18.0", file);
+        final File outputDir = temporaryFolder.getRoot();
+        final JavadocJarBatch batch = new JavadocJarBatch.Builder().javadocJar(fooUtil).javadocJar(barUtil)
+                .javadocJar(guava).outputDirectory(outputDir).build();
+        assertEquals(Arrays.asList(fooUtil, barUtil, guava), batch.getJavadocJars());
+        assertEquals("com.foo.util", batch.getDocsetName(fooUtil));
+        assertEquals("com.bar.util", batch.getDocsetName(barUtil));
+        assertEquals("guava", batch.getDocsetName(guava));
+        assertEquals(new File(outputDir, "guava.tgz"), batch.getArchiveFile(guava));
+        assertEquals(new File(outputDir, "guava.xml"), batch.getFeedFile(guava));
+        // Jars are looked up by their coordinates and file, and added only once
+        assertEquals("guava", batch.getDocsetName(new JavadocJar("com.google.guava", "guava", "18.0", file)));
+        assertEquals(3, new JavadocJarBatch.Builder().javadocJar(fooUtil).javadocJar(barUtil).javadocJar(guava)
+                .javadocJar(new JavadocJar("com.google.guava", "guava", "18.0", file)).build().getJavadocJars().size());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testDuplicateDocsetName() throws Exception {
+        final File file = new File("util-1.0-javadoc.jar");
+        new JavadocJarBatch.Builder().javadocJar(new JavadocJar(null, "util", "1.0", file))
+                .javadocJar(new JavadocJar(null, "util", "2.0", file)).build();
+    }
+
+    @Test
+    public void testBuildThreads() throws Exception {
+        final JavadocJarBatch.Builder builder = new JavadocJarBatch.Builder();
+        assertEquals(Runtime.getRuntime().availableProcessors(), builder.build().getBuildThreads());
+
+        builder.buildThreads(0);
+        assertEquals(Runtime.getRuntime().availableProcessors(), builder.build().getBuildThreads());
+
+        builder.buildThreads(3);
+        assertEquals(3, builder.build().getBuildThreads());
+    }
+
+    @Test
+    public void testMakeDocsets() throws Exception {
+        final File jarDir = temporaryFolder.newFolder();
+        final File outputDir = temporaryFolder.newFolder();
+        createJar(new File(jarDir, "sample-1.0-javadoc.jar"));
+        final JavadocJarBatch batch = new JavadocJarBatch.Builder().javadocJarDirectory(jarDir).outputDirectory(outputDir)
+                .feedLocations(Arrays.asList("http://example.com/docsets")).build();
+        final JavadocJar javadocJar = batch.getJavadocJars().get(0);
+        assertFalse(batch.isUpToDate(javadocJar));
+
+        batch.makeDocsets();
+        assertTrue(batch.getArchiveFile(javadocJar).isFile());
+        final String feed = readFileToString(batch.getFeedFile(javadocJar), "UTF-8");
+        assertTrue(feed.contains("<version>1.0</version>"));
+        assertTrue(feed.contains("<url>http://example.com/docsets/sample.tgz</url>"));
+        assertTrue(batch.isUpToDate(javadocJar));
+
+        // Jars built with other options are built again
+        assertFalse(new JavadocJarBatch.Builder().javadocJarDirectory(jarDir).outputDirectory(outputDir)
+                .build().isUpToDate(javadocJar));
+        // So are changed jars
+        write(javadocJar.getFile(), "changed", true);
+        assertFalse(batch.isUpToDate(javadocJar));
+    }
+
+    private static void createJar(File jar) throws IOException {
+        final Path root = javadocLocation.toPath();
+        try (final ZipOutputStream out = new ZipOutputStream(new FileOutputStream(jar))) {
+            Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                    out.putNextEntry(new ZipEntry(root.relativize(file).toString().replace(File.separatorChar, '/')));
+                    Files.copy(file, out);
+                    out.closeEntry();
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        }
+    }
+}
@@ -2,6 +2,7 @@ package com.megatome.j2d.support;
 
 import com.megatome.j2d.exception.BuilderException;
 import com.megatome.j2d.util.IndexData;
+import com.megatome.j2d.util.SearchIndexTable;
 import com.megatome.j2d.util.SearchIndexValue;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.FilenameUtils;
@@ -15,11 +16,13 @@ import java.sql.DriverManager;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 
 import static org.apache.commons.io.FileUtils.getFile;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.*;
@@ -28,22 +31,138 @@ public class DBSupportTest {
     private static final File javadocLocation = getFile(System.getProperty("j2d-sample-javadoc"));
 
     private static final String QUERY = "SELECT COUNT(*) FROM searchIndex WHERE type = ?";
+    private static final String INDEX_QUERY = "SELECT name FROM sqlite_master WHERE type = 'index' AND name = 'anon'";
+    private static final String NAME_INDEX_QUERY = "SELECT name FROM sqlite_master WHERE type = 'index' AND name = 'searchIndexName'";
 
     @Rule
     public TemporaryFolder temporaryFolder = new TemporaryFolder();
 
     @Test
     public void testCreateIndexDB() throws Exception {
+        verifyCreatedIndex(DBSupport.DEFAULT_BATCH_SIZE);
+    }
+
+    @Test
+    public void testCreateIndexDBSmallBatches() throws Exception {
+        // Batch size that does not divide the number of entries evenly
+        verifyCreatedIndex(7);
+    }
+
+    @Test
+    public void testCreateIndexDBRemovesDuplicates() throws Exception {
+        final List<SearchIndexValue> indexValues = new ArrayList<>();
+        indexValues.add(new SearchIndexValue("Foo", MatchType.CLASS, "Foo.html"));
+        indexValues.add(new SearchIndexValue("Foo", MatchType.CLASS, "Foo.html"));
+        indexValues.add(new SearchIndexValue("Foo", MatchType.INTERFACE, "Foo.html"));
+        final File dbFile = createIndexDB(indexValues, 1);
+
+        try (final Connection connection = DriverManager.getConnection("jdbc:sqlite:" + dbFile);
+             final PreparedStatement stmt = connection.prepareStatement("SELECT COUNT(*) FROM searchIndex");
+             final ResultSet rs = stmt.executeQuery()) {
+            assertTrue(rs.next());
+            assertThat(rs.getInt(1), is(2));
+        }
+    }
+
+    @Test
+    public void testCreateIndexDBSortsRows() throws Exception {
+        final List<SearchIndexValue> indexValues = new ArrayList<>();
+        indexValues.add(new SearchIndexValue("beta", MatchType.METHOD, "Foo.html#beta()"));
+        indexValues.add(new SearchIndexValue("Gamma", MatchType.CLASS, "Gamma.html"));
+        indexValues.add(new SearchIndexValue("Alpha", MatchType.CLASS, "Alpha.html"));
+        indexValues.add(new SearchIndexValue("beta", MatchType.METHOD, "Foo.html#beta()"));
+        final File dbFile = createIndexDB(indexValues, 2);
+
+        assertThat(readRows(dbFile), contains("Alpha|Class|Alpha.html", "beta|Method|Foo.html#beta()", "Gamma|Class|Gamma.html"));
+        try (final Connection connection = DriverManager.getConnection("jdbc:sqlite:" + dbFile);
+             final PreparedStatement stmt = connection.prepareStatement(NAME_INDEX_QUERY);
+             final ResultSet rs = stmt.executeQuery()) {
+            assertTrue("Name index does not exist", rs.next());
+        }
+    }
+
+    @Test
+    public void testUpdateIndexDB() throws Exception {
+        final List<SearchIndexValue> indexValues = new ArrayList<>();
+        indexValues.add(new SearchIndexValue("Foo", MatchType.CLASS, "Foo.html"));
+        indexValues.add(new SearchIndexValue("Bar", MatchType.CLASS, "Bar.html"));
+        final File dbFile = createIndexDB(indexValues, 1);
+
+        final List<SearchIndexValue> removedValues = new ArrayList<>();
+        removedValues.add(new SearchIndexValue("Bar", MatchType.CLASS, "Bar.html"));
+        final List<SearchIndexValue> addedValues = new ArrayList<>();
+        addedValues.add(new SearchIndexValue("Foo", MatchType.CLASS, "Foo.html"));
+        addedValues.add(new SearchIndexValue("Baz", MatchType.INTERFACE, "Baz.html"));
+        DBSupport.updateIndex(dbFile.getParent(), removedValues, addedValues, 1);
+
+        try (final Connection connection = DriverManager.getConnection("jdbc:sqlite:" + dbFile);
+             final PreparedStatement stmt = connection.prepareStatement("SELECT name FROM searchIndex ORDER BY name");
+             final ResultSet rs = stmt.executeQuery()) {
+            final List<String> names = new ArrayList<>();
+            while (rs.next()) {
+                names.add(rs.getString(1));
+            }
+            assertThat(names, contains("Baz", "Foo"));
+        }
+    }
+
+    @Test
+    public void testUpdatePackageIndexDB() throws Exception {
+        final List<SearchIndexValue> indexValues = new ArrayList<>();
+        indexValues.add(new SearchIndexValue("Foo", MatchType.CLASS, "com/a/Foo.html"));
+        indexValues.add(new SearchIndexValue("foo()", MatchType.METHOD, "../com/a/Foo.html#foo()"));
+        indexValues.add(new SearchIndexValue("Bar", MatchType.CLASS, "../com/a/b/Bar.html"));
+        indexValues.add(new SearchIndexValue("Baz", MatchType.CLASS, "com/c/Baz.html"));
+        final File dbFile = createIndexDB(indexValues, 1);
+
+        final List<SearchIndexValue> addedValues = new ArrayList<>();
+        addedValues.add(new SearchIndexValue("Qux", MatchType.CLASS, "com/a/Qux.html"));
+        DBSupport.updatePackageIndex(dbFile.getParent(), new PackageFilter(Arrays.asList("com.a")), addedValues, 1);
+
+        try (final Connection connection = DriverManager.getConnection("jdbc:sqlite:" + dbFile);
+             final PreparedStatement stmt = connection.prepareStatement("SELECT name FROM searchIndex ORDER BY name");
+             final ResultSet rs = stmt.executeQuery()) {
+            final List<String> names = new ArrayList<>();
+            while (rs.next()) {
+                names.add(rs.getString(1));
+            }
+            assertThat(names, contains("Bar", "Baz", "Qux"));
+        }
+    }
+
+    @Test
+    public void testCreateAndUpdateIndexDBFromTable() throws Exception {
+        final IndexData indexData = JavadocSupport.findIndexFile(javadocLocation);
+        final SearchIndexTable table = JavadocSupport.findSearchIndexTable(indexData.getFilesToIndex(), new ParseOptions());
+        // createIndexDB() builds its DB in the Foo docset of the temporary folder
+        final String dbDirName = DocSetSupport.getDBDir(FilenameUtils.concat(temporaryFolder.newFolder().getPath(), "Foo"));
+        FileUtils.forceMkdir(getFile(dbDirName));
+        DBSupport.createIndex(table, dbDirName, 7);
+        final File dbFile = getFile(dbDirName, "docSet.dsidx");
+        final File listDbFile = createIndexDB(JavadocSupport.findSearchIndexValues(indexData.getFilesToIndex()), 7);
+        assertEquals(readRows(listDbFile), readRows(dbFile));
+
+        final SearchIndexTable removedValues = new SearchIndexTable();
+        removedValues.add(table.get(0));
+        final SearchIndexTable addedValues = new SearchIndexTable();
+        addedValues.add("Qux", MatchType.CLASS, "com/a/Qux.html#qux()");
+        DBSupport.updateIndex(dbFile.getParent(), removedValues, addedValues, 1);
+        final List<String> rows = readRows(dbFile);
+        assertTrue(rows.contains("Qux|Class|com/a/Qux.html#qux()"));
+        assertFalse(rows.contains(table.getName(0) + "|" + table.getType(0).getTypeName() + "|" + table.getPath(0)));
+    }
+
+    @Test(expected = BuilderException.class)
+    public void testUpdateMissingIndexDB() throws Exception {
+        final List<SearchIndexValue> indexValues = new ArrayList<>();
+        DBSupport.updateIndex(temporaryFolder.getRoot().getPath(), indexValues, indexValues, 1);
+    }
+
+    private void verifyCreatedIndex(int batchSize) throws Exception {
         assertThat(javadocLocation, notNullValue());
         final IndexData indexData = JavadocSupport.findIndexFile(javadocLocation);
         final List<SearchIndexValue> indexValues = JavadocSupport.findSearchIndexValues(indexData.getFilesToIndex());
-        final String docFileRoot = FilenameUtils.concat(temporaryFolder.getRoot().getPath(), "Foo");
-        final String dbDirName = DocSetSupport.getDBDir(docFileRoot);
-        final File dbDir = getFile(dbDirName);
-        FileUtils.forceMkdir(dbDir);
-        DBSupport.createIndex(indexValues, dbDirName);
-        final File dbFile = getFile(dbDir, "docSet.dsidx");
-        assertTrue("DB file does not exist", dbFile.exists());
+        final File dbFile = createIndexDB(indexValues, batchSize);
 
         final Map<String, Integer> expectedTypes = ExpectedDataUtil.getExpectedData().getExpectedDataBaseTypes();
         try (final Connection connection = DriverManager.getConnection("jdbc:sqlite:" + dbFile);
@@ -58,9 +177,37 @@ public class DBSupportTest {
                     }
                 }
             }
+
+            try (final PreparedStatement indexStmt = connection.prepareStatement(INDEX_QUERY);
+                 final ResultSet rs = indexStmt.executeQuery()) {
+                assertTrue("Unique index does not exist", rs.next());
+            }
+        }
+    }
+
+    private static List<String> readRows(File dbFile) throws Exception {
+        try (final Connection connection = DriverManager.getConnection("jdbc:sqlite:" + dbFile);
+             final PreparedStatement stmt = connection.prepareStatement("SELECT name, type, path FROM searchIndex ORDER BY id");
+             final ResultSet rs = stmt.executeQuery()) {
+            final List<String> rows = new ArrayList<>();
+            while (rs.next()) {
+                rows.add(rs.getString(1) + "|" + rs.getString(2) + "|" + rs.getString(3));
+            }
+            return rows;
         }
     }
 
+    private File createIndexDB(List<SearchIndexValue> indexValues, int batchSize) throws Exception {
+        final String docFileRoot = FilenameUtils.concat(temporaryFolder.getRoot().getPath(), "Foo");
+        final String dbDirName = DocSetSupport.getDBDir(docFileRoot);
+        final File dbDir = getFile(dbDirName);
+        FileUtils.forceMkdir(dbDir);
+        DBSupport.createIndex(indexValues, dbDirName, batchSize);
+        final File dbFile = getFile(dbDir, "docSet.dsidx");
+        assertTrue("DB file does not exist", dbFile.exists());
+        return dbFile;
+    }
+
     @Test(expected = BuilderException.class)
     public void testCreateIndexDBBadPath() throws Exception {
         final List<SearchIndexValue> indexValues = new ArrayList<>();
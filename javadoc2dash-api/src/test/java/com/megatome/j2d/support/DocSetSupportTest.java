@@ -4,14 +4,19 @@ import com.dd.plist.NSDictionary;
 import com.dd.plist.NSObject;
 import com.dd.plist.PropertyListParser;
 import com.megatome.j2d.exception.BuilderException;
+import com.megatome.j2d.util.DocsetManifest;
 import org.apache.commons.io.FilenameUtils;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
 
 import java.io.File;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Set;
 
 import static com.megatome.j2d.support.DocSetSupport.*;
@@ -53,6 +58,178 @@ public class DocSetSupportTest {
         assertEquals(originalFiles, copiedFiles);
     }
 
+    @Test
+    public void testCopyFilesWithStrategies() throws Exception {
+        for (final CopyStrategy copyStrategy : CopyStrategy.values()) {
+            final String docsetDir = createAndVerifyDocsetStructure("TestDoc");
+
+            final File destDir = getFile(getDocsetRoot(docsetDir), CONTENTS, RESOURCES, DOCUMENTS);
+            copyFiles(javadocLocation, docsetDir, copyStrategy);
+            assertEquals(buildFileCollectionWithoutPath(javadocLocation), buildFileCollectionWithoutPath(destDir));
+            for (final File f : listFiles(javadocLocation, null, true)) {
+                final File copied = getFile(destDir, javadocLocation.toURI().relativize(f.toURI()).getPath());
+                assertTrue(copyStrategy + " did not copy " + f, contentEquals(f, copied));
+            }
+        }
+    }
+
+    @Test
+    public void testParallelCopyFiles() throws Exception {
+        for (final CopyStrategy copyStrategy : CopyStrategy.values()) {
+            final String docsetDir = createAndVerifyDocsetStructure("TestDoc");
+
+            final File destDir = getFile(getDocsetRoot(docsetDir), CONTENTS, RESOURCES, DOCUMENTS);
+            copyFiles(javadocLocation, docsetDir, copyStrategy, 4);
+            assertEquals(buildFileCollectionWithoutPath(javadocLocation), buildFileCollectionWithoutPath(destDir));
+            for (final File f : listFiles(javadocLocation, null, true)) {
+                final File copied = getFile(destDir, javadocLocation.toURI().relativize(f.toURI()).getPath());
+                assertTrue(copyStrategy + " did not copy " + f, contentEquals(f, copied));
+                assertEquals(copyStrategy + " did not keep the timestamp of " + f, f.lastModified() / 1000, copied.lastModified() / 1000);
+            }
+        }
+    }
+
+    @Test(expected = BuilderException.class)
+    public void testParallelCopyFilesError() throws Exception {
+        final String docsetDir = createAndVerifyDocsetStructure("TestDoc");
+        copyFiles(getFile(temporaryFolder.getRoot(), "missing"), docsetDir, CopyStrategy.COPY, 4);
+    }
+
+    @Test
+    public void testCopyFilesIntoSubdirectory() throws Exception {
+        final String docsetDir = createAndVerifyDocsetStructure("TestDoc");
+
+        copyFiles(javadocLocation, docsetDir, "core", CopyStrategy.COPY, 2);
+        final File destDir = getFile(getDocsetRoot(docsetDir), CONTENTS, RESOURCES, DOCUMENTS, "core");
+        assertEquals(buildFileCollectionWithoutPath(javadocLocation), buildFileCollectionWithoutPath(destDir));
+    }
+
+    @Test
+    public void testCreateModuleIndex() throws Exception {
+        final String docsetDir = createAndVerifyDocsetStructure("TestDoc");
+        final Map<String, String> modules = new LinkedHashMap<>();
+        modules.put("core", "overview-summary.html");
+        modules.put("util", "index-all.html");
+
+        createModuleIndex("Foo & Bar", modules, docsetDir);
+        final String html = readFileToString(getFile(getDocsetRoot(docsetDir), CONTENTS, RESOURCES, DOCUMENTS, MODULE_INDEX_FILE), "UTF-8");
+        assertTrue(html.contains("<title>Foo &amp; Bar</title>"));
+        assertTrue(html.contains("<a href=\"core/overview-summary.html\">core</a>"));
+        assertTrue(html.contains("<a href=\"util/index-all.html\">util</a>"));
+        assertTrue(html.indexOf("core/") < html.indexOf("util/"));
+    }
+
+    @Test
+    public void testSyncFilesDoesNotWriteThroughHardLinks() throws Exception {
+        final File sourceDir = temporaryFolder.newFolder("javadoc");
+        copyDirectory(javadocLocation, sourceDir);
+        final String docsetDir = createAndVerifyDocsetStructure("TestDoc");
+        copyFiles(sourceDir, docsetDir, CopyStrategy.HARD_LINK);
+        final DocsetManifest previous = DocsetManifest.create(sourceDir, null);
+
+        // Rewriting the source in place also changes the linked file in the docset
+        final File changedFile = getFile(sourceDir, "index.html");
+        write(changedFile, "Changed");
+
+        final DocsetManifest current = DocsetManifest.create(sourceDir, previous);
+        syncFiles(sourceDir, docsetDir, previous, current, CopyStrategy.COPY);
+
+        assertEquals("Changed", readFileToString(getFile(getDocumentsDir(docsetDir), "index.html")));
+        assertEquals("Changed", readFileToString(changedFile));
+    }
+
+    @Test
+    public void testHardLinkCopiesIndexPages() throws Exception {
+        final File sourceDir = temporaryFolder.newFolder("javadoc");
+        copyDirectory(javadocLocation, sourceDir);
+        final String docsetDir = createAndVerifyDocsetStructure("TestDoc");
+        copyFiles(sourceDir, docsetDir, CopyStrategy.HARD_LINK);
+
+        // An incremental build reads the old index pages from the docset
+        final File indexFile = getFile(getDocumentsDir(docsetDir), "index-all.html");
+        final String original = readFileToString(indexFile);
+        write(getFile(sourceDir, "index-all.html"), "Changed");
+        assertEquals(original, readFileToString(indexFile));
+    }
+
+    @Test
+    public void testSyncFiles() throws Exception {
+        final File sourceDir = temporaryFolder.newFolder("javadoc");
+        copyDirectory(javadocLocation, sourceDir);
+        final String docsetDir = createAndVerifyDocsetStructure("TestDoc");
+        copyFiles(sourceDir, docsetDir);
+        final DocsetManifest previous = DocsetManifest.create(sourceDir, null);
+        writeManifest(previous, docsetDir);
+        assertEquals(previous.getPaths(), readManifest(docsetDir).getPaths());
+
+        final File changedFile = getFile(sourceDir, "index-all.html");
+        write(changedFile, "Changed");
+        final File removedFile = getFile(sourceDir, "help-doc.html");
+        assertTrue(removedFile.delete());
+        final File addedFile = getFile(sourceDir, "added", "added.html");
+        write(addedFile, "Added");
+
+        final DocsetManifest current = DocsetManifest.create(sourceDir, readManifest(docsetDir));
+        syncFiles(sourceDir, docsetDir, previous, current);
+
+        final File destDir = getFile(getDocsetRoot(docsetDir), CONTENTS, RESOURCES, DOCUMENTS);
+        assertEquals(buildFileCollectionWithoutPath(sourceDir), buildFileCollectionWithoutPath(destDir));
+        assertEquals("Changed", readFileToString(getFile(destDir, "index-all.html")));
+        assertEquals("Added", readFileToString(getFile(destDir, "added", "added.html")));
+    }
+
+    @Test
+    public void testSyncPackages() throws Exception {
+        final File sourceDir = temporaryFolder.newFolder("javadoc");
+        copyDirectory(javadocLocation, sourceDir);
+        final String docsetDir = createAndVerifyDocsetStructure("TestDoc");
+        copyFiles(sourceDir, docsetDir);
+        writeManifest(DocsetManifest.create(sourceDir, null), docsetDir);
+
+        final File packageDir = getFile(sourceDir, "com", "megatome", "j2d", "sample", "clazz");
+        write(getFile(packageDir, "SampleClass.html"), "Changed");
+        write(getFile(packageDir, "Added.html"), "Added");
+        final File otherPackageDir = getFile(sourceDir, "com", "megatome", "j2d", "sample", "enums");
+        final File otherFile = listFiles(otherPackageDir, new String[]{"html"}, false).iterator().next();
+        write(otherFile, "Not synced");
+        final File indexFile = getFile(sourceDir, "index-all.html");
+        write(indexFile, "Index");
+
+        final PackageFilter packages = new PackageFilter(Collections.singletonList("com.megatome.j2d.sample.clazz"));
+        syncPackages(sourceDir, docsetDir, packages, Collections.singletonList(indexFile), CopyStrategy.COPY);
+        removeManifest(docsetDir);
+
+        final File destDir = getFile(getDocsetRoot(docsetDir), CONTENTS, RESOURCES, DOCUMENTS);
+        final File destPackageDir = getFile(destDir, "com", "megatome", "j2d", "sample", "clazz");
+        assertEquals(buildFileCollectionWithoutPath(packageDir), buildFileCollectionWithoutPath(destPackageDir));
+        assertEquals("Changed", readFileToString(getFile(destPackageDir, "SampleClass.html")));
+        assertEquals("Index", readFileToString(getFile(destDir, "index-all.html")));
+        assertNotEquals("Not synced", readFileToString(getFile(destDir, "com", "megatome", "j2d", "sample", "enums", otherFile.getName())));
+        assertNull(readManifest(docsetDir));
+    }
+
+    @Test
+    public void testSyncRemovedPackage() throws Exception {
+        final File sourceDir = temporaryFolder.newFolder("javadoc");
+        copyDirectory(javadocLocation, sourceDir);
+        final String docsetDir = createAndVerifyDocsetStructure("TestDoc");
+        copyFiles(sourceDir, docsetDir);
+
+        deleteDirectory(getFile(sourceDir, "com", "megatome", "j2d", "sample", "clazz"));
+        final PackageFilter packages = new PackageFilter(Collections.singletonList("com.megatome.j2d.sample.clazz"));
+        syncPackages(sourceDir, docsetDir, packages, Collections.<File>emptyList(), CopyStrategy.COPY);
+
+        final File destDir = getFile(getDocsetRoot(docsetDir), CONTENTS, RESOURCES, DOCUMENTS);
+        assertFalse(getFile(destDir, "com", "megatome", "j2d", "sample", "clazz").exists());
+        assertTrue(getFile(destDir, "com", "megatome", "j2d", "sample", "enums").isDirectory());
+    }
+
+    @Test
+    public void testReadMissingManifest() throws Exception {
+        final String docsetDir = createAndVerifyDocsetStructure("TestDoc");
+        assertNull(readManifest(docsetDir));
+    }
+
     @Test(expected = BuilderException.class)
     public void testCopyFilesError() throws Exception {
         final File sourceDir = getFile("src", "test", "resources", "javadoc", "index.html");
@@ -89,6 +266,16 @@ public class DocSetSupportTest {
         assertTrue(contentEquals(expectedIconFile, iconFile));
     }
 
+    @Test
+    public void testCreateFeed() throws Exception {
+        final File feedDir = getFile(temporaryFolder.getRoot(), "feed");
+        final File feedFile = createFeed("Foo", "1.0 & up", Arrays.asList("http://example.com/a", "http://example.com/b/"),
+                "Foo.tgz", feedDir);
+        assertEquals(getFile(feedDir, "Foo.xml"), feedFile);
+        assertEquals("<entry>\n  <version>1.0 &amp; up</version>\n  <url>http://example.com/a/Foo.tgz</url>\n"
+                + "  <url>http://example.com/b/Foo.tgz</url>\n</entry>", readFileToString(feedFile, "UTF-8"));
+    }
+
     private void verifyPlistEntry(NSDictionary rootDict, String keyName, String expectedValue) {
         final NSObject obj = rootDict.objectForKey(keyName);
         assertNotNull(obj);
@@ -0,0 +1,135 @@
+package com.megatome.j2d.support;
+
+import com.megatome.j2d.exception.BuilderException;
+import org.apache.commons.compress.archivers.ArchiveEntry;
+import org.apache.commons.compress.archivers.ArchiveInputStream;
+import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
+import org.apache.commons.compress.archivers.zip.ZipArchiveInputStream;
+import org.apache.commons.io.IOUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+
+import static org.apache.commons.io.FileUtils.*;
+import static org.junit.Assert.*;
+
+public class DocsetArchiveTest {
+    private static final File javadocLocation = getFile(System.getProperty("j2d-sample-javadoc"));
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void testCreateTgz() throws Exception {
+        verifyArchive(OutputFormat.TGZ);
+    }
+
+    @Test
+    public void testCreateZip() throws Exception {
+        verifyArchive(OutputFormat.ZIP);
+    }
+
+    @Test
+    public void testFailedArchiveIsRemoved() throws Exception {
+        final File archiveFile = getFile(temporaryFolder.getRoot(), "Foo.tgz");
+        try (final DocsetArchive archive = new DocsetArchive(archiveFile, OutputFormat.TGZ, "Foo")) {
+            archive.addIndex(getFile(temporaryFolder.getRoot(), "missing").getPath());
+            fail("Expected the missing index to be reported");
+        } catch (BuilderException e) {
+            // Expected
+        }
+        assertEquals(0, temporaryFolder.getRoot().list().length);
+    }
+
+    @Test
+    public void testArchiveDocset() throws Exception {
+        final File docsetDir = temporaryFolder.newFolder("Foo.docset");
+        write(getFile(docsetDir, "Contents", "Info.plist"), "plist");
+        copyDirectory(javadocLocation, getFile(docsetDir, "Contents", "Resources", "Documents"));
+        final File archiveFile = getFile(temporaryFolder.getRoot(), "feed", "Foo.tgz");
+        DocsetArchive.archiveDocset(docsetDir, archiveFile, OutputFormat.TGZ, 9, 32 * 1024, 4);
+
+        final Map<String, byte[]> entries = readArchive(archiveFile, OutputFormat.TGZ);
+        assertEquals("plist", new String(entries.get("Foo.docset/Contents/Info.plist"), "UTF-8"));
+        for (final File f : listFiles(javadocLocation, null, true)) {
+            final String name = "Foo.docset/Contents/Resources/Documents/" + javadocLocation.toURI().relativize(f.toURI()).getPath();
+            assertArrayEquals(readFileToByteArray(f), entries.get(name));
+        }
+    }
+
+    @Test
+    public void testTableOfContents() throws Exception {
+        final TableOfContents toc = new TableOfContents();
+        JavadocSupport.findSearchIndexValues(JavadocSupport.findIndexFile(javadocLocation).getFilesToIndex(), new ParseOptions(), toc);
+        toc.complete();
+        final File archiveFile = getFile(temporaryFolder.getRoot(), "Foo.tgz");
+        try (final DocsetArchive archive = new DocsetArchive(archiveFile, OutputFormat.TGZ, "Foo")) {
+            archive.addDocuments(javadocLocation, toc);
+            archive.commit();
+        }
+
+        final Map<String, byte[]> entries = readArchive(archiveFile, OutputFormat.TGZ);
+        final String page = "com/megatome/j2d/sample/clazz/SampleClass.html";
+        assertTrue(new String(entries.get("Foo.docset/Contents/Resources/Documents/" + page), "UTF-8").contains(
+                "<a name=\"//apple_ref/cpp/Method/method%28%29\" class=\"dashAnchor\"></a>"));
+        assertArrayEquals(readFileToByteArray(getFile(javadocLocation, "index.html")),
+                entries.get("Foo.docset/Contents/Resources/Documents/index.html"));
+        assertEquals(toc.getPageCount(), toc.getPagesWritten());
+    }
+
+    @Test(expected = BuilderException.class)
+    public void testArchiveMissingDocset() throws Exception {
+        DocsetArchive.archiveDocset(getFile(temporaryFolder.getRoot(), "Missing.docset"),
+                getFile(temporaryFolder.getRoot(), "Missing.tgz"), OutputFormat.TGZ, 6, 128 * 1024, 1);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testDirectoryFormat() throws Exception {
+        new DocsetArchive(getFile(temporaryFolder.getRoot(), "Foo"), OutputFormat.DIRECTORY, "Foo");
+    }
+
+    private void verifyArchive(OutputFormat format) throws Exception {
+        final File dbDir = temporaryFolder.newFolder("db");
+        write(getFile(dbDir, "docSet.dsidx"), "Index");
+        final File archiveFile = getFile(temporaryFolder.getRoot(), "Foo." + format.getExtension());
+        try (final DocsetArchive archive = new DocsetArchive(archiveFile, format, "Foo")) {
+            archive.addPList("Foo", "Foo Display", "foo", "index.html");
+            archive.addDocuments(javadocLocation);
+            archive.addIndex(dbDir.getPath());
+            archive.commit();
+        }
+        assertTrue(archiveFile.exists());
+        assertFalse(getFile(temporaryFolder.getRoot(), archiveFile.getName() + ".part").exists());
+
+        final Map<String, byte[]> entries = readArchive(archiveFile, format);
+        assertEquals("Index", new String(entries.get("Foo.docset/Contents/Resources/docSet.dsidx"), "UTF-8"));
+        assertTrue(new String(entries.get("Foo.docset/Contents/Info.plist"), "UTF-8").contains("<string>Foo Display</string>"));
+        for (final File f : listFiles(javadocLocation, null, true)) {
+            final String name = "Foo.docset/Contents/Resources/Documents/" + javadocLocation.toURI().relativize(f.toURI()).getPath();
+            assertTrue("Missing " + name, entries.containsKey(name));
+            assertArrayEquals(readFileToByteArray(f), entries.get(name));
+        }
+    }
+
+    private static Map<String, byte[]> readArchive(File archiveFile, OutputFormat format) throws Exception {
+        final Map<String, byte[]> entries = new HashMap<>();
+        try (final InputStream fileIn = new FileInputStream(archiveFile);
+             final ArchiveInputStream in = OutputFormat.TGZ == format ?
+                     new TarArchiveInputStream(new GZIPInputStream(fileIn)) : new ZipArchiveInputStream(fileIn)) {
+            ArchiveEntry entry;
+            while (null != (entry = in.getNextEntry())) {
+                if (!entry.isDirectory()) {
+                    entries.put(entry.getName(), IOUtils.toByteArray(in));
+                }
+            }
+        }
+        return entries;
+    }
+}
@@ -0,0 +1,110 @@
+package com.megatome.j2d.support;
+
+import com.megatome.j2d.exception.BuilderException;
+import com.megatome.j2d.util.IndexData;
+import com.megatome.j2d.util.SearchHit;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.FilenameUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.apache.commons.io.FileUtils.getFile;
+import static org.junit.Assert.*;
+
+public class FullTextSupportTest {
+    private static final File javadocLocation = getFile(System.getProperty("j2d-sample-javadoc"));
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void testBuildAndSearch() throws Exception {
+        final String dbDirName = buildIndex(new ParseOptions().descriptions(true));
+        assertTrue(FullTextSupport.indexExists(dbDirName));
+
+        final List<SearchHit> hits = FullTextSupport.search(dbDirName, "sample method", 10);
+        assertFalse(hits.isEmpty());
+        assertEquals("method()", hits.get(0).getName());
+        assertEquals("Method", hits.get(0).getType());
+        assertEquals("Sample method", hits.get(0).getDescription());
+
+        // Porter stemming matches other forms of a word
+        assertFalse(FullTextSupport.search(dbDirName, "methods", 10).isEmpty());
+
+        final Set<String> seen = new HashSet<>();
+        for (final SearchHit hit : FullTextSupport.search(dbDirName, "sample", 100)) {
+            assertTrue("Duplicate hit " + hit.getName(), seen.add(hit.getName() + "|" + hit.getPath()));
+        }
+        assertEquals(1, FullTextSupport.search(dbDirName, "sample", 1).size());
+        assertTrue(FullTextSupport.search(dbDirName, "sample", 0).isEmpty());
+    }
+
+    @Test
+    public void testNoIndexWithoutDescriptions() throws Exception {
+        final String dbDirName = buildIndex(new ParseOptions());
+        assertFalse(FullTextSupport.indexExists(dbDirName));
+    }
+
+    @Test
+    public void testRemoveIndex() throws Exception {
+        final String dbDirName = buildIndex(new ParseOptions().descriptions(true));
+        FullTextSupport.removeIndex(dbDirName);
+        assertFalse(FullTextSupport.indexExists(dbDirName));
+        // Removing a missing index is not an error
+        FullTextSupport.removeIndex(dbDirName);
+    }
+
+    @Test(expected = BuilderException.class)
+    public void testSearchMissingIndex() throws Exception {
+        FullTextSupport.search(createDBDir(), "sample", 10);
+    }
+
+    @Test(expected = BuilderException.class)
+    public void testSearchBadQuery() throws Exception {
+        final String dbDirName = buildIndex(new ParseOptions().descriptions(true));
+        FullTextSupport.search(dbDirName, "\"sample", 10);
+    }
+
+    @Test
+    public void testScore() {
+        // One phrase, four columns, 10 rows, average lengths 2/1/1/8
+        final int[] nameHit = {1, 4, 10, 2, 1, 1, 8, 2, 1, 1, 8, 1, 1, 2, 0, 0, 0, 0, 0, 0, 0, 0, 0};
+        final int[] descriptionHit = {1, 4, 10, 2, 1, 1, 8, 2, 1, 1, 8, 0, 0, 2, 0, 0, 0, 0, 0, 0, 1, 1, 2};
+        final int[] noHit = {1, 4, 10, 2, 1, 1, 8, 2, 1, 1, 8, 0, 0, 2, 0, 0, 0, 0, 0, 0, 0, 0, 0};
+        final double nameScore = FullTextSupport.score(toBytes(nameHit));
+        final double descriptionScore = FullTextSupport.score(toBytes(descriptionHit));
+        assertTrue(descriptionScore > 0);
+        assertTrue(nameScore > descriptionScore);
+        assertEquals(0.0, FullTextSupport.score(toBytes(noHit)), 0.0);
+    }
+
+    private String buildIndex(ParseOptions options) throws Exception {
+        final IndexData indexData = JavadocSupport.findIndexFile(javadocLocation);
+        final String dbDirName = createDBDir();
+        IndexPipeline.buildIndex(indexData.getFilesToIndex(), dbDirName, options, DBSupport.DEFAULT_BATCH_SIZE);
+        return dbDirName;
+    }
+
+    private String createDBDir() throws Exception {
+        final String docFileRoot = FilenameUtils.concat(temporaryFolder.getRoot().getPath(), "Foo");
+        final String dbDirName = DocSetSupport.getDBDir(docFileRoot);
+        FileUtils.forceMkdir(getFile(dbDirName));
+        return dbDirName;
+    }
+
+    private static byte[] toBytes(int[] values) {
+        final ByteBuffer buffer = ByteBuffer.allocate(values.length * 4).order(ByteOrder.nativeOrder());
+        for (final int value : values) {
+            buffer.putInt(value);
+        }
+        return buffer.array();
+    }
+}
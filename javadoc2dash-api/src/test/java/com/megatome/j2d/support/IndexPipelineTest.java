@@ -0,0 +1,80 @@
+package com.megatome.j2d.support;
+
+import com.megatome.j2d.exception.BuilderException;
+import com.megatome.j2d.util.IndexData;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.FilenameUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.Map;
+
+import static org.apache.commons.io.FileUtils.getFile;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertTrue;
+
+public class IndexPipelineTest {
+    private static final File splitJavadoc = getFile(System.getProperty("j2d-sample-javadoc-split"));
+
+    private static final String QUERY = "SELECT COUNT(*) FROM searchIndex WHERE type = ?";
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void testBuildIndex() throws Exception {
+        verifyBuiltIndex(new ParseOptions(), 1);
+    }
+
+    @Test
+    public void testBuildIndexParallel() throws Exception {
+        // A queue of one forces the parser to wait on the writer
+        verifyBuiltIndex(new ParseOptions().parseThreads(4), 1);
+    }
+
+    @Test
+    public void testBuildIndexStreamingParser() throws Exception {
+        verifyBuiltIndex(new ParseOptions().parseThreads(2).parserStrategy(ParserStrategy.STREAMING), 1);
+    }
+
+    @Test(expected = BuilderException.class)
+    public void testBuildIndexBadPath() throws Exception {
+        final IndexData indexData = JavadocSupport.findIndexFile(splitJavadoc);
+        final String dbDirName = createDBDir();
+        IndexPipeline.buildIndex(indexData.getFilesToIndex(), dbDirName + "FOO", new ParseOptions().parseThreads(2), DBSupport.DEFAULT_BATCH_SIZE, 1);
+    }
+
+    private void verifyBuiltIndex(ParseOptions options, int queueCapacity) throws Exception {
+        final IndexData indexData = JavadocSupport.findIndexFile(splitJavadoc);
+        final String dbDirName = createDBDir();
+        IndexPipeline.buildIndex(indexData.getFilesToIndex(), dbDirName, options, 3, queueCapacity);
+        final File dbFile = getFile(dbDirName, "docSet.dsidx");
+        assertTrue("DB file does not exist", dbFile.exists());
+
+        final Map<String, Integer> expectedTypes = ExpectedDataUtil.getExpectedData().getExpectedDataBaseTypes();
+        try (final Connection connection = DriverManager.getConnection("jdbc:sqlite:" + dbFile);
+             final PreparedStatement stmt = connection.prepareStatement(QUERY)) {
+            for (Map.Entry<String, Integer> expectedEntry : expectedTypes.entrySet()) {
+                stmt.setString(1, expectedEntry.getKey());
+                try (final ResultSet rs = stmt.executeQuery()) {
+                    assertTrue(rs.next());
+                    assertThat(rs.getInt(1), is(expectedEntry.getValue().intValue()));
+                }
+            }
+        }
+    }
+
+    private String createDBDir() throws Exception {
+        final String docFileRoot = FilenameUtils.concat(temporaryFolder.getRoot().getPath(), "Foo");
+        final String dbDirName = DocSetSupport.getDBDir(docFileRoot);
+        FileUtils.forceMkdir(getFile(dbDirName));
+        return dbDirName;
+    }
+}
@@ -0,0 +1,145 @@
+package com.megatome.j2d.support;
+
+import com.megatome.j2d.DocsetCreator;
+import com.megatome.j2d.util.IndexData;
+import com.megatome.j2d.util.SearchIndexValue;
+import org.apache.commons.io.FilenameUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.FileSystem;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.apache.commons.io.FileUtils.*;
+import static org.junit.Assert.*;
+
+public class JavadocArchiveTest {
+    private static final File regularJavadoc = getFile(System.getProperty("j2d-sample-javadoc"));
+    private static final File splitJavadoc = getFile(System.getProperty("j2d-sample-javadoc-split"));
+    private static final String CLASS_PAGE = "com/megatome/j2d/sample/clazz/SampleClass.html";
+    private static final String ANCHOR_PATTERN = "<a name=\"//apple_ref/cpp/[^\"]*\" class=\"dashAnchor\"></a>";
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void testIsJavadocArchive() throws Exception {
+        assertTrue(JavadocSupport.isJavadocArchive(createJar(regularJavadoc)));
+        assertFalse(JavadocSupport.isJavadocArchive(regularJavadoc));
+        assertFalse(JavadocSupport.isJavadocArchive(new File(temporaryFolder.getRoot(), "missing-javadoc.jar")));
+    }
+
+    @Test
+    public void testParseArchiveMatchesDirectory() throws Exception {
+        for (final File javadocDir : Arrays.asList(regularJavadoc, splitJavadoc)) {
+            final IndexData dirData = JavadocSupport.findIndexFile(javadocDir);
+            try (final FileSystem archive = JavadocSupport.openJavadocArchive(createJar(javadocDir))) {
+                final IndexData archiveData = JavadocSupport.findIndexFile(archive.getPath("/"));
+                assertEquals(dirData.getDocsetIndexFile(), archiveData.getDocsetIndexFile());
+                assertEquals(dirData.getPathsToIndex().size(), archiveData.getPathsToIndex().size());
+                for (final ParserStrategy strategy : ParserStrategy.values()) {
+                    final ParseOptions options = new ParseOptions().parserStrategy(strategy).parseThreads(2);
+                    assertEquals(describe(dirData, options), describe(archiveData, options));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testCopyFromArchive() throws Exception {
+        try (final FileSystem archive = JavadocSupport.openJavadocArchive(createJar(regularJavadoc))) {
+            final Path root = archive.getPath("/");
+            final TableOfContents toc = new TableOfContents();
+            JavadocSupport.findSearchIndexValues(JavadocSupport.findIndexFile(root), new ParseOptions(), toc);
+            toc.complete();
+
+            final String docsetDir = FilenameUtils.concat(temporaryFolder.newFolder().getPath(), "Foo");
+            DocSetSupport.createDocSetStructure(docsetDir);
+            // Entries of an archive can't be linked, so they are copied
+            DocSetSupport.copyFiles(root, docsetDir, CopyStrategy.HARD_LINK, 2, toc);
+            final File documentsDir = DocSetSupport.getDocumentsDir(docsetDir);
+            for (final File f : listFiles(regularJavadoc, null, true)) {
+                final String path = regularJavadoc.toURI().relativize(f.toURI()).getPath();
+                final File copy = getFile(documentsDir, path);
+                assertTrue(path, copy.isFile());
+                if (toc.hasAnchors(path)) {
+                    assertEquals(path, readFileToString(f, "UTF-8"), readFileToString(copy, "UTF-8").replaceAll(ANCHOR_PATTERN, ""));
+                } else {
+                    assertTrue(path, contentEquals(f, copy));
+                }
+            }
+            assertTrue(readFileToString(getFile(documentsDir, CLASS_PAGE), "UTF-8").contains("dashAnchor"));
+        }
+    }
+
+    @Test
+    public void testMakeDocsetFromArchive() throws Exception {
+        final File outputDir = temporaryFolder.newFolder();
+        new DocsetCreator.Builder("Archived", createJar(regularJavadoc)).outputDirectory(outputDir).incremental(true)
+                .build().makeDocset();
+        final String docsetDir = FilenameUtils.concat(outputDir.getPath(), "Archived");
+        assertTrue(getFile(DocSetSupport.getDocumentsDir(docsetDir), CLASS_PAGE).isFile());
+        assertTrue(DBSupport.indexExists(DocSetSupport.getDBDir(docsetDir)));
+        // There is nothing to compare a later build with
+        assertNull(DocSetSupport.readManifest(docsetDir));
+    }
+
+    private static List<String> describe(IndexData indexData, ParseOptions options) throws Exception {
+        final List<String> values = new ArrayList<>();
+        JavadocSupport.findSearchIndexValues(indexData, options, new SearchIndexConsumer() {
+            @Override
+            public void accept(List<SearchIndexValue> fileValues) {
+                for (final SearchIndexValue value : fileValues) {
+                    values.add(value.getName() + "|" + value.getType() + "|" + value.getPath());
+                }
+            }
+        });
+        // Index files may be listed in a different order
+        Collections.sort(values);
+        return values;
+    }
+
+    private File createJar(final File javadocDir) throws IOException {
+        final File jar = temporaryFolder.newFile("sample-" + javadocDir.getName() + "-javadoc.jar");
+        final Path root = javadocDir.toPath();
+        try (final ZipOutputStream out = new ZipOutputStream(new FileOutputStream(jar))) {
+            Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                    if (!dir.equals(root)) {
+                        out.putNextEntry(new ZipEntry(name(dir) + "/"));
+                        out.closeEntry();
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                    out.putNextEntry(new ZipEntry(name(file)));
+                    Files.copy(file, out);
+                    out.closeEntry();
+                    return FileVisitResult.CONTINUE;
+                }
+
+                private String name(Path path) {
+                    return root.relativize(path).toString().replace(File.separatorChar, '/');
+                }
+            });
+        }
+        return jar;
+    }
+}
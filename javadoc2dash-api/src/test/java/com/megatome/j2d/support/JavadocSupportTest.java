@@ -16,6 +16,7 @@ import static org.apache.commons.io.FileUtils.getFile;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.*;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 
 public class JavadocSupportTest {
     private static final File resourcesRoot = getFile("src", "test", "resources");
@@ -23,6 +24,7 @@ public class JavadocSupportTest {
     private static final File splitJavadoc = getFile(System.getProperty("j2d-sample-javadoc-split"));
     private static final String NOT_JAVADOC_DIR = "not-javadoc";
     private static final String INDEX_ALL_BAD_TAG_HTML = "index-all-bad-tag.html";
+    private static final String INDEX_ALL_DUPLICATE_DT_HTML = "index-all-duplicate-dt.html";
 
     @Test(expected = BuilderException.class)
     public void testMissingJavadocDir() throws Exception {
@@ -49,6 +51,82 @@ public class JavadocSupportTest {
         verifyFoundIndexValues(getAndVerifyIndexFiles(6, splitJavadoc));
     }
 
+    @Test
+    public void testParallelParseKeepsFileOrder() throws Exception {
+        final IndexData indexData = getAndVerifyIndexFiles(6, splitJavadoc);
+        final List<SearchIndexValue> serialValues = JavadocSupport.findSearchIndexValues(indexData.getFilesToIndex(), 1);
+        final List<SearchIndexValue> parallelValues = JavadocSupport.findSearchIndexValues(indexData.getFilesToIndex(), 4);
+        assertSameValues(serialValues, parallelValues);
+    }
+
+    @Test
+    public void testStreamingParserMatchesDom() throws Exception {
+        for (final File javadocDir : Arrays.asList(regularJavadoc, splitJavadoc)) {
+            final List<File> filesToIndex = JavadocSupport.findIndexFile(javadocDir).getFilesToIndex();
+            final List<SearchIndexValue> domValues = JavadocSupport.findSearchIndexValues(filesToIndex, new ParseOptions());
+            final List<SearchIndexValue> streamingValues = JavadocSupport.findSearchIndexValues(filesToIndex,
+                    new ParseOptions().parserStrategy(ParserStrategy.STREAMING));
+            assertSameValues(domValues, streamingValues);
+        }
+    }
+
+    @Test
+    public void testDescriptions() throws Exception {
+        for (final File javadocDir : Arrays.asList(regularJavadoc, splitJavadoc)) {
+            final List<File> filesToIndex = JavadocSupport.findIndexFile(javadocDir).getFilesToIndex();
+            final List<SearchIndexValue> domValues = JavadocSupport.findSearchIndexValues(filesToIndex,
+                    new ParseOptions().descriptions(true));
+            final List<SearchIndexValue> streamingValues = JavadocSupport.findSearchIndexValues(filesToIndex,
+                    new ParseOptions().descriptions(true).parserStrategy(ParserStrategy.STREAMING));
+            assertSameValues(domValues, streamingValues);
+            assertThat(findValue(domValues, "method()").getDescription(), is("Sample method"));
+            for (int i = 0; i < domValues.size(); i++) {
+                assertThat(streamingValues.get(i).getDescription(), is(domValues.get(i).getDescription()));
+            }
+
+            // Descriptions are only kept when asked for
+            for (final SearchIndexValue value : JavadocSupport.findSearchIndexValues(filesToIndex, new ParseOptions())) {
+                assertNull(value.getDescription());
+            }
+        }
+    }
+
+    @Test
+    public void testDescriptionsOfIdenticalEntries() throws Exception {
+        final URI uri = this.getClass().getResource(INDEX_ALL_DUPLICATE_DT_HTML).toURI();
+        final List<File> filesToIndex = Collections.singletonList(new File(uri));
+
+        // Overloads that erase to the same signature have the same <dt>, but each keeps its own description
+        for (final ParserStrategy strategy : ParserStrategy.values()) {
+            final List<String> descriptions = new ArrayList<>();
+            for (final SearchIndexValue value : JavadocSupport.findSearchIndexValues(filesToIndex,
+                    new ParseOptions().descriptions(true).parserStrategy(strategy))) {
+                descriptions.add(value.getDescription());
+            }
+            assertThat(strategy.name(), descriptions, contains(
+                    "Validate that the specified argument collection is neither null nor a size of zero.",
+                    "Validate that the specified argument map is neither null nor a size of zero.",
+                    "Validate that the specified argument character sequence is neither null nor a length of zero."));
+        }
+    }
+
+    @Test
+    public void testStreamingParserIgnoresStrayTags() throws Exception {
+        final URI uri = this.getClass().getResource(INDEX_ALL_BAD_TAG_HTML).toURI();
+        final List<File> filesToIndex = Collections.singletonList(new File(uri));
+
+        final List<SearchIndexValue> values = JavadocSupport.findSearchIndexValues(filesToIndex,
+                new ParseOptions().parserStrategy(ParserStrategy.STREAMING));
+        final List<String> constructors = new ArrayList<>();
+        for (final SearchIndexValue value : values) {
+            if (value.getType() == MatchType.CONSTRUCTOR) {
+                constructors.add(value.getName());
+            }
+        }
+        // The stray tag is inside a <dd>, so the entry after it is still found
+        assertThat(constructors, hasItem("SampleClass()"));
+    }
+
     @Test
     public void testWarnsOfStrayTags() throws Exception {
         final URI uri = this.getClass().getResource(INDEX_ALL_BAD_TAG_HTML).toURI();
@@ -71,6 +149,24 @@ public class JavadocSupportTest {
                                        + " Path: ./com/megatome/j2d/sample/clazz/SampleClass.html)"));
     }
 
+    private void assertSameValues(List<SearchIndexValue> expected, List<SearchIndexValue> actual) {
+        assertThat(actual.size(), is(expected.size()));
+        for (int i = 0; i < expected.size(); i++) {
+            assertThat(actual.get(i).getName(), is(expected.get(i).getName()));
+            assertThat(actual.get(i).getType(), is(expected.get(i).getType()));
+            assertThat(actual.get(i).getPath(), is(expected.get(i).getPath()));
+        }
+    }
+
+    private static SearchIndexValue findValue(List<SearchIndexValue> values, String name) {
+        for (final SearchIndexValue value : values) {
+            if (name.equals(value.getName())) {
+                return value;
+            }
+        }
+        throw new AssertionError("No value named " + name);
+    }
+
     private IndexData getAndVerifyIndexFiles(int expectedFileCount, File javadocDir) throws Exception {
         final IndexData indexData = JavadocSupport.findIndexFile(javadocDir);
         assertNotNull(indexData);
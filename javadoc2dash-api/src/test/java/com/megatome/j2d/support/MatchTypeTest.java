@@ -0,0 +1,84 @@
+package com.megatome.j2d.support;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class MatchTypeTest {
+    @Test
+    public void testFindEntries() {
+        assertEquals(MatchType.CLASS, MatchType.find("SampleClass - Class in com.megatome.j2d.sample.clazz", ""));
+        assertEquals(MatchType.STATIC_METHOD, MatchType.find("staticMethod() - Static method in class com.megatome.j2d.sample.clazz.SampleClass", ""));
+        assertEquals(MatchType.FIELD, MatchType.find("FOO - Static variable in class com.megatome.j2d.sample.clazz.SampleClass", ""));
+        assertEquals(MatchType.CONSTRUCTOR, MatchType.find("SampleException(String) - Constructor for exception com.megatome.j2d.sample.exception.SampleException", ""));
+        assertEquals(MatchType.METHOD, MatchType.find("interfaceMethod() - Method in interface com.megatome.j2d.sample.iface.SampleInterface", ""));
+        assertEquals(MatchType.INTERFACE, MatchType.find("SampleInterface - Interface in com.megatome.j2d.sample.iface", ""));
+        assertEquals(MatchType.ENUM, MatchType.find("SampleEnum - Enum in com.megatome.j2d.sample.enums", ""));
+        assertEquals(MatchType.NOTATION, MatchType.find("SampleAnnotation - Annotation Type in com.megatome.j2d.sample.annotation", ""));
+        assertEquals(MatchType.PACKAGE, MatchType.find("com.megatome.j2d.sample.clazz - package com.megatome.j2d.sample.clazz", ""));
+    }
+
+    @Test
+    public void testFindByClassName() {
+        assertEquals(MatchType.INTERFACE, MatchType.find("SampleInterface", "type-name-link interface"));
+        assertEquals(MatchType.CLASS, MatchType.find("SampleInterface", "type-name-link Class"));
+        assertNull(MatchType.find("SampleInterface", "type-name-link"));
+        assertNull(MatchType.find("SampleInterface", null));
+        assertNull(MatchType.find(null, null));
+    }
+
+    @Test
+    public void testFindIgnoresCase() {
+        assertEquals(MatchType.CLASS, MatchType.find("SAMPLECLASS - CLASS IN COM.MEGATOME", null));
+        // Dotless i matches i once upper cased, the same way containsIgnoreCase compares it
+        assertEquals(MatchType.INTERFACE, MatchType.find("Foo - \u0131nterface \u0131n bar", null));
+        assertEquals(MatchType.TRAIT, MatchType.find("Foo - Trait in bar", null));
+    }
+
+    @Test
+    public void testFindMatchesDeclarationOrder() {
+        final List<String> fragments = new ArrayList<>();
+        fragments.add(" - ");
+        fragments.add("\u212A");
+        for (final MatchType type : MatchType.values()) {
+            fragments.addAll(type.getMatchingText());
+            if (null != type.getClassSuffix()) {
+                fragments.add(type.getClassSuffix());
+            }
+        }
+
+        final Random random = new Random(42);
+        for (int i = 0; i < 100000; i++) {
+            final String target = randomText(random, fragments);
+            final String className = random.nextInt(4) == 0 ? null : randomText(random, fragments);
+            assertEquals(target + " / " + className, findInOrder(target, className), MatchType.find(target, className));
+        }
+    }
+
+    private static MatchType findInOrder(String target, String className) {
+        for (final MatchType type : MatchType.values()) {
+            if (type.matches(target, className)) {
+                return type;
+            }
+        }
+        return null;
+    }
+
+    private static String randomText(Random random, List<String> fragments) {
+        final StringBuilder sb = new StringBuilder();
+        final int count = random.nextInt(4);
+        for (int i = 0; i < count; i++) {
+            final String fragment = fragments.get(random.nextInt(fragments.size()));
+            for (int j = random.nextInt(fragment.length()); j < fragment.length(); j++) {
+                final char c = fragment.charAt(j);
+                sb.append(random.nextBoolean() ? Character.toUpperCase(c) : c);
+            }
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,77 @@
+package com.megatome.j2d.support;
+
+import com.megatome.j2d.util.SearchIndexValue;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.apache.commons.io.FileUtils.write;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.junit.Assert.*;
+
+public class PackageFilterTest {
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private final PackageFilter filter = new PackageFilter(Arrays.asList("com.example.util", " com.example.io "));
+
+    @Test
+    public void testPackagePaths() throws Exception {
+        assertThat(filter.getPackagePaths(), contains("com/example/util", "com/example/io"));
+    }
+
+    @Test
+    public void testMatches() throws Exception {
+        assertTrue(filter.matches("com/example/util/Foo.html"));
+        assertTrue(filter.matches("../com/example/util/Foo.html#bar()"));
+        assertTrue(filter.matches("com/example/util/package-summary.html"));
+        assertTrue(filter.matches("com/example/util/class-use/Foo.html"));
+        assertTrue(filter.matches("com/example/io/Reader.Inner.html#read-java.lang.String-"));
+    }
+
+    @Test
+    public void testDoesNotMatch() throws Exception {
+        assertFalse(filter.matches("com/example/util/concurrent/Foo.html"));
+        assertFalse(filter.matches("com/example/Foo.html"));
+        assertFalse(filter.matches("com/example/utility/Foo.html"));
+        assertFalse(filter.matches("org/com/example/util/Foo.html"));
+        assertFalse(filter.matches("Foo.html#com/example/util/"));
+        assertFalse(filter.matches("index-all.html"));
+    }
+
+    @Test
+    public void testFilter() throws Exception {
+        final List<SearchIndexValue> values = new ArrayList<>();
+        values.add(new SearchIndexValue("Foo", MatchType.CLASS, "../com/example/util/Foo.html"));
+        values.add(new SearchIndexValue("Bar", MatchType.CLASS, "../com/example/Bar.html"));
+        values.add(new SearchIndexValue("read()", MatchType.METHOD, "../com/example/io/Reader.html#read()"));
+        final List<String> names = new ArrayList<>();
+        for (final SearchIndexValue value : filter.filter(values)) {
+            names.add(value.getName());
+        }
+        assertThat(names, contains("Foo", "read()"));
+    }
+
+    @Test
+    public void testIsMentionedIn() throws Exception {
+        final File mentioned = temporaryFolder.newFile("index-1.html");
+        write(mentioned, "<a href=\"../com/example/io/Reader.html\">Reader</a>");
+        assertTrue(filter.isMentionedIn(mentioned));
+
+        final File notMentioned = temporaryFolder.newFile("index-2.html");
+        write(notMentioned, "<a href=\"../com/example/Bar.html\">Bar</a>");
+        assertFalse(filter.isMentionedIn(notMentioned));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testEmptyPackageName() throws Exception {
+        new PackageFilter(Collections.singletonList(" "));
+    }
+}
@@ -0,0 +1,116 @@
+package com.megatome.j2d.support;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Random;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.Assert.*;
+
+public class ParallelGzipOutputStreamTest {
+    private static final int BLOCK_SIZE = ParallelGzipOutputStream.MIN_BLOCK_SIZE;
+
+    @Test
+    public void testEmptyStream() throws Exception {
+        verifyRoundTrip(new byte[0], 6, 4);
+    }
+
+    @Test
+    public void testSingleBlock() throws Exception {
+        verifyRoundTrip(createData(BLOCK_SIZE - 1), 6, 4);
+    }
+
+    @Test
+    public void testBlockBoundaries() throws Exception {
+        verifyRoundTrip(createData(BLOCK_SIZE), 6, 4);
+        verifyRoundTrip(createData(BLOCK_SIZE + 1), 6, 4);
+        verifyRoundTrip(createData(BLOCK_SIZE * 3), 6, 4);
+    }
+
+    @Test
+    public void testManyBlocks() throws Exception {
+        final byte[] data = createData(BLOCK_SIZE * 40 + 123);
+        for (int level = 0; level <= 9; level += 3) {
+            verifyRoundTrip(data, level, 1);
+            verifyRoundTrip(data, level, 4);
+        }
+    }
+
+    @Test
+    public void testSameOutputForAnyThreadCount() throws Exception {
+        final byte[] data = createData(BLOCK_SIZE * 10);
+        assertArrayEquals(compress(data, 6, 1), compress(data, 6, 8));
+    }
+
+    @Test
+    public void testSingleByteWrites() throws Exception {
+        final byte[] data = createData(BLOCK_SIZE + 100);
+        final ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try (final ParallelGzipOutputStream out = new ParallelGzipOutputStream(compressed, 2)) {
+            for (final byte b : data) {
+                out.write(b);
+            }
+        }
+        assertArrayEquals(data, decompress(compressed.toByteArray()));
+    }
+
+    @Test(expected = IOException.class)
+    public void testWriteAfterClose() throws Exception {
+        final ParallelGzipOutputStream out = new ParallelGzipOutputStream(new ByteArrayOutputStream(), 1);
+        out.close();
+        out.write(1);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidLevel() throws Exception {
+        new ParallelGzipOutputStream(new ByteArrayOutputStream(), 10, BLOCK_SIZE, 1);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidBlockSize() throws Exception {
+        new ParallelGzipOutputStream(new ByteArrayOutputStream(), 6, BLOCK_SIZE - 1, 1);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidThreads() throws Exception {
+        new ParallelGzipOutputStream(new ByteArrayOutputStream(), 6, BLOCK_SIZE, 0);
+    }
+
+    private static void verifyRoundTrip(byte[] data, int level, int threads) throws Exception {
+        assertArrayEquals(data, decompress(compress(data, level, threads)));
+    }
+
+    private static byte[] compress(byte[] data, int level, int threads) throws IOException {
+        final ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try (final ParallelGzipOutputStream out = new ParallelGzipOutputStream(compressed, level, BLOCK_SIZE, threads)) {
+            // Uneven writes so blocks fill up across several calls
+            int offset = 0;
+            while (offset < data.length) {
+                final int count = Math.min(data.length - offset, 10000);
+                out.write(data, offset, count);
+                offset += count;
+            }
+        }
+        return compressed.toByteArray();
+    }
+
+    private static byte[] decompress(byte[] compressed) throws IOException {
+        try (final GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(compressed))) {
+            return IOUtils.toByteArray(in);
+        }
+    }
+
+    private static byte[] createData(int size) {
+        // Repetitive enough to compress, random enough that blocks differ
+        final Random random = new Random(size);
+        final byte[] data = new byte[size];
+        for (int i = 0; i < size; i++) {
+            data[i] = random.nextInt(4) == 0 ? (byte) random.nextInt(256) : (byte) ('a' + random.nextInt(8));
+        }
+        return data;
+    }
+}
@@ -0,0 +1,114 @@
+package com.megatome.j2d.support;
+
+import com.megatome.j2d.util.IndexData;
+import com.megatome.j2d.util.SearchIndexValue;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import static org.apache.commons.io.FileUtils.*;
+import static org.junit.Assert.*;
+
+public class ParseCacheTest {
+    private static final File javadocLocation = getFile(System.getProperty("j2d-sample-javadoc"));
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void testPutAndGet() throws Exception {
+        final ParseCache cache = new ParseCache(temporaryFolder.newFolder("cache"));
+        final List<SearchIndexValue> values = new ArrayList<>();
+        values.add(new SearchIndexValue("Foo", MatchType.CLASS, "../com/example/Foo.html"));
+        values.add(new SearchIndexValue("bar(String, \u00e9t\u00e9)", MatchType.METHOD, "../com/example/Foo.html#bar-java.lang.String-"));
+
+        assertNull(cache.get("0123456789"));
+        cache.put("0123456789", values);
+        assertEquals(toStrings(values), toStrings(cache.get("0123456789")));
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.getMisses());
+    }
+
+    @Test
+    public void testPutAndGetDescriptions() throws Exception {
+        final ParseCache cache = new ParseCache(temporaryFolder.newFolder("cache"));
+        final List<SearchIndexValue> values = new ArrayList<>();
+        values.add(new SearchIndexValue("Foo", MatchType.CLASS, "Foo.html", "A class called \u00e9t\u00e9"));
+        values.add(new SearchIndexValue("bar()", MatchType.METHOD, "Foo.html#bar()", null));
+
+        cache.put("0123456789", values);
+        final List<SearchIndexValue> cached = cache.get("0123456789");
+        assertEquals(toStrings(values), toStrings(cached));
+        assertEquals("A class called \u00e9t\u00e9", cached.get(0).getDescription());
+        assertNull(cached.get(1).getDescription());
+    }
+
+    @Test
+    public void testKeyDependsOnContentVersionAndParser() throws Exception {
+        final File cacheDir = temporaryFolder.newFolder("cache");
+        final File indexFile = temporaryFolder.newFile("index-1.html");
+        write(indexFile, "<dl><dt><a href=\"Foo.html\">Foo</a> - Class in foo</dt></dl>");
+        final ParseCache cache = new ParseCache(cacheDir, "1.0");
+
+        final String key = cache.getKey(indexFile, ParserStrategy.DOM);
+        assertEquals(key, cache.getKey(indexFile, ParserStrategy.DOM));
+        assertEquals(40, key.length());
+        assertNotEquals(key, cache.getKey(indexFile, ParserStrategy.STREAMING));
+        assertEquals(key, cache.getKey(indexFile, ParserStrategy.DOM, false));
+        assertNotEquals(key, cache.getKey(indexFile, ParserStrategy.DOM, true));
+        assertNotEquals(key, new ParseCache(cacheDir, "2.0").getKey(indexFile, ParserStrategy.DOM));
+
+        write(indexFile, "<dl><dt><a href=\"Bar.html\">Bar</a> - Class in foo</dt></dl>");
+        assertNotEquals(key, cache.getKey(indexFile, ParserStrategy.DOM));
+    }
+
+    @Test
+    public void testDamagedEntryIsAMiss() throws Exception {
+        final File cacheDir = temporaryFolder.newFolder("cache");
+        final ParseCache cache = new ParseCache(cacheDir);
+        final List<SearchIndexValue> values = new ArrayList<>();
+        values.add(new SearchIndexValue("Foo", MatchType.CLASS, "Foo.html"));
+        cache.put("abcdef", values);
+
+        final Collection<File> entries = listFiles(cacheDir, null, true);
+        assertEquals(1, entries.size());
+        write(entries.iterator().next(), "Not a cache entry");
+        assertNull(cache.get("abcdef"));
+        assertEquals(0, cache.getHits());
+    }
+
+    @Test
+    public void testCachedValuesSkipParsing() throws Exception {
+        final ParseCache cache = new ParseCache(temporaryFolder.newFolder("cache"));
+        final IndexData indexData = JavadocSupport.findIndexFile(javadocLocation);
+        final ParseOptions options = new ParseOptions().parseCache(cache);
+
+        final List<SearchIndexValue> parsed = JavadocSupport.findSearchIndexValues(indexData.getFilesToIndex(), options);
+        assertEquals(indexData.getFilesToIndex().size(), cache.getMisses());
+        final List<SearchIndexValue> cached = JavadocSupport.findSearchIndexValues(indexData.getFilesToIndex(), options);
+        assertEquals(indexData.getFilesToIndex().size(), cache.getHits());
+        assertEquals(toStrings(parsed), toStrings(cached));
+
+        // Replace the entry, so a parse would give different values than a cache hit
+        final File indexFile = indexData.getFilesToIndex().get(0);
+        final List<SearchIndexValue> fake = new ArrayList<>();
+        fake.add(new SearchIndexValue("Fake", MatchType.CLASS, "Fake.html"));
+        cache.put(cache.getKey(indexFile, ParserStrategy.DOM), fake);
+        final List<File> files = new ArrayList<>();
+        files.add(indexFile);
+        assertEquals(toStrings(fake), toStrings(JavadocSupport.findSearchIndexValues(files, options)));
+    }
+
+    private static List<String> toStrings(List<SearchIndexValue> values) {
+        final List<String> strings = new ArrayList<>();
+        for (final SearchIndexValue value : values) {
+            strings.add(value.getName() + "|" + value.getType() + "|" + value.getPath());
+        }
+        return strings;
+    }
+}
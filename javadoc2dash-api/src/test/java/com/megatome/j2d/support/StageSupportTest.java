@@ -0,0 +1,91 @@
+package com.megatome.j2d.support;
+
+import com.megatome.j2d.exception.BuilderException;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.megatome.j2d.support.StageSupport.Stage;
+import static com.megatome.j2d.support.StageSupport.runConcurrently;
+import static org.junit.Assert.*;
+
+public class StageSupportTest {
+    @Test
+    public void testStagesRunConcurrently() throws Exception {
+        // Each stage waits for the other, so this only finishes if they run at the same time
+        final CountDownLatch started = new CountDownLatch(2);
+        final AtomicInteger finished = new AtomicInteger();
+        final Stage stage = new Stage() {
+            @Override
+            public void run() throws BuilderException {
+                started.countDown();
+                try {
+                    assertTrue(started.await(10, TimeUnit.SECONDS));
+                } catch (InterruptedException e) {
+                    throw new BuilderException("Interrupted", e);
+                }
+                finished.incrementAndGet();
+            }
+        };
+        runConcurrently(stage, stage);
+        assertEquals(2, finished.get());
+    }
+
+    @Test
+    public void testFailureCancelsOtherStages() throws Exception {
+        final AtomicBoolean cancelled = new AtomicBoolean(false);
+        final AtomicBoolean stopped = new AtomicBoolean(false);
+        final CountDownLatch started = new CountDownLatch(1);
+        final Stage slowStage = new Stage() {
+            @Override
+            public void run() throws BuilderException {
+                started.countDown();
+                try {
+                    Thread.sleep(TimeUnit.MINUTES.toMillis(1));
+                } catch (InterruptedException e) {
+                    cancelled.set(true);
+                } finally {
+                    stopped.set(true);
+                }
+            }
+        };
+        final Stage failingStage = new Stage() {
+            @Override
+            public void run() throws BuilderException {
+                // Fail only once the slow stage is running, otherwise it could be cancelled before it starts
+                try {
+                    started.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    throw new BuilderException("Interrupted", e);
+                }
+                throw new BuilderException("Stage failed");
+            }
+        };
+
+        try {
+            runConcurrently(slowStage, failingStage);
+            fail("Expected the failing stage to be reported");
+        } catch (BuilderException e) {
+            assertEquals("Stage failed", e.getMessage());
+        }
+        assertTrue(cancelled.get());
+        assertTrue(stopped.get());
+    }
+
+    @Test(expected = BuilderException.class)
+    public void testUnexpectedFailureIsWrapped() throws Exception {
+        runConcurrently(new Stage() {
+            @Override
+            public void run() throws BuilderException {
+                throw new IllegalStateException("Unexpected");
+            }
+        }, new Stage() {
+            @Override
+            public void run() throws BuilderException {
+            }
+        });
+    }
+}
@@ -0,0 +1,101 @@
+package com.megatome.j2d.support;
+
+import com.megatome.j2d.util.SearchIndexValue;
+import org.apache.commons.io.FilenameUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.regex.Pattern;
+
+import static org.apache.commons.io.FileUtils.*;
+import static org.junit.Assert.*;
+
+public class TableOfContentsTest {
+    private static final File regularJavadoc = getFile(System.getProperty("j2d-sample-javadoc"));
+    private static final File splitJavadoc = getFile(System.getProperty("j2d-sample-javadoc-split"));
+    private static final String CLASS_PAGE = "com/megatome/j2d/sample/clazz/SampleClass.html";
+    private static final String METHOD_ANCHOR = "<a name=\"//apple_ref/cpp/Method/method%28%29\" class=\"dashAnchor\"></a>";
+    private static final Pattern METHOD_TARGET = Pattern.compile(Pattern.quote(METHOD_ANCHOR)
+            + "<[a-zA-Z]+[^>]*\\s(?:id|name)=\"method(?:\\(\\)|--)\"");
+    private static final String ANCHOR_PATTERN = "<a name=\"//apple_ref/cpp/[^\"]*\" class=\"dashAnchor\"></a>";
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void testCopyAddsAnchors() throws Exception {
+        for (final File javadocDir : Arrays.asList(regularJavadoc, splitJavadoc)) {
+            final TableOfContents toc = createTableOfContents(javadocDir);
+            assertTrue(toc.hasAnchors(CLASS_PAGE));
+            assertFalse(toc.hasAnchors("index.html"));
+
+            final String docsetDir = FilenameUtils.concat(temporaryFolder.newFolder().getPath(), "Foo");
+            DocSetSupport.copyFiles(javadocDir, docsetDir, CopyStrategy.COPY, 2, toc);
+            assertEquals(toc.getPageCount(), toc.getPagesWritten());
+
+            final File documentsDir = DocSetSupport.getDocumentsDir(docsetDir);
+            final String page = readFileToString(getFile(documentsDir, CLASS_PAGE), "UTF-8");
+            // Javadoc marks members with <a name="method--">, <a id="method()"> or <section id="method()">
+            assertTrue(METHOD_TARGET.matcher(page).find());
+            assertTrue(page.contains("<a name=\"//apple_ref/cpp/Constructor/SampleClass%28%29\" class=\"dashAnchor\"></a>"));
+            // Nothing else changes
+            assertEquals(readFileToString(getFile(javadocDir, CLASS_PAGE), "UTF-8"), page.replaceAll(ANCHOR_PATTERN, ""));
+            assertTrue(contentEquals(getFile(javadocDir, "index.html"), getFile(documentsDir, "index.html")));
+        }
+    }
+
+    @Test
+    public void testHardLinkedSourceIsNotChanged() throws Exception {
+        final TableOfContents toc = createTableOfContents(regularJavadoc);
+        final String docsetDir = FilenameUtils.concat(temporaryFolder.newFolder().getPath(), "Foo");
+        DocSetSupport.copyFiles(regularJavadoc, docsetDir, CopyStrategy.HARD_LINK, 2, toc);
+        assertFalse(readFileToString(getFile(regularJavadoc, CLASS_PAGE), "UTF-8").contains("dashAnchor"));
+        assertTrue(readFileToString(getFile(DocSetSupport.getDocumentsDir(docsetDir), CLASS_PAGE), "UTF-8").contains(METHOD_ANCHOR));
+    }
+
+    @Test
+    public void testWritePage() throws Exception {
+        final TableOfContents toc = new TableOfContents();
+        toc.accept(Arrays.asList(
+                new SearchIndexValue("foo()", MatchType.METHOD, "../pkg/Foo.html#foo()"),
+                new SearchIndexValue("foo()", MatchType.METHOD, "pkg/Foo.html#foo()"),
+                new SearchIndexValue("Foo(int)", MatchType.CONSTRUCTOR, "pkg/Foo.html#<init>(int)"),
+                new SearchIndexValue("BAR", MatchType.FIELD, "./pkg/Foo.html#BAR"),
+                new SearchIndexValue("bar(String[])", MatchType.METHOD, "pkg/Foo.html#bar-java.lang.String:A-"),
+                new SearchIndexValue("Foo", MatchType.CLASS, "pkg/Foo.html"),
+                new SearchIndexValue("Other", MatchType.CLASS, "http://example.com/Other.html#x"),
+                new SearchIndexValue("Mail", MatchType.CLASS, "mailto:someone@example.com#x")));
+        assertEquals(1, toc.getPageCount());
+        assertTrue(toc.hasAnchors("pkg/Foo.html"));
+
+        final String html = "<!DOCTYPE html>\n<html><!-- <a id=\"foo()\"> -->\n"
+                + "<script>if (a<b) { x = '<a id=\"BAR\">'; }</script>\n"
+                + "<section class='detail' id='&lt;init&gt;(int)'>\u00e9t\u00e9</section>\n"
+                + "<a name=\"BAR\"></a><a id=foo()><a id=\"foo()\"><a name=\"bar-java.lang.String:A-\"></a></html>";
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        toc.writePage("pkg/Foo.html", new ByteArrayInputStream(html.getBytes(StandardCharsets.UTF_8)), out);
+        // Anchors go in front of the first matching tag, and never into comments or scripts
+        final String expected = "<!DOCTYPE html>\n<html><!-- <a id=\"foo()\"> -->\n"
+                + "<script>if (a<b) { x = '<a id=\"BAR\">'; }</script>\n"
+                + "<a name=\"//apple_ref/cpp/Constructor/Foo%28int%29\" class=\"dashAnchor\"></a>"
+                + "<section class='detail' id='&lt;init&gt;(int)'>\u00e9t\u00e9</section>\n"
+                + "<a name=\"//apple_ref/cpp/Field/BAR\" class=\"dashAnchor\"></a><a name=\"BAR\"></a>"
+                + "<a name=\"//apple_ref/cpp/Method/foo%28%29\" class=\"dashAnchor\"></a><a id=foo()><a id=\"foo()\">"
+                + "<a name=\"//apple_ref/cpp/Method/bar%28String%5B%5D%29\" class=\"dashAnchor\"></a><a name=\"bar-java.lang.String:A-\"></a></html>";
+        assertEquals(expected, new String(out.toByteArray(), StandardCharsets.UTF_8));
+        assertEquals(1, toc.getPagesWritten());
+    }
+
+    private static TableOfContents createTableOfContents(File javadocDir) throws Exception {
+        final TableOfContents toc = new TableOfContents();
+        JavadocSupport.findSearchIndexValues(JavadocSupport.findIndexFile(javadocDir).getFilesToIndex(), new ParseOptions(), toc);
+        toc.complete();
+        return toc;
+    }
+}
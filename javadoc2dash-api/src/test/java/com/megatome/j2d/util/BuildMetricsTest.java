@@ -0,0 +1,134 @@
+package com.megatome.j2d.util;
+
+import com.megatome.j2d.support.JavadocSupport;
+import com.megatome.j2d.support.MatchType;
+import com.megatome.j2d.support.ParseOptions;
+import org.apache.commons.io.FileUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+
+import static org.apache.commons.io.FileUtils.getFile;
+import static org.junit.Assert.*;
+
+public class BuildMetricsTest {
+    private static final File javadocLocation = getFile(System.getProperty("j2d-sample-javadoc"));
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void testCounts() {
+        final BuildMetrics metrics = new BuildMetrics("Test");
+        metrics.addCopied(2, 100);
+        metrics.addCopied(1, 50);
+        metrics.addParsed(Arrays.asList(new SearchIndexValue("Foo", MatchType.CLASS, "Foo.html"),
+                new SearchIndexValue("bar()", MatchType.METHOD, "Foo.html#bar()"),
+                new SearchIndexValue("baz()", MatchType.METHOD, "Foo.html#baz()")));
+        metrics.addParsed(Collections.<SearchIndexValue>emptyList());
+        metrics.addInserted(1000, 500000000L);
+        metrics.finish();
+
+        assertEquals("Test", metrics.getName());
+        assertEquals(3, metrics.getFilesCopied());
+        assertEquals(150, metrics.getBytesCopied());
+        assertEquals(2, metrics.getPagesParsed());
+        final Map<MatchType, Long> entries = metrics.getEntries();
+        assertEquals(2, entries.size());
+        assertEquals(Long.valueOf(1), entries.get(MatchType.CLASS));
+        assertEquals(Long.valueOf(2), entries.get(MatchType.METHOD));
+        assertEquals(1000, metrics.getRowsInserted());
+        assertEquals(2000.0, metrics.getRowsPerSecond(), 0.001);
+        assertTrue(metrics.getTotalMillis() >= 0);
+        assertTrue(metrics.getJvmPeakHeapBytes() > 0);
+    }
+
+    @Test
+    public void testStages() throws Exception {
+        final BuildMetrics metrics = new BuildMetrics("Test");
+        final BuildMetrics.Timer copyTimer = metrics.startStage("copy");
+        try {
+            Thread.sleep(20);
+        } finally {
+            copyTimer.close();
+        }
+        final BuildMetrics.Timer indexTimer = metrics.startStage("index");
+        try {
+            Thread.sleep(5);
+        } finally {
+            indexTimer.close();
+        }
+        final BuildMetrics.Timer copyAgainTimer = metrics.startStage("copy");
+        try {
+            Thread.sleep(20);
+        } finally {
+            copyAgainTimer.close();
+        }
+        metrics.finish();
+
+        final Map<String, Long> stages = metrics.getStageMillis();
+        assertEquals(Arrays.asList("copy", "index"), Arrays.asList(stages.keySet().toArray()));
+        assertTrue(stages.get("copy") >= 40);
+        assertTrue(metrics.getTotalMillis() >= 45);
+    }
+
+    @Test
+    public void testNotFinished() {
+        final BuildMetrics metrics = new BuildMetrics("Test");
+        assertEquals(-1, metrics.getTotalMillis());
+        assertEquals(-1, metrics.getJvmPeakHeapBytes());
+        assertEquals(0.0, metrics.getRowsPerSecond(), 0.0);
+    }
+
+    @Test
+    public void testCurrent() throws Exception {
+        final BuildMetrics metrics = new BuildMetrics("Test");
+        final LogContext previous = LogUtility.setContext(new LogContext(null, false, null, metrics));
+        try {
+            JavadocSupport.findSearchIndexValues(JavadocSupport.findIndexFile(javadocLocation).getFilesToIndex(), new ParseOptions());
+            assertSame(metrics, BuildMetrics.current());
+        } finally {
+            LogUtility.setContext(previous);
+        }
+        assertTrue(metrics.getPagesParsed() > 0);
+        assertFalse(metrics.getEntries().isEmpty());
+
+        // Without metrics in the context nothing is recorded
+        assertNotSame(metrics, BuildMetrics.current());
+        BuildMetrics.current().addCopied(1, 1);
+        assertEquals(0, BuildMetrics.current().getFilesCopied());
+    }
+
+    @Test
+    public void testJson() throws Exception {
+        final BuildMetrics metrics = new BuildMetrics("Te\"st");
+        final BuildMetrics.Timer copyTimer = metrics.startStage("copy");
+        try {
+            metrics.addCopied(3, 300);
+        } finally {
+            copyTimer.close();
+        }
+        metrics.addParsed(Collections.singletonList(new SearchIndexValue("Foo", MatchType.CLASS, "Foo.html")));
+        metrics.finish();
+
+        final String json = metrics.toJson();
+        assertTrue(json.startsWith("{\"docset\":\"Te\\\"st\",\"totalMillis\":"));
+        assertTrue(json.contains("\"stageMillis\":{\"copy\":"));
+        assertTrue(json.contains("\"filesCopied\":3,\"bytesCopied\":300,\"indexPagesParsed\":1,\"entries\":{\"CLASS\":1}"));
+        assertTrue(json.contains("\"rowsInserted\":0,\"rowsPerSecond\":0.0,\"jvmPeakHeapBytes\":"));
+        assertTrue(metrics.toSummary().contains("Copied 3 files"));
+
+        final File single = temporaryFolder.newFile("single.json");
+        BuildMetrics.writeJson(Collections.singletonList(metrics), single);
+        assertEquals(json + "\n", FileUtils.readFileToString(single, "UTF-8"));
+
+        final File several = temporaryFolder.newFile("several.json");
+        BuildMetrics.writeJson(Arrays.asList(metrics, metrics), several);
+        assertEquals("[" + json + "," + json + "]\n", FileUtils.readFileToString(several, "UTF-8"));
+    }
+}
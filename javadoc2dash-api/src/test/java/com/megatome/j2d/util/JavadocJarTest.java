@@ -0,0 +1,56 @@
+package com.megatome.j2d.util;
+
+import org.junit.Test;
+
+import java.io.File;
+
+import static org.junit.Assert.*;
+
+public class JavadocJarTest {
+    @Test
+    public void testIsJavadocJar() {
+        assertTrue(JavadocJar.isJavadocJar(new File("guava-18.0-javadoc.jar")));
+        assertFalse(JavadocJar.isJavadocJar(new File("guava-18.0.jar")));
+        assertFalse(JavadocJar.isJavadocJar(new File("guava-18.0-sources.jar")));
+        assertFalse(JavadocJar.isJavadocJar(null));
+    }
+
+    @Test
+    public void testFromFile() {
+        JavadocJar javadocJar = JavadocJar.fromFile(new File("guava-18.0-javadoc.jar"));
+        assertNull(javadocJar.getGroup());
+        assertEquals("guava", javadocJar.getName());
+        assertEquals("18.0", javadocJar.getVersion());
+        assertEquals("guava:18.0", javadocJar.getCoordinates());
+
+        javadocJar = JavadocJar.fromFile(new File("commons-lang3-3.3.2-javadoc.jar"));
+        assertEquals("commons-lang3", javadocJar.getName());
+        assertEquals("3.3.2", javadocJar.getVersion());
+
+        javadocJar = JavadocJar.fromFile(new File("sample-1.0-SNAPSHOT-javadoc.jar"));
+        assertEquals("sample", javadocJar.getName());
+        assertEquals("1.0-SNAPSHOT", javadocJar.getVersion());
+
+        javadocJar = JavadocJar.fromFile(new File("sample-javadoc.jar"));
+        assertEquals("sample", javadocJar.getName());
+        assertNull(javadocJar.getVersion());
+        assertEquals("sample", javadocJar.getCoordinates());
+    }
+
+    @Test
+    public void testCoordinates() {
+        final JavadocJar javadocJar = new JavadocJar("com.google.guava", "guava", "18.0", new File("guava-18.0-javadoc.jar"));
+        assertEquals("com.google.guava:guava:18.0", javadocJar.getCoordinates());
+    }
+
+    @Test
+    public void testEquals() {
+        final File file = new File("guava-18.0-javadoc.jar");
+        final JavadocJar javadocJar = new JavadocJar("com.google.guava", "guava", "18.0", file);
+        assertEquals(javadocJar, new JavadocJar("com.google.guava", "guava", "18.0", new File("guava-18.0-javadoc.jar")));
+        assertEquals(javadocJar.hashCode(), new JavadocJar("com.google.guava", "guava", "18.0", file).hashCode());
+        assertEquals(JavadocJar.fromFile(file), JavadocJar.fromFile(file));
+        assertNotEquals(javadocJar, JavadocJar.fromFile(file));
+        assertNotEquals(javadocJar, new JavadocJar("com.google.guava", "guava", "18.0", new File("other-javadoc.jar")));
+    }
+}
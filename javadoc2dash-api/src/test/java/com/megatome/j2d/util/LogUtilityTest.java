@@ -0,0 +1,60 @@
+package com.megatome.j2d.util;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.Assert.*;
+
+public class LogUtilityTest {
+    @After
+    public void tearDown() {
+        LogUtility.setContext(null);
+        LogUtility.setVerbose(false);
+    }
+
+    @Test
+    public void testGlobalSettingsWithoutContext() {
+        LogUtility.setVerbose(true);
+        final LogContext context = LogUtility.getContext();
+        assertTrue(context.isVerbose());
+        assertNull(context.getName());
+    }
+
+    @Test
+    public void testSetAndRestoreContext() {
+        final LogContext first = new LogContext(null, true, "First");
+        assertNull(LogUtility.setContext(first));
+        assertSame(first, LogUtility.getContext());
+
+        final LogContext previous = LogUtility.setContext(new LogContext(null, false, "Second"));
+        assertSame(first, previous);
+        assertEquals("Second", LogUtility.getContext().getName());
+
+        LogUtility.setContext(previous);
+        assertSame(first, LogUtility.getContext());
+    }
+
+    @Test
+    public void testContextIsPerThread() throws Exception {
+        LogUtility.setContext(new LogContext(null, true, "Main"));
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            final Callable<String> getName = new Callable<String>() {
+                @Override
+                public String call() throws Exception {
+                    return LogUtility.getContext().getName();
+                }
+            };
+            assertNull(executor.submit(getName).get());
+            assertEquals("Main", executor.submit(LogUtility.withContext(getName)).get());
+            // The pool thread goes back to the global settings once the wrapped task is done
+            assertNull(executor.submit(getName).get());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
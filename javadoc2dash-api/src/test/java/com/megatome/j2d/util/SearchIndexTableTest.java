@@ -0,0 +1,69 @@
+package com.megatome.j2d.util;
+
+import com.megatome.j2d.support.JavadocSupport;
+import com.megatome.j2d.support.MatchType;
+import com.megatome.j2d.support.ParseOptions;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.apache.commons.io.FileUtils.getFile;
+import static org.junit.Assert.*;
+
+public class SearchIndexTableTest {
+    private static final File javadocLocation = getFile(System.getProperty("j2d-sample-javadoc"));
+
+    @Test
+    public void testAddAndGet() {
+        final SearchIndexTable table = new SearchIndexTable(1);
+        assertTrue(table.isEmpty());
+        table.add("Foo", MatchType.CLASS, "com/example/Foo.html");
+        table.add("bar()", MatchType.METHOD, "com/example/Foo.html#bar()");
+        table.add(new SearchIndexValue("baz()", MatchType.METHOD, "com/example/Foo.html#baz()"));
+        table.addAll(Arrays.asList(new SearchIndexValue("bar()", MatchType.METHOD, "com/example/Qux.html#bar()"),
+                new SearchIndexValue("weird#name", MatchType.FIELD, "com/example/Qux.html#a#b")));
+
+        assertEquals(5, table.size());
+        assertFalse(table.isEmpty());
+        assertEquals("Foo", table.getName(0));
+        assertEquals(MatchType.CLASS, table.getType(0));
+        assertEquals("com/example/Foo.html", table.getPath(0));
+        assertEquals("com/example/Foo.html#bar()", table.getPath(1));
+        assertEquals(MatchType.METHOD, table.get(2).getType());
+        assertEquals("com/example/Qux.html#bar()", table.get(3).getPath());
+        assertEquals("weird#name", table.getName(4));
+        assertEquals("com/example/Qux.html#a#b", table.getPath(4));
+        // Shared class pages, names and anchors are only stored once
+        assertSame(table.getName(1), table.getName(3));
+        assertEquals(9, table.getPoolSize());
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void testRowOutOfRange() {
+        final SearchIndexTable table = new SearchIndexTable();
+        table.add("Foo", MatchType.CLASS, "Foo.html");
+        table.getName(1);
+    }
+
+    @Test
+    public void testMatchesValues() throws Exception {
+        final List<File> indexFiles = JavadocSupport.findIndexFile(javadocLocation).getFilesToIndex();
+        final List<SearchIndexValue> values = JavadocSupport.findSearchIndexValues(indexFiles);
+        final SearchIndexTable table = JavadocSupport.findSearchIndexTable(indexFiles, new ParseOptions());
+
+        assertEquals(values.size(), table.size());
+        assertTrue(table.getPoolSize() < values.size() * 3);
+        final List<SearchIndexValue> tableValues = new ArrayList<>();
+        for (final SearchIndexValue value : table) {
+            tableValues.add(value);
+        }
+        for (int i = 0; i < values.size(); i++) {
+            assertEquals(values.get(i).getName(), tableValues.get(i).getName());
+            assertEquals(values.get(i).getType(), tableValues.get(i).getType());
+            assertEquals(values.get(i).getPath(), tableValues.get(i).getPath());
+        }
+    }
+}